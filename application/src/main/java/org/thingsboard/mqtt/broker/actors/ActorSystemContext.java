@@ -24,10 +24,10 @@ import org.thingsboard.mqtt.broker.actors.device.DeviceActorConfiguration;
 import org.thingsboard.mqtt.broker.actors.msg.TbActorMsg;
 import org.thingsboard.mqtt.broker.actors.service.ActorProcessingMetricService;
 import org.thingsboard.mqtt.broker.dao.client.device.DevicePacketIdAndSerialNumberService;
-import org.thingsboard.mqtt.broker.dao.client.device.DeviceSessionCtxService;
 import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgService;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsgDeliveryService;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.processing.DeviceMsgWriteTracker;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionCacheService;
 import org.thingsboard.mqtt.broker.session.ClientMqttActorManager;
 
@@ -41,13 +41,13 @@ public class ActorSystemContext {
 
     private final TbActorSystem actorSystem;
     private final DeviceMsgService deviceMsgService;
-    private final DeviceSessionCtxService deviceSessionCtxService;
     private final DevicePacketIdAndSerialNumberService serialNumberService;
     private final PublishMsgDeliveryService publishMsgDeliveryService;
     private final ClientMqttActorManager clientMqttActorManager;
     private final ActorProcessingMetricService actorProcessingMetricService;
     private final ClientLogger clientLogger;
     private final SharedSubscriptionCacheService sharedSubscriptionCacheService;
+    private final DeviceMsgWriteTracker deviceMsgWriteTracker;
 
     private final ClientActorContext clientActorContext;
 
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.actors.client;
 
+import io.netty.channel.ChannelHandlerContext;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.mqtt.broker.actors.ActorSystemContext;
 import org.thingsboard.mqtt.broker.actors.TbActorCtx;
@@ -34,6 +35,7 @@ import org.thingsboard.mqtt.broker.actors.client.messages.cluster.RemoveApplicat
 import org.thingsboard.mqtt.broker.actors.client.messages.cluster.SessionDisconnectedMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttConnectMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttDisconnectMsg;
+import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttPublishMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.QueueableMqttMsg;
 import org.thingsboard.mqtt.broker.actors.client.service.ActorProcessor;
 import org.thingsboard.mqtt.broker.actors.client.service.MqttMessageHandler;
@@ -51,15 +53,25 @@ import org.thingsboard.mqtt.broker.actors.shared.TimedMsg;
 import org.thingsboard.mqtt.broker.exception.FullMsgQueueException;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.stats.ClientActorStats;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 import org.thingsboard.mqtt.broker.session.DisconnectReason;
 import org.thingsboard.mqtt.broker.session.DisconnectReasonType;
 
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class ClientActor extends ContextAwareActor {
 
+    // msgs of the connected session that do not block and mostly end up writing to the client's channel.
+    // The Kafka producer send of PUBLISH msgs is handed off to the sender threads of PublishMsgQueuePublisher
+    private static final Set<MsgType> EVENT_LOOP_AFFINE_MSG_TYPES = EnumSet.of(
+            MsgType.MQTT_PUBLISH_MSG, MsgType.MQTT_PUBACK_MSG, MsgType.MQTT_PUBREC_MSG, MsgType.MQTT_PUBREL_MSG, MsgType.MQTT_PUBCOMP_MSG,
+            MsgType.MQTT_PING_MSG, MsgType.PUBACK_RESPONSE_MSG, MsgType.PUBREC_RESPONSE_MSG);
+
     private final SessionClusterManager sessionClusterManager;
     private final SubscriptionChangesManager subscriptionChangesManager;
     private final SubscriptionCommandService subscriptionCommandService;
@@ -91,6 +103,25 @@ public class ClientActor extends ContextAwareActor {
         super.init(ctx);
     }
 
+    /*
+        Session lifecycle msgs (auth, connect, disconnect, subscriptions, etc.) may block, so they stay on the dispatcher
+     */
+    @Override
+    public Executor getAffinityExecutor(TbActorMsg msg) {
+        if (!actorConfiguration.isEventLoopAffinity() || !EVENT_LOOP_AFFINE_MSG_TYPES.contains(msg.getMsgType())
+                || isRetainedPublishMsg(msg) || state.getCurrentSessionState() != SessionState.CONNECTED) {
+            return null;
+        }
+        ClientSessionCtx sessionCtx = state.getCurrentSessionCtx();
+        ChannelHandlerContext channel = sessionCtx != null ? sessionCtx.getChannel() : null;
+        return channel != null ? channel.executor() : null;
+    }
+
+    // the retained msg is persisted by the blocking send of the retained msgs producer
+    private boolean isRetainedPublishMsg(TbActorMsg msg) {
+        return msg instanceof MqttPublishMsg && ((MqttPublishMsg) msg).getPublishMsg().isRetained();
+    }
+
     @Override
     protected boolean doProcess(TbActorMsg msg) {
         if (msg instanceof TimedMsg) {
@@ -246,10 +277,12 @@ public class ClientActor extends ContextAwareActor {
                 log.debug("[{}][{}] Session is in {} state, ignoring message, msg type - {}.",
                         state.getClientId(), state.getCurrentSessionId(), SessionState.DISCONNECTED, msg.getMsgType());
             }
+            mqttMessageHandler.onDropped(state.getCurrentSessionCtx(), msg);
             return true;
         }
         if (state.getCurrentSessionState() != SessionState.CONNECTING
                 && state.getCurrentSessionState() != SessionState.CONNECTED) {
+            mqttMessageHandler.onDropped(state.getCurrentSessionCtx(), msg);
             log.warn("[{}][{}] Msg {} cannot be processed in state - {}.", state.getClientId(), state.getCurrentSessionId(),
                     msg.getMsgType(), state.getCurrentSessionState());
             ctx.tellWithHighPriority(new MqttDisconnectMsg(state.getCurrentSessionId(), new DisconnectReason(DisconnectReasonType.ON_ERROR,
@@ -261,6 +294,7 @@ public class ClientActor extends ContextAwareActor {
             try {
                 state.getQueuedMessages().add(msg);
             } catch (FullMsgQueueException e) {
+                mqttMessageHandler.onDropped(state.getCurrentSessionCtx(), msg);
                 log.warn("[{}][{}] Too many messages in the pre-connect queue", state.getClientId(), state.getCurrentSessionId());
                 ctx.tellWithHighPriority(new MqttDisconnectMsg(state.getCurrentSessionId(), new DisconnectReason(DisconnectReasonType.ON_QUOTA_EXCEEDED,
                         "Too many messages in the pre-connect queue")));
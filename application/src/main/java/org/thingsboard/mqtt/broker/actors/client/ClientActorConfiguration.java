@@ -31,4 +31,6 @@ public class ClientActorConfiguration {
     private int timeToWaitBeforeGeneratedActorStopSeconds;
     @Value("${actors.system.client.wait-before-named-actor-stop-seconds:60}")
     private int timeToWaitBeforeNamedActorStopSeconds;
+    @Value("${actors.client.event-loop-affinity:false}")
+    private boolean eventLoopAffinity;
 }
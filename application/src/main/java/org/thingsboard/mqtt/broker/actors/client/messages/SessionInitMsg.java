@@ -16,21 +16,35 @@
 package org.thingsboard.mqtt.broker.actors.client.messages;
 
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.mqtt.broker.actors.TbActorId;
 import org.thingsboard.mqtt.broker.actors.msg.MsgType;
 import org.thingsboard.mqtt.broker.actors.msg.TbActorMsg;
+import org.thingsboard.mqtt.broker.service.auth.providers.AuthResponse;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
 @Slf4j
 @Getter
-@RequiredArgsConstructor
 public class SessionInitMsg extends AbstractTimedMsg implements TbActorMsg {
 
     private final ClientSessionCtx clientSessionCtx;
     private final String username;
     private final byte[] passwordBytes;
+    /**
+     * Result of the authentication already done outside the actor, null if the actor has to authenticate the client itself
+     */
+    private final AuthResponse authResponse;
+
+    public SessionInitMsg(ClientSessionCtx clientSessionCtx, String username, byte[] passwordBytes) {
+        this(clientSessionCtx, username, passwordBytes, null);
+    }
+
+    public SessionInitMsg(ClientSessionCtx clientSessionCtx, String username, byte[] passwordBytes, AuthResponse authResponse) {
+        this.clientSessionCtx = clientSessionCtx;
+        this.username = username;
+        this.passwordBytes = passwordBytes;
+        this.authResponse = authResponse;
+    }
 
     @Override
     public MsgType getMsgType() {
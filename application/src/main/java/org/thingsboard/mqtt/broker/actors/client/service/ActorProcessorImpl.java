@@ -67,8 +67,11 @@ public class ActorProcessorImpl implements ActorProcessor {
             return;
         }
 
-        AuthContext authContext = buildAuthContext(state, sessionInitMsg);
-        AuthResponse authResponse = authenticateClient(authContext);
+        AuthResponse authResponse = sessionInitMsg.getAuthResponse();
+        if (authResponse == null) {
+            AuthContext authContext = buildAuthContext(state, sessionInitMsg);
+            authResponse = authenticateClient(authContext);
+        }
 
         if (!authResponse.isSuccess()) {
             log.warn("[{}] Connection is not established due to: {}", state.getClientId(), CONNECTION_REFUSED_NOT_AUTHORIZED);
@@ -123,6 +126,7 @@ public class ActorProcessorImpl implements ActorProcessor {
             logAuthRules(clientId, authRulePatterns);
             sessionCtx.setAuthRulePatterns(authRulePatterns);
         }
+        sessionCtx.setCredentialsId(authResponse.getCredentialsId());
         sessionCtx.setClientType(authResponse.getClientType());
     }
 
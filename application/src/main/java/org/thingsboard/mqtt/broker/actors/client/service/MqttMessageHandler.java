@@ -22,6 +22,8 @@ import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 public interface MqttMessageHandler {
     boolean process(ClientSessionCtx clientSessionCtx, QueueableMqttMsg msg, TbActorRef actorRef);
 
+    void onDropped(ClientSessionCtx clientSessionCtx, QueueableMqttMsg msg);
+
     void processPubAckResponse(ClientSessionCtx clientSessionCtx, int msgId);
 
     void processPubRecResponse(ClientSessionCtx clientSessionCtx, int msgId);
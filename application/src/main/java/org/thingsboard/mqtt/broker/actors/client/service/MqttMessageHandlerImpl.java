@@ -76,6 +76,13 @@ public class MqttMessageHandlerImpl implements MqttMessageHandler {
         return true;
     }
 
+    @Override
+    public void onDropped(ClientSessionCtx clientSessionCtx, QueueableMqttMsg msg) {
+        if (msg.getMsgType() == MsgType.MQTT_PUBLISH_MSG) {
+            messageHandlers.getPublishHandler().onDropped(clientSessionCtx, (MqttPublishMsg) msg);
+        }
+    }
+
     @Override
     public void processPubAckResponse(ClientSessionCtx clientSessionCtx, int msgId) {
         messageHandlers.getPublishHandler().processPubAckResponse(clientSessionCtx, msgId);
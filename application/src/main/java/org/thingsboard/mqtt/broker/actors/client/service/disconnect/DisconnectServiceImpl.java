@@ -15,6 +15,9 @@
  */
 package org.thingsboard.mqtt.broker.actors.client.service.disconnect;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.netty.handler.codec.mqtt.MqttProperties;
 import io.netty.handler.codec.mqtt.MqttVersion;
 import lombok.RequiredArgsConstructor;
@@ -26,6 +29,7 @@ import org.thingsboard.mqtt.broker.actors.client.state.ClientActorStateInfo;
 import org.thingsboard.mqtt.broker.common.data.ClientInfo;
 import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
 import org.thingsboard.mqtt.broker.service.auth.AuthorizationRuleService;
+import org.thingsboard.mqtt.broker.service.limits.InboundBackpressureService;
 import org.thingsboard.mqtt.broker.service.limits.RateLimitService;
 import org.thingsboard.mqtt.broker.service.mqtt.MqttMessageGenerator;
 import org.thingsboard.mqtt.broker.service.mqtt.client.event.ClientSessionEventService;
@@ -54,6 +58,7 @@ public class DisconnectServiceImpl implements DisconnectService {
     private final RateLimitService rateLimitService;
     private final MqttMessageGenerator mqttMessageGenerator;
     private final AuthorizationRuleService authorizationRuleService;
+    private final InboundBackpressureService inboundBackpressureService;
 
     @Override
     public void disconnect(ClientActorStateInfo actorState, MqttDisconnectMsg disconnectMsg) {
@@ -80,13 +85,15 @@ public class DisconnectServiceImpl implements DisconnectService {
         MqttProperties properties = disconnectMsg.getProperties();
         var sessionExpiryInterval = getSessionExpiryInterval(properties);
 
+        ListenableFuture<Void> sessionSavedFuture = Futures.immediateFuture(null);
         try {
-            clearClientSession(actorState, disconnectMsg, sessionExpiryInterval);
+            sessionSavedFuture = clearClientSession(actorState, disconnectMsg, sessionExpiryInterval);
         } catch (Exception e) {
             log.warn("[{}][{}] Failed to clean client session.", sessionCtx.getClientId(), sessionCtx.getSessionId(), e);
         }
 
-        notifyClientDisconnected(actorState, sessionExpiryInterval);
+        // the next session of the client must load the saved session state, so it is notified after the save is finished
+        notifyClientDisconnected(actorState, sessionExpiryInterval, sessionSavedFuture);
         rateLimitService.remove(sessionCtx.getClientId());
         authorizationRuleService.evict(sessionCtx.getClientId());
         closeChannel(sessionCtx);
@@ -121,15 +128,22 @@ public class DisconnectServiceImpl implements DisconnectService {
         }
     }
 
-    void notifyClientDisconnected(ClientActorStateInfo actorState, int sessionExpiryInterval) {
+    void notifyClientDisconnected(ClientActorStateInfo actorState, int sessionExpiryInterval, ListenableFuture<Void> sessionSavedFuture) {
+        // the actor state can be changed by the next session till the future is completed
+        ClientSessionCtx sessionCtx = actorState.getCurrentSessionCtx();
+        UUID sessionId = actorState.getCurrentSessionId();
+        sessionSavedFuture.addListener(() -> notifyClientDisconnected(sessionCtx, sessionId, sessionExpiryInterval),
+                MoreExecutors.directExecutor());
+    }
+
+    private void notifyClientDisconnected(ClientSessionCtx sessionCtx, UUID sessionId, int sessionExpiryInterval) {
         if (log.isTraceEnabled()) {
             log.trace("Executing notifyClientDisconnected");
         }
-        ClientSessionCtx sessionCtx = actorState.getCurrentSessionCtx();
         try {
             clientSessionEventService.notifyClientDisconnected(
                     sessionCtx.getSessionInfo().getClientInfo(),
-                    actorState.getCurrentSessionId(),
+                    sessionId,
                     sessionExpiryInterval);
         } catch (Exception e) {
             log.warn("[{}][{}][{}] Failed to notify client disconnected.",
@@ -137,12 +151,14 @@ public class DisconnectServiceImpl implements DisconnectService {
         }
     }
 
-    void clearClientSession(ClientActorStateInfo actorState, MqttDisconnectMsg disconnectMsg, int sessionExpiryInterval) {
+    ListenableFuture<Void> clearClientSession(ClientActorStateInfo actorState, MqttDisconnectMsg disconnectMsg, int sessionExpiryInterval) {
         ClientSessionCtx sessionCtx = actorState.getCurrentSessionCtx();
         ClientInfo clientInfo = sessionCtx.getSessionInfo().getClientInfo();
         var disconnectReasonType = disconnectMsg.getReason().getType();
 
         actorState.getQueuedMessages().clear();
+        // the queued publishes are dropped, so their bytes are released right away
+        inboundBackpressureService.onSessionClosed(sessionCtx);
 
         UUID sessionId = sessionCtx.getSessionId();
         keepAliveService.unregisterSession(sessionId);
@@ -151,20 +167,26 @@ public class DisconnectServiceImpl implements DisconnectService {
         var newSessionCleanStart = disconnectMsg.isNewSessionCleanStart();
         lastWillService.removeAndExecuteLastWillIfNeeded(sessionId, sendLastWill, newSessionCleanStart, sessionExpiryInterval);
 
+        ListenableFuture<Void> sessionSavedFuture = Futures.immediateFuture(null);
         if (sessionCtx.getSessionInfo().isPersistent()) {
-            processPersistenceDisconnect(sessionCtx, clientInfo, sessionId);
+            sessionSavedFuture = processPersistenceDisconnect(sessionCtx, clientInfo, sessionId);
         }
 
         clientSessionCtxService.unregisterSession(clientInfo.getClientId());
+        return sessionSavedFuture;
     }
 
-    void processPersistenceDisconnect(ClientSessionCtx sessionCtx, ClientInfo clientInfo, UUID sessionId) {
+    ListenableFuture<Void> processPersistenceDisconnect(ClientSessionCtx sessionCtx, ClientInfo clientInfo, UUID sessionId) {
         try {
-            msgPersistenceManager.stopProcessingPersistedMessages(clientInfo);
-            msgPersistenceManager.saveAwaitingQoS2Packets(sessionCtx);
+            ListenableFuture<Void> persistedMsgCtxFuture = msgPersistenceManager.stopProcessingPersistedMessages(clientInfo);
+            ListenableFuture<Void> awaitingQoS2PacketsFuture = msgPersistenceManager.saveAwaitingQoS2Packets(sessionCtx);
+            // completed when both saves are finished, successfully or not
+            return Futures.whenAllComplete(persistedMsgCtxFuture, awaitingQoS2PacketsFuture)
+                    .call(() -> null, MoreExecutors.directExecutor());
         } catch (Exception e) {
             if (e instanceof TransactionException) {
                 log.warn("[{}][{}] Couldn't properly stop processing persisted messages and saving QoS 2 packets.", clientInfo.getClientId(), sessionId);
+                return Futures.immediateFuture(null);
             } else {
                 throw e;
             }
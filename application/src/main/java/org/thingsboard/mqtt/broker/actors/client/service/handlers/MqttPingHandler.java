@@ -31,6 +31,6 @@ public class MqttPingHandler {
         if (log.isTraceEnabled()) {
             log.trace("[{}][{}] Received PING msg.", ctx.getClientId(), ctx.getSessionId());
         }
-        ctx.getChannel().writeAndFlush(mqttMessageGenerator.createPingRespMsg());
+        ctx.writeAndFlush(mqttMessageGenerator.createPingRespMsg());
     }
 }
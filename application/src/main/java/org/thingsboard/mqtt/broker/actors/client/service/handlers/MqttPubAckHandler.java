@@ -40,5 +40,6 @@ public class MqttPubAckHandler {
             msgPersistenceManager.processPubAck(ctx, messageId);
         }
         retransmissionService.onPubAckReceived(ctx, messageId);
+        ctx.getOutboundFlowCtx().onAcknowledged(messageId);
     }
 }
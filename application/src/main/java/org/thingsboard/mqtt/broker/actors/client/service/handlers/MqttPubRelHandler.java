@@ -38,7 +38,7 @@ public class MqttPubRelHandler {
 
         var code = completePubRel(ctx, messageId);
 
-        ctx.getChannel().writeAndFlush(mqttMessageGenerator.createPubCompMsg(messageId, code));
+        ctx.writeAndFlush(mqttMessageGenerator.createPubCompMsg(messageId, code));
     }
 
     MqttReasonCode completePubRel(ClientSessionCtx ctx, int messageId) {
@@ -34,6 +34,7 @@ import org.thingsboard.mqtt.broker.queue.TbQueueCallback;
 import org.thingsboard.mqtt.broker.queue.TbQueueMsgMetadata;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.auth.AuthorizationRuleService;
+import org.thingsboard.mqtt.broker.service.limits.InboundBackpressureService;
 import org.thingsboard.mqtt.broker.service.mqtt.MqttMessageGenerator;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsg;
 import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgProcessor;
@@ -66,6 +67,7 @@ public class MqttPublishHandler {
     private final ClientMqttActorManager clientMqttActorManager;
     private final ClientLogger clientLogger;
     private final RetainedMsgProcessor retainedMsgProcessor;
+    private final InboundBackpressureService inboundBackpressureService;
 
     private final boolean isTraceEnabled = log.isTraceEnabled();
 
@@ -80,6 +82,21 @@ public class MqttPublishHandler {
     }
 
     public void process(ClientSessionCtx ctx, MqttPublishMsg msg, TbActorRef actorRef) throws MqttException {
+        boolean persisting = false;
+        try {
+            persisting = processPublishMsg(ctx, msg, actorRef);
+        } finally {
+            if (!persisting) {
+                inboundBackpressureService.onPublishProcessed(ctx, getPayloadSize(msg.getPublishMsg()));
+            }
+        }
+    }
+
+    public void onDropped(ClientSessionCtx ctx, MqttPublishMsg msg) {
+        inboundBackpressureService.onPublishDropped(ctx, getPayloadSize(msg.getPublishMsg()));
+    }
+
+    private boolean processPublishMsg(ClientSessionCtx ctx, MqttPublishMsg msg, TbActorRef actorRef) throws MqttException {
         PublishMsg publishMsg = msg.getPublishMsg();
         int msgId = publishMsg.getPacketId();
 
@@ -97,7 +114,7 @@ public class MqttPublishHandler {
             } else {
                 disconnectClient(ctx, DisconnectReasonType.TOPIC_ALIAS_INVALID, e.getMessage());
             }
-            return;
+            return false;
         }
         if (topicNameByAlias != null) {
             publishMsg = buildPublishMsgWithTopicName(publishMsg, topicNameByAlias);
@@ -105,11 +122,11 @@ public class MqttPublishHandler {
 
         boolean validateSuccess = validatePubMsg(ctx, publishMsg);
         if (!validateSuccess) {
-            return;
+            return false;
         }
 
         if (publishMsg.getQosLevel() == MqttQoS.EXACTLY_ONCE.value()) {
-            if (processExactlyOnceAndCheckIfAlreadyPublished(ctx, actorRef, msgId)) return;
+            if (processExactlyOnceAndCheckIfAlreadyPublished(ctx, actorRef, msgId)) return false;
         } else if (publishMsg.getQosLevel() == MqttQoS.AT_LEAST_ONCE.value()) {
             processAtLeastOnce(ctx, msgId);
         }
@@ -123,6 +140,7 @@ public class MqttPublishHandler {
 
         clientLogger.logEvent(ctx.getClientId(), this.getClass(), "Sending PUBLISH");
         persistPubMsg(ctx, publishMsg, actorRef);
+        return true;
     }
 
     private boolean validatePubMsg(ClientSessionCtx ctx, PublishMsg publishMsg) {
@@ -152,9 +170,9 @@ public class MqttPublishHandler {
 
     private void pushErrorResponseWithReasonCode(ClientSessionCtx ctx, PublishMsg publishMsg, MqttReasonCode code) {
         if (publishMsg.getQosLevel() == MqttQoS.EXACTLY_ONCE.value()) {
-            ctx.getChannel().writeAndFlush(mqttMessageGenerator.createPubRecMsg(publishMsg.getPacketId(), code));
+            ctx.writeAndFlush(mqttMessageGenerator.createPubRecMsg(publishMsg.getPacketId(), code));
         } else if (publishMsg.getQosLevel() == MqttQoS.AT_LEAST_ONCE.value()) {
-            ctx.getChannel().writeAndFlush(mqttMessageGenerator.createPubAckMsg(publishMsg.getPacketId(), code));
+            ctx.writeAndFlush(mqttMessageGenerator.createPubAckMsg(publishMsg.getPacketId(), code));
         }
     }
 
@@ -172,9 +190,11 @@ public class MqttPublishHandler {
     }
 
     void persistPubMsg(ClientSessionCtx ctx, PublishMsg publishMsg, TbActorRef actorRef) {
+        int payloadSize = getPayloadSize(publishMsg);
         msgDispatcherService.persistPublishMsg(ctx.getSessionInfo(), publishMsg, new TbQueueCallback() {
             @Override
             public void onSuccess(TbQueueMsgMetadata metadata) {
+                inboundBackpressureService.onPublishProcessed(ctx, payloadSize);
                 callbackProcessor.submit(() -> {
                     clientLogger.logEvent(ctx.getClientId(), this.getClass(), "PUBLISH acknowledged");
                     if (isTraceEnabled) {
@@ -186,6 +206,7 @@ public class MqttPublishHandler {
 
             @Override
             public void onFailure(Throwable t) {
+                inboundBackpressureService.onPublishProcessed(ctx, payloadSize);
                 callbackProcessor.submit(() -> {
                     log.warn("[{}][{}] Failed to publish msg: {}", ctx.getClientId(), ctx.getSessionId(), publishMsg.getPacketId(), t);
                     disconnectClient(ctx, DisconnectReasonType.ON_ERROR, "Failed to publish msg");
@@ -194,22 +215,29 @@ public class MqttPublishHandler {
         });
     }
 
+    private int getPayloadSize(PublishMsg publishMsg) {
+        if (publishMsg.getByteBuf() != null) {
+            return publishMsg.getByteBuf().readableBytes();
+        }
+        return publishMsg.getPayload() != null ? publishMsg.getPayload().length : 0;
+    }
+
     public void processPubAckResponse(ClientSessionCtx ctx, int msgId) {
         MqttReasonCode code = MqttReasonCodeResolver.success(ctx);
         List<Integer> finishedMsgIds = ctx.getPubResponseProcessingCtx().getQos1PubAckResponseMsgs().finish(msgId);
         for (var finishedMsgId : finishedMsgIds) {
             ctx.getChannel().write(mqttMessageGenerator.createPubAckMsg(finishedMsgId, code));
         }
-        ctx.getChannel().flush();
+        ctx.flush();
     }
 
     public void processPubRecResponse(ClientSessionCtx ctx, int msgId) {
         MqttReasonCode code = MqttReasonCodeResolver.success(ctx);
         List<Integer> finishedMsgIds = ctx.getPubResponseProcessingCtx().getQos2PubRecResponseMsgs().finishAll(msgId);
         for (var finishedMsgId : finishedMsgIds) {
-            ctx.getChannel().writeAndFlush(mqttMessageGenerator.createPubRecMsg(finishedMsgId, code));
+            ctx.writeAndFlush(mqttMessageGenerator.createPubRecMsg(finishedMsgId, code));
         }
-        ctx.getChannel().flush();
+        ctx.flush();
 
         AwaitingPubRelPacketsCtx.QoS2PubRelPacketInfo awaitingPacketInfo = ctx.getAwaitingPubRelPacketsCtx().getAwaitingPacket(msgId);
         if (isNotPersisted(awaitingPacketInfo)) {
@@ -15,8 +15,8 @@
  */
 package org.thingsboard.mqtt.broker.actors.client.service.session;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
 import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
@@ -27,9 +27,11 @@ import org.thingsboard.mqtt.broker.common.data.SessionInfo;
 import org.thingsboard.mqtt.broker.exception.MqttException;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
 import org.thingsboard.mqtt.broker.queue.constants.QueueConstants;
+import org.thingsboard.mqtt.broker.service.mqtt.client.cleanup.ClientSessionExpiryIndex;
 import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionConsumer;
 import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionPersistenceService;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionCacheService;
 import org.thingsboard.mqtt.broker.util.ClientSessionInfoFactory;
 
 import java.util.HashMap;
@@ -43,19 +45,35 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class ClientSessionServiceImpl implements ClientSessionService {
 
     private final ClientSessionPersistenceService clientSessionPersistenceService;
     private final ServiceInfoProvider serviceInfoProvider;
     private final StatsManager statsManager;
-
-    private ConcurrentMap<String, ClientSessionInfo> clientSessionMap;
+    private final ClientSessionExpiryIndex clientSessionExpiryIndex;
+    private final SharedSubscriptionCacheService sharedSubscriptionCacheService;
+
+    private final ConcurrentMap<String, String> serviceIds = new ConcurrentHashMap<>();
+    private ConcurrentMap<String, CompactClientSessionInfo> clientSessionMap;
+
+    public ClientSessionServiceImpl(ClientSessionPersistenceService clientSessionPersistenceService,
+                                    ServiceInfoProvider serviceInfoProvider,
+                                    StatsManager statsManager,
+                                    ClientSessionExpiryIndex clientSessionExpiryIndex,
+                                    @Lazy SharedSubscriptionCacheService sharedSubscriptionCacheService) {
+        this.clientSessionPersistenceService = clientSessionPersistenceService;
+        this.serviceInfoProvider = serviceInfoProvider;
+        this.statsManager = statsManager;
+        this.clientSessionExpiryIndex = clientSessionExpiryIndex;
+        this.sharedSubscriptionCacheService = sharedSubscriptionCacheService;
+    }
 
     @Override
     public void init(Map<String, ClientSessionInfo> clientSessionInfos) {
-        this.clientSessionMap = new ConcurrentHashMap<>(clientSessionInfos);
+        this.clientSessionMap = new ConcurrentHashMap<>(clientSessionInfos.size());
+        clientSessionInfos.forEach((clientId, clientSessionInfo) -> clientSessionMap.put(clientId, toCompact(clientSessionInfo)));
         statsManager.registerAllClientSessionsStats(clientSessionMap);
+        clientSessionInfos.forEach(clientSessionExpiryIndex::onSessionUpdated);
     }
 
     @Override
@@ -75,7 +93,9 @@ public class ClientSessionServiceImpl implements ClientSessionService {
         }
 
         ClientSessionInfo clientSessionInfo = ClientSessionInfoFactory.clientSessionToClientSessionInfo(clientSession);
-        clientSessionMap.put(clientId, clientSessionInfo);
+        clientSessionMap.put(clientId, toCompact(clientSessionInfo));
+        clientSessionExpiryIndex.onSessionUpdated(clientId, clientSessionInfo);
+        sharedSubscriptionCacheService.onClientSessionChanged(clientId);
 
         QueueProtos.ClientSessionInfoProto clientSessionInfoProto = ProtoConverter.convertToClientSessionInfoProto(clientSessionInfo);
         clientSessionPersistenceService.persistClientSessionInfoAsync(clientId, clientSessionInfoProto, callback);
@@ -90,7 +110,9 @@ public class ClientSessionServiceImpl implements ClientSessionService {
         if (log.isTraceEnabled()) {
             log.trace("[{}] Clearing ClientSession.", clientId);
         }
-        ClientSessionInfo removedClientSessionInfo = clientSessionMap.remove(clientId);
+        CompactClientSessionInfo removedClientSessionInfo = clientSessionMap.remove(clientId);
+        clientSessionExpiryIndex.onSessionRemoved(clientId);
+        sharedSubscriptionCacheService.onClientSessionChanged(clientId);
         if (removedClientSessionInfo == null) {
             log.warn("[{}] No client session found while clearing session.", clientId);
         }
@@ -100,13 +122,13 @@ public class ClientSessionServiceImpl implements ClientSessionService {
     @Override
     public Map<String, ClientSessionInfo> getPersistentClientSessionInfos() {
         return clientSessionMap.entrySet().stream()
-                .filter(entry -> isPersistent(entry.getValue()))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+                .filter(entry -> entry.getValue().isPersistent())
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().toClientSessionInfo(entry.getKey())));
     }
 
     @Override
     public ClientSession getClientSession(String clientId) {
-        ClientSessionInfo clientSessionInfo = clientSessionMap.getOrDefault(clientId, null);
+        ClientSessionInfo clientSessionInfo = getClientSessionInfo(clientId);
         if (clientSessionInfo != null) {
             SessionInfo sessionInfo = ClientSessionInfoFactory.clientSessionInfoToSessionInfo(clientSessionInfo);
             return new ClientSession(clientSessionInfo.isConnected(), sessionInfo);
@@ -116,13 +138,24 @@ public class ClientSessionServiceImpl implements ClientSessionService {
 
     @Override
     public ClientSessionInfo getClientSessionInfo(String clientId) {
+        CompactClientSessionInfo compactClientSessionInfo = clientSessionMap.get(clientId);
+        return compactClientSessionInfo != null ? compactClientSessionInfo.toClientSessionInfo(clientId) : null;
+    }
+
+    @Override
+    public CompactClientSessionInfo getCompactClientSessionInfo(String clientId) {
         return clientSessionMap.get(clientId);
     }
 
     @Override
     public Map<String, ClientSessionInfo> getAllClientSessions() {
-        Map<String, ClientSessionInfo> allClientSessionsMap = clientSessionMap == null ? Map.of() : clientSessionMap;
-        return new HashMap<>(allClientSessionsMap);
+        if (clientSessionMap == null) {
+            return new HashMap<>();
+        }
+        Map<String, ClientSessionInfo> allClientSessionsMap = new HashMap<>(clientSessionMap.size());
+        clientSessionMap.forEach((clientId, compactClientSessionInfo) ->
+                allClientSessionsMap.put(clientId, compactClientSessionInfo.toClientSessionInfo(clientId)));
+        return allClientSessionsMap;
     }
 
     @Override
@@ -142,15 +175,21 @@ public class ClientSessionServiceImpl implements ClientSessionService {
                 log.trace("[{}][{}] Clearing remote ClientSession.", serviceId, clientId);
             }
             clientSessionMap.remove(clientId);
+            clientSessionExpiryIndex.onSessionRemoved(clientId);
+            sharedSubscriptionCacheService.onClientSessionChanged(clientId);
         } else {
             if (log.isTraceEnabled()) {
                 log.trace("[{}][{}] Saving remote ClientSession.", serviceId, clientId);
             }
-            clientSessionMap.put(clientId, clientSessionInfo);
+            clientSessionMap.put(clientId, toCompact(clientSessionInfo));
+            clientSessionExpiryIndex.onSessionUpdated(clientId, clientSessionInfo);
+            sharedSubscriptionCacheService.onClientSessionChanged(clientId);
         }
     }
 
-    private boolean isPersistent(ClientSessionInfo clientSessionInfo) {
-        return ClientSessionInfoFactory.clientSessionInfoToSessionInfo(clientSessionInfo).isPersistent();
+    private CompactClientSessionInfo toCompact(ClientSessionInfo clientSessionInfo) {
+        String serviceId = clientSessionInfo.getServiceId();
+        String internedServiceId = serviceId == null ? null : serviceIds.computeIfAbsent(serviceId, id -> id);
+        return CompactClientSessionInfo.of(clientSessionInfo, internedServiceId);
     }
 }
@@ -0,0 +1,101 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors.client.service.session;
+
+import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
+import org.thingsboard.mqtt.broker.common.data.ClientType;
+
+import java.util.UUID;
+
+/**
+ * Registry representation of {@link ClientSessionInfo}: the clientId is kept only as the registry key,
+ * the serviceId is shared between the sessions of the same node, the session id and the flags are stored as primitives.
+ * The msg dispatching reads the session state through the accessors, so no {@link ClientSessionInfo} is materialized per msg.
+ */
+public final class CompactClientSessionInfo {
+
+    private static final byte CONNECTED = 1;
+    private static final byte CLEAN_START = 1 << 1;
+    private static final byte SESSION_ID_PRESENT = 1 << 2;
+
+    private final String serviceId;
+    private final long sessionIdMsb;
+    private final long sessionIdLsb;
+    private final long connectedAt;
+    private final long disconnectedAt;
+    private final int sessionExpiryInterval;
+    private final int keepAlive;
+    private final ClientType type;
+    private final byte[] clientIpAdr;
+    private final byte flags;
+
+    private CompactClientSessionInfo(ClientSessionInfo clientSessionInfo, String serviceId) {
+        this.serviceId = serviceId;
+        UUID sessionId = clientSessionInfo.getSessionId();
+        this.sessionIdMsb = sessionId != null ? sessionId.getMostSignificantBits() : 0;
+        this.sessionIdLsb = sessionId != null ? sessionId.getLeastSignificantBits() : 0;
+        this.connectedAt = clientSessionInfo.getConnectedAt();
+        this.disconnectedAt = clientSessionInfo.getDisconnectedAt();
+        this.sessionExpiryInterval = clientSessionInfo.getSessionExpiryInterval();
+        this.keepAlive = clientSessionInfo.getKeepAlive();
+        this.type = clientSessionInfo.getType();
+        this.clientIpAdr = clientSessionInfo.getClientIpAdr();
+        this.flags = (byte) ((clientSessionInfo.isConnected() ? CONNECTED : 0)
+                | (clientSessionInfo.isCleanStart() ? CLEAN_START : 0)
+                | (sessionId != null ? SESSION_ID_PRESENT : 0));
+    }
+
+    public static CompactClientSessionInfo of(ClientSessionInfo clientSessionInfo, String internedServiceId) {
+        return new CompactClientSessionInfo(clientSessionInfo, internedServiceId);
+    }
+
+    public ClientSessionInfo toClientSessionInfo(String clientId) {
+        return ClientSessionInfo.builder()
+                .connected(isConnected())
+                .serviceId(serviceId)
+                .sessionId((flags & SESSION_ID_PRESENT) != 0 ? new UUID(sessionIdMsb, sessionIdLsb) : null)
+                .cleanStart(isCleanStart())
+                .sessionExpiryInterval(sessionExpiryInterval)
+                .clientId(clientId)
+                .type(type)
+                .clientIpAdr(clientIpAdr)
+                .connectedAt(connectedAt)
+                .disconnectedAt(disconnectedAt)
+                .keepAlive(keepAlive)
+                .build();
+    }
+
+    public boolean isConnected() {
+        return (flags & CONNECTED) != 0;
+    }
+
+    boolean isCleanStart() {
+        return (flags & CLEAN_START) != 0;
+    }
+
+    public boolean isPersistent() {
+        int safeSessionExpiryInterval = sessionExpiryInterval == -1 ? 0 : sessionExpiryInterval;
+        return safeSessionExpiryInterval > 0 || !isCleanStart();
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public ClientType getType() {
+        return type;
+    }
+}
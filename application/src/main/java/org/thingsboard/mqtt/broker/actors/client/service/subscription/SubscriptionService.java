@@ -15,7 +15,6 @@
  */
 package org.thingsboard.mqtt.broker.actors.client.service.subscription;
 
-import org.thingsboard.mqtt.broker.exception.SubscriptionTrieClearException;
 import org.thingsboard.mqtt.broker.service.subscription.ClientSubscription;
 import org.thingsboard.mqtt.broker.service.subscription.TopicSubscription;
 import org.thingsboard.mqtt.broker.service.subscription.ValueWithTopicFilter;
@@ -34,6 +33,6 @@ public interface SubscriptionService {
 
     List<ValueWithTopicFilter<ClientSubscription>> getSubscriptions(String topic);
 
-    void clearEmptyTopicNodes() throws SubscriptionTrieClearException;
+    void clearEmptyTopicNodes();
 
 }
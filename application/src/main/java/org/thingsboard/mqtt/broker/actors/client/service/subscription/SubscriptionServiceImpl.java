@@ -18,7 +18,6 @@ package org.thingsboard.mqtt.broker.actors.client.service.subscription;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.thingsboard.mqtt.broker.exception.SubscriptionTrieClearException;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 import org.thingsboard.mqtt.broker.service.stats.timer.SubscriptionTimerStats;
 import org.thingsboard.mqtt.broker.service.subscription.ClientSubscription;
@@ -83,7 +82,7 @@ public class SubscriptionServiceImpl implements SubscriptionService {
     }
 
     @Override
-    public void clearEmptyTopicNodes() throws SubscriptionTrieClearException {
+    public void clearEmptyTopicNodes() {
         if (log.isTraceEnabled()) {
             log.trace("Executing clearEmptyTopicNodes");
         }
@@ -93,10 +92,6 @@ public class SubscriptionServiceImpl implements SubscriptionService {
     @Scheduled(cron = "${mqtt.subscription-trie.clear-nodes-cron}", zone = "${mqtt.subscription-trie.clear-nodes-zone}")
     private void scheduleEmptyNodeClear() {
         log.info("Start clearing empty nodes in SubscriptionTrie");
-        try {
-            subscriptionTrie.clearEmptyNodes();
-        } catch (SubscriptionTrieClearException e) {
-            log.error("Failed to clear empty nodes.", e);
-        }
+        subscriptionTrie.clearEmptyNodes();
     }
 }
@@ -32,8 +32,9 @@ public class DefaultClientActorState implements ClientActorState {
     @Getter
     private UUID stopActorCommandId;
 
-    private ClientSessionCtx clientSessionCtx;
-    private SessionState currentSessionState = SessionState.DISCONNECTED;
+    // volatile since the mailbox reads them on the enqueuing thread to choose the executor of the msg
+    private volatile ClientSessionCtx clientSessionCtx;
+    private volatile SessionState currentSessionState = SessionState.DISCONNECTED;
 
     public DefaultClientActorState(String clientId, boolean isClientIdGenerated, int maxPreConnectQueueSize) {
         this.clientId = clientId;
@@ -17,6 +17,7 @@ package org.thingsboard.mqtt.broker.actors.device;
 
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import lombok.Getter;
@@ -38,7 +39,6 @@ import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.common.data.mqtt.MsgExpiryResult;
 import org.thingsboard.mqtt.broker.common.util.DonAsynchron;
 import org.thingsboard.mqtt.broker.dao.client.device.DevicePacketIdAndSerialNumberService;
-import org.thingsboard.mqtt.broker.dao.client.device.DeviceSessionCtxService;
 import org.thingsboard.mqtt.broker.dao.client.device.PacketIdAndSerialNumber;
 import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgService;
 import org.thingsboard.mqtt.broker.dto.PacketIdAndSerialNumberDto;
@@ -46,6 +46,7 @@ import org.thingsboard.mqtt.broker.dto.SharedSubscriptionPublishPacket;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsg;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsgDeliveryService;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.processing.DeviceMsgWriteTracker;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionCacheService;
 import org.thingsboard.mqtt.broker.service.subscription.shared.TopicSharedSubscription;
 import org.thingsboard.mqtt.broker.session.ClientMqttActorManager;
@@ -62,6 +63,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 @Slf4j
 @Getter
@@ -69,16 +71,18 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
 
     private final String clientId;
     private final DeviceMsgService deviceMsgService;
-    private final DeviceSessionCtxService deviceSessionCtxService;
     private final DevicePacketIdAndSerialNumberService serialNumberService;
     private final PublishMsgDeliveryService publishMsgDeliveryService;
     private final ClientMqttActorManager clientMqttActorManager;
     private final ClientLogger clientLogger;
     private final DeviceActorConfiguration deviceActorConfig;
     private final SharedSubscriptionCacheService sharedSubscriptionCacheService;
+    private final DeviceMsgWriteTracker deviceMsgWriteTracker;
 
     private final Set<Integer> inFlightPacketIds = Sets.newConcurrentHashSet();
     private final ConcurrentMap<Integer, SharedSubscriptionPublishPacket> sentPacketIdsFromSharedSubscription = Maps.newConcurrentMap();
+    // serial numbers of the sent persisted messages, used to delete acknowledged messages by serial number ranges
+    private final ConcurrentMap<Integer, Long> sentPacketIdsSerialNumbers = Maps.newConcurrentMap();
 
     @Setter
     private volatile ClientSessionCtx sessionCtx;
@@ -92,13 +96,13 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
         super(systemContext);
         this.clientId = clientId;
         this.deviceMsgService = systemContext.getDeviceMsgService();
-        this.deviceSessionCtxService = systemContext.getDeviceSessionCtxService();
         this.serialNumberService = systemContext.getSerialNumberService();
         this.publishMsgDeliveryService = systemContext.getPublishMsgDeliveryService();
         this.clientMqttActorManager = systemContext.getClientMqttActorManager();
         this.clientLogger = systemContext.getClientLogger();
         this.deviceActorConfig = systemContext.getDeviceActorConfiguration();
         this.sharedSubscriptionCacheService = systemContext.getSharedSubscriptionCacheService();
+        this.deviceMsgWriteTracker = systemContext.getDeviceMsgWriteTracker();
     }
 
     public void processDeviceConnect(DeviceConnectedEventMsg msg) {
@@ -144,7 +148,7 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
                 log.warn("[{}][{}] Failed to process shared subscription persisted messages.", clientId, sessionCtx.getSessionId(), e);
                 disconnect("Failed to process shared subscription persisted messages");
             }
-            deviceSessionCtxService.removeDeviceSessionContext(key);
+            serialNumberService.removeDeviceSessionContext(key);
         }
         serialNumberService.saveLastSerialNumbers(Map.of(clientId, lastPacketIdAndSerialNumber));
     }
@@ -200,6 +204,7 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
                     inFlightPacketIds.add(persistedMessage.getPacketId());
                 }
                 lastPersistedMsgSentSerialNumber = persistedMessage.getSerialNumber();
+                rememberSerialNumber(persistedMessage);
                 PublishMsg pubMsg = getPublishMsg(persistedMessage, isDup);
                 if (msgExpiryResult.isMsgExpiryIntervalPresent()) {
                     MqttPropertiesUtil.addMsgExpiryIntervalToPublish(pubMsg.getProperties(), msgExpiryResult.getMsgExpiryInterval());
@@ -207,6 +212,7 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
                 publishMsgDeliveryService.sendPublishMsgToClient(sessionCtx, pubMsg);
                 break;
             case PUBREL:
+                rememberSerialNumber(persistedMessage);
                 publishMsgDeliveryService.sendPubRelMsgToClient(sessionCtx, persistedMessage.getPacketId());
                 break;
             default:
@@ -239,6 +245,7 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
         }
 
         inFlightPacketIds.add(publishMsg.getPacketId());
+        rememberSerialNumber(publishMsg);
         try {
             PublishMsg pubMsg = getPublishMsg(publishMsg, false);
             if (msgExpiryResult.isMsgExpiryIntervalPresent()) {
@@ -297,7 +304,10 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
         SharedSubscriptionPublishPacket packet = getSharedSubscriptionPublishPacket(msg.getPacketId());
         var targetClientId = getTargetClientId(packet);
 
-        ListenableFuture<Void> future = deviceMsgService.tryRemovePersistedMessage(targetClientId, getTargetPacketId(packet, msg.getPacketId()));
+        int targetPacketId = getTargetPacketId(packet, msg.getPacketId());
+        Long serialNumber = getTargetSerialNumber(packet, msg.getPacketId());
+        ListenableFuture<Void> future = afterPendingWrite(targetClientId, targetPacketId,
+                () -> removePersistedMessage(targetClientId, targetPacketId, serialNumber));
         future.addListener(() -> {
             try {
                 inFlightPacketIds.remove(msg.getPacketId());
@@ -311,7 +321,9 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
         SharedSubscriptionPublishPacket packet = getSharedSubscriptionPublishPacket(msg.getPacketId());
         var targetClientId = getTargetClientId(packet);
 
-        ListenableFuture<Void> future = deviceMsgService.tryUpdatePacketReceived(targetClientId, getTargetPacketId(packet, msg.getPacketId()));
+        int targetPacketId = getTargetPacketId(packet, msg.getPacketId());
+        ListenableFuture<Void> future = afterPendingWrite(targetClientId, targetPacketId,
+                () -> deviceMsgService.tryUpdatePacketReceived(targetClientId, targetPacketId));
         future.addListener(() -> {
             try {
                 inFlightPacketIds.remove(msg.getPacketId());
@@ -328,7 +340,10 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
         SharedSubscriptionPublishPacket packet = getSharedSubscriptionPublishPacket(msg.getPacketId());
         var targetClientId = getTargetClientId(packet);
 
-        ListenableFuture<Void> resultFuture = deviceMsgService.tryRemovePersistedMessage(targetClientId, getTargetPacketId(packet, msg.getPacketId()));
+        int targetPacketId = getTargetPacketId(packet, msg.getPacketId());
+        Long serialNumber = getTargetSerialNumber(packet, msg.getPacketId());
+        ListenableFuture<Void> resultFuture = afterPendingWrite(targetClientId, targetPacketId,
+                () -> removePersistedMessage(targetClientId, targetPacketId, serialNumber));
         DonAsynchron.withCallback(
                 resultFuture,
                 unused -> {
@@ -340,6 +355,42 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
         );
     }
 
+    /*
+        Msg could be delivered before it was saved to the DB when the device persistence is pipelined,
+        so its ack is applied only after the save completes. Otherwise, the saved msg would be redelivered later
+     */
+    private ListenableFuture<Void> afterPendingWrite(String targetClientId, int targetPacketId, Supplier<ListenableFuture<Void>> dbUpdate) {
+        ListenableFuture<Void> pendingWrite = deviceMsgWriteTracker.getPendingWrite(targetClientId, targetPacketId);
+        if (pendingWrite == null) {
+            return dbUpdate.get();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Msg {} is not saved yet, postponing DB update", targetClientId, targetPacketId);
+        }
+        return Futures.whenAllComplete(pendingWrite).callAsync(dbUpdate::get, MoreExecutors.directExecutor());
+    }
+
+    private ListenableFuture<Void> removePersistedMessage(String targetClientId, int targetPacketId, Long serialNumber) {
+        return serialNumber == null ?
+                deviceMsgService.tryRemovePersistedMessage(targetClientId, targetPacketId) :
+                deviceMsgService.tryRemovePersistedMessage(targetClientId, targetPacketId, serialNumber);
+    }
+
+    private void rememberSerialNumber(DevicePublishMsg devicePublishMsg) {
+        if (devicePublishMsg.getSerialNumber() != null) {
+            sentPacketIdsSerialNumbers.put(devicePublishMsg.getPacketId(), devicePublishMsg.getSerialNumber());
+        }
+    }
+
+    /*
+        Serial numbers of the msgs from shared subscriptions are replaced by the ones of this client before delivery,
+        so such msgs are removed by the target packet id
+     */
+    private Long getTargetSerialNumber(SharedSubscriptionPublishPacket packet, int receivedPacketId) {
+        Long serialNumber = sentPacketIdsSerialNumbers.remove(receivedPacketId);
+        return packet == null ? serialNumber : null;
+    }
+
     private String getTargetClientId(SharedSubscriptionPublishPacket packet) {
         return packet == null ? clientId : packet.getKey();
     }
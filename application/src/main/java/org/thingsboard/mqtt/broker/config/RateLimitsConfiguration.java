@@ -19,6 +19,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "mqtt.rate-limits")
 @Data
@@ -26,5 +29,31 @@ public class RateLimitsConfiguration {
 
     private boolean enabled;
     private String clientConfig;
+    private String deviceGroupConfig;
+    private String applicationGroupConfig;
+    private List<TopicFilterRateLimitsConfiguration> topicFilters = new ArrayList<>();
+    private String totalMsgsConfig;
+    private String totalBytesConfig;
+    private ClusterRateLimitsConfiguration cluster = new ClusterRateLimitsConfiguration();
+
+    @Data
+    public static class TopicFilterRateLimitsConfiguration {
+
+        private String filter;
+        private String config;
+
+    }
+
+    @Data
+    public static class ClusterRateLimitsConfiguration {
+
+        private long msgsPerSecond;
+        private long bytesPerSecond;
+        private long leasePeriodMs = 1000;
+
+        public boolean isEnabled() {
+            return msgsPerSecond > 0 || bytesPerSecond > 0;
+        }
+    }
 
 }
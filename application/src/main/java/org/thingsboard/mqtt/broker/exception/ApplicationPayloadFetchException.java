@@ -15,21 +15,14 @@
  */
 package org.thingsboard.mqtt.broker.exception;
 
-public class RetainMsgTrieClearException extends Exception {
+import java.io.Serial;
 
-    public RetainMsgTrieClearException(String message) {
-        super(message);
-    }
-
-    public RetainMsgTrieClearException(String message, Throwable cause) {
-        super(message, cause);
-    }
+public class ApplicationPayloadFetchException extends RuntimeException {
 
-    public RetainMsgTrieClearException(Throwable cause) {
-        super(cause);
-    }
+    @Serial
+    private static final long serialVersionUID = 2611836212716410544L;
 
-    public RetainMsgTrieClearException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
-        super(message, cause, enableSuppression, writableStackTrace);
+    public ApplicationPayloadFetchException(String message) {
+        super(message);
     }
 }
@@ -31,6 +31,12 @@ public abstract class AbstractMqttChannelInitializer extends ChannelInitializer<
 
     @Value("${mqtt.version-3-1.max-client-id-length}")
     private int maxClientIdLength;
+    @Value("${mqtt.flush-coalescing.enabled:true}")
+    private boolean flushCoalescingEnabled;
+    @Value("${mqtt.flush-coalescing.max-buffered-bytes:65536}")
+    private int flushCoalescingMaxBufferedBytes;
+    @Value("${mqtt.flush-coalescing.max-delay-us:0}")
+    private long flushCoalescingMaxDelayMicros;
 
     private final MqttHandlerFactory handlerFactory;
 
@@ -48,6 +54,10 @@ public abstract class AbstractMqttChannelInitializer extends ChannelInitializer<
 
         constructWsPipeline(ch);
 
+        if (flushCoalescingEnabled) {
+            pipeline.addLast("flushCoalescer", new FlushCoalescingHandler(flushCoalescingMaxBufferedBytes, flushCoalescingMaxDelayMicros));
+        }
+
         pipeline.addLast("decoder", new MqttDecoder(getMaxPayloadSize(), getMaxClientIdLength()));
         pipeline.addLast("encoder", MqttEncoder.INSTANCE);
 
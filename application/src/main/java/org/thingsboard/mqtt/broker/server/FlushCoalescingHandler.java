@@ -0,0 +1,140 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the flushes requested for the channel, so that many messages written to the channel, e.g. by different
+ * delivery threads, are sent with a single flush. The pending flush is executed:
+ * <ul>
+ *     <li>when the current read of the channel is completed, if the flush was requested while reading;</li>
+ *     <li>otherwise by a task on the channel event loop, i.e. after the writes already queued on the event loop,
+ *     or after the micro-batch delay if it is configured;</li>
+ *     <li>immediately, when the bytes written since the last flush reach the threshold
+ *     or the channel becomes not writable.</li>
+ * </ul>
+ * All the state is accessed from the channel event loop only.
+ */
+public class FlushCoalescingHandler extends ChannelDuplexHandler {
+
+    private final int maxBufferedBytes;
+    private final long maxFlushDelayMicros;
+    private final Runnable flushTask;
+
+    private ChannelHandlerContext ctx;
+    private boolean readInProgress;
+    private boolean flushPending;
+    private boolean flushScheduled;
+    private long bufferedBytes;
+
+    public FlushCoalescingHandler(int maxBufferedBytes, long maxFlushDelayMicros) {
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.maxFlushDelayMicros = maxFlushDelayMicros;
+        this.flushTask = () -> {
+            flushScheduled = false;
+            if (flushPending) {
+                flushNow();
+            }
+        };
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (msg instanceof ByteBuf) {
+            bufferedBytes += ((ByteBuf) msg).readableBytes();
+        }
+        ctx.write(msg, promise);
+        if (bufferedBytes >= maxBufferedBytes) {
+            flushNow();
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        flushPending = true;
+        if (readInProgress || flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        if (maxFlushDelayMicros > 0) {
+            ctx.executor().schedule(flushTask, maxFlushDelayMicros, TimeUnit.MICROSECONDS);
+        } else {
+            ctx.executor().execute(flushTask);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        readInProgress = false;
+        if (flushPending) {
+            flushNow();
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (!ctx.channel().isWritable() && flushPending) {
+            flushNow();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushIfPending();
+        ctx.close(promise);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushIfPending();
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        flushIfPending();
+    }
+
+    private void flushIfPending() {
+        if (flushPending) {
+            flushNow();
+        }
+    }
+
+    private void flushNow() {
+        flushPending = false;
+        bufferedBytes = 0;
+        ctx.flush();
+    }
+}
@@ -20,8 +20,11 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
+import org.thingsboard.mqtt.broker.service.auth.AsyncAuthenticationService;
+import org.thingsboard.mqtt.broker.service.limits.InboundBackpressureService;
 import org.thingsboard.mqtt.broker.service.limits.RateLimitService;
 import org.thingsboard.mqtt.broker.session.ClientMqttActorManager;
+import org.thingsboard.mqtt.broker.session.OutboundFlowCtxFactory;
 
 @Service
 @RequiredArgsConstructor
@@ -30,12 +33,16 @@ public class MqttHandlerFactoryImpl implements MqttHandlerFactory {
     private final ClientMqttActorManager actorManager;
     private final ClientLogger clientLogger;
     private final RateLimitService rateLimitService;
+    private final AsyncAuthenticationService authenticationService;
+    private final OutboundFlowCtxFactory outboundFlowCtxFactory;
+    private final InboundBackpressureService inboundBackpressureService;
 
     @Value("${mqtt.max-in-flight-msgs:1000}")
     private int maxInFlightMsgs;
 
     @Override
     public MqttSessionHandler create(SslHandler sslHandler) {
-        return new MqttSessionHandler(actorManager, clientLogger, rateLimitService, sslHandler, maxInFlightMsgs);
+        return new MqttSessionHandler(actorManager, clientLogger, rateLimitService, authenticationService, outboundFlowCtxFactory,
+                inboundBackpressureService, sslHandler, maxInFlightMsgs);
     }
 }
@@ -15,6 +15,8 @@
  */
 package org.thingsboard.mqtt.broker.server;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.TooLongFrameException;
@@ -36,22 +38,31 @@ import io.netty.util.concurrent.GenericFutureListener;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.mqtt.broker.actors.client.messages.SessionInitMsg;
+import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttConnectMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttDisconnectMsg;
 import org.thingsboard.mqtt.broker.adaptor.NettyMqttConverter;
 import org.thingsboard.mqtt.broker.common.data.StringUtils;
 import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
 import org.thingsboard.mqtt.broker.exception.ProtocolViolationException;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
+import org.thingsboard.mqtt.broker.service.auth.AsyncAuthenticationService;
+import org.thingsboard.mqtt.broker.service.auth.providers.AuthContext;
+import org.thingsboard.mqtt.broker.service.auth.providers.AuthResponse;
+import org.thingsboard.mqtt.broker.service.limits.InboundBackpressureService;
 import org.thingsboard.mqtt.broker.service.limits.RateLimitService;
 import org.thingsboard.mqtt.broker.session.ClientMqttActorManager;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 import org.thingsboard.mqtt.broker.session.DisconnectReason;
 import org.thingsboard.mqtt.broker.session.DisconnectReasonType;
+import org.thingsboard.mqtt.broker.session.OutboundFlowCtxFactory;
 import org.thingsboard.mqtt.broker.session.SessionContext;
+import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
 
 import javax.net.ssl.SSLHandshakeException;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.UUID;
 
 @Slf4j
@@ -62,18 +73,28 @@ public class MqttSessionHandler extends ChannelInboundHandlerAdapter implements
     private final ClientMqttActorManager clientMqttActorManager;
     private final ClientLogger clientLogger;
     private final RateLimitService rateLimitService;
+    private final AsyncAuthenticationService authenticationService;
+    private final OutboundFlowCtxFactory outboundFlowCtxFactory;
+    private final InboundBackpressureService inboundBackpressureService;
     private final ClientSessionCtx clientSessionCtx;
     @Getter
     private final UUID sessionId = UUID.randomUUID();
 
     private String clientId;
     private InetSocketAddress address;
+    // messages received while the client is being authenticated, null when authentication is not in progress
+    private Queue<MqttMessage> pendingAuthMsgs;
 
     public MqttSessionHandler(ClientMqttActorManager clientMqttActorManager, ClientLogger clientLogger,
-                              RateLimitService rateLimitService, SslHandler sslHandler, int maxInFlightMsgs) {
+                              RateLimitService rateLimitService, AsyncAuthenticationService authenticationService,
+                              OutboundFlowCtxFactory outboundFlowCtxFactory, InboundBackpressureService inboundBackpressureService,
+                              SslHandler sslHandler, int maxInFlightMsgs) {
         this.clientMqttActorManager = clientMqttActorManager;
         this.clientLogger = clientLogger;
         this.rateLimitService = rateLimitService;
+        this.authenticationService = authenticationService;
+        this.outboundFlowCtxFactory = outboundFlowCtxFactory;
+        this.inboundBackpressureService = inboundBackpressureService;
         this.clientSessionCtx = new ClientSessionCtx(sessionId, sslHandler, maxInFlightMsgs);
     }
 
@@ -120,11 +141,17 @@ public class MqttSessionHandler extends ChannelInboundHandlerAdapter implements
         if (StringUtils.isEmpty(clientId)) {
             if (msgType == MqttMessageType.CONNECT) {
                 initSession((MqttConnectMessage) msg);
+                return;
             } else {
                 throw new ProtocolViolationException("Received " + msgType + " while session wasn't initialized");
             }
         }
 
+        if (pendingAuthMsgs != null) {
+            pendingAuthMsgs.add(ReferenceCountUtil.retain(msg));
+            return;
+        }
+
         clientLogger.logEvent(clientId, this.getClass(), "Received msg " + msgType);
         switch (msgType) {
             case DISCONNECT:
@@ -162,7 +189,9 @@ public class MqttSessionHandler extends ChannelInboundHandlerAdapter implements
 
     private void processPublish(MqttMessage msg) {
         if (checkLimits(msg)) {
-            clientMqttActorManager.processMqttMsg(clientId, NettyMqttConverter.createMqttPublishMsg(sessionId, (MqttPublishMessage) msg));
+            MqttPublishMessage publishMessage = (MqttPublishMessage) msg;
+            inboundBackpressureService.onPublishReceived(clientSessionCtx, publishMessage.payload().readableBytes());
+            clientMqttActorManager.processMqttMsg(clientId, NettyMqttConverter.createMqttPublishMsg(sessionId, publishMessage));
         } else {
             if (log.isDebugEnabled()) {
                 log.debug("[{}][{}] Disconnecting client on rate limits detection!", clientId, sessionId);
@@ -172,7 +201,7 @@ public class MqttSessionHandler extends ChannelInboundHandlerAdapter implements
     }
 
     private boolean checkLimits(MqttMessage msg) {
-        return rateLimitService.checkLimits(clientId, sessionId, msg);
+        return rateLimitService.checkLimits(clientId, sessionId, clientSessionCtx, msg);
     }
 
     private void initSession(MqttConnectMessage connectMessage) {
@@ -180,16 +209,84 @@ public class MqttSessionHandler extends ChannelInboundHandlerAdapter implements
         boolean isClientIdGenerated = StringUtils.isEmpty(clientId);
         clientId = isClientIdGenerated ? generateClientId() : clientId;
         clientSessionCtx.setMqttVersion(getMqttVersion(connectMessage));
-        clientMqttActorManager.initSession(clientId, isClientIdGenerated, new SessionInitMsg(
-                clientSessionCtx,
-                connectMessage.payload().userName(),
-                connectMessage.payload().passwordInBytes()));
+        clientLogger.logEvent(clientId, this.getClass(), "Received msg " + MqttMessageType.CONNECT);
+
+        String username = connectMessage.payload().userName();
+        byte[] passwordBytes = connectMessage.payload().passwordInBytes();
+        MqttConnectMsg connectMsg = NettyMqttConverter.createMqttConnectMsg(sessionId, connectMessage);
+        AuthContext authContext = AuthContext.builder()
+                .clientId(clientId)
+                .username(username)
+                .passwordBytes(passwordBytes)
+                .sslHandler(clientSessionCtx.getSslHandler())
+                .build();
+
+        // reading is paused until the client is authenticated, already decoded messages are kept in order
+        ChannelHandlerContext ctx = clientSessionCtx.getChannel();
+        clientSessionCtx.setOutboundFlowCtx(outboundFlowCtxFactory.create(ctx, getReceiveMaximum(connectMessage)));
+        pendingAuthMsgs = new ArrayDeque<>();
+        inboundBackpressureService.suspendReads(clientSessionCtx);
+
+        Futures.addCallback(authenticationService.authenticate(authContext), new FutureCallback<>() {
+            @Override
+            public void onSuccess(AuthResponse authResponse) {
+                onAuthenticated(ctx, new SessionInitMsg(clientSessionCtx, username, passwordBytes, authResponse),
+                        isClientIdGenerated, connectMsg);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.warn("[{}][{}] Failed to authenticate client, closing channel.", clientId, sessionId, t);
+                releasePendingAuthMsgs();
+                clientSessionCtx.closeChannel();
+            }
+        }, ctx.channel().eventLoop());
+    }
+
+    private void onAuthenticated(ChannelHandlerContext ctx, SessionInitMsg sessionInitMsg, boolean isClientIdGenerated, MqttConnectMsg connectMsg) {
+        if (!ctx.channel().isActive()) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}][{}] Channel was closed during authentication.", clientId, sessionId);
+            }
+            releasePendingAuthMsgs();
+            return;
+        }
+        clientMqttActorManager.initSession(clientId, isClientIdGenerated, sessionInitMsg);
+        clientMqttActorManager.connect(clientId, connectMsg);
+
+        Queue<MqttMessage> pendingMsgs = pendingAuthMsgs;
+        pendingAuthMsgs = null;
+        MqttMessage msg;
+        while ((msg = pendingMsgs.poll()) != null) {
+            try {
+                processMqttMsg(msg);
+            } catch (Exception e) {
+                exceptionCaught(ctx, e);
+            } finally {
+                ReferenceCountUtil.safeRelease(msg);
+            }
+        }
+        // the replayed publishes may have paused the reads already, then they are resumed by the backpressure
+        inboundBackpressureService.resumeReads(clientSessionCtx);
+    }
+
+    private void releasePendingAuthMsgs() {
+        Queue<MqttMessage> pendingMsgs = pendingAuthMsgs;
+        pendingAuthMsgs = null;
+        if (pendingMsgs != null) {
+            pendingMsgs.forEach(ReferenceCountUtil::safeRelease);
+        }
     }
 
     private String generateClientId() {
         return UUID.randomUUID().toString().replaceAll("-", BrokerConstants.EMPTY_STR);
     }
 
+    private Integer getReceiveMaximum(MqttConnectMessage connectMessage) {
+        var receiveMaximumProperty = MqttPropertiesUtil.getReceiveMaximumProperty(connectMessage.variableHeader().properties());
+        return receiveMaximumProperty != null ? receiveMaximumProperty.value() : null;
+    }
+
     private MqttVersion getMqttVersion(MqttConnectMessage connectMessage) {
         var version = (byte) connectMessage.variableHeader().version();
         var protocolName = version > 3 ? BrokerConstants.MQTT_PROTOCOL_NAME : BrokerConstants.MQTT_V_3_1_PROTOCOL_NAME;
@@ -201,6 +298,18 @@ public class MqttSessionHandler extends ChannelInboundHandlerAdapter implements
         ctx.flush();
     }
 
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        inboundBackpressureService.onSessionClosed(clientSessionCtx);
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        clientSessionCtx.getOutboundFlowCtx().onWritabilityChanged();
+        ctx.fireChannelWritabilityChanged();
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         String exceptionMessage;
@@ -231,7 +340,7 @@ public class MqttSessionHandler extends ChannelInboundHandlerAdapter implements
     }
 
     void disconnect(DisconnectReason reason) {
-        if (clientId == null) {
+        if (clientId == null || pendingAuthMsgs != null) {
             if (log.isDebugEnabled()) {
                 log.debug("[{}] Session wasn't initialized yet, closing channel. Reason - {}.", sessionId, reason);
             }
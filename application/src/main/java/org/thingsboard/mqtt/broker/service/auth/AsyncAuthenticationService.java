@@ -13,22 +13,14 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package org.thingsboard.mqtt.broker.exception;
+package org.thingsboard.mqtt.broker.service.auth;
 
-public class SubscriptionTrieClearException extends Exception {
-    public SubscriptionTrieClearException(String message) {
-        super(message);
-    }
+import com.google.common.util.concurrent.ListenableFuture;
+import org.thingsboard.mqtt.broker.service.auth.providers.AuthContext;
+import org.thingsboard.mqtt.broker.service.auth.providers.AuthResponse;
 
-    public SubscriptionTrieClearException(String message, Throwable cause) {
-        super(message, cause);
-    }
+public interface AsyncAuthenticationService {
 
-    public SubscriptionTrieClearException(Throwable cause) {
-        super(cause);
-    }
+    ListenableFuture<AuthResponse> authenticate(AuthContext authContext);
 
-    public SubscriptionTrieClearException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
-        super(message, cause, enableSuppression, writableStackTrace);
-    }
 }
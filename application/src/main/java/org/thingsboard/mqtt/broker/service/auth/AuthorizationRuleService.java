@@ -21,11 +21,17 @@ import org.thingsboard.mqtt.broker.exception.AuthenticationException;
 import org.thingsboard.mqtt.broker.service.security.authorization.AuthRulePatterns;
 
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 public interface AuthorizationRuleService {
 
     List<AuthRulePatterns> parseSslAuthorizationRule(SslMqttCredentials credentials, String clientCommonName) throws AuthenticationException;
 
+    Map<Pattern, AuthRulePatterns> compileSslAuthorizationRules(SslMqttCredentials credentials) throws AuthenticationException;
+
+    List<AuthRulePatterns> getSslAuthorizationRules(Map<Pattern, AuthRulePatterns> compiledSslAuthRules, String clientCommonName) throws AuthenticationException;
+
     AuthRulePatterns parseBasicAuthorizationRule(BasicMqttCredentials credentials) throws AuthenticationException;
 
     boolean isPubAuthorized(String clientId, String topic, List<AuthRulePatterns> authRulePatterns);
@@ -0,0 +1,96 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.auth;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.mqtt.broker.exception.AuthenticationException;
+import org.thingsboard.mqtt.broker.service.auth.providers.AuthContext;
+import org.thingsboard.mqtt.broker.service.auth.providers.AuthResponse;
+import org.thingsboard.mqtt.broker.service.auth.providers.MqttClientAuthProviderManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs client authentication (password hashing, credentials parsing) on the dedicated bounded pool
+ * so neither Netty event loops nor client actor dispatchers are blocked by it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DefaultAsyncAuthenticationService implements AsyncAuthenticationService {
+
+    private final AuthenticationService authenticationService;
+    private final MqttClientAuthProviderManager authProviderManager;
+
+    @Value("${security.mqtt.auth-executor.threads:0}")
+    private int threadsCount;
+    @Value("${security.mqtt.auth-executor.queue-size:10000}")
+    private int queueSize;
+
+    private ListeningExecutorService authExecutor;
+
+    @PostConstruct
+    public void init() {
+        int threads = threadsCount > 0 ? threadsCount : Math.max(1, Runtime.getRuntime().availableProcessors());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueSize), ThingsBoardThreadFactory.forName("auth-executor"));
+        this.authExecutor = MoreExecutors.listeningDecorator(executor);
+    }
+
+    @Override
+    public ListenableFuture<AuthResponse> authenticate(AuthContext authContext) {
+        if (authProviderManager.getActiveAuthProviders().isEmpty()) {
+            return Futures.immediateFuture(doAuthenticate(authContext));
+        }
+        try {
+            return authExecutor.submit(() -> doAuthenticate(authContext));
+        } catch (RejectedExecutionException e) {
+            log.warn("[{}] Authentication queue is full, rejecting client", authContext.getClientId());
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    private AuthResponse doAuthenticate(AuthContext authContext) {
+        try {
+            return authenticationService.authenticate(authContext);
+        } catch (AuthenticationException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Authentication failed.", authContext.getClientId(), e);
+            }
+            return AuthResponse.builder().success(false).build();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (authExecutor != null) {
+            authExecutor.shutdownNow();
+        }
+    }
+}
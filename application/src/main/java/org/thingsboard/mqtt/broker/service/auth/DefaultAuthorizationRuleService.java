@@ -15,8 +15,11 @@
  */
 package org.thingsboard.mqtt.broker.service.auth;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.thingsboard.mqtt.broker.common.data.client.credentials.BasicMqttCredentials;
@@ -25,7 +28,9 @@ import org.thingsboard.mqtt.broker.common.data.client.credentials.SslMqttCredent
 import org.thingsboard.mqtt.broker.exception.AuthenticationException;
 import org.thingsboard.mqtt.broker.service.security.authorization.AuthRulePatterns;
 
+import javax.annotation.PostConstruct;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -33,34 +38,60 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Service
 @Slf4j
 public class DefaultAuthorizationRuleService implements AuthorizationRuleService {
 
     @Getter
-    private final ConcurrentMap<String, ConcurrentMap<String, Boolean>> publishAuthMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Cache<String, Boolean>> publishAuthMap = new ConcurrentHashMap<>();
+
+    @Value("${security.mqtt.authorization.compiled-rules-cache-max-size:10000}")
+    private int compiledRulesCacheMaxSize;
+    @Value("${security.mqtt.authorization.pub-cache.max-size:1000}")
+    private int pubCacheMaxSize;
+    @Value("${security.mqtt.authorization.pub-cache.max-topic-length:256}")
+    private int pubCacheMaxTopicLength;
+
+    // compiled rules are shared between all the sessions authenticated with the same credentials
+    private Cache<PubSubAuthorizationRules, AuthRulePatterns> compiledRulesCache;
+
+    @PostConstruct
+    public void init() {
+        compiledRulesCache = Caffeine.newBuilder()
+                .maximumSize(compiledRulesCacheMaxSize)
+                .executor(Runnable::run)
+                .build();
+    }
 
     @Override
     public List<AuthRulePatterns> parseSslAuthorizationRule(SslMqttCredentials credentials, String clientCommonName) throws AuthenticationException {
+        return getSslAuthorizationRules(compileSslAuthorizationRules(credentials), clientCommonName);
+    }
+
+    @Override
+    public Map<Pattern, AuthRulePatterns> compileSslAuthorizationRules(SslMqttCredentials credentials) throws AuthenticationException {
         if (credentials == null) {
             throw new AuthenticationException("Cannot parse SslMqttCredentials.");
         }
+        Map<Pattern, AuthRulePatterns> compiledSslAuthRules = new LinkedHashMap<>();
+        credentials.getAuthRulesMapping().forEach((certificateMatcherRegex, pubSubAuthRules) ->
+                compiledSslAuthRules.put(Pattern.compile(certificateMatcherRegex), getAuthRulePatterns(pubSubAuthRules)));
+        return compiledSslAuthRules;
+    }
 
-        List<AuthRulePatterns> authRulePatterns = credentials.getAuthRulesMapping().entrySet().stream()
+    @Override
+    public List<AuthRulePatterns> getSslAuthorizationRules(Map<Pattern, AuthRulePatterns> compiledSslAuthRules, String clientCommonName) throws AuthenticationException {
+        List<AuthRulePatterns> authRulePatterns = compiledSslAuthRules.entrySet().stream()
                 .filter(entry -> {
-                    String certificateMatcherRegex = entry.getKey();
-                    Pattern pattern = Pattern.compile(certificateMatcherRegex);
-                    Matcher commonNameMatcher = pattern.matcher(clientCommonName);
+                    Matcher commonNameMatcher = entry.getKey().matcher(clientCommonName);
                     return commonNameMatcher.find();
                 })
                 .map(Map.Entry::getValue)
-                .map(this::newAuthRulePatterns)
                 .collect(Collectors.toList());
 
         if (authRulePatterns.isEmpty()) {
-            log.warn("[{}] Cannot find authorization rules for common name {}", clientCommonName, credentials);
+            log.warn("[{}] Cannot find authorization rules for common name {}", clientCommonName, compiledSslAuthRules.keySet());
             throw new AuthenticationException("Cannot find authorization rules for common name");
         }
 
@@ -72,7 +103,14 @@ public class DefaultAuthorizationRuleService implements AuthorizationRuleService
         if (credentials == null) {
             throw new AuthenticationException("Cannot parse BasicMqttCredentials.");
         }
-        return newAuthRulePatterns(credentials.getAuthRules());
+        return getAuthRulePatterns(credentials.getAuthRules());
+    }
+
+    private AuthRulePatterns getAuthRulePatterns(PubSubAuthorizationRules pubSubAuthRules) {
+        if (compiledRulesCache == null || pubSubAuthRules == null) {
+            return newAuthRulePatterns(pubSubAuthRules);
+        }
+        return compiledRulesCache.get(pubSubAuthRules, this::newAuthRulePatterns);
     }
 
     private AuthRulePatterns newAuthRulePatterns(PubSubAuthorizationRules pubSubAuthRules) {
@@ -91,40 +129,53 @@ public class DefaultAuthorizationRuleService implements AuthorizationRuleService
         if (CollectionUtils.isEmpty(authRulePatterns)) {
             return true;
         }
-        ConcurrentMap<String, Boolean> topicAuthMap = publishAuthMap.get(clientId);
-        if (topicAuthMap == null) {
-            topicAuthMap = publishAuthMap.computeIfAbsent(clientId, s -> new ConcurrentHashMap<>());
+        if (pubCacheMaxSize <= 0 || topic.length() > pubCacheMaxTopicLength) {
+            return isPubAuthorized(topic, authRulePatterns);
+        }
+        Cache<String, Boolean> topicAuthCache = publishAuthMap.get(clientId);
+        if (topicAuthCache == null) {
+            topicAuthCache = publishAuthMap.computeIfAbsent(clientId, s -> newTopicAuthCache());
         }
-        Boolean isAuthorized = topicAuthMap.get(topic);
+        Boolean isAuthorized = topicAuthCache.getIfPresent(topic);
         if (isAuthorized == null) {
-            return topicAuthMap.computeIfAbsent(topic, s -> {
-                Stream<List<Pattern>> pubPatterns = authRulePatterns.stream().map(AuthRulePatterns::getPubPatterns);
-                return isAuthorized(topic, pubPatterns);
-            });
+            isAuthorized = isPubAuthorized(topic, authRulePatterns);
+            topicAuthCache.put(topic, isAuthorized);
         }
         return isAuthorized;
     }
 
-    @Override
-    public boolean isSubAuthorized(String topic, List<AuthRulePatterns> authRulePatterns) {
-        Stream<List<Pattern>> subPatterns = authRulePatterns.stream().map(AuthRulePatterns::getSubPatterns);
-        return isAuthorized(topic, subPatterns);
+    private Cache<String, Boolean> newTopicAuthCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(pubCacheMaxSize)
+                .executor(Runnable::run)
+                .build();
     }
 
-    private boolean isAuthorized(String topic, Stream<List<Pattern>> stream) {
-        List<Pattern> patterns = stream.flatMap(List::stream).collect(Collectors.toList());
-        if (CollectionUtils.isEmpty(patterns)) {
-            return false;
+    private boolean isPubAuthorized(String topic, List<AuthRulePatterns> authRulePatterns) {
+        for (AuthRulePatterns patterns : authRulePatterns) {
+            if (patterns.isPubAuthorized(topic)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isSubAuthorized(String topic, List<AuthRulePatterns> authRulePatterns) {
+        for (AuthRulePatterns patterns : authRulePatterns) {
+            if (patterns.isSubAuthorized(topic)) {
+                return true;
+            }
         }
-        return patterns.stream().anyMatch(pattern -> pattern.matcher(topic).matches());
+        return false;
     }
 
     @Override
     public void evict(String clientId) {
         if (clientId != null) {
-            var topicAuthMap = publishAuthMap.remove(clientId);
-            if (topicAuthMap != null) {
-                topicAuthMap.clear();
+            var topicAuthCache = publishAuthMap.remove(clientId);
+            if (topicAuthCache != null) {
+                topicAuthCache.invalidateAll();
             }
         }
     }
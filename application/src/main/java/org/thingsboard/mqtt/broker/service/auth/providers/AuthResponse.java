@@ -22,6 +22,7 @@ import org.thingsboard.mqtt.broker.common.data.ClientType;
 import org.thingsboard.mqtt.broker.service.security.authorization.AuthRulePatterns;
 
 import java.util.List;
+import java.util.UUID;
 
 @Getter
 @Builder
@@ -30,4 +31,9 @@ public class AuthResponse {
     private final boolean success;
     private final ClientType clientType;
     private final List<AuthRulePatterns> authRulePatterns;
+    private final UUID credentialsId;
+
+    public AuthResponse(boolean success, ClientType clientType, List<AuthRulePatterns> authRulePatterns) {
+        this(success, clientType, authRulePatterns, null);
+    }
 }
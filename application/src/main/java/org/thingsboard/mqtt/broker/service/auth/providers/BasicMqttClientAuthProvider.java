@@ -15,11 +15,13 @@
  */
 package org.thingsboard.mqtt.broker.service.auth.providers;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Lazy;
@@ -37,10 +39,12 @@ import org.thingsboard.mqtt.broker.exception.AuthenticationException;
 import org.thingsboard.mqtt.broker.service.auth.AuthorizationRuleService;
 import org.thingsboard.mqtt.broker.service.security.authorization.AuthRulePatterns;
 
+import javax.annotation.PostConstruct;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 
 @Slf4j
@@ -54,6 +58,14 @@ public class BasicMqttClientAuthProvider implements MqttClientAuthProvider {
     private BCryptPasswordEncoder passwordEncoder;
     private HashFunction hashFunction;
 
+    @Value("${security.mqtt.basic.verified-credentials-cache.max-size:100000}")
+    private int verifiedCredentialsCacheMaxSize;
+    @Value("${security.mqtt.basic.verified-credentials-cache.ttl:60}")
+    private int verifiedCredentialsCacheTtlMinutes;
+
+    // node-local, allows known clients to reconnect without BCrypt check and credentials parsing
+    private com.github.benmanes.caffeine.cache.Cache<VerifiedCredentialsKey, VerifiedBasicCredentials> verifiedCredentialsCache;
+
     @Autowired
     public BasicMqttClientAuthProvider(AuthorizationRuleService authorizationRuleService,
                                        MqttClientCredentialsService clientCredentialsService,
@@ -66,32 +78,74 @@ public class BasicMqttClientAuthProvider implements MqttClientAuthProvider {
         this.hashFunction = Hashing.sha256();
     }
 
+    @PostConstruct
+    public void init() {
+        if (verifiedCredentialsCacheMaxSize > 0) {
+            this.verifiedCredentialsCache = Caffeine.newBuilder()
+                    .maximumSize(verifiedCredentialsCacheMaxSize)
+                    .expireAfterWrite(verifiedCredentialsCacheTtlMinutes, TimeUnit.MINUTES)
+                    .executor(Runnable::run)
+                    .build();
+        }
+    }
+
     @Override
     public AuthResponse authenticate(AuthContext authContext) throws AuthenticationException {
         if (log.isTraceEnabled()) {
             log.trace("[{}] Authenticating client with basic credentials", authContext.getClientId());
         }
-        MqttClientCredentials basicCredentials = authWithBasicCredentials(authContext.getClientId(), authContext.getUsername(), authContext.getPasswordBytes());
-        if (basicCredentials == null) {
-            return new AuthResponse(false, null, null);
+        List<String> credentialIds = getCredentialIds(authContext.getClientId(), authContext.getUsername());
+        List<MqttClientCredentials> matchingCredentialsList = clientCredentialsService.findMatchingCredentials(credentialIds);
+        if (log.isDebugEnabled()) {
+            log.debug("Found credentials {} for credentialIds {}", matchingCredentialsList, credentialIds);
+        }
+        String password = passwordBytesToString(authContext.getPasswordBytes());
+        String passwordDigest = password != null ? toHashString(password) : null;
+
+        VerifiedBasicCredentials verifiedCredentials = findVerifiedCredentials(matchingCredentialsList, passwordDigest);
+        if (verifiedCredentials == null) {
+            MqttClientCredentials basicCredentials = authWithBasicCredentials(matchingCredentialsList, password, passwordDigest);
+            if (basicCredentials == null) {
+                return new AuthResponse(false, null, null);
+            }
+            BasicMqttCredentials credentials = JacksonUtil.fromString(basicCredentials.getCredentialsValue(), BasicMqttCredentials.class);
+            AuthRulePatterns authRulePatterns = authorizationRuleService.parseBasicAuthorizationRule(credentials);
+            verifiedCredentials = new VerifiedBasicCredentials(basicCredentials, authRulePatterns);
+            putVerifiedCredentials(verifiedCredentials, passwordDigest);
         }
         if (log.isTraceEnabled()) {
             log.trace("[{}] Authenticated with username {}", authContext.getClientId(), authContext.getUsername());
         }
-        BasicMqttCredentials credentials = JacksonUtil.fromString(basicCredentials.getCredentialsValue(), BasicMqttCredentials.class);
-        AuthRulePatterns authRulePatterns = authorizationRuleService.parseBasicAuthorizationRule(credentials);
-        return new AuthResponse(true, basicCredentials.getClientType(), Collections.singletonList(authRulePatterns));
+        return new AuthResponse(true, verifiedCredentials.getCredentials().getClientType(),
+                Collections.singletonList(verifiedCredentials.getAuthRulePatterns()), verifiedCredentials.getCredentials().getId());
     }
 
-    private MqttClientCredentials authWithBasicCredentials(String clientId, String username, byte[] passwordBytes) {
-        List<String> credentialIds = getCredentialIds(clientId, username);
-        List<MqttClientCredentials> matchingCredentialsList = clientCredentialsService.findMatchingCredentials(credentialIds);
-        if (log.isDebugEnabled()) {
-            log.debug("Found credentials {} for credentialIds {}", matchingCredentialsList, credentialIds);
+    private VerifiedBasicCredentials findVerifiedCredentials(List<MqttClientCredentials> matchingCredentialsList, String passwordDigest) {
+        if (verifiedCredentialsCache == null) {
+            return null;
+        }
+        for (MqttClientCredentials credentials : matchingCredentialsList) {
+            VerifiedBasicCredentials verifiedCredentials = verifiedCredentialsCache.getIfPresent(toVerifiedCredentialsKey(credentials, passwordDigest));
+            if (verifiedCredentials != null) {
+                return verifiedCredentials;
+            }
+        }
+        return null;
+    }
+
+    private void putVerifiedCredentials(VerifiedBasicCredentials verifiedCredentials, String passwordDigest) {
+        if (verifiedCredentialsCache != null) {
+            verifiedCredentialsCache.put(toVerifiedCredentialsKey(verifiedCredentials.getCredentials(), passwordDigest), verifiedCredentials);
         }
-        String password = passwordBytesToString(passwordBytes);
-        if (password != null) {
-            MqttClientCredentials credentialsFromCache = getCache().get(toHashString(password), MqttClientCredentials.class);
+    }
+
+    private VerifiedCredentialsKey toVerifiedCredentialsKey(MqttClientCredentials credentials, String passwordDigest) {
+        return new VerifiedCredentialsKey(credentials.getId(), passwordDigest, toHashString(credentials.getCredentialsValue()));
+    }
+
+    private MqttClientCredentials authWithBasicCredentials(List<MqttClientCredentials> matchingCredentialsList, String password, String passwordDigest) {
+        if (passwordDigest != null) {
+            MqttClientCredentials credentialsFromCache = getCache().get(passwordDigest, MqttClientCredentials.class);
             if (credentialsFromCache != null && matchingCredentialsList.contains(credentialsFromCache)) {
                 return credentialsFromCache;
             }
@@ -101,7 +155,7 @@ public class BasicMqttClientAuthProvider implements MqttClientAuthProvider {
             BasicMqttCredentials basicMqttCredentials = MqttClientCredentialsUtil.getMqttCredentials(credentials, BasicMqttCredentials.class);
             if (isMatchingPassword(password, basicMqttCredentials)) {
                 if (password != null && basicMqttCredentials.getPassword() != null) {
-                    getCache().put(toHashString(password), credentials);
+                    getCache().put(passwordDigest, credentials);
                 }
                 return credentials;
             }
@@ -136,7 +190,7 @@ public class BasicMqttClientAuthProvider implements MqttClientAuthProvider {
         return cacheManager.getCache(CacheConstants.BASIC_CREDENTIALS_PASSWORD_CACHE);
     }
 
-    private String toHashString(String rawPassword) {
-        return hashFunction.newHasher().putString(rawPassword, StandardCharsets.UTF_8).hash().toString();
+    private String toHashString(String value) {
+        return hashFunction.newHasher().putString(value, StandardCharsets.UTF_8).hash().toString();
     }
 }
@@ -0,0 +1,33 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.auth.providers;
+
+import lombok.Data;
+import org.thingsboard.mqtt.broker.service.security.authorization.AuthRulePatterns;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+@Data
+public class CompiledSslCredentials {
+
+    /**
+     * Credentials value the matchers were compiled from, used to detect the credentials update
+     */
+    private final String credentialsValue;
+    private final Map<Pattern, AuthRulePatterns> compiledSslAuthRules;
+
+}
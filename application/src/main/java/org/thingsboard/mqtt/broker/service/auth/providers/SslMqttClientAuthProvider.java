@@ -15,6 +15,8 @@
  */
 package org.thingsboard.mqtt.broker.service.auth.providers;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.netty.handler.ssl.SslHandler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -30,11 +32,13 @@ import org.thingsboard.mqtt.broker.service.auth.AuthorizationRuleService;
 import org.thingsboard.mqtt.broker.service.security.authorization.AuthRulePatterns;
 import org.thingsboard.mqtt.broker.util.SslUtil;
 
+import javax.annotation.PostConstruct;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
 @Slf4j
 @Service
@@ -46,6 +50,20 @@ public class SslMqttClientAuthProvider implements MqttClientAuthProvider {
 
     @Value("${security.mqtt.ssl.skip_validity_check_for_client_cert:false}")
     private boolean skipValidityCheckForClientCert;
+    @Value("${security.mqtt.ssl.compiled-credentials-cache.max-size:100000}")
+    private int compiledCredentialsCacheMaxSize;
+
+    private Cache<UUID, CompiledSslCredentials> compiledCredentialsCache;
+
+    @PostConstruct
+    public void init() {
+        if (compiledCredentialsCacheMaxSize > 0) {
+            this.compiledCredentialsCache = Caffeine.newBuilder()
+                    .maximumSize(compiledCredentialsCacheMaxSize)
+                    .executor(Runnable::run)
+                    .build();
+        }
+    }
 
     @Override
     public AuthResponse authenticate(AuthContext authContext) throws AuthenticationException {
@@ -65,9 +83,27 @@ public class SslMqttClientAuthProvider implements MqttClientAuthProvider {
             log.trace("[{}] Successfully authenticated with SSL credentials", authContext.getClientId());
         }
         String clientCommonName = getClientCertificateCommonName(authContext.getSslHandler());
+        CompiledSslCredentials compiledSslCredentials = getCompiledSslCredentials(sslCredentials);
+        List<AuthRulePatterns> authRulePatterns = authorizationRuleService.getSslAuthorizationRules(
+                compiledSslCredentials.getCompiledSslAuthRules(), clientCommonName);
+        return new AuthResponse(true, sslCredentials.getClientType(), authRulePatterns, sslCredentials.getId());
+    }
+
+    private CompiledSslCredentials getCompiledSslCredentials(MqttClientCredentials sslCredentials) throws AuthenticationException {
+        if (compiledCredentialsCache == null) {
+            return compileSslCredentials(sslCredentials);
+        }
+        CompiledSslCredentials compiledSslCredentials = compiledCredentialsCache.getIfPresent(sslCredentials.getId());
+        if (compiledSslCredentials == null || !compiledSslCredentials.getCredentialsValue().equals(sslCredentials.getCredentialsValue())) {
+            compiledSslCredentials = compileSslCredentials(sslCredentials);
+            compiledCredentialsCache.put(sslCredentials.getId(), compiledSslCredentials);
+        }
+        return compiledSslCredentials;
+    }
+
+    private CompiledSslCredentials compileSslCredentials(MqttClientCredentials sslCredentials) throws AuthenticationException {
         SslMqttCredentials credentials = JacksonUtil.fromString(sslCredentials.getCredentialsValue(), SslMqttCredentials.class);
-        List<AuthRulePatterns> authRulePatterns = authorizationRuleService.parseSslAuthorizationRule(credentials, clientCommonName);
-        return new AuthResponse(true, sslCredentials.getClientType(), authRulePatterns);
+        return new CompiledSslCredentials(sslCredentials.getCredentialsValue(), authorizationRuleService.compileSslAuthorizationRules(credentials));
     }
 
     private MqttClientCredentials authWithSSLCredentials(String clientId, SslHandler sslHandler) throws AuthenticationException {
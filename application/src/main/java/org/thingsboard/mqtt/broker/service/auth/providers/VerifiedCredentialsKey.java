@@ -0,0 +1,33 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.auth.providers;
+
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * Identifies successful verification of the secret against the exact version of the credentials.
+ * Any change of the credentials value produces a new version, so outdated entries are never matched.
+ */
+@Data
+public class VerifiedCredentialsKey {
+
+    private final UUID credentialsId;
+    private final String secretDigest;
+    private final String credentialsVersion;
+
+}
@@ -100,7 +100,8 @@ public class SqlDatabaseUpgradeService implements DatabaseEntitiesUpgradeService
                     log.info("Updating schema ...");
                     if (isOldSchema(conn, 1002001)) {
                         try {
-
+                            conn.createStatement().execute("ALTER TABLE application_session_ctx ADD COLUMN IF NOT EXISTS publish_msg_infos_bin bytea;");
+                            conn.createStatement().execute("ALTER TABLE application_session_ctx ADD COLUMN IF NOT EXISTS pubrel_msg_infos_bin bytea;");
                             conn.createStatement().execute("UPDATE tb_schema_settings SET schema_version = 1002002;");
                         } catch (Exception ignored) {
                         }
@@ -0,0 +1,247 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.limits;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.mqtt.broker.config.RateLimitsConfiguration;
+import org.thingsboard.mqtt.broker.config.RateLimitsConfiguration.ClusterRateLimitsConfiguration;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.RateLimitDemandProto;
+import org.thingsboard.mqtt.broker.queue.TbQueueCallback;
+import org.thingsboard.mqtt.broker.queue.TbQueueConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsgMetadata;
+import org.thingsboard.mqtt.broker.queue.TbQueueProducer;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.queue.provider.RateLimitsQueueFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Enforces cluster-wide limits with leased token budgets. Every lease period each node publishes the demand it observed
+ * to the rate limits topic and takes a share of the cluster budget proportional to its demand among the recently
+ * reported demands of all nodes. Messages are then admitted against the local budget without any coordination.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ClusterRateLimitServiceImpl implements ClusterRateLimitService {
+
+    private static final int STALE_DEMAND_PERIODS = 3;
+
+    private final RateLimitsConfiguration rateLimitsConfiguration;
+    private final RateLimitsQueueFactory rateLimitsQueueFactory;
+    private final ServiceInfoProvider serviceInfoProvider;
+
+    @Value("${queue.rate-limits.poll-interval:100}")
+    private long pollDuration;
+
+    @Getter
+    private final AtomicLong msgsBudget = new AtomicLong();
+    @Getter
+    private final AtomicLong bytesBudget = new AtomicLong();
+    private final LongAdder msgsDemand = new LongAdder();
+    private final LongAdder bytesDemand = new LongAdder();
+    @Getter
+    private final ConcurrentMap<String, RateLimitDemandProto> nodeDemands = new ConcurrentHashMap<>();
+
+    private volatile boolean stopped = false;
+
+    private ClusterRateLimitsConfiguration config;
+    private String serviceId;
+    private TbQueueProducer<TbProtoQueueMsg<RateLimitDemandProto>> producer;
+    private TbQueueConsumer<TbProtoQueueMsg<RateLimitDemandProto>> consumer;
+    private ScheduledExecutorService leaseScheduler;
+    private ExecutorService consumerExecutor;
+
+    @PostConstruct
+    public void init() {
+        this.config = rateLimitsConfiguration.getCluster();
+        if (!isEnabled()) {
+            return;
+        }
+        this.serviceId = serviceInfoProvider.getServiceId();
+        this.producer = rateLimitsQueueFactory.createProducer(serviceId);
+        this.consumer = rateLimitsQueueFactory.createConsumer(serviceId);
+        this.consumer.subscribe();
+
+        refreshLease();
+
+        this.consumerExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("rate-limits-demand-consumer"));
+        this.consumerExecutor.execute(this::consumeDemands);
+        this.leaseScheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("rate-limits-lease"));
+        this.leaseScheduler.scheduleAtFixedRate(this::refreshLease, config.getLeasePeriodMs(), config.getLeasePeriodMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean tryConsume(long bytes) {
+        if (!isEnabled()) {
+            return true;
+        }
+        msgsDemand.increment();
+        bytesDemand.add(bytes);
+        if (config.getMsgsPerSecond() > 0 && !tryAcquire(msgsBudget, 1)) {
+            if (log.isTraceEnabled()) {
+                log.trace("Cluster level messages rate limit detected!");
+            }
+            return false;
+        }
+        if (config.getBytesPerSecond() > 0 && !tryAcquire(bytesBudget, bytes)) {
+            if (config.getMsgsPerSecond() > 0) {
+                msgsBudget.incrementAndGet();
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("Cluster level bytes rate limit detected!");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private boolean tryAcquire(AtomicLong budget, long tokens) {
+        while (true) {
+            long available = budget.get();
+            if (available < tokens) {
+                return false;
+            }
+            if (budget.compareAndSet(available, available - tokens)) {
+                return true;
+            }
+        }
+    }
+
+    void refreshLease() {
+        try {
+            long now = System.currentTimeMillis();
+            RateLimitDemandProto ownDemand = RateLimitDemandProto.newBuilder()
+                    .setServiceId(serviceId)
+                    .setTs(now)
+                    .setMsgs(msgsDemand.sumThenReset())
+                    .setBytes(bytesDemand.sumThenReset())
+                    .build();
+            nodeDemands.put(serviceId, ownDemand);
+            publishDemand(ownDemand);
+
+            long staleTs = now - STALE_DEMAND_PERIODS * config.getLeasePeriodMs();
+            nodeDemands.values().removeIf(demand -> demand.getTs() < staleTs);
+
+            long totalMsgs = 0;
+            long totalBytes = 0;
+            for (RateLimitDemandProto demand : nodeDemands.values()) {
+                totalMsgs += demand.getMsgs();
+                totalBytes += demand.getBytes();
+            }
+            int nodes = nodeDemands.size();
+            msgsBudget.set(calculateLease(config.getMsgsPerSecond(), config.getLeasePeriodMs(), ownDemand.getMsgs(), totalMsgs, nodes));
+            bytesBudget.set(calculateLease(config.getBytesPerSecond(), config.getLeasePeriodMs(), ownDemand.getBytes(), totalBytes, nodes));
+        } catch (Exception e) {
+            log.warn("Failed to refresh cluster rate limits lease", e);
+        }
+    }
+
+    /**
+     * Share of the cluster budget for one lease period. Every node gets a pseudo-demand of one so that an idle node
+     * can still admit traffic, while the sum of the leases of all the nodes never exceeds the cluster budget.
+     */
+    static long calculateLease(long perSecond, long leasePeriodMs, long ownDemand, long totalDemand, int nodes) {
+        if (perSecond <= 0) {
+            return 0;
+        }
+        double periodBudget = (double) perSecond * leasePeriodMs / 1000;
+        return (long) (periodBudget * (ownDemand + 1) / (totalDemand + Math.max(nodes, 1)));
+    }
+
+    private void publishDemand(RateLimitDemandProto demand) {
+        producer.send(new TbProtoQueueMsg<>(serviceId, demand), new TbQueueCallback() {
+            @Override
+            public void onSuccess(TbQueueMsgMetadata metadata) {
+                if (log.isTraceEnabled()) {
+                    log.trace("Rate limits demand {} sent successfully.", demand);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.warn("Failed to send rate limits demand {}.", demand, t);
+            }
+        });
+    }
+
+    private void consumeDemands() {
+        while (!stopped) {
+            try {
+                List<TbProtoQueueMsg<RateLimitDemandProto>> msgs = consumer.poll(pollDuration);
+                if (msgs.isEmpty()) {
+                    continue;
+                }
+                for (TbProtoQueueMsg<RateLimitDemandProto> msg : msgs) {
+                    RateLimitDemandProto demand = msg.getValue();
+                    if (!serviceId.equals(demand.getServiceId())) {
+                        nodeDemands.merge(demand.getServiceId(), demand, (prev, next) -> next.getTs() >= prev.getTs() ? next : prev);
+                    }
+                }
+                consumer.commitSync();
+            } catch (Exception e) {
+                if (!stopped) {
+                    log.error("Failed to process messages from queue.", e);
+                    try {
+                        Thread.sleep(pollDuration);
+                    } catch (InterruptedException e2) {
+                        if (log.isTraceEnabled()) {
+                            log.trace("Failed to wait until the server has capacity to handle new requests", e2);
+                        }
+                    }
+                }
+            }
+        }
+        log.info("Rate Limits Demand Consumer stopped.");
+    }
+
+    private boolean isEnabled() {
+        return rateLimitsConfiguration.isEnabled() && config != null && config.isEnabled();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        stopped = true;
+        if (leaseScheduler != null) {
+            leaseScheduler.shutdownNow();
+        }
+        if (consumerExecutor != null) {
+            consumerExecutor.shutdownNow();
+        }
+        if (consumer != null) {
+            consumer.unsubscribeAndClose();
+        }
+        if (producer != null) {
+            producer.stop();
+        }
+    }
+}
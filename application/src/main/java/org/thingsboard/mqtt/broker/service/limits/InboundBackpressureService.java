@@ -0,0 +1,43 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.limits;
+
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
+
+public interface InboundBackpressureService {
+
+    void onPublishReceived(ClientSessionCtx sessionCtx, int bytes);
+
+    void onPublishProcessed(ClientSessionCtx sessionCtx, int bytes);
+
+    void onSessionClosed(ClientSessionCtx sessionCtx);
+
+    /**
+     * Releases the bytes of the PUBLISH msg dropped before reaching the publish handler.
+     */
+    void onPublishDropped(ClientSessionCtx sessionCtx, int bytes);
+
+    /**
+     * Stops reading from the channel regardless of the backpressure state, e.g. until the client is authenticated.
+     */
+    void suspendReads(ClientSessionCtx sessionCtx);
+
+    /**
+     * Restores reading suspended by {@link #suspendReads} unless the client is paused by the backpressure.
+     */
+    void resumeReads(ClientSessionCtx sessionCtx);
+
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.limits;
+
+import io.netty.channel.ChannelHandlerContext;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
+import org.thingsboard.mqtt.broker.session.InboundFlowCtx;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the payload bytes of the PUBLISH messages between the channel read and the queue acknowledgement.
+ * Reading from the channel is paused when the client exceeds its own budget or when the node budget is exceeded and
+ * the client holds at least a fair share of the pending bytes. Reading is resumed once the pending bytes drop below
+ * half of the budgets or the client has no pending bytes left, so the publishers are throttled by TCP flow control.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class InboundBackpressureServiceImpl implements InboundBackpressureService {
+
+    private final StatsManager statsManager;
+    private final AtomicInteger pendingPublishers = new AtomicInteger();
+
+    private AtomicLong pendingBytes;
+    private AtomicLong pausedClients;
+
+    @Value("${mqtt.inbound-backpressure.enabled:true}")
+    @Setter
+    private boolean enabled;
+    @Value("${mqtt.inbound-backpressure.max-pending-bytes-per-client:4194304}")
+    @Setter
+    private long maxPendingBytesPerClient;
+    @Value("${mqtt.inbound-backpressure.max-pending-bytes:268435456}")
+    @Setter
+    private long maxPendingBytes;
+
+    @PostConstruct
+    public void init() {
+        this.pendingBytes = statsManager.createInboundPendingBytesCounter();
+        this.pausedClients = statsManager.createPausedClientsCounter();
+    }
+
+    @Override
+    public void onPublishReceived(ClientSessionCtx sessionCtx, int bytes) {
+        if (!enabled || bytes <= 0) {
+            return;
+        }
+        InboundFlowCtx flowCtx = sessionCtx.getInboundFlowCtx();
+        synchronized (flowCtx) {
+            if (flowCtx.isClosed()) {
+                return;
+            }
+            long clientPendingBytes = flowCtx.getPendingBytes() + bytes;
+            flowCtx.setPendingBytes(clientPendingBytes);
+            if (clientPendingBytes == bytes) {
+                pendingPublishers.incrementAndGet();
+            }
+            long totalPendingBytes = pendingBytes.addAndGet(bytes);
+            if (!flowCtx.isPaused() && shouldPause(clientPendingBytes, totalPendingBytes)) {
+                flowCtx.setPaused(true);
+                pausedClients.incrementAndGet();
+                updateAutoRead(sessionCtx, flowCtx);
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}][{}] Pausing reads, client pending bytes: {}, total pending bytes: {}",
+                            sessionCtx.getClientId(), sessionCtx.getSessionId(), clientPendingBytes, totalPendingBytes);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onPublishProcessed(ClientSessionCtx sessionCtx, int bytes) {
+        if (!enabled || bytes <= 0) {
+            return;
+        }
+        InboundFlowCtx flowCtx = sessionCtx.getInboundFlowCtx();
+        synchronized (flowCtx) {
+            if (flowCtx.isClosed() || flowCtx.getPendingBytes() == 0) {
+                return;
+            }
+            long clientPendingBytes = Math.max(0, flowCtx.getPendingBytes() - bytes);
+            long releasedBytes = flowCtx.getPendingBytes() - clientPendingBytes;
+            flowCtx.setPendingBytes(clientPendingBytes);
+            if (clientPendingBytes == 0) {
+                pendingPublishers.decrementAndGet();
+            }
+            long totalPendingBytes = pendingBytes.addAndGet(-releasedBytes);
+            if (flowCtx.isPaused() && shouldResume(clientPendingBytes, totalPendingBytes)) {
+                flowCtx.setPaused(false);
+                pausedClients.decrementAndGet();
+                updateAutoRead(sessionCtx, flowCtx);
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}][{}] Resuming reads, client pending bytes: {}, total pending bytes: {}",
+                            sessionCtx.getClientId(), sessionCtx.getSessionId(), clientPendingBytes, totalPendingBytes);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onSessionClosed(ClientSessionCtx sessionCtx) {
+        InboundFlowCtx flowCtx = sessionCtx.getInboundFlowCtx();
+        synchronized (flowCtx) {
+            if (flowCtx.isClosed()) {
+                return;
+            }
+            flowCtx.setClosed(true);
+            if (flowCtx.getPendingBytes() > 0) {
+                pendingBytes.addAndGet(-flowCtx.getPendingBytes());
+                pendingPublishers.decrementAndGet();
+                flowCtx.setPendingBytes(0);
+            }
+            if (flowCtx.isPaused()) {
+                flowCtx.setPaused(false);
+                pausedClients.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void onPublishDropped(ClientSessionCtx sessionCtx, int bytes) {
+        onPublishProcessed(sessionCtx, bytes);
+    }
+
+    @Override
+    public void suspendReads(ClientSessionCtx sessionCtx) {
+        InboundFlowCtx flowCtx = sessionCtx.getInboundFlowCtx();
+        synchronized (flowCtx) {
+            flowCtx.setReadsSuspended(true);
+            updateAutoRead(sessionCtx, flowCtx);
+        }
+    }
+
+    @Override
+    public void resumeReads(ClientSessionCtx sessionCtx) {
+        InboundFlowCtx flowCtx = sessionCtx.getInboundFlowCtx();
+        synchronized (flowCtx) {
+            flowCtx.setReadsSuspended(false);
+            updateAutoRead(sessionCtx, flowCtx);
+        }
+    }
+
+    boolean shouldPause(long clientPendingBytes, long totalPendingBytes) {
+        if (clientPendingBytes > maxPendingBytesPerClient) {
+            return true;
+        }
+        return totalPendingBytes > maxPendingBytes
+                && clientPendingBytes >= totalPendingBytes / Math.max(1, pendingPublishers.get());
+    }
+
+    boolean shouldResume(long clientPendingBytes, long totalPendingBytes) {
+        return clientPendingBytes == 0 ||
+                (clientPendingBytes <= maxPendingBytesPerClient / 2 && totalPendingBytes <= maxPendingBytes / 2);
+    }
+
+    // the channel state is always derived from the flags, so it can not drift from them
+    private void updateAutoRead(ClientSessionCtx sessionCtx, InboundFlowCtx flowCtx) {
+        ChannelHandlerContext channel = sessionCtx.getChannel();
+        if (channel != null) {
+            channel.channel().config().setAutoRead(!flowCtx.isPaused() && !flowCtx.isReadsSuspended());
+        }
+    }
+}
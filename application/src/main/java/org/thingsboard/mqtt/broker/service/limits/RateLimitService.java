@@ -16,6 +16,7 @@
 package org.thingsboard.mqtt.broker.service.limits;
 
 import io.netty.handler.codec.mqtt.MqttMessage;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
 import java.util.UUID;
 
@@ -23,6 +24,8 @@ public interface RateLimitService {
 
     boolean checkLimits(String clientId, UUID sessionId, MqttMessage msg);
 
+    boolean checkLimits(String clientId, UUID sessionId, ClientSessionCtx sessionCtx, MqttMessage msg);
+
     void remove(String clientId);
 
     boolean checkSessionsLimit(String clientId);
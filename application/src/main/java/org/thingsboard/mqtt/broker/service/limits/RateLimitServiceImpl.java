@@ -15,7 +15,9 @@
  */
 package org.thingsboard.mqtt.broker.service.limits;
 
+import io.netty.buffer.ByteBufUtil;
 import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
@@ -24,9 +26,14 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.actors.client.service.session.ClientSessionService;
 import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
+import org.thingsboard.mqtt.broker.common.data.ClientType;
 import org.thingsboard.mqtt.broker.common.util.TbRateLimits;
 import org.thingsboard.mqtt.broker.config.RateLimitsConfiguration;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -38,18 +45,56 @@ public class RateLimitServiceImpl implements RateLimitService {
 
     private final RateLimitsConfiguration rateLimitsConfiguration;
     private final ClientSessionService clientSessionService;
+    private final ClusterRateLimitService clusterRateLimitService;
     @Getter
     private final ConcurrentMap<String, TbRateLimits> clientLimits = new ConcurrentHashMap<>();
+    @Getter
+    private final List<TopicFilterRateLimits> topicFilterLimits = new ArrayList<>();
+    @Getter
+    private final ConcurrentMap<UUID, TbRateLimits> credentialsGroupLimits = new ConcurrentHashMap<>();
+    @Setter
+    private TbRateLimits totalMsgsLimits;
+    @Setter
+    private TbRateLimits totalBytesLimits;
 
     @Value("${mqtt.sessions-limit:0}")
     @Setter
     private int sessionsLimit;
 
+    @PostConstruct
+    public void init() {
+        totalMsgsLimits = newRateLimits(rateLimitsConfiguration.getTotalMsgsConfig());
+        totalBytesLimits = newRateLimits(rateLimitsConfiguration.getTotalBytesConfig());
+        List<RateLimitsConfiguration.TopicFilterRateLimitsConfiguration> topicFilters = rateLimitsConfiguration.getTopicFilters();
+        if (topicFilters != null) {
+            for (var topicFilter : topicFilters) {
+                topicFilterLimits.add(new TopicFilterRateLimits(topicFilter.getFilter(), topicFilter.getConfig()));
+            }
+        }
+    }
+
     @Override
     public boolean checkLimits(String clientId, UUID sessionId, MqttMessage msg) {
+        return checkLimits(clientId, sessionId, null, msg);
+    }
+
+    /**
+     * The buckets are consumed level by level. When a level rejects the msg, the tokens already consumed
+     * by the previous levels are returned, so a rejected msg does not spend the budget of the levels that admitted it.
+     */
+    @Override
+    public boolean checkLimits(String clientId, UUID sessionId, ClientSessionCtx sessionCtx, MqttMessage msg) {
         if (!rateLimitsConfiguration.isEnabled()) {
             return true;
         }
+        String topicName = null;
+        long bytes = 0;
+        if (msg instanceof MqttPublishMessage) {
+            MqttPublishMessage publishMsg = (MqttPublishMessage) msg;
+            topicName = publishMsg.variableHeader().topicName();
+            bytes = publishMsg.payload().readableBytes() + ByteBufUtil.utf8Bytes(topicName);
+        }
+
         TbRateLimits rateLimits = clientLimits.computeIfAbsent(clientId, id -> new TbRateLimits(rateLimitsConfiguration.getClientConfig()));
         if (!rateLimits.tryConsume()) {
             if (log.isTraceEnabled()) {
@@ -57,9 +102,117 @@ public class RateLimitServiceImpl implements RateLimitService {
             }
             return false;
         }
+
+        // the client type is set after the credentials id once the authentication is finished
+        boolean authFinished = sessionCtx == null || sessionCtx.getClientType() != null;
+        TbRateLimits groupLimits = authFinished ? getGroupLimits(sessionCtx) : null;
+        long groupMsgs = groupLimits != null ? 1 + sessionCtx.getMsgsBeforeAuth().getAndSet(0) : 0;
+        if (groupLimits != null && !groupLimits.tryConsume(groupMsgs)) {
+            rateLimits.refund(1);
+            if (log.isTraceEnabled()) {
+                log.trace("[{}][{}] Credentials group {} level rate limit detected: {}", clientId, sessionId, sessionCtx.getCredentialsId(), msg);
+            }
+            return false;
+        }
+
+        String[] topicSegments = topicFilterLimits.isEmpty() || topicName == null || topicName.isEmpty() ?
+                null : TopicFilterRateLimits.splitTopic(topicName);
+        if (!tryConsumeTopicFilterLimits(topicName, topicSegments)) {
+            refund(rateLimits, groupLimits, groupMsgs);
+            if (log.isTraceEnabled()) {
+                log.trace("[{}][{}] Topic level rate limit detected: {}", clientId, sessionId, msg);
+            }
+            return false;
+        }
+        if (totalMsgsLimits != null && !totalMsgsLimits.tryConsume()) {
+            refund(rateLimits, groupLimits, groupMsgs);
+            refundTopicFilterLimits(topicName, topicSegments, topicFilterLimits.size());
+            if (log.isTraceEnabled()) {
+                log.trace("[{}][{}] Node level messages rate limit detected: {}", clientId, sessionId, msg);
+            }
+            return false;
+        }
+        if (totalBytesLimits != null && bytes > 0 && !totalBytesLimits.tryConsume(bytes)) {
+            refund(rateLimits, groupLimits, groupMsgs);
+            refundTopicFilterLimits(topicName, topicSegments, topicFilterLimits.size());
+            refundTotalMsgsLimits();
+            if (log.isTraceEnabled()) {
+                log.trace("[{}][{}] Node level bytes rate limit detected: {}", clientId, sessionId, msg);
+            }
+            return false;
+        }
+        if (!clusterRateLimitService.tryConsume(bytes)) {
+            refund(rateLimits, groupLimits, groupMsgs);
+            refundTopicFilterLimits(topicName, topicSegments, topicFilterLimits.size());
+            refundTotalMsgsLimits();
+            if (totalBytesLimits != null && bytes > 0) {
+                totalBytesLimits.refund(bytes);
+            }
+            return false;
+        }
+        if (!authFinished) {
+            sessionCtx.getMsgsBeforeAuth().incrementAndGet();
+        }
         return true;
     }
 
+    private TbRateLimits getGroupLimits(ClientSessionCtx sessionCtx) {
+        UUID credentialsId = sessionCtx != null ? sessionCtx.getCredentialsId() : null;
+        if (credentialsId == null) {
+            return null;
+        }
+        String groupConfig = sessionCtx.getClientType() == ClientType.APPLICATION ?
+                rateLimitsConfiguration.getApplicationGroupConfig() : rateLimitsConfiguration.getDeviceGroupConfig();
+        if (groupConfig == null || groupConfig.isBlank()) {
+            return null;
+        }
+        return credentialsGroupLimits.computeIfAbsent(credentialsId, id -> new TbRateLimits(groupConfig));
+    }
+
+    private boolean tryConsumeTopicFilterLimits(String topicName, String[] topicSegments) {
+        // topic name is empty when the client uses a topic alias, such messages are limited on other levels only
+        if (topicSegments == null) {
+            return true;
+        }
+        for (int i = 0; i < topicFilterLimits.size(); i++) {
+            TopicFilterRateLimits limits = topicFilterLimits.get(i);
+            if (limits.matches(topicName, topicSegments) && !limits.tryConsume()) {
+                refundTopicFilterLimits(topicName, topicSegments, i);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void refundTopicFilterLimits(String topicName, String[] topicSegments, int consumedCount) {
+        if (topicSegments == null) {
+            return;
+        }
+        for (int i = 0; i < consumedCount; i++) {
+            TopicFilterRateLimits limits = topicFilterLimits.get(i);
+            if (limits.matches(topicName, topicSegments)) {
+                limits.refund();
+            }
+        }
+    }
+
+    private void refund(TbRateLimits clientRateLimits, TbRateLimits groupLimits, long groupMsgs) {
+        clientRateLimits.refund(1);
+        if (groupLimits != null) {
+            groupLimits.refund(groupMsgs);
+        }
+    }
+
+    private void refundTotalMsgsLimits() {
+        if (totalMsgsLimits != null) {
+            totalMsgsLimits.refund(1);
+        }
+    }
+
+    private TbRateLimits newRateLimits(String limitsConfiguration) {
+        return limitsConfiguration == null || limitsConfiguration.isBlank() ? null : new TbRateLimits(limitsConfiguration);
+    }
+
     @Override
     public void remove(String clientId) {
         if (clientId != null) {
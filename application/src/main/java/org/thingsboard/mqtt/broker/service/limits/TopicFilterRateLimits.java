@@ -0,0 +1,72 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.limits;
+
+import lombok.Getter;
+import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
+import org.thingsboard.mqtt.broker.common.util.TbRateLimits;
+
+/**
+ * Rate limits shared by all the publishers of the topics matching the topic filter.
+ */
+public class TopicFilterRateLimits {
+
+    @Getter
+    private final String topicFilter;
+    private final String[] filterSegments;
+    private final TbRateLimits rateLimits;
+
+    public TopicFilterRateLimits(String topicFilter, String limitsConfiguration) {
+        this.topicFilter = topicFilter;
+        this.filterSegments = splitTopic(topicFilter);
+        this.rateLimits = new TbRateLimits(limitsConfiguration);
+    }
+
+    public boolean tryConsume() {
+        return rateLimits.tryConsume();
+    }
+
+    public void refund() {
+        rateLimits.refund(1);
+    }
+
+    public boolean matches(String topic, String[] topicSegments) {
+        if (topic.startsWith("$") && isWildcard(filterSegments[0])) {
+            return false;
+        }
+        for (int i = 0; i < filterSegments.length; i++) {
+            String filterSegment = filterSegments[i];
+            if (BrokerConstants.MULTI_LEVEL_WILDCARD.equals(filterSegment)) {
+                return true;
+            }
+            if (i >= topicSegments.length) {
+                return false;
+            }
+            if (!BrokerConstants.SINGLE_LEVEL_WILDCARD.equals(filterSegment) && !filterSegment.equals(topicSegments[i])) {
+                return false;
+            }
+        }
+        return topicSegments.length == filterSegments.length;
+    }
+
+    public static String[] splitTopic(String topic) {
+        return topic.split(String.valueOf(BrokerConstants.TOPIC_DELIMITER), -1);
+    }
+
+    private boolean isWildcard(String segment) {
+        return BrokerConstants.MULTI_LEVEL_WILDCARD.equals(segment) || BrokerConstants.SINGLE_LEVEL_WILDCARD.equals(segment);
+    }
+}
@@ -38,7 +38,6 @@ import io.netty.handler.codec.mqtt.MqttUnsubAckMessage;
 import io.netty.handler.codec.mqtt.MqttUnsubAckPayload;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
 import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsg;
 import org.thingsboard.mqtt.broker.util.MqttReasonCode;
 
@@ -158,8 +157,8 @@ public class DefaultMqttMessageCreator implements MqttMessageGenerator {
     }
 
     @Override
-    public MqttPublishMessage createPubMsg(PublishMsgProto msg, int qos, boolean retain, String topicName, int packetId, MqttProperties properties) {
-        return getMqttPublishMessage(false, qos, retain, topicName, packetId, msg.getPayload().toByteArray(), properties);
+    public MqttPublishMessage createPubMsg(PublishMsgTemplate publishMsgTemplate, int qos, boolean retain, String topicName, int packetId, MqttProperties properties) {
+        return getMqttPublishMessage(false, qos, retain, topicName, packetId, publishMsgTemplate.newPayload(), properties);
     }
 
     @Override
@@ -170,11 +169,16 @@ public class DefaultMqttMessageCreator implements MqttMessageGenerator {
 
     private MqttPublishMessage getMqttPublishMessage(boolean isDup, int qos, boolean isRetain,
                                                      String topic, int packetId, byte[] payloadBytes, MqttProperties properties) {
+        ByteBuf payload = ALLOCATOR.buffer();
+        payload.writeBytes(payloadBytes);
+        return getMqttPublishMessage(isDup, qos, isRetain, topic, packetId, payload, properties);
+    }
+
+    private MqttPublishMessage getMqttPublishMessage(boolean isDup, int qos, boolean isRetain,
+                                                     String topic, int packetId, ByteBuf payload, MqttProperties properties) {
         MqttFixedHeader mqttFixedHeader =
                 new MqttFixedHeader(MqttMessageType.PUBLISH, isDup, MqttQoS.valueOf(qos), isRetain, 0);
         MqttPublishVariableHeader header = new MqttPublishVariableHeader(topic, packetId, properties);
-        ByteBuf payload = ALLOCATOR.buffer();
-        payload.writeBytes(payloadBytes);
         return new MqttPublishMessage(mqttFixedHeader, header, payload);
     }
 
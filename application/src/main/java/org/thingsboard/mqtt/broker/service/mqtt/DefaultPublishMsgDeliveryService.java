@@ -15,13 +15,14 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt;
 
+import io.netty.buffer.ByteBufUtil;
 import io.netty.handler.codec.mqtt.MqttMessage;
 import io.netty.handler.codec.mqtt.MqttProperties;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
 import org.thingsboard.mqtt.broker.service.historical.stats.TbMessageStatsReportClient;
 import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsg;
@@ -30,12 +31,14 @@ import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 import org.thingsboard.mqtt.broker.service.stats.timer.DeliveryTimerStats;
 import org.thingsboard.mqtt.broker.service.subscription.Subscription;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
+import org.thingsboard.mqtt.broker.session.TopicAliasCtx;
 import org.thingsboard.mqtt.broker.session.TopicAliasResult;
 import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
 import org.thingsboard.mqtt.broker.util.MqttReasonCode;
 import org.thingsboard.mqtt.broker.util.MqttReasonCodeResolver;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import static org.thingsboard.mqtt.broker.common.util.BrokerConstants.DROPPED_MSGS;
@@ -49,15 +52,21 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
     private final RetransmissionService retransmissionService;
     private final DeliveryTimerStats deliveryTimerStats;
     private final TbMessageStatsReportClient tbMessageStatsReportClient;
+    private final AtomicLong topicAliasBytesSaved;
 
     private final boolean isTraceEnabled = log.isTraceEnabled();
 
+    // the msg is delivered to all its subscribers one by one on the same thread, so the template of the last msg is reused
+    private final ThreadLocal<PublishMsgTemplate> lastPublishMsgTemplate = new ThreadLocal<>();
+
     @Value("${mqtt.topic.min-length-for-alias-replacement:50}")
     private int minTopicNameLengthForAliasReplacement;
     @Value("${mqtt.write-and-flush:true}")
     private boolean writeAndFlush;
     @Value("${mqtt.buffered-msg-count:5}")
     private int bufferedMsgCount;
+    @Value("${mqtt.flush-coalescing.enabled:true}")
+    private boolean flushCoalescingEnabled;
 
     public DefaultPublishMsgDeliveryService(MqttMessageGenerator mqttMessageGenerator,
                                             RetransmissionService retransmissionService,
@@ -67,6 +76,7 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         this.retransmissionService = retransmissionService;
         this.deliveryTimerStats = statsManager.getDeliveryTimerStats();
         this.tbMessageStatsReportClient = tbMessageStatsReportClient;
+        this.topicAliasBytesSaved = statsManager.createTopicAliasBytesSavedCounter();
     }
 
     @Override
@@ -74,10 +84,11 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         if (isTraceEnabled) {
             log.trace("[{}] Sending Pub msg to client {}", sessionCtx.getClientId(), pubMsg);
         }
-        pubMsg = sessionCtx.getTopicAliasCtx().createPublishMsgUsingTopicAlias(pubMsg, minTopicNameLengthForAliasReplacement);
-        MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubMsg(pubMsg);
-        tbMessageStatsReportClient.reportStats(OUTGOING_MSGS);
-        sendPublishMsgToClient(sessionCtx, mqttPubMsg);
+        withTopicAliases(sessionCtx, () -> {
+            MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubMsg(applyTopicAlias(sessionCtx, pubMsg));
+            tbMessageStatsReportClient.reportStats(OUTGOING_MSGS);
+            sendPublishMsgToClient(sessionCtx, mqttPubMsg, pubMsg.getTopicName());
+        });
     }
 
     @Override
@@ -85,26 +96,34 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         if (isTraceEnabled) {
             log.trace("[{}] Sending Pub msg to client {}", sessionCtx.getClientId(), msg);
         }
+        withTopicAliases(sessionCtx, () -> sendPublishMsgProto(sessionCtx, msg, subscription));
+    }
+
+    private void sendPublishMsgProto(ClientSessionCtx sessionCtx, PublishMsgProto msg, Subscription subscription) {
+        PublishMsgTemplate publishMsgTemplate = getPublishMsgTemplate(msg);
         TopicAliasResult topicAliasResult = sessionCtx.getTopicAliasCtx().getTopicAliasResult(msg, minTopicNameLengthForAliasReplacement);
-        MqttProperties properties = ProtoConverter.createMqttPropertiesWithUserPropsIfPresent(msg.getUserPropertiesList());
+        MqttProperties properties;
         if (topicAliasResult != null) {
-            MqttPropertiesUtil.addTopicAliasToProps(properties, topicAliasResult.getTopicAlias());
-        }
-        if (msg.hasMqttProperties()) {
-            ProtoConverter.addFromProtoToMqttProperties(msg.getMqttProperties(), properties);
+            properties = publishMsgTemplate.getProperties(topicAliasResult.getTopicAlias());
+            if (topicAliasResult.getTopicName().isEmpty()) {
+                topicAliasBytesSaved.addAndGet(ByteBufUtil.utf8Bytes(msg.getTopicName()));
+            }
+        } else {
+            properties = publishMsgTemplate.getProperties(null);
         }
 
         String topicName = topicAliasResult == null ? msg.getTopicName() : topicAliasResult.getTopicName();
         int packetId = sessionCtx.getMsgIdSeq().nextMsgId();
         int qos = Math.min(subscription.getQos(), msg.getQos());
         boolean retain = subscription.getOptions().isRetain(msg);
-        MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubMsg(msg, qos, retain, topicName, packetId, properties);
+        MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubMsg(publishMsgTemplate, qos, retain, topicName, packetId, properties);
 
         tbMessageStatsReportClient.reportStats(OUTGOING_MSGS);
-        if (writeAndFlush) {
-            sendPublishMsgToClient(sessionCtx, mqttPubMsg);
+        // flushes are coalesced by the channel pipeline, so it is cheap to request one per message
+        if (writeAndFlush || flushCoalescingEnabled) {
+            sendPublishMsgToClient(sessionCtx, mqttPubMsg, msg.getTopicName());
         } else {
-            sendPublishMsgWithoutFlushToClient(sessionCtx, mqttPubMsg);
+            sendPublishMsgWithoutFlushToClient(sessionCtx, mqttPubMsg, msg.getTopicName());
             if (isFlushNeeded(sessionCtx)) {
                 sessionCtx.getChannel().flush();
             }
@@ -116,10 +135,11 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         if (isTraceEnabled) {
             log.trace("[{}] Sending Pub msg to client without flushing {}", sessionCtx.getClientId(), pubMsg);
         }
-        pubMsg = sessionCtx.getTopicAliasCtx().createPublishMsgUsingTopicAlias(pubMsg, minTopicNameLengthForAliasReplacement);
-        MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubMsg(pubMsg);
-        tbMessageStatsReportClient.reportStats(OUTGOING_MSGS);
-        sendPublishMsgWithoutFlushToClient(sessionCtx, mqttPubMsg);
+        withTopicAliases(sessionCtx, () -> {
+            MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubMsg(applyTopicAlias(sessionCtx, pubMsg));
+            tbMessageStatsReportClient.reportStats(OUTGOING_MSGS);
+            sendPublishMsgWithoutFlushToClient(sessionCtx, mqttPubMsg, pubMsg.getTopicName());
+        });
     }
 
     @Override
@@ -129,7 +149,7 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         }
         int packetId = sessionCtx.getMsgIdSeq().nextMsgId();
         MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubRetainMsg(packetId, retainedMsg);
-        sendPublishMsgToClient(sessionCtx, mqttPubMsg);
+        sendPublishMsgToClient(sessionCtx, mqttPubMsg, retainedMsg.getTopic());
     }
 
     @Override
@@ -148,18 +168,53 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         processSendPubRel(sessionCtx, packetId, msg -> retransmissionService.onPubRecReceivedWithoutFlush(sessionCtx, msg));
     }
 
-    private void sendPublishMsgToClient(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg) {
-        processSendPublish(sessionCtx, mqttPubMsg, msg -> retransmissionService.sendPublish(sessionCtx, msg));
+    /**
+     * Alias (re-)mappings must reach the client in the same order they are made, so the alias is chosen
+     * and the message is written to the channel while holding the monitor of the session topic alias context.
+     */
+    private void withTopicAliases(ClientSessionCtx sessionCtx, Runnable sender) {
+        TopicAliasCtx topicAliasCtx = sessionCtx.getTopicAliasCtx();
+        if (topicAliasCtx.isEnabled()) {
+            synchronized (topicAliasCtx) {
+                sender.run();
+            }
+        } else {
+            sender.run();
+        }
+    }
+
+    private PublishMsgTemplate getPublishMsgTemplate(PublishMsgProto msg) {
+        PublishMsgTemplate publishMsgTemplate = lastPublishMsgTemplate.get();
+        if (publishMsgTemplate == null || publishMsgTemplate.getMsg() != msg) {
+            publishMsgTemplate = new PublishMsgTemplate(msg);
+            lastPublishMsgTemplate.set(publishMsgTemplate);
+        }
+        return publishMsgTemplate;
+    }
+
+    private PublishMsg applyTopicAlias(ClientSessionCtx sessionCtx, PublishMsg pubMsg) {
+        PublishMsg aliasedPubMsg = sessionCtx.getTopicAliasCtx().createPublishMsgUsingTopicAlias(pubMsg, minTopicNameLengthForAliasReplacement);
+        if (aliasedPubMsg != pubMsg && aliasedPubMsg.getTopicName().isEmpty()) {
+            topicAliasBytesSaved.addAndGet(ByteBufUtil.utf8Bytes(pubMsg.getTopicName()));
+        }
+        return aliasedPubMsg;
     }
 
-    private void sendPublishMsgWithoutFlushToClient(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg) {
-        processSendPublish(sessionCtx, mqttPubMsg, msg -> retransmissionService.sendPublishWithoutFlush(sessionCtx, msg));
+    private void sendPublishMsgToClient(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg, String topicName) {
+        processSendPublish(sessionCtx, mqttPubMsg, msg -> retransmissionService.sendPublish(sessionCtx, msg, topicName));
+    }
+
+    private void sendPublishMsgWithoutFlushToClient(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg, String topicName) {
+        processSendPublish(sessionCtx, mqttPubMsg, msg -> retransmissionService.sendPublishWithoutFlush(sessionCtx, msg, topicName));
     }
 
     private void processSendPublish(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg, Consumer<MqttPublishMessage> processor) {
         long startTime = System.nanoTime();
         try {
-            processor.accept(mqttPubMsg);
+            if (!sessionCtx.getOutboundFlowCtx().send(mqttPubMsg, !isPersisted(sessionCtx, mqttPubMsg), processor)) {
+                onOutboundQueueFull(sessionCtx, mqttPubMsg);
+                return;
+            }
         } catch (Exception e) {
             log.warn("[{}][{}] Failed to send PUBLISH msg to MQTT client.",
                     sessionCtx.getClientId(), sessionCtx.getSessionId(), e);
@@ -171,19 +226,25 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         deliveryTimerStats.logDelivery(startTime, TimeUnit.NANOSECONDS);
     }
 
-    private void processSendPubRel(ClientSessionCtx sessionCtx, int packetId, Consumer<MqttMessage> processor) {
-        MqttReasonCode code = MqttReasonCodeResolver.success(sessionCtx);
-        MqttMessage mqttPubRelMsg = mqttMessageGenerator.createPubRelMsg(packetId, code);
-        try {
-            processor.accept(mqttPubRelMsg);
-        } catch (Exception e) {
-            log.warn("[{}][{}] Failed to send PUBREL msg to MQTT client.",
-                    sessionCtx.getClientId(), sessionCtx.getSessionId(), e);
-            throw e;
+    private void onOutboundQueueFull(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg) {
+        if (log.isDebugEnabled()) {
+            log.debug("[{}][{}] Outbound queue is full, dropping PUBLISH msg {}.", sessionCtx.getClientId(), sessionCtx.getSessionId(),
+                    mqttPubMsg.variableHeader().packetId());
+        }
+        MqttProperties.IntegerProperty topicAliasProperty = MqttPropertiesUtil.getTopicAliasProperty(mqttPubMsg.variableHeader().properties());
+        if (topicAliasProperty != null && !mqttPubMsg.variableHeader().topicName().isEmpty()) {
+            sessionCtx.getTopicAliasCtx().onTopicAliasNotEstablished(topicAliasProperty.value());
+        }
+        if (!mqttPubMsg.fixedHeader().isRetain()) {
+            tbMessageStatsReportClient.reportStats(DROPPED_MSGS);
         }
     }
 
-    private boolean isFlushNeeded(ClientSessionCtx sessionCtx) {
-        return sessionCtx.getMsgIdSeq().getCurrentSeq() % bufferedMsgCount == 0;
+    /**
+     * QoS 1 and QoS 2 messages of persistent sessions are considered sent by the persistence processing once they are
+     * passed here, so they are never dropped by the outbound flow control.
+     */
+    private boolean isPersisted(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg) {
+        return sessionCtx.getSessionInfo().isPersistent() && mqttPubMsg.fixedHeader().qosLevel() != MqttQoS.AT_MOST_ONCE;
     }
 }
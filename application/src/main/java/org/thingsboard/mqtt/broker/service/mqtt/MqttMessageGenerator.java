@@ -22,7 +22,6 @@ import io.netty.handler.codec.mqtt.MqttProperties;
 import io.netty.handler.codec.mqtt.MqttPubAckMessage;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
 import io.netty.handler.codec.mqtt.MqttSubAckMessage;
-import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
 import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsg;
 import org.thingsboard.mqtt.broker.util.MqttReasonCode;
 
@@ -46,7 +45,7 @@ public interface MqttMessageGenerator {
 
     MqttPublishMessage createPubMsg(PublishMsg pubMsg);
 
-    MqttPublishMessage createPubMsg(PublishMsgProto publishMsgProto, int qos, boolean retain, String topicName, int packetId, MqttProperties properties);
+    MqttPublishMessage createPubMsg(PublishMsgTemplate publishMsgTemplate, int qos, boolean retain, String topicName, int packetId, MqttProperties properties);
 
     MqttPublishMessage createPubRetainMsg(int msgId, RetainedMsg retainedMsg);
 
@@ -0,0 +1,69 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import lombok.Getter;
+import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parts of the PUBLISH msg that are the same for all the subscribers. They are prepared once per msg,
+ * so the fan-out only creates the per-subscriber headers (packet id, QoS, retain flag, topic alias).
+ */
+public class PublishMsgTemplate {
+
+    @Getter
+    private final PublishMsgProto msg;
+    private final MqttProperties properties;
+    private final ByteBuffer payload;
+
+    public PublishMsgTemplate(PublishMsgProto msg) {
+        this.msg = msg;
+        this.properties = ProtoConverter.createMqttPropertiesWithUserPropsIfPresent(msg.getUserPropertiesList());
+        if (msg.hasMqttProperties()) {
+            ProtoConverter.addFromProtoToMqttProperties(msg.getMqttProperties(), properties);
+        }
+        this.payload = msg.getPayload().asReadOnlyByteBuffer();
+    }
+
+    /**
+     * Returns the shared properties when no topic alias is used, so they must not be modified by the caller.
+     */
+    public MqttProperties getProperties(Integer topicAlias) {
+        if (topicAlias == null) {
+            return properties;
+        }
+        MqttProperties aliasedProperties = new MqttProperties();
+        for (MqttProperties.MqttProperty property : properties.listAll()) {
+            aliasedProperties.add(property);
+        }
+        MqttPropertiesUtil.addTopicAliasToProps(aliasedProperties, topicAlias);
+        return aliasedProperties;
+    }
+
+    /**
+     * Returns the new buffer that wraps the payload of the msg without copying it.
+     */
+    public ByteBuf newPayload() {
+        return Unpooled.wrappedBuffer(payload.duplicate());
+    }
+}
@@ -17,10 +17,8 @@ package org.thingsboard.mqtt.broker.service.mqtt.client.cleanup;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
 import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
 import org.thingsboard.mqtt.broker.common.data.SessionInfo;
 import org.thingsboard.mqtt.broker.common.data.exception.ThingsboardErrorCode;
@@ -32,7 +30,6 @@ import org.thingsboard.mqtt.broker.util.ClientSessionInfoFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -41,13 +38,12 @@ import java.util.concurrent.TimeUnit;
 @RequiredArgsConstructor
 public class ClientSessionCleanUpServiceImpl implements ClientSessionCleanUpService {
 
+    private static final long CLEANUP_RETRY_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+
     private final ClientSessionCache clientSessionCache;
     private final ClientSessionEventService clientSessionEventService;
     private final DisconnectClientCommandService disconnectClientCommandService;
-    private final ServiceInfoProvider serviceInfoProvider;
-
-    @Value("${mqtt.client-session-expiry.ttl:0}")
-    private int ttl;
+    private final ClientSessionExpiryIndex clientSessionExpiryIndex;
 
     @Override
     public void removeClientSession(String clientId, UUID sessionId) throws ThingsboardException {
@@ -88,59 +84,38 @@ public class ClientSessionCleanUpServiceImpl implements ClientSessionCleanUpServ
         return !sessionId.equals(currentSessionId);
     }
 
-    @Scheduled(cron = "${mqtt.client-session-expiry.cron}", zone = "${mqtt.client-session-expiry.zone}")
+    @Scheduled(fixedDelayString = "${mqtt.client-session-expiry.check-interval-ms:1000}")
     public void cleanUp() {
-        log.info("Starting cleaning up expired ClientSessions.");
-
         long currentTs = System.currentTimeMillis();
-        Map<String, ClientSessionInfo> clientSessionInfos = clientSessionCache.getAllClientSessions();
+        List<String> expiredClientIds = clientSessionExpiryIndex.pollExpired(currentTs);
+        if (expiredClientIds.isEmpty()) {
+            return;
+        }
 
         List<SessionInfo> clientSessionsToRemove = new ArrayList<>();
-        for (ClientSessionInfo clientSessionInfo : clientSessionInfos.values()) {
-            if (clientSessionFromAnotherNode(clientSessionInfo)) {
+        for (String clientId : expiredClientIds) {
+            ClientSessionInfo clientSessionInfo = clientSessionCache.getClientSessionInfo(clientId);
+            if (clientSessionInfo == null) {
                 continue;
             }
-            SessionInfo sessionInfo = ClientSessionInfoFactory.clientSessionInfoToSessionInfo(clientSessionInfo);
-
-            long sessionExpiryIntervalMs;
-            if (isNotCleanSession(sessionInfo)) {
-                if (ttl > 0) {
-                    sessionExpiryIntervalMs = getSessionExpiryIntervalMs(ttl);
-                } else {
-                    continue;
-                }
-            } else {
-                sessionExpiryIntervalMs = getSessionExpiryIntervalMs(sessionInfo.safeGetSessionExpiryInterval());
+            long expiryTs = clientSessionExpiryIndex.getExpiryTs(clientSessionInfo);
+            if (expiryTs == ClientSessionExpiryIndex.NEVER_EXPIRES) {
+                continue;
             }
-
-            if (needsToBeRemoved(currentTs, clientSessionInfo, sessionExpiryIntervalMs)) {
-                clientSessionsToRemove.add(sessionInfo);
+            if (expiryTs >= currentTs) {
+                clientSessionExpiryIndex.onSessionUpdated(clientId, clientSessionInfo);
+                continue;
             }
+            clientSessionsToRemove.add(ClientSessionInfoFactory.clientSessionInfoToSessionInfo(clientSessionInfo));
+            // the session is removed from the index once cleared, otherwise the cleanup is requested again
+            clientSessionExpiryIndex.scheduleRetry(clientId, currentTs + CLEANUP_RETRY_DELAY_MS);
         }
 
-        log.info("Cleaning up expired {} client sessions.", clientSessionsToRemove.size());
+        if (log.isDebugEnabled()) {
+            log.debug("Cleaning up expired {} client sessions.", clientSessionsToRemove.size());
+        }
         for (SessionInfo sessionInfo : clientSessionsToRemove) {
             clientSessionEventService.requestSessionCleanup(sessionInfo);
         }
     }
-
-    private boolean clientSessionFromAnotherNode(ClientSessionInfo clientSessionInfo) {
-        return !clientSessionInfo.getServiceId().equals(serviceInfoProvider.getServiceId());
-    }
-
-    boolean isNotCleanSession(SessionInfo sessionInfo) {
-        return sessionInfo.isNotCleanSession();
-    }
-
-    private boolean needsToBeRemoved(long currentTs, ClientSessionInfo clientSessionInfo, long sessionExpiryIntervalMs) {
-        return !clientSessionInfo.isConnected() && isExpired(clientSessionInfo, sessionExpiryIntervalMs, currentTs);
-    }
-
-    private boolean isExpired(ClientSessionInfo clientSessionInfo, long sessionExpiryIntervalMs, long currentTs) {
-        return clientSessionInfo.getDisconnectedAt() + sessionExpiryIntervalMs < currentTs;
-    }
-
-    private long getSessionExpiryIntervalMs(int sessionExpiryInterval) {
-        return TimeUnit.SECONDS.toMillis(sessionExpiryInterval);
-    }
 }
@@ -0,0 +1,97 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.client.cleanup;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
+import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
+import org.thingsboard.mqtt.broker.common.data.SessionInfo;
+import org.thingsboard.mqtt.broker.util.ClientSessionInfoFactory;
+import org.thingsboard.mqtt.broker.util.ExpiryIndex;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disconnected client sessions of the current node ordered by the time they expire at.
+ * Updated on every change of the client session.
+ */
+@Component
+@RequiredArgsConstructor
+public class ClientSessionExpiryIndex {
+
+    public static final long NEVER_EXPIRES = -1;
+
+    private final ServiceInfoProvider serviceInfoProvider;
+    private final ExpiryIndex<String> expiryIndex = new ExpiryIndex<>();
+
+    @Value("${mqtt.client-session-expiry.ttl:0}")
+    @Setter
+    private int ttl;
+
+    public void onSessionUpdated(String clientId, ClientSessionInfo clientSessionInfo) {
+        long expiryTs = getExpiryTs(clientSessionInfo);
+        if (expiryTs == NEVER_EXPIRES) {
+            expiryIndex.remove(clientId);
+        } else {
+            expiryIndex.schedule(clientId, expiryTs);
+        }
+    }
+
+    public void onSessionRemoved(String clientId) {
+        expiryIndex.remove(clientId);
+    }
+
+    public void scheduleRetry(String clientId, long retryTs) {
+        expiryIndex.schedule(clientId, retryTs);
+    }
+
+    public List<String> pollExpired(long ts) {
+        return expiryIndex.pollExpired(ts);
+    }
+
+    public int size() {
+        return expiryIndex.size();
+    }
+
+    public long getExpiryTs(ClientSessionInfo clientSessionInfo) {
+        if (clientSessionInfo.isConnected() || clientSessionFromAnotherNode(clientSessionInfo)) {
+            return NEVER_EXPIRES;
+        }
+        SessionInfo sessionInfo = ClientSessionInfoFactory.clientSessionInfoToSessionInfo(clientSessionInfo);
+        long sessionExpiryIntervalMs;
+        if (isNotCleanSession(sessionInfo)) {
+            if (ttl <= 0) {
+                return NEVER_EXPIRES;
+            }
+            sessionExpiryIntervalMs = TimeUnit.SECONDS.toMillis(ttl);
+        } else {
+            sessionExpiryIntervalMs = TimeUnit.SECONDS.toMillis(sessionInfo.safeGetSessionExpiryInterval());
+        }
+        return clientSessionInfo.getDisconnectedAt() + sessionExpiryIntervalMs;
+    }
+
+    boolean isNotCleanSession(SessionInfo sessionInfo) {
+        return sessionInfo.isNotCleanSession();
+    }
+
+    private boolean clientSessionFromAnotherNode(ClientSessionInfo clientSessionInfo) {
+        return !serviceInfoProvider.getServiceId().equals(clientSessionInfo.getServiceId());
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.client.session;
 
+import org.thingsboard.mqtt.broker.actors.client.service.session.CompactClientSessionInfo;
 import org.thingsboard.mqtt.broker.common.data.ClientSession;
 import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
 
@@ -28,5 +29,10 @@ public interface ClientSessionCache {
 
     ClientSessionInfo getClientSessionInfo(String clientId);
 
+    /**
+     * Returns the registry entry of the client session as is, without materializing the {@link ClientSessionInfo}.
+     */
+    CompactClientSessionInfo getCompactClientSessionInfo(String clientId);
+
     Map<String, ClientSessionInfo> getAllClientSessions();
 }
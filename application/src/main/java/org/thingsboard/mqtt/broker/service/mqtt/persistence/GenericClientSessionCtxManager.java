@@ -15,12 +15,13 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.persistence;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
 public interface GenericClientSessionCtxManager {
     void resendPersistedPubRelMessages(ClientSessionCtx clientSessionCtx);
 
-    void saveAwaitingQoS2Packets(ClientSessionCtx ctx);
+    ListenableFuture<Void> saveAwaitingQoS2Packets(ClientSessionCtx ctx);
 
     void clearAwaitingQoS2Packets(String clientId);
 }
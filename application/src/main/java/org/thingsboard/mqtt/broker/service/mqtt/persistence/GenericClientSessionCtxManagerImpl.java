@@ -15,11 +15,13 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.persistence;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.time.StopWatch;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.common.data.GenericClientSessionCtx;
+import org.thingsboard.mqtt.broker.common.util.DonAsynchron;
 import org.thingsboard.mqtt.broker.dao.client.GenericClientSessionCtxService;
 import org.thingsboard.mqtt.broker.service.mqtt.MqttMessageGenerator;
 import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionCtxService;
@@ -62,9 +64,18 @@ public class GenericClientSessionCtxManagerImpl implements GenericClientSessionC
     }
 
     @Override
-    public void saveAwaitingQoS2Packets(ClientSessionCtx ctx) {
+    public ListenableFuture<Void> saveAwaitingQoS2Packets(ClientSessionCtx ctx) {
         GenericClientSessionCtx genericClientSessionCtx = toGenericClientSessionCtx(ctx);
-        genericClientSessionCtxService.saveGenericClientSessionCtx(genericClientSessionCtx);
+        ListenableFuture<Void> future = genericClientSessionCtxService.saveGenericClientSessionCtxAsync(genericClientSessionCtx);
+        DonAsynchron.withCallback(
+                future,
+                unused -> {
+                    if (log.isTraceEnabled()) {
+                        log.trace("[{}] Saved awaiting QoS 2 packets.", ctx.getClientId());
+                    }
+                },
+                throwable -> log.warn("[{}] Failed to save awaiting QoS 2 packets.", ctx.getClientId(), throwable));
+        return future;
     }
 
     @Override
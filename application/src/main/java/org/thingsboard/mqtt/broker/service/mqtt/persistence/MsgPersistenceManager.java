@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.persistence;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import org.thingsboard.mqtt.broker.actors.client.state.ClientActorStateInfo;
 import org.thingsboard.mqtt.broker.common.data.ClientInfo;
 import org.thingsboard.mqtt.broker.service.processing.PublishMsgCallback;
@@ -39,9 +40,9 @@ public interface MsgPersistenceManager {
 
     void startProcessingSharedSubscriptions(ClientSessionCtx clientSessionCtx, Set<TopicSharedSubscription> subscriptions);
 
-    void saveAwaitingQoS2Packets(ClientSessionCtx clientSessionCtx);
+    ListenableFuture<Void> saveAwaitingQoS2Packets(ClientSessionCtx clientSessionCtx);
 
-    void stopProcessingPersistedMessages(ClientInfo clientInfo);
+    ListenableFuture<Void> stopProcessingPersistedMessages(ClientInfo clientInfo);
 
     void clearPersistedMessages(ClientInfo clientInfo);
 }
@@ -15,6 +15,8 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.persistence;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -30,6 +32,7 @@ import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.ApplicationMsgQueuePublisher;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.ApplicationPersistenceProcessor;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.payload.ApplicationPayloadClaimCheckService;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.DevicePersistenceProcessor;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.queue.DeviceMsgQueuePublisher;
 import org.thingsboard.mqtt.broker.service.processing.MultiplePublishMsgCallbackWrapper;
@@ -60,6 +63,7 @@ public class MsgPersistenceManagerImpl implements MsgPersistenceManager {
     private final DeviceMsgQueuePublisher deviceMsgQueuePublisher;
     private final DevicePersistenceProcessor devicePersistenceProcessor;
     private final ClientLogger clientLogger;
+    private final ApplicationPayloadClaimCheckService payloadClaimCheckService;
 
     @Override
     public void processPublish(PublishMsgWithId publishMsgWithId, PersistentMsgSubscriptions persistentSubscriptions, PublishMsgCallback callback) {
@@ -90,10 +94,11 @@ public class MsgPersistenceManagerImpl implements MsgPersistenceManager {
         }
         if (applicationSubscriptions != null) {
             if (applicationSubscriptions.size() == 1) {
-                sendApplicationMsg(applicationSubscriptions.get(0), publishMsgWithId, callbackWrapper);
+                sendApplicationMsg(applicationSubscriptions.get(0), publishMsgWithId, false, callbackWrapper);
             } else {
+                boolean claimCheck = payloadClaimCheckService.isClaimCheckApplicable(publishMsgWithId, applicationSubscriptions.size());
                 for (Subscription applicationSubscription : applicationSubscriptions) {
-                    sendApplicationMsg(applicationSubscription, publishMsgWithId, callbackWrapper);
+                    sendApplicationMsg(applicationSubscription, publishMsgWithId, claimCheck, callbackWrapper);
                 }
             }
         }
@@ -109,11 +114,16 @@ public class MsgPersistenceManagerImpl implements MsgPersistenceManager {
         clientLogger.logEvent(senderClientId, this.getClass(), "After msg persistence");
     }
 
-    private void sendApplicationMsg(Subscription applicationSubscription, PublishMsgWithId publishMsgWithId, PublishMsgCallback callbackWrapper) {
+    private void sendApplicationMsg(Subscription applicationSubscription, PublishMsgWithId publishMsgWithId,
+                                    boolean claimCheck, PublishMsgCallback callbackWrapper) {
         PublishMsgProto publishMsg = createReceiverPublishMsg(applicationSubscription, publishMsgWithId.getPublishMsgProto());
+        TbQueueMsgHeaders headers = getAppMsgHeaders(publishMsgWithId);
+        if (claimCheck) {
+            publishMsg = payloadClaimCheckService.checkIn(publishMsg, publishMsgWithId, headers);
+        }
         applicationMsgQueuePublisher.sendMsg(
                 getClientIdFromSubscription(applicationSubscription),
-                new TbProtoQueueMsg<>(publishMsg.getTopicName(), publishMsg, getAppMsgHeaders(publishMsgWithId)),
+                new TbProtoQueueMsg<>(publishMsg.getTopicName(), publishMsg, headers),
                 callbackWrapper);
     }
 
@@ -138,7 +148,7 @@ public class MsgPersistenceManagerImpl implements MsgPersistenceManager {
     }
 
     private String getClientIdFromSubscription(Subscription subscription) {
-        return subscription.getClientSessionInfo().getClientId();
+        return subscription.getClientId();
     }
 
     private int getCallbackCount(List<Subscription> deviceSubscriptions,
@@ -198,20 +208,21 @@ public class MsgPersistenceManagerImpl implements MsgPersistenceManager {
     }
 
     @Override
-    public void stopProcessingPersistedMessages(ClientInfo clientInfo) {
+    public ListenableFuture<Void> stopProcessingPersistedMessages(ClientInfo clientInfo) {
         if (clientInfo.getType() == APPLICATION) {
-            applicationPersistenceProcessor.stopProcessingPersistedMessages(clientInfo.getClientId());
+            return applicationPersistenceProcessor.stopProcessingPersistedMessages(clientInfo.getClientId());
         } else if (clientInfo.getType() == DEVICE) {
             devicePersistenceProcessor.stopProcessingPersistedMessages(clientInfo.getClientId());
             // TODO: stop select query if it's running
         } else {
             log.warn("[{}] Persisted messages are not supported for client type {}.", clientInfo.getClientId(), clientInfo.getType());
         }
+        return Futures.immediateFuture(null);
     }
 
     @Override
-    public void saveAwaitingQoS2Packets(ClientSessionCtx clientSessionCtx) {
-        genericClientSessionCtxManager.saveAwaitingQoS2Packets(clientSessionCtx);
+    public ListenableFuture<Void> saveAwaitingQoS2Packets(ClientSessionCtx clientSessionCtx) {
+        return genericClientSessionCtxManager.saveAwaitingQoS2Packets(clientSessionCtx);
     }
 
     @Override
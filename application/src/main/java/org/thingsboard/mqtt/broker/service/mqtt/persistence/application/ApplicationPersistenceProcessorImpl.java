@@ -16,6 +16,7 @@
 package org.thingsboard.mqtt.broker.service.mqtt.persistence.application;
 
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -29,10 +30,12 @@ import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
 import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
 import org.thingsboard.mqtt.broker.common.data.mqtt.MsgExpiryResult;
 import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
+import org.thingsboard.mqtt.broker.exception.ApplicationPayloadFetchException;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
 import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
 import org.thingsboard.mqtt.broker.queue.TbQueueConsumer;
 import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueuePartitionConsumer;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.queue.provider.ApplicationPersistenceMsgQueueFactory;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
@@ -40,6 +43,7 @@ import org.thingsboard.mqtt.broker.service.mqtt.PublishMsg;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsgDeliveryService;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationSharedSubscriptionCtx;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationSharedSubscriptionJob;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.payload.ApplicationPayloadClaimCheckService;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationAckStrategy;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationMsgAcknowledgeStrategyFactory;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationPackProcessingCtx;
@@ -105,6 +109,7 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
     private final ServiceInfoProvider serviceInfoProvider;
     private final ClientLogger clientLogger;
     private final ApplicationTopicService applicationTopicService;
+    private final ApplicationPayloadClaimCheckService payloadClaimCheckService;
     private final boolean isTraceEnabled = log.isTraceEnabled();
     private final boolean isDebugEnabled = log.isDebugEnabled();
 
@@ -118,6 +123,8 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
     private boolean validateSharedTopicFilter;
     @Value("${queue.application-persisted-msg.shared-subs-threads-count}")
     private int sharedSubsThreadsCount;
+    @Value("${queue.application-persisted-msg.multiplexed-consumers.enabled:false}")
+    private boolean multiplexedConsumersEnabled;
 
     private volatile boolean stopped = false;
     private ExecutorService persistedMsgsConsumerExecutor;
@@ -269,9 +276,12 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
                     ApplicationProcessorStats stats = statsManager.createSharedApplicationProcessorStats(clientId, subscription);
 
                     ApplicationPubRelMsgCtx applicationPubRelMsgCtx = new ApplicationPubRelMsgCtx(Sets.newConcurrentHashSet());
+                    List<TbProtoQueueMsg<PublishMsgProto>> unresolvedPack = null;
                     while (isJobActive(job)) {
                         try {
-                            List<TbProtoQueueMsg<PublishMsgProto>> publishProtoMessages = consumer.poll(pollDuration);
+                            List<TbProtoQueueMsg<PublishMsgProto>> publishProtoMessages =
+                                    unresolvedPack != null ? unresolvedPack : consumer.poll(pollDuration);
+                            unresolvedPack = null;
                             if (publishProtoMessages.isEmpty() && applicationPubRelMsgCtx.nothingToDeliver()) {
                                 continue;
                             }
@@ -279,12 +289,18 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
                             long packProcessingStart = System.nanoTime();
                             ApplicationSubmitStrategy submitStrategy = submitStrategyFactory.newInstance(clientId);
 
-                            List<PersistedMsg> messagesToDeliver = getMessagesToDeliver(
-                                    applicationPubRelMsgCtx,
-                                    clientSessionCtx,
-                                    persistedMsgCtx,
-                                    publishProtoMessages,
-                                    subscription);
+                            List<PersistedMsg> messagesToDeliver;
+                            try {
+                                messagesToDeliver = getMessagesToDeliver(
+                                        applicationPubRelMsgCtx,
+                                        clientSessionCtx,
+                                        persistedMsgCtx,
+                                        publishProtoMessages,
+                                        subscription);
+                            } catch (ApplicationPayloadFetchException e) {
+                                unresolvedPack = publishProtoMessages;
+                                throw e;
+                            }
                             submitStrategy.init(messagesToDeliver);
 
                             if (isDebugEnabled) {
@@ -356,7 +372,7 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
     }
 
     private boolean analyzeIfProcessingDone(String clientId,
-                                            TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer,
+                                            TbQueuePartitionConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer,
                                             ApplicationProcessorStats stats,
                                             ApplicationSubmitStrategy submitStrategy,
                                             ApplicationPackProcessingCtx ctx,
@@ -438,7 +454,7 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
         if (log.isDebugEnabled()) {
             log.debug("[{}] Starting persisted messages processing.", clientId);
         }
-        TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer = initConsumer(clientId, clientTopic);
+        TbQueuePartitionConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer = initConsumer(clientId, clientTopic);
         Future<?> future = persistedMsgsConsumerExecutor.submit(() -> {
             try {
                 processPersistedMessages(consumer, clientState);
@@ -465,7 +481,7 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
     }
 
     @Override
-    public void stopProcessingPersistedMessages(String clientId) {
+    public ListenableFuture<Void> stopProcessingPersistedMessages(String clientId) {
         if (log.isDebugEnabled()) {
             log.debug("[{}] Stopping persisted messages processing.", clientId);
         }
@@ -475,8 +491,9 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
         stopSharedSubscriptionConsumers(clientId);
 
         ApplicationPackProcessingCtx processingContext = collectPackProcessingCtx(clientId);
-        unacknowledgedPersistedMsgCtxService.saveContext(clientId, processingContext);
+        ListenableFuture<Void> saveFuture = unacknowledgedPersistedMsgCtxService.saveContextAsync(clientId, processingContext);
         persistedMsgCtxMap.remove(clientId);
+        return saveFuture;
     }
 
     private void stopSharedSubscriptionConsumers(String clientId) {
@@ -614,8 +631,8 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
         persistedMsgCtxMap.remove(clientId);
     }
 
-    private TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> initConsumer(String clientId, String clientTopic) {
-        TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer = createConsumer(clientId, clientTopic);
+    private TbQueuePartitionConsumer<TbProtoQueueMsg<PublishMsgProto>> initConsumer(String clientId, String clientTopic) {
+        TbQueuePartitionConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer = createConsumer(clientId, clientTopic);
         try {
             consumer.assignPartition(0);
 
@@ -632,7 +649,13 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
         }
     }
 
-    private TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> createConsumer(String clientId, String clientTopic) {
+    private TbQueuePartitionConsumer<TbProtoQueueMsg<PublishMsgProto>> createConsumer(String clientId, String clientTopic) {
+        if (multiplexedConsumersEnabled) {
+            return applicationPersistenceMsgQueueFactory
+                    .createMultiplexedConsumer(
+                            clientTopic,
+                            MqttApplicationClientUtil.getAppConsumerGroup(clientId));
+        }
         return applicationPersistenceMsgQueueFactory
                 .createConsumer(
                         clientTopic,
@@ -644,7 +667,7 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
         return serviceInfoProvider.getServiceId() + "-" + clientId;
     }
 
-    private void processPersistedMessages(TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer,
+    private void processPersistedMessages(TbQueuePartitionConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer,
                                           ClientActorStateInfo clientState) {
         ClientSessionCtx clientSessionCtx = clientState.getCurrentSessionCtx();
         String clientId = clientSessionCtx.getClientId();
@@ -660,9 +683,13 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
 
         ApplicationPubRelMsgCtx applicationPubRelMsgCtx = persistedMsgCtxToPubRelMsgCtx(persistedMsgCtx);
 
+        // the pack is retried as is when its claim-checked payloads were not fetched in time, so it is not committed
+        List<TbProtoQueueMsg<PublishMsgProto>> unresolvedPack = null;
         while (isClientConnected(sessionId, clientState)) {
             try {
-                List<TbProtoQueueMsg<PublishMsgProto>> publishProtoMessages = consumer.poll(pollDuration);
+                List<TbProtoQueueMsg<PublishMsgProto>> publishProtoMessages =
+                        unresolvedPack != null ? unresolvedPack : consumer.poll(pollDuration);
+                unresolvedPack = null;
                 if (publishProtoMessages.isEmpty() && applicationPubRelMsgCtx.nothingToDeliver()) {
                     continue;
                 }
@@ -670,12 +697,18 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
                 long packProcessingStart = System.nanoTime();
                 ApplicationSubmitStrategy submitStrategy = submitStrategyFactory.newInstance(clientId);
 
-                List<PersistedMsg> messagesToDeliver = getMessagesToDeliver(
-                        applicationPubRelMsgCtx,
-                        clientSessionCtx,
-                        persistedMsgCtx,
-                        publishProtoMessages,
-                        null);
+                List<PersistedMsg> messagesToDeliver;
+                try {
+                    messagesToDeliver = getMessagesToDeliver(
+                            applicationPubRelMsgCtx,
+                            clientSessionCtx,
+                            persistedMsgCtx,
+                            publishProtoMessages,
+                            null);
+                } catch (ApplicationPayloadFetchException e) {
+                    unresolvedPack = publishProtoMessages;
+                    throw e;
+                }
                 submitStrategy.init(messagesToDeliver);
 
                 applicationPubRelMsgCtx = new ApplicationPubRelMsgCtx(Sets.newConcurrentHashSet());
@@ -765,7 +798,7 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
                                                                  TopicSharedSubscription subscription) {
         long currentTs = System.currentTimeMillis();
         List<PersistedPublishMsg> result = new ArrayList<>(publishProtoMessages.size());
-        for (TbProtoQueueMsg<PublishMsgProto> msg : publishProtoMessages) {
+        for (TbProtoQueueMsg<PublishMsgProto> msg : payloadClaimCheckService.resolvePayloads(publishProtoMessages)) {
             MsgExpiryResult msgExpiryResult = MqttPropertiesUtil.getMsgExpiryResult(msg.getHeaders(), currentTs);
             if (msgExpiryResult.isExpired()) {
                 continue;
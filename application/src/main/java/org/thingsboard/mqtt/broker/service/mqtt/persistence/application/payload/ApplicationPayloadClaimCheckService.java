@@ -0,0 +1,41 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.application.payload;
+
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsgHeaders;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.service.processing.PublishMsgWithId;
+
+import java.util.List;
+
+/**
+ * Replaces the payload of the messages fanned out to several APPLICATION clients with a reference
+ * to the original record of 'tbmq.msg.all' topic, so the payload is written to Kafka only once.
+ */
+public interface ApplicationPayloadClaimCheckService {
+
+    boolean isClaimCheckApplicable(PublishMsgWithId publishMsgWithId, int applicationReceiversCount);
+
+    PublishMsgProto checkIn(PublishMsgProto receiverPublishMsg, PublishMsgWithId publishMsgWithId, TbQueueMsgHeaders headers);
+
+    /**
+     * Returns the messages with the referenced payloads restored. Messages whose payload could not be
+     * fetched anymore (e.g. removed by the retention of 'tbmq.msg.all' topic) are skipped.
+     */
+    List<TbProtoQueueMsg<PublishMsgProto>> resolvePayloads(List<TbProtoQueueMsg<PublishMsgProto>> msgs);
+
+}
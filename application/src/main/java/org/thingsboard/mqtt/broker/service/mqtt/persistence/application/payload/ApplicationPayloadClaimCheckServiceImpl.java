@@ -0,0 +1,272 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.application.payload;
+
+import com.google.protobuf.ByteString;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
+import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
+import org.thingsboard.mqtt.broker.exception.ApplicationPayloadFetchException;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
+import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsgHeaders;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.queue.provider.PublishMsgQueueFactory;
+import org.thingsboard.mqtt.broker.service.processing.PublishMsgWithId;
+
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ApplicationPayloadClaimCheckServiceImpl implements ApplicationPayloadClaimCheckService {
+
+    private static final int PAYLOAD_REF_SIZE = Integer.BYTES + Long.BYTES;
+    private static final long FETCH_POLL_DURATION_MS = 100;
+
+    private final PublishMsgQueueFactory publishMsgQueueFactory;
+    private final ServiceInfoProvider serviceInfoProvider;
+    private final TbQueueAdmin queueAdmin;
+
+    @Setter
+    @Value("${queue.application-persisted-msg.payload-claim-check.enabled:false}")
+    private boolean enabled;
+    @Setter
+    @Value("${queue.application-persisted-msg.payload-claim-check.min-payload-size:65536}")
+    private int minPayloadSize;
+    @Setter
+    @Value("${queue.application-persisted-msg.payload-claim-check.min-receivers:2}")
+    private int minReceivers;
+    @Setter
+    @Value("${queue.application-persisted-msg.payload-claim-check.fetch-timeout-ms:3000}")
+    private long fetchTimeoutMs;
+    @Setter
+    @Value("${queue.application-persisted-msg.payload-claim-check.cache-max-size-bytes:67108864}")
+    private long cacheMaxSizeBytes;
+
+    private final Map<PayloadRef, ByteString> payloadCache = new LinkedHashMap<>(16, 0.75f, true);
+    private long payloadCacheSizeBytes;
+
+    private final ConcurrentMap<Integer, PartitionFetcher> partitionFetchers = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isClaimCheckApplicable(PublishMsgWithId publishMsgWithId, int applicationReceiversCount) {
+        return enabled
+                && publishMsgWithId.getOffset() >= 0
+                && applicationReceiversCount >= minReceivers
+                && publishMsgWithId.getPublishMsgProto().getPayload().size() >= minPayloadSize;
+    }
+
+    @Override
+    public PublishMsgProto checkIn(PublishMsgProto receiverPublishMsg, PublishMsgWithId publishMsgWithId, TbQueueMsgHeaders headers) {
+        PayloadRef payloadRef = new PayloadRef(publishMsgWithId.getPartition(), publishMsgWithId.getOffset());
+        cachePayload(payloadRef, publishMsgWithId.getPublishMsgProto().getPayload());
+        headers.put(BrokerConstants.PAYLOAD_REF_HEADER, toBytes(payloadRef));
+        return receiverPublishMsg.toBuilder().clearPayload().build();
+    }
+
+    /**
+     * @throws ApplicationPayloadFetchException if some payloads still present in the queue were not fetched in time,
+     *                                          so the pack must be retried without committing it
+     */
+    @Override
+    public List<TbProtoQueueMsg<PublishMsgProto>> resolvePayloads(List<TbProtoQueueMsg<PublishMsgProto>> msgs) {
+        Map<PayloadRef, ByteString> payloads = null;
+        Set<PayloadRef> missingPayloadRefs = null;
+        for (TbProtoQueueMsg<PublishMsgProto> msg : msgs) {
+            PayloadRef payloadRef = getPayloadRef(msg.getHeaders());
+            if (payloadRef == null) {
+                continue;
+            }
+            if (payloads == null) {
+                payloads = new HashMap<>();
+                missingPayloadRefs = new HashSet<>();
+            }
+            ByteString payload = getCachedPayload(payloadRef);
+            if (payload != null) {
+                payloads.put(payloadRef, payload);
+            } else {
+                missingPayloadRefs.add(payloadRef);
+            }
+        }
+        if (payloads == null) {
+            return msgs;
+        }
+        if (!missingPayloadRefs.isEmpty()) {
+            payloads.putAll(fetchPayloads(missingPayloadRefs));
+        }
+
+        List<TbProtoQueueMsg<PublishMsgProto>> result = new ArrayList<>(msgs.size());
+        for (TbProtoQueueMsg<PublishMsgProto> msg : msgs) {
+            PayloadRef payloadRef = getPayloadRef(msg.getHeaders());
+            if (payloadRef == null) {
+                result.add(msg);
+                continue;
+            }
+            ByteString payload = payloads.get(payloadRef);
+            if (payload == null) {
+                log.warn("[{}] Payload of the msg with offset {} was removed from the queue, skipping msg", payloadRef, msg.getOffset());
+                continue;
+            }
+            PublishMsgProto publishMsgProto = msg.getValue().toBuilder().setPayload(payload).build();
+            result.add(new TbProtoQueueMsg<>(msg.getKey(), publishMsgProto, msg.getHeaders(), msg.getPartition(), msg.getOffset()));
+        }
+        return result;
+    }
+
+    private Map<PayloadRef, ByteString> fetchPayloads(Set<PayloadRef> payloadRefs) {
+        Map<Integer, TreeSet<Long>> offsetsByPartition = new TreeMap<>();
+        for (PayloadRef payloadRef : payloadRefs) {
+            offsetsByPartition.computeIfAbsent(payloadRef.getPartition(), p -> new TreeSet<>()).add(payloadRef.getOffset());
+        }
+        Map<PayloadRef, ByteString> result = new HashMap<>(payloadRefs.size());
+        offsetsByPartition.forEach((partition, offsets) -> {
+            PartitionFetcher fetcher = partitionFetchers.computeIfAbsent(partition, PartitionFetcher::new);
+            synchronized (fetcher) {
+                fetchPartitionPayloads(fetcher, offsets, result);
+            }
+        });
+        return result;
+    }
+
+    private void fetchPartitionPayloads(PartitionFetcher fetcher, TreeSet<Long> offsets, Map<PayloadRef, ByteString> result) {
+        int partition = fetcher.getPartition();
+        TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> fetchConsumer = getFetchConsumer(fetcher);
+
+        // payloads below the log start offset are removed by the retention and can not be fetched anymore
+        long logStartOffset = queueAdmin.getBeginningOffset(fetchConsumer.getTopic(), partition);
+        offsets.headSet(logStartOffset).clear();
+        if (offsets.isEmpty()) {
+            return;
+        }
+        long lastOffset = offsets.last();
+        fetchConsumer.seek(partition, offsets.first());
+
+        long deadline = System.currentTimeMillis() + fetchTimeoutMs;
+        while (!offsets.isEmpty() && System.currentTimeMillis() < deadline) {
+            List<TbProtoQueueMsg<PublishMsgProto>> records = fetchConsumer.poll(FETCH_POLL_DURATION_MS);
+            for (TbProtoQueueMsg<PublishMsgProto> record : records) {
+                if (offsets.remove(record.getOffset())) {
+                    PayloadRef payloadRef = new PayloadRef(partition, record.getOffset());
+                    ByteString payload = record.getValue().getPayload();
+                    result.put(payloadRef, payload);
+                    cachePayload(payloadRef, payload);
+                }
+            }
+            if (!records.isEmpty() && records.get(records.size() - 1).getOffset() >= lastOffset) {
+                // the offsets left are not present in the log, e.g. they belong to the control records
+                return;
+            }
+        }
+        if (!offsets.isEmpty()) {
+            throw new ApplicationPayloadFetchException("Failed to fetch payloads from partition " + partition +
+                    " for offsets " + offsets + " in " + fetchTimeoutMs + " ms");
+        }
+    }
+
+    private TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> getFetchConsumer(PartitionFetcher fetcher) {
+        if (fetcher.getConsumer() == null) {
+            TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer =
+                    publishMsgQueueFactory.createPayloadFetchConsumer(serviceInfoProvider.getServiceId() + "-" + fetcher.getPartition());
+            consumer.assignPartition(fetcher.getPartition());
+            fetcher.setConsumer(consumer);
+        }
+        return fetcher.getConsumer();
+    }
+
+    private ByteString getCachedPayload(PayloadRef payloadRef) {
+        synchronized (payloadCache) {
+            return payloadCache.get(payloadRef);
+        }
+    }
+
+    private void cachePayload(PayloadRef payloadRef, ByteString payload) {
+        if (payload.size() > cacheMaxSizeBytes) {
+            return;
+        }
+        synchronized (payloadCache) {
+            ByteString prev = payloadCache.put(payloadRef, payload);
+            payloadCacheSizeBytes += payload.size() - (prev != null ? prev.size() : 0);
+            Iterator<ByteString> iterator = payloadCache.values().iterator();
+            while (payloadCacheSizeBytes > cacheMaxSizeBytes && iterator.hasNext()) {
+                payloadCacheSizeBytes -= iterator.next().size();
+                iterator.remove();
+            }
+        }
+    }
+
+    private PayloadRef getPayloadRef(TbQueueMsgHeaders headers) {
+        byte[] bytes = headers.get(BrokerConstants.PAYLOAD_REF_HEADER);
+        if (bytes == null || bytes.length != PAYLOAD_REF_SIZE) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new PayloadRef(buffer.getInt(), buffer.getLong());
+    }
+
+    private byte[] toBytes(PayloadRef payloadRef) {
+        return ByteBuffer.allocate(PAYLOAD_REF_SIZE)
+                .putInt(payloadRef.getPartition())
+                .putLong(payloadRef.getOffset())
+                .array();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (PartitionFetcher fetcher : partitionFetchers.values()) {
+            synchronized (fetcher) {
+                if (fetcher.getConsumer() != null) {
+                    fetcher.getConsumer().unsubscribeAndClose();
+                    fetcher.setConsumer(null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetches of the different partitions do not block each other, the fetches of the same partition share the consumer.
+     */
+    @Data
+    private static class PartitionFetcher {
+        private final int partition;
+        private TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer;
+    }
+
+    @Data
+    private static class PayloadRef {
+        private final int partition;
+        private final long offset;
+    }
+}
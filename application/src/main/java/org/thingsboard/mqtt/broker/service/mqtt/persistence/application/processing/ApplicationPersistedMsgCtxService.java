@@ -15,10 +15,14 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 public interface ApplicationPersistedMsgCtxService {
     ApplicationPersistedMsgCtx loadPersistedMsgCtx(String clientId);
 
     void saveContext(String clientId, ApplicationPackProcessingCtx processingContext);
 
+    ListenableFuture<Void> saveContextAsync(String clientId, ApplicationPackProcessingCtx processingContext);
+
     void clearContext(String clientId);
 }
@@ -15,21 +15,23 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing;
 
-import com.google.common.collect.Streams;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.common.data.ApplicationMsgInfo;
 import org.thingsboard.mqtt.broker.common.data.ApplicationSessionCtx;
+import org.thingsboard.mqtt.broker.common.util.DonAsynchron;
 import org.thingsboard.mqtt.broker.dao.client.application.ApplicationSessionCtxService;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -56,9 +58,12 @@ public class ApplicationPersistedMsgCtxServiceImpl implements ApplicationPersist
         return sessionCtxService.findApplicationSessionCtx(clientId).orElse(null);
     }
 
-    private Map<Long, Integer> getPendingMsgsFromApplicationCtx(Collection<ApplicationMsgInfo> applicationSessionCtx) {
-        return applicationSessionCtx.stream()
-                .collect(Collectors.toMap(ApplicationMsgInfo::getOffset, ApplicationMsgInfo::getPacketId));
+    private Map<Long, Integer> getPendingMsgsFromApplicationCtx(Collection<ApplicationMsgInfo> msgInfos) {
+        Map<Long, Integer> pendingMsgs = new HashMap<>((int) (msgInfos.size() / 0.75f) + 1);
+        for (ApplicationMsgInfo msgInfo : msgInfos) {
+            pendingMsgs.put(msgInfo.getOffset(), msgInfo.getPacketId());
+        }
+        return pendingMsgs;
     }
 
     @Override
@@ -66,46 +71,70 @@ public class ApplicationPersistedMsgCtxServiceImpl implements ApplicationPersist
         if (log.isTraceEnabled()) {
             log.trace("[{}] Executing save application session context.", clientId);
         }
+        ApplicationSessionCtx sessionCtx = toApplicationSessionCtx(clientId, processingContext);
+        if (sessionCtx != null) {
+            sessionCtxService.saveApplicationSessionCtx(sessionCtx);
+        }
+    }
+
+    @Override
+    public ListenableFuture<Void> saveContextAsync(String clientId, ApplicationPackProcessingCtx processingContext) {
+        if (log.isTraceEnabled()) {
+            log.trace("[{}] Executing async save application session context.", clientId);
+        }
+        ApplicationSessionCtx sessionCtx = toApplicationSessionCtx(clientId, processingContext);
+        if (sessionCtx == null) {
+            return Futures.immediateFuture(null);
+        }
+        ListenableFuture<Void> future = sessionCtxService.saveApplicationSessionCtxAsync(sessionCtx);
+        DonAsynchron.withCallback(
+                future,
+                unused -> {
+                    if (log.isTraceEnabled()) {
+                        log.trace("[{}] Saved application session context.", clientId);
+                    }
+                },
+                throwable -> log.warn("[{}] Failed to save application session context.", clientId, throwable));
+        return future;
+    }
+
+    private ApplicationSessionCtx toApplicationSessionCtx(String clientId, ApplicationPackProcessingCtx processingContext) {
         if (processingContext == null) {
             if (log.isDebugEnabled()) {
                 log.debug("[{}] No pack processing context found.", clientId);
             }
-            return;
+            return null;
         }
-        Stream<PersistedPublishMsg> publishMsgStream = toPublishMsgStream(processingContext);
-        Collection<ApplicationMsgInfo> publishMsgInfos = toPublishMsgInfos(publishMsgStream);
-
-        Stream<PersistedPubRelMsg> pubRelMsgStream = toPubRelMsgStream(processingContext);
-        Collection<ApplicationMsgInfo> pubRelMsgInfos = toPubRelMsgInfos(pubRelMsgStream);
+        Collection<ApplicationMsgInfo> publishMsgInfos = toPublishMsgInfos(processingContext);
+        Collection<ApplicationMsgInfo> pubRelMsgInfos = toPubRelMsgInfos(processingContext);
 
         ApplicationSessionCtx sessionCtx = buildApplicationSessionCtx(clientId, publishMsgInfos, pubRelMsgInfos);
         if (log.isTraceEnabled()) {
             log.trace("[{}] Saving application session context - {}.", clientId, sessionCtx);
         }
-        sessionCtxService.saveApplicationSessionCtx(sessionCtx);
+        return sessionCtx;
     }
 
-    private Stream<PersistedPublishMsg> toPublishMsgStream(ApplicationPackProcessingCtx processingContext) {
-        return processingContext.getPublishPendingMsgMap().values().stream();
-    }
-
-    private Stream<PersistedPubRelMsg> toPubRelMsgStream(ApplicationPackProcessingCtx processingContext) {
-        return Streams.concat(
-                processingContext.getPubRelPendingMsgMap().values().stream(),
-                processingContext.getPubRelMsgCtx().getPubRelMessagesToDeliver().stream()
-        );
-    }
-
-    private Collection<ApplicationMsgInfo> toPublishMsgInfos(Stream<PersistedPublishMsg> publishMsgStream) {
-        return publishMsgStream
-                .map(publishMsg -> buildApplicationMsgInfo(publishMsg.getPacketId(), publishMsg.getPacketOffset()))
-                .collect(Collectors.toList());
+    private Collection<ApplicationMsgInfo> toPublishMsgInfos(ApplicationPackProcessingCtx processingContext) {
+        Collection<PersistedPublishMsg> publishMsgs = processingContext.getPublishPendingMsgMap().values();
+        List<ApplicationMsgInfo> msgInfos = new ArrayList<>(publishMsgs.size());
+        for (PersistedPublishMsg publishMsg : publishMsgs) {
+            msgInfos.add(buildApplicationMsgInfo(publishMsg.getPacketId(), publishMsg.getPacketOffset()));
+        }
+        return msgInfos;
     }
 
-    private List<ApplicationMsgInfo> toPubRelMsgInfos(Stream<PersistedPubRelMsg> pubRelMsgStream) {
-        return pubRelMsgStream
-                .map(pubRelMsg -> buildApplicationMsgInfo(pubRelMsg.getPacketId(), pubRelMsg.getPacketOffset()))
-                .collect(Collectors.toList());
+    private List<ApplicationMsgInfo> toPubRelMsgInfos(ApplicationPackProcessingCtx processingContext) {
+        Collection<PersistedPubRelMsg> pendingPubRelMsgs = processingContext.getPubRelPendingMsgMap().values();
+        Collection<PersistedPubRelMsg> pubRelMsgsToDeliver = processingContext.getPubRelMsgCtx().getPubRelMessagesToDeliver();
+        List<ApplicationMsgInfo> msgInfos = new ArrayList<>(pendingPubRelMsgs.size() + pubRelMsgsToDeliver.size());
+        for (PersistedPubRelMsg pubRelMsg : pendingPubRelMsgs) {
+            msgInfos.add(buildApplicationMsgInfo(pubRelMsg.getPacketId(), pubRelMsg.getPacketOffset()));
+        }
+        for (PersistedPubRelMsg pubRelMsg : pubRelMsgsToDeliver) {
+            msgInfos.add(buildApplicationMsgInfo(pubRelMsg.getPacketId(), pubRelMsg.getPacketOffset()));
+        }
+        return msgInfos;
     }
 
     private ApplicationMsgInfo buildApplicationMsgInfo(int packetId, long packetOffset) {
@@ -21,7 +21,7 @@ import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.cache.CacheConstants;
-import org.thingsboard.mqtt.broker.dao.client.device.DeviceSessionCtxService;
+import org.thingsboard.mqtt.broker.dao.client.device.DevicePacketIdAndSerialNumberService;
 import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgService;
 import org.thingsboard.mqtt.broker.service.subscription.shared.TopicSharedSubscription;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
@@ -34,7 +34,7 @@ import java.util.Set;
 public class DevicePersistenceProcessorImpl implements DevicePersistenceProcessor {
 
     private final DeviceMsgService deviceMsgService;
-    private final DeviceSessionCtxService deviceSessionCtxService;
+    private final DevicePacketIdAndSerialNumberService serialNumberService;
     private final DeviceActorManager deviceActorManager;
     private final CacheManager cacheManager;
 
@@ -43,7 +43,7 @@ public class DevicePersistenceProcessorImpl implements DevicePersistenceProcesso
         // TODO: think about marking messages as 'deleted' and clear them once a day
         // TODO: think about moving this code (could do async but delete only if msg.time < currentTime)
         deviceMsgService.removePersistedMessages(clientId);
-        deviceSessionCtxService.removeDeviceSessionContext(clientId);
+        serialNumberService.removeDeviceSessionContext(clientId);
         evictCache(clientId);
     }
 
@@ -25,5 +25,16 @@ import java.util.List;
 public interface DeviceMsgProcessor {
     List<DevicePublishMsg> persistMessages(List<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> messages, DeviceProcessorStats stats, String consumerId);
 
+    /*
+        Assigns packetIds and serial numbers without saving the messages, so they can be delivered while the pack is being saved.
+        Clients of the previous pack continue from its numbers since that pack may not be saved yet
+     */
+    DevicePersistencePack preparePack(List<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> messages, DevicePersistencePack previousPack);
+
+    /*
+        Returns false if persisting was interrupted before the ack strategy decided to commit the pack
+     */
+    boolean persistPack(DevicePersistencePack pack, DeviceProcessorStats stats, String consumerId);
+
     void deliverMessages(List<DevicePublishMsg> devicePublishMessages);
 }
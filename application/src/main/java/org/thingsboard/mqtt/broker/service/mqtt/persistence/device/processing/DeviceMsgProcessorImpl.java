@@ -20,8 +20,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.actors.client.service.session.CompactClientSessionInfo;
 import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
-import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
 import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
 import org.thingsboard.mqtt.broker.dao.DbConnectionChecker;
@@ -36,6 +36,8 @@ import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionCach
 import org.thingsboard.mqtt.broker.service.processing.downlink.DownLinkProxy;
 import org.thingsboard.mqtt.broker.service.stats.DeviceProcessorStats;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -58,6 +60,13 @@ public class DeviceMsgProcessorImpl implements DeviceMsgProcessor {
 
     @Override
     public List<DevicePublishMsg> persistMessages(List<TbProtoQueueMsg<PublishMsgProto>> messages, DeviceProcessorStats stats, String consumerId) {
+        DevicePersistencePack pack = preparePack(messages, null);
+        persistPack(pack, stats, consumerId);
+        return pack.getDevicePublishMessages();
+    }
+
+    @Override
+    public DevicePersistencePack preparePack(List<TbProtoQueueMsg<PublishMsgProto>> messages, DevicePersistencePack previousPack) {
         Set<String> clientIds = messages.stream().map(TbProtoQueueMsg::getKey).collect(Collectors.toSet());
         for (String clientId : clientIds) {
             clientLogger.logEvent(clientId, this.getClass(), "Start persisting DEVICE msg");
@@ -67,21 +76,27 @@ public class DeviceMsgProcessorImpl implements DeviceMsgProcessor {
 
         Map<String, PacketIdAndSerialNumber> lastPacketIdAndSerialNumbers = null;
         boolean isDbConnected = dbConnectionChecker.isDbConnected()
-                && (lastPacketIdAndSerialNumbers = tryGetLastPacketIdAndSerialNumber(clientIds)) != null;
+                && (lastPacketIdAndSerialNumbers = tryGetLastPacketIdAndSerialNumber(clientIds, previousPack)) != null;
         if (isDbConnected) {
-            persistDeviceMsgs(devicePublishMessages, lastPacketIdAndSerialNumbers, consumerId, stats);
+            setPacketIdAndSerialNumber(devicePublishMessages, lastPacketIdAndSerialNumbers);
         }
+        return new DevicePersistencePack(clientIds, devicePublishMessages, lastPacketIdAndSerialNumbers);
+    }
 
-        for (String clientId : clientIds) {
+    @Override
+    public boolean persistPack(DevicePersistencePack pack, DeviceProcessorStats stats, String consumerId) {
+        boolean committed = !pack.isPersistent()
+                || persistDeviceMsgs(pack.getDevicePublishMessages(), pack.getLastPacketIdAndSerialNumbers(), consumerId, stats);
+        for (String clientId : pack.getClientIds()) {
             clientLogger.logEvent(clientId, this.getClass(), "Finished persisting DEVICE msg");
         }
-        return devicePublishMessages;
+        return committed;
     }
 
     @Override
     public void deliverMessages(List<DevicePublishMsg> devicePublishMessages) {
         for (DevicePublishMsg devicePublishMsg : devicePublishMessages) {
-            ClientSessionInfo clientSessionInfo = clientSessionCache.getClientSessionInfo(devicePublishMsg.getClientId());
+            CompactClientSessionInfo clientSessionInfo = clientSessionCache.getCompactClientSessionInfo(devicePublishMsg.getClientId());
             if (clientSessionInfo == null) {
                 if (log.isDebugEnabled()) {
                     log.debug("[{}] Client session is not found for persisted messages.", devicePublishMsg.getClientId());
@@ -111,18 +126,16 @@ public class DeviceMsgProcessorImpl implements DeviceMsgProcessor {
         return !devicePublishMsg.getPacketId().equals(BrokerConstants.BLANK_PACKET_ID) && !devicePublishMsg.getSerialNumber().equals(BrokerConstants.BLANK_SERIAL_NUMBER);
     }
 
-    private void persistDeviceMsgs(List<DevicePublishMsg> devicePublishMessages,
-                                   Map<String, PacketIdAndSerialNumber> lastPacketIdAndSerialNumbers,
-                                   String consumerId, DeviceProcessorStats stats) {
-        setPacketIdAndSerialNumber(devicePublishMessages, lastPacketIdAndSerialNumbers);
-
+    private boolean persistDeviceMsgs(List<DevicePublishMsg> devicePublishMessages,
+                                      Map<String, PacketIdAndSerialNumber> lastPacketIdAndSerialNumbers,
+                                      String consumerId, DeviceProcessorStats stats) {
         DeviceAckStrategy ackStrategy = ackStrategyFactory.newInstance(consumerId);
         DevicePackProcessingContext ctx = new DevicePackProcessingContext(devicePublishMessages);
         while (!Thread.interrupted()) {
             try {
                 // TODO: think if we need transaction here
                 // TODO: think about case when client is 'clearing session' at this moment
-                serialNumberService.saveLastSerialNumbers(lastPacketIdAndSerialNumbers);
+                serialNumberService.reserveSerialNumbers(lastPacketIdAndSerialNumbers);
                 deviceMsgService.save(devicePublishMessages, ctx.detectMsgDuplication());
                 ctx.onSuccess();
             } catch (DuplicateKeyException e) {
@@ -137,9 +150,10 @@ public class DeviceMsgProcessorImpl implements DeviceMsgProcessor {
             stats.log(devicePublishMessages.size(), ctx.isSuccessful(), decision.isCommit());
 
             if (decision.isCommit()) {
-                break;
+                return true;
             }
         }
+        return false;
     }
 
     private void setPacketIdAndSerialNumber(List<DevicePublishMsg> devicePublishMessages,
@@ -154,6 +168,30 @@ public class DeviceMsgProcessorImpl implements DeviceMsgProcessor {
         }
     }
 
+    private Map<String, PacketIdAndSerialNumber> tryGetLastPacketIdAndSerialNumber(Set<String> clientIds, DevicePersistencePack previousPack) {
+        if (previousPack == null || !previousPack.isPersistent()) {
+            return tryGetLastPacketIdAndSerialNumber(clientIds);
+        }
+        Map<String, PacketIdAndSerialNumber> result = new HashMap<>();
+        Set<String> notPendingClientIds = new HashSet<>();
+        for (String clientId : clientIds) {
+            PacketIdAndSerialNumber pending = previousPack.getLastPacketIdAndSerialNumbers().get(clientId);
+            if (pending != null) {
+                result.put(clientId, PacketIdAndSerialNumber.newInstance(pending.getPacketId().get(), pending.getSerialNumber().get()));
+            } else {
+                notPendingClientIds.add(clientId);
+            }
+        }
+        if (!notPendingClientIds.isEmpty()) {
+            Map<String, PacketIdAndSerialNumber> fromService = tryGetLastPacketIdAndSerialNumber(notPendingClientIds);
+            if (fromService == null) {
+                return null;
+            }
+            result.putAll(fromService);
+        }
+        return result;
+    }
+
     private Map<String, PacketIdAndSerialNumber> tryGetLastPacketIdAndSerialNumber(Set<String> clientIds) {
         try {
             return serialNumberService.getLastPacketIdAndSerialNumber(clientIds);
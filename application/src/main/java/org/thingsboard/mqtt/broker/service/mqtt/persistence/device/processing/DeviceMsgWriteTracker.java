@@ -0,0 +1,32 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.device.processing;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
+
+import java.util.List;
+
+public interface DeviceMsgWriteTracker {
+
+    void trackPendingWrite(List<DevicePublishMsg> devicePublishMessages, ListenableFuture<Void> writeFuture);
+
+    /*
+        Returns the future of the DB write of the msg that was delivered before it was saved, null if there is no such write
+     */
+    ListenableFuture<Void> getPendingWrite(String clientId, int packetId);
+
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.device.processing;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Slf4j
+@Service
+public class DeviceMsgWriteTrackerImpl implements DeviceMsgWriteTracker {
+
+    private final ConcurrentMap<String, ConcurrentMap<Integer, ListenableFuture<Void>>> pendingWrites = new ConcurrentHashMap<>();
+
+    @Override
+    public void trackPendingWrite(List<DevicePublishMsg> devicePublishMessages, ListenableFuture<Void> writeFuture) {
+        for (DevicePublishMsg devicePublishMsg : devicePublishMessages) {
+            pendingWrites.computeIfAbsent(devicePublishMsg.getClientId(), clientId -> new ConcurrentHashMap<>())
+                    .put(devicePublishMsg.getPacketId(), writeFuture);
+        }
+        writeFuture.addListener(() -> untrack(devicePublishMessages, writeFuture), MoreExecutors.directExecutor());
+    }
+
+    @Override
+    public ListenableFuture<Void> getPendingWrite(String clientId, int packetId) {
+        ConcurrentMap<Integer, ListenableFuture<Void>> clientPendingWrites = pendingWrites.get(clientId);
+        return clientPendingWrites == null ? null : clientPendingWrites.get(packetId);
+    }
+
+    private void untrack(List<DevicePublishMsg> devicePublishMessages, ListenableFuture<Void> writeFuture) {
+        for (DevicePublishMsg devicePublishMsg : devicePublishMessages) {
+            pendingWrites.computeIfPresent(devicePublishMsg.getClientId(), (clientId, clientPendingWrites) -> {
+                clientPendingWrites.remove(devicePublishMsg.getPacketId(), writeFuture);
+                return clientPendingWrites.isEmpty() ? null : clientPendingWrites;
+            });
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Finished tracking write of {} device messages", devicePublishMessages.size());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.device.processing;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
+import org.thingsboard.mqtt.broker.dao.client.device.PacketIdAndSerialNumber;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    Consumed messages with already assigned packetIds and serial numbers that are not saved to the DB yet
+ */
+@Getter
+@RequiredArgsConstructor
+public class DevicePersistencePack {
+
+    private final Set<String> clientIds;
+    private final List<DevicePublishMsg> devicePublishMessages;
+    // null if DB is not available and messages are delivered without persistence
+    private final Map<String, PacketIdAndSerialNumber> lastPacketIdAndSerialNumbers;
+
+    public boolean isPersistent() {
+        return lastPacketIdAndSerialNumbers != null;
+    }
+}
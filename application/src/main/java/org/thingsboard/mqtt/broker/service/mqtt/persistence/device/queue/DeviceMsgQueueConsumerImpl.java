@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.persistence.device.queue;
 
+import com.google.common.util.concurrent.SettableFuture;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -24,16 +25,23 @@ import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
 import org.thingsboard.mqtt.broker.queue.TbQueueConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.queue.provider.DevicePersistenceMsgQueueFactory;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.processing.DeviceMsgProcessor;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.processing.DeviceMsgWriteTracker;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.processing.DevicePersistencePack;
 import org.thingsboard.mqtt.broker.service.stats.DeviceProcessorStats;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 
 @Slf4j
@@ -41,12 +49,13 @@ import java.util.concurrent.ExecutorService;
 @RequiredArgsConstructor
 public class DeviceMsgQueueConsumerImpl implements DeviceMsgQueueConsumer {
 
-    private final List<TbQueueConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>>> consumers = new ArrayList<>();
+    private final List<TbQueueControlledOffsetConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>>> consumers = new ArrayList<>();
 
     private final DevicePersistenceMsgQueueFactory devicePersistenceMsgQueueFactory;
     private final DeviceMsgProcessor deviceMsgProcessor;
     private final StatsManager statsManager;
     private final ServiceInfoProvider serviceInfoProvider;
+    private final DeviceMsgWriteTracker deviceMsgWriteTracker;
 
     @Value("${queue.device-persisted-msg.consumers-count}")
     private int consumersCount;
@@ -54,23 +63,33 @@ public class DeviceMsgQueueConsumerImpl implements DeviceMsgQueueConsumer {
     private long pollDuration;
     @Value("${queue.device-persisted-msg.threads-count}")
     private int threadsCount;
+    @Value("${queue.device-persisted-msg.pipelined-persistence:false}")
+    private boolean pipelinedPersistence;
 
     private volatile boolean stopped = false;
     private ExecutorService consumersExecutor;
+    private ExecutorService persistenceExecutor;
 
     @PostConstruct
     public void init() {
         this.consumersExecutor = ThingsBoardExecutors.initExecutorService(threadsCount, "device-persisted-msg-consumer");
+        if (pipelinedPersistence) {
+            this.persistenceExecutor = ThingsBoardExecutors.initExecutorService(consumersCount, "device-persisted-msg-writer");
+        }
     }
 
     @Override
     public void startConsuming() {
         for (int i = 0; i < consumersCount; i++) {
             String consumerId = serviceInfoProvider.getServiceId() + "-" + i;
-            TbQueueConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> consumer = devicePersistenceMsgQueueFactory.createConsumer(consumerId);
+            TbQueueControlledOffsetConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> consumer = devicePersistenceMsgQueueFactory.createConsumer(consumerId);
             consumers.add(consumer);
             consumer.subscribe();
-            launchConsumer(consumerId, consumer);
+            if (pipelinedPersistence) {
+                launchPipelinedConsumer(consumerId, consumer);
+            } else {
+                launchConsumer(consumerId, consumer);
+            }
         }
     }
 
@@ -109,6 +128,111 @@ public class DeviceMsgQueueConsumerImpl implements DeviceMsgQueueConsumer {
         });
     }
 
+    /*
+        Messages of the pack are delivered right after packetIds and serial numbers are assigned, while the previous pack is still being saved.
+        Only one pack per consumer is saved at a time and its offsets are committed only once it is saved.
+        If the save fails, the consumer is rewound to the start of the failed pack and the packs polled after it are dropped,
+        so they are consumed again and the messages already delivered from them may be delivered twice.
+        Acks for the messages that are not saved yet are applied after the save completes (see DeviceMsgWriteTracker)
+     */
+    private void launchPipelinedConsumer(String consumerId, TbQueueControlledOffsetConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> consumer) {
+        DeviceProcessorStats stats = statsManager.createDeviceProcessorStats(consumerId);
+        consumersExecutor.submit(() -> {
+            PendingPack pendingPack = null;
+            while (!stopped) {
+                try {
+                    List<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> msgs = consumer.poll(pollDuration);
+                    if (msgs.isEmpty()) {
+                        if (pendingPack != null && pendingPack.writeFuture.isDone()) {
+                            completePack(consumerId, consumer, pendingPack, null);
+                            pendingPack = null;
+                        }
+                        continue;
+                    }
+
+                    DevicePersistencePack pack = deviceMsgProcessor.preparePack(msgs, pendingPack == null ? null : pendingPack.pack);
+                    SettableFuture<Void> writeFuture = SettableFuture.create();
+                    if (pack.isPersistent()) {
+                        deviceMsgWriteTracker.trackPendingWrite(pack.getDevicePublishMessages(), writeFuture);
+                    }
+
+                    deviceMsgProcessor.deliverMessages(pack.getDevicePublishMessages());
+
+                    PendingPack nextPack = new PendingPack(pack, getFirstOffsets(msgs), getNextOffsets(msgs), writeFuture);
+                    if (pendingPack != null && !completePack(consumerId, consumer, pendingPack, nextPack)) {
+                        writeFuture.cancel(false);
+                        pendingPack = null;
+                        continue;
+                    }
+                    pendingPack = nextPack;
+                    persistenceExecutor.submit(() -> {
+                        try {
+                            if (deviceMsgProcessor.persistPack(pack, stats, consumerId)) {
+                                writeFuture.set(null);
+                            } else {
+                                writeFuture.cancel(false);
+                            }
+                        } catch (Throwable t) {
+                            writeFuture.setException(t);
+                        }
+                    });
+                } catch (Exception e) {
+                    if (!stopped) {
+                        log.error("[{}] Failed to process messages from queue.", consumerId, e);
+                        try {
+                            Thread.sleep(pollDuration);
+                        } catch (InterruptedException e2) {
+                            log.trace("[{}] Failed to wait until the server has capacity to handle new requests", consumerId, e2);
+                        }
+                    }
+                }
+            }
+            log.info("[{}] Device Persisted Msg Consumer stopped.", consumerId);
+        });
+    }
+
+    /*
+        Returns false if the pack was not saved. The consumer is then rewound to the first offsets of this pack
+        and of the next one (if it was already polled), so both packs are consumed again
+     */
+    private boolean completePack(String consumerId, TbQueueControlledOffsetConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> consumer,
+                                 PendingPack pendingPack, PendingPack nextPack) throws InterruptedException {
+        try {
+            pendingPack.writeFuture.get();
+        } catch (ExecutionException | CancellationException e) {
+            Map<Integer, Long> seekOffsets = new HashMap<>(pendingPack.firstOffsets);
+            if (nextPack != null) {
+                nextPack.firstOffsets.forEach((partition, offset) -> seekOffsets.merge(partition, offset, Math::min));
+            }
+            log.warn("[{}] Failed to persist messages pack, consuming it again from offsets {}.", consumerId, seekOffsets,
+                    e instanceof ExecutionException ? e.getCause() : e);
+            seekOffsets.forEach(consumer::seek);
+            return false;
+        }
+        try {
+            pendingPack.nextOffsets.forEach(consumer::commit);
+        } catch (Exception e) {
+            log.warn("[{}] Failed to commit persisted messages.", consumerId, e);
+        }
+        return true;
+    }
+
+    private Map<Integer, Long> getFirstOffsets(List<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> msgs) {
+        Map<Integer, Long> firstOffsets = new HashMap<>();
+        for (TbProtoQueueMsg<QueueProtos.PublishMsgProto> msg : msgs) {
+            firstOffsets.merge(msg.getPartition(), msg.getOffset(), Math::min);
+        }
+        return firstOffsets;
+    }
+
+    private Map<Integer, Long> getNextOffsets(List<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> msgs) {
+        Map<Integer, Long> nextOffsets = new HashMap<>();
+        for (TbProtoQueueMsg<QueueProtos.PublishMsgProto> msg : msgs) {
+            nextOffsets.merge(msg.getPartition(), msg.getOffset() + 1, Math::max);
+        }
+        return nextOffsets;
+    }
+
     @PreDestroy
     public void destroy() {
         stopped = true;
@@ -116,6 +240,17 @@ public class DeviceMsgQueueConsumerImpl implements DeviceMsgQueueConsumer {
         if (consumersExecutor != null) {
             consumersExecutor.shutdownNow();
         }
+        if (persistenceExecutor != null) {
+            persistenceExecutor.shutdownNow();
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class PendingPack {
+        private final DevicePersistencePack pack;
+        private final Map<Integer, Long> firstOffsets;
+        private final Map<Integer, Long> nextOffsets;
+        private final SettableFuture<Void> writeFuture;
     }
 
 }
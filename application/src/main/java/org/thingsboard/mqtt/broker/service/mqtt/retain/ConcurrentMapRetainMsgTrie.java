@@ -17,26 +17,19 @@ package org.thingsboard.mqtt.broker.service.mqtt.retain;
 
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
-import org.thingsboard.mqtt.broker.exception.RetainMsgTrieClearException;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 @Slf4j
 @Service
@@ -45,11 +38,6 @@ public class ConcurrentMapRetainMsgTrie<T> implements RetainMsgTrie<T> {
     private final AtomicInteger size;
     private final AtomicLong nodesCount;
     private final Node<T> root = new Node<>();
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
-
-    @Setter
-    @Value("${mqtt.retain-msg-trie.wait-for-clear-lock-ms}")
-    private int waitForClearLockMs;
 
     public ConcurrentMapRetainMsgTrie(StatsManager statsManager) {
         this.size = statsManager.createRetainMsgSizeCounter();
@@ -61,6 +49,9 @@ public class ConcurrentMapRetainMsgTrie<T> implements RetainMsgTrie<T> {
         private final AtomicReference<T> value = new AtomicReference<>();
         private final ConcurrentMap<String, Node<T>> children = new ConcurrentHashMap<>();
         private String key;
+        // guarded by the node monitor
+        @EqualsAndHashCode.Exclude
+        private boolean removed;
 
         public Node() {
         }
@@ -135,28 +126,45 @@ public class ConcurrentMapRetainMsgTrie<T> implements RetainMsgTrie<T> {
         if (topic == null || val == null) {
             throw new IllegalArgumentException("Topic or value cannot be null");
         }
-        lock.readLock().lock();
-        try {
-            put(root, topic, val, 0);
-        } finally {
-            lock.readLock().unlock();
+        while (!tryPut(topic, val)) {
+            log.trace("[{}] Node was removed concurrently, retrying put", topic);
         }
     }
 
-    private void put(Node<T> x, String topic, T val, int prevDelimiterIndex) {
-        if (prevDelimiterIndex >= topic.length()) {
+    /*
+        Nodes are modified only under their monitor and only if they are not removed yet,
+        so the value is never set to the branch that is being pruned concurrently
+     */
+    private boolean tryPut(String topic, T val) {
+        Node<T> x = root;
+        int prevDelimiterIndex = 0;
+        while (prevDelimiterIndex < topic.length()) {
+            String segment = getSegment(topic, prevDelimiterIndex);
+            Node<T> nextNode = x.children.get(segment);
+            if (nextNode == null) {
+                synchronized (x) {
+                    if (x.removed) {
+                        return false;
+                    }
+                    nextNode = x.children.computeIfAbsent(segment, s -> {
+                        nodesCount.incrementAndGet();
+                        return new Node<>(segment);
+                    });
+                }
+            }
+            x = nextNode;
+            prevDelimiterIndex += segment.length() + 1;
+        }
+        synchronized (x) {
+            if (x.removed) {
+                return false;
+            }
             T prevValue = x.value.getAndSet(val);
             if (prevValue == null) {
                 size.getAndIncrement();
             }
-        } else {
-            String segment = getSegment(topic, prevDelimiterIndex);
-            Node<T> nextNode = x.children.computeIfAbsent(segment, s -> {
-                nodesCount.incrementAndGet();
-                return new Node<>(segment);
-            });
-            put(nextNode, topic, val, prevDelimiterIndex + segment.length() + 1);
         }
+        return true;
     }
 
     @Override
@@ -165,22 +173,52 @@ public class ConcurrentMapRetainMsgTrie<T> implements RetainMsgTrie<T> {
         if (topic == null) {
             throw new IllegalArgumentException("Topic cannot be null");
         }
-        Node<T> x = getNode(root, topic, 0);
+        List<Node<T>> path = new ArrayList<>();
+        Node<T> x = getNodePath(topic, path);
         if (x != null) {
             T prevValue = x.value.getAndSet(null);
             if (prevValue != null) {
                 size.decrementAndGet();
+                removeEmptyNodes(path);
             }
         }
     }
 
-    private Node<T> getNode(Node<T> x, String topic, int prevDelimiterIndex) {
-        if (x == null) return null;
-        if (prevDelimiterIndex >= topic.length()) {
-            return x;
+    private Node<T> getNodePath(String topic, List<Node<T>> path) {
+        Node<T> x = root;
+        path.add(x);
+        int prevDelimiterIndex = 0;
+        while (prevDelimiterIndex < topic.length()) {
+            String segment = getSegment(topic, prevDelimiterIndex);
+            x = x.children.get(segment);
+            if (x == null) {
+                return null;
+            }
+            path.add(x);
+            prevDelimiterIndex += segment.length() + 1;
+        }
+        return x;
+    }
+
+    private void removeEmptyNodes(List<Node<T>> path) {
+        for (int i = path.size() - 1; i > 0; i--) {
+            if (!tryRemoveEmptyNode(path.get(i - 1), path.get(i))) {
+                return;
+            }
         }
-        String segment = getSegment(topic, prevDelimiterIndex);
-        return getNode(x.children.get(segment), topic, prevDelimiterIndex + segment.length() + 1);
+    }
+
+    private boolean tryRemoveEmptyNode(Node<T> parent, Node<T> node) {
+        synchronized (node) {
+            if (node.removed || node.value.get() != null || !node.children.isEmpty()) {
+                return false;
+            }
+            node.removed = true;
+        }
+        if (parent.children.remove(node.key, node)) {
+            nodesCount.decrementAndGet();
+        }
+        return true;
     }
 
     @Override
@@ -189,9 +227,8 @@ public class ConcurrentMapRetainMsgTrie<T> implements RetainMsgTrie<T> {
     }
 
     @Override
-    public void clearEmptyNodes() throws RetainMsgTrieClearException {
+    public void clearEmptyNodes() {
         log.trace("Executing clearEmptyNodes");
-        acquireClearTrieLock();
         long nodesBefore = nodesCount.get();
         long clearStartTime = System.currentTimeMillis();
         try {
@@ -206,37 +243,13 @@ public class ConcurrentMapRetainMsgTrie<T> implements RetainMsgTrie<T> {
             long nodesAfter = nodesCount.get();
             log.error("Failed on clearing empty nodes. Managed to clear {} nodes.",
                     nodesBefore - nodesAfter, e);
-        } finally {
-            lock.writeLock().unlock();
         }
     }
 
-    private boolean clearEmptyChildren(ConcurrentMapRetainMsgTrie.Node<T> node) {
-        boolean isNodeEmpty = node.value.get() == null;
-        for (Map.Entry<String, ConcurrentMapRetainMsgTrie.Node<T>> entry : node.children.entrySet()) {
-            ConcurrentMapRetainMsgTrie.Node<T> value = entry.getValue();
-            boolean isChildEmpty = clearEmptyChildren(value);
-            if (isChildEmpty) {
-                node.children.remove(entry.getKey());
-                nodesCount.decrementAndGet();
-            } else {
-                isNodeEmpty = false;
-            }
-        }
-
-        return isNodeEmpty;
-    }
-
-    private void acquireClearTrieLock() throws RetainMsgTrieClearException {
-        boolean successfullyAcquiredLock = false;
-        try {
-            successfullyAcquiredLock = lock.writeLock().tryLock(waitForClearLockMs, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            log.warn("Acquiring lock was interrupted.");
-        }
-        if (!successfullyAcquiredLock) {
-            throw new RetainMsgTrieClearException("Couldn't acquire lock for clearing trie. " +
-                    "There are a lot of clients sending retained messages right now.");
+    private void clearEmptyChildren(Node<T> node) {
+        for (Node<T> child : node.children.values()) {
+            clearEmptyChildren(child);
+            tryRemoveEmptyNode(node, child);
         }
     }
 
@@ -15,8 +15,6 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.retain;
 
-import org.thingsboard.mqtt.broker.exception.RetainMsgTrieClearException;
-
 import java.util.List;
 
 public interface RetainMsgTrie<T> {
@@ -29,5 +27,5 @@ public interface RetainMsgTrie<T> {
 
     int size();
 
-    void clearEmptyNodes() throws RetainMsgTrieClearException;
+    void clearEmptyNodes();
 }
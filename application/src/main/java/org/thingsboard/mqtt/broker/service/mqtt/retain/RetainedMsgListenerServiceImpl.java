@@ -27,6 +27,7 @@ import org.thingsboard.mqtt.broker.dto.RetainedMsgDto;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
 import org.thingsboard.mqtt.broker.queue.constants.QueueConstants;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+import org.thingsboard.mqtt.broker.util.ExpiryIndex;
 import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
 
 import java.util.ArrayList;
@@ -34,6 +35,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import static org.thingsboard.mqtt.broker.common.data.util.CallbackUtil.createCallback;
 
@@ -47,6 +49,9 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
     private final ServiceInfoProvider serviceInfoProvider;
     private final StatsManager statsManager;
 
+    // topics of the retained messages with message expiry interval ordered by the expiry time
+    private final ExpiryIndex<String> retainedMsgExpiryIndex = new ExpiryIndex<>();
+
     private ConcurrentMap<String, RetainedMsg> retainedMessagesMap;
 
     @Override
@@ -60,6 +65,7 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
                 log.trace("[{}] Restoring retained msg - {}.", topic, retainedMsg);
             }
             retainedMsgService.saveRetainedMsg(topic, retainedMsg);
+            updateExpiryIndex(topic, retainedMsg);
         });
     }
 
@@ -104,6 +110,7 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
         }
         retainedMsgService.saveRetainedMsg(topic, retainedMsg);
         retainedMessagesMap.put(topic, retainedMsg);
+        updateExpiryIndex(topic, retainedMsg);
     }
 
     @Override
@@ -135,6 +142,7 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
         }
         retainedMsgService.clearRetainedMsg(topic);
         retainedMessagesMap.remove(topic);
+        retainedMsgExpiryIndex.remove(topic);
     }
 
     @Override
@@ -193,14 +201,29 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
             return;
         }
         long currentTs = System.currentTimeMillis();
-        retainedMessagesMap.forEach((topic, retainedMsg) -> {
-            boolean retainedMsgExpired = MqttPropertiesUtil.isRetainedMsgExpired(retainedMsg, currentTs);
-            if (retainedMsgExpired) {
+        for (String topic : retainedMsgExpiryIndex.pollExpired(currentTs)) {
+            RetainedMsg retainedMsg = retainedMessagesMap.get(topic);
+            if (retainedMsg == null) {
+                continue;
+            }
+            if (MqttPropertiesUtil.isRetainedMsgExpired(retainedMsg, currentTs)) {
                 if (log.isDebugEnabled()) {
                     log.debug("[{}] Clearing retained message by scheduled expiry interval!", retainedMsg.getTopic());
                 }
                 clearRetainedMsgAndPersist(retainedMsg.getTopic());
+            } else {
+                updateExpiryIndex(topic, retainedMsg);
             }
-        });
+        }
+    }
+
+    private void updateExpiryIndex(String topic, RetainedMsg retainedMsg) {
+        MqttProperties.IntegerProperty property = MqttPropertiesUtil.getPubExpiryIntervalProperty(retainedMsg);
+        if (property != null && property.value() > 0) {
+            long expiryTs = retainedMsg.getCreatedTime() + TimeUnit.SECONDS.toMillis(property.value());
+            retainedMsgExpiryIndex.schedule(topic, expiryTs);
+        } else {
+            retainedMsgExpiryIndex.remove(topic);
+        }
     }
 }
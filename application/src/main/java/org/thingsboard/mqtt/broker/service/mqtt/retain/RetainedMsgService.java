@@ -15,8 +15,6 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.retain;
 
-import org.thingsboard.mqtt.broker.exception.RetainMsgTrieClearException;
-
 import java.util.List;
 
 public interface RetainedMsgService {
@@ -27,5 +25,5 @@ public interface RetainedMsgService {
 
     List<RetainedMsg> getRetainedMessages(String topicFilter);
 
-    void clearEmptyTopicNodes() throws RetainMsgTrieClearException;
+    void clearEmptyTopicNodes();
 }
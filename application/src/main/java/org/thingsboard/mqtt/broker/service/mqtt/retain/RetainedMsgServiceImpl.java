@@ -18,7 +18,6 @@ package org.thingsboard.mqtt.broker.service.mqtt.retain;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.thingsboard.mqtt.broker.exception.RetainMsgTrieClearException;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 import org.thingsboard.mqtt.broker.service.stats.timer.RetainedMsgTimerStats;
 
@@ -62,7 +61,7 @@ public class RetainedMsgServiceImpl implements RetainedMsgService {
     }
 
     @Override
-    public void clearEmptyTopicNodes() throws RetainMsgTrieClearException {
+    public void clearEmptyTopicNodes() {
         if (log.isTraceEnabled()) {
             log.trace("Executing clearEmptyTopicNodes");
         }
@@ -72,10 +71,6 @@ public class RetainedMsgServiceImpl implements RetainedMsgService {
     @Scheduled(cron = "${mqtt.retain-msg-trie.clear-nodes-cron}", zone = "${mqtt.retain-msg-trie.clear-nodes-zone}")
     void scheduleEmptyNodeClear() {
         log.info("Start clearing empty nodes in RetainMsgTrie");
-        try {
-            retainMsgTrie.clearEmptyNodes();
-        } catch (RetainMsgTrieClearException e) {
-            log.error("Failed to clear empty nodes.", e);
-        }
+        retainMsgTrie.clearEmptyNodes();
     }
 }
@@ -18,11 +18,13 @@ package org.thingsboard.mqtt.broker.service.mqtt.retransmission;
 import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.mqtt.MqttMessage;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
+import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
 
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.BiConsumer;
@@ -35,6 +37,7 @@ public class MqttPendingPublish {
     private final int packetId;
     private final ByteBuf payload;
     private final MqttQoS qos;
+    private final String topicName;
     private final int retransmissionInitDelay;
     private final int retransmissionPeriod;
 
@@ -45,11 +48,12 @@ public class MqttPendingPublish {
     private boolean sent = false;
 
     public MqttPendingPublish(ClientSessionCtx sessionCtx, int packetId, ByteBuf payload, MqttQoS qos,
-                              MqttPublishMessage message, int retransmissionInitDelay, int retransmissionPeriod) {
+                              MqttPublishMessage message, String topicName, int retransmissionInitDelay, int retransmissionPeriod) {
         this.sessionCtx = sessionCtx;
         this.packetId = packetId;
         this.payload = payload;
         this.qos = qos;
+        this.topicName = topicName;
         this.retransmissionInitDelay = retransmissionInitDelay;
         this.retransmissionPeriod = retransmissionPeriod;
 
@@ -61,11 +65,25 @@ public class MqttPendingPublish {
     }
 
     public void startPublishRetransmissionTimer(ScheduledExecutorService scheduler, BiConsumer<ClientSessionCtx, MqttMessage> sendPacket) {
+        MqttPublishVariableHeader variableHeader = getRetransmissionVariableHeader(this.publishRetransmissionHandler.getOriginalMessage());
         this.publishRetransmissionHandler.setHandler(((fixedHeader, originalMessage) ->
-                sendPacket.accept(sessionCtx, new MqttPublishMessage(fixedHeader, originalMessage.variableHeader(), this.payload.retain()))));
+                sendPacket.accept(sessionCtx, new MqttPublishMessage(fixedHeader, variableHeader, this.payload.retain()))));
         this.publishRetransmissionHandler.start(scheduler);
     }
 
+    /**
+     * The topic alias of the original message may be re-mapped to another topic before the message is retransmitted,
+     * so the message is resent with the full topic name and without the topic alias.
+     */
+    MqttPublishVariableHeader getRetransmissionVariableHeader(MqttPublishMessage originalMessage) {
+        MqttPublishVariableHeader variableHeader = originalMessage.variableHeader();
+        if (MqttPropertiesUtil.getTopicAliasProperty(variableHeader.properties()) == null) {
+            return variableHeader;
+        }
+        return new MqttPublishVariableHeader(topicName, variableHeader.packetId(),
+                MqttPropertiesUtil.getPropertiesWithoutTopicAlias(variableHeader.properties()));
+    }
+
     void onPubAckReceived() {
         this.publishRetransmissionHandler.stop();
     }
@@ -19,6 +19,7 @@ import io.netty.handler.codec.mqtt.MqttFixedHeader;
 import io.netty.handler.codec.mqtt.MqttMessage;
 import io.netty.handler.codec.mqtt.MqttMessageType;
 import io.netty.handler.codec.mqtt.MqttQoS;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -41,6 +42,7 @@ public class RetransmissionHandler<T extends MqttMessage> {
     private int timeout;
     @Setter
     private BiConsumer<MqttFixedHeader, T> handler;
+    @Getter
     @Setter
     private T originalMessage;
 
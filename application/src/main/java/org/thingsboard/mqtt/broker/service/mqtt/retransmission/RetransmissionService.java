@@ -21,9 +21,12 @@ import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
 public interface RetransmissionService {
 
-    void sendPublishWithoutFlush(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg);
+    /**
+     * @param topicName full topic name of the message, used on retransmission instead of the topic alias of the message
+     */
+    void sendPublishWithoutFlush(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg, String topicName);
 
-    void sendPublish(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg);
+    void sendPublish(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg, String topicName);
 
     void onPubAckReceived(ClientSessionCtx ctx, int messageId);
 
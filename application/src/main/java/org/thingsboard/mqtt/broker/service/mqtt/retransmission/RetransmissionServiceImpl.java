@@ -70,32 +70,32 @@ public class RetransmissionServiceImpl implements RetransmissionService {
     }
 
     @Override
-    public void sendPublishWithoutFlush(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg) {
+    public void sendPublishWithoutFlush(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg, String topicName) {
         if (isRetransmissionNotNeeded(sessionCtx)) {
             sessionCtx.getChannel().write(mqttPubMsg);
             return;
         }
-        sendPublishWithRetransmission(sessionCtx, mqttPubMsg);
+        sendPublishWithRetransmission(sessionCtx, mqttPubMsg, topicName);
     }
 
-    public void sendPublish(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg) {
+    public void sendPublish(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg, String topicName) {
         if (isRetransmissionNotNeeded(sessionCtx)) {
-            sessionCtx.getChannel().writeAndFlush(mqttPubMsg);
+            sessionCtx.writeAndFlush(mqttPubMsg);
             return;
         }
-        sendPublishWithRetransmission(sessionCtx, mqttPubMsg);
+        sendPublishWithRetransmission(sessionCtx, mqttPubMsg, topicName);
     }
 
-    private void sendPublishWithRetransmission(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg) {
+    private void sendPublishWithRetransmission(ClientSessionCtx sessionCtx, MqttPublishMessage mqttPubMsg, String topicName) {
         if (log.isTraceEnabled()) {
             log.trace("[{}][{}] Executing startPublishRetransmission", sessionCtx.getClientId(), mqttPubMsg);
         }
         ConcurrentMap<Integer, MqttPendingPublish> pendingPublishes = sessionCtx.getPendingPublishes();
 
-        MqttPendingPublish pendingPublish = newMqttPendingPublish(sessionCtx, mqttPubMsg);
+        MqttPendingPublish pendingPublish = newMqttPendingPublish(sessionCtx, mqttPubMsg, topicName);
         pendingPublishes.put(pendingPublish.getPacketId(), pendingPublish);
 
-        ChannelFuture channelFuture = sessionCtx.getChannel().writeAndFlush(mqttPubMsg);
+        ChannelFuture channelFuture = sessionCtx.writeAndFlush(mqttPubMsg);
         channelFuture.addListener(result -> {
             pendingPublish.setSent(true);
             if (result.cause() != null) {
@@ -117,13 +117,15 @@ public class RetransmissionServiceImpl implements RetransmissionService {
     }
 
     private MqttPendingPublish newMqttPendingPublish(ClientSessionCtx sessionCtx,
-                                                     MqttPublishMessage mqttPubMsg) {
+                                                     MqttPublishMessage mqttPubMsg,
+                                                     String topicName) {
         return new MqttPendingPublish(
                 sessionCtx,
                 mqttPubMsg.variableHeader().packetId(),
                 mqttPubMsg.payload().retain(),
                 mqttPubMsg.fixedHeader().qosLevel(),
                 mqttPubMsg,
+                topicName,
                 retransmissionInitDelay,
                 retransmissionPeriod);
     }
@@ -136,6 +138,7 @@ public class RetransmissionServiceImpl implements RetransmissionService {
                 null,
                 mqttPubRelMsg.fixedHeader().qosLevel(),
                 null,
+                null,
                 retransmissionInitDelay,
                 retransmissionPeriod);
     }
@@ -163,7 +166,7 @@ public class RetransmissionServiceImpl implements RetransmissionService {
             log.trace("[{}][{}] Executing onPubRecReceived", ctx.getClientId(), pubRelMsg);
         }
         if (isRetransmissionNotNeeded(ctx)) {
-            ctx.getChannel().writeAndFlush(pubRelMsg);
+            ctx.writeAndFlush(pubRelMsg);
             return;
         }
         sendPubRelWithRetransmission(ctx, pubRelMsg);
@@ -192,7 +195,7 @@ public class RetransmissionServiceImpl implements RetransmissionService {
         } else {
             pendingPublish.onPubAckReceived();
         }
-        ctx.getChannel().writeAndFlush(pubRelMsg);
+        ctx.writeAndFlush(pubRelMsg);
 
         pendingPublish.setPubRelMessage(pubRelMsg);
         pendingPublish.startPubRelRetransmissionTimer(this.scheduler, this::sendAndFlush);
@@ -116,7 +116,12 @@ public class DefaultLastWillService implements LastWillService {
     }
 
     void scheduleLastWill(MsgWithSessionInfo lastWillMsgWithSessionInfo, UUID sessionId, int willDelay) {
-        ScheduledFuture<?> futureTask = scheduler.schedule(() -> processLastWill(lastWillMsgWithSessionInfo, sessionId), willDelay, TimeUnit.SECONDS);
+        if (willDelay <= 0) {
+            // the immediate last wills of mass disconnects are not put into the delayed tasks queue nor tracked for cancelling
+            scheduler.execute(() -> processLastWill(lastWillMsgWithSessionInfo, sessionId));
+            return;
+        }
+        ScheduledFuture<?> futureTask = scheduler.schedule(() -> processDelayedLastWill(lastWillMsgWithSessionInfo, sessionId), willDelay, TimeUnit.SECONDS);
         delayedLastWillFuturesMap.put(getClientId(lastWillMsgWithSessionInfo), futureTask);
     }
 
@@ -146,6 +151,10 @@ public class DefaultLastWillService implements LastWillService {
             publishMsg = retainedMsgProcessor.process(publishMsg);
         }
         persistPublishMsg(lastWillMsgWithSessionInfo.getSessionInfo(), publishMsg, sessionId);
+    }
+
+    private void processDelayedLastWill(MsgWithSessionInfo lastWillMsgWithSessionInfo, UUID sessionId) {
+        processLastWill(lastWillMsgWithSessionInfo, sessionId);
         delayedLastWillFuturesMap.remove(getClientId(lastWillMsgWithSessionInfo));
     }
 
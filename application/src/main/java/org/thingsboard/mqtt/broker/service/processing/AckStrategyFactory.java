@@ -58,11 +58,11 @@ public class AckStrategyFactory {
             if (log.isTraceEnabled()) {
                 result.getFailedMap().forEach((packetId, msg) ->
                         log.trace("[{}] Failed message: id - {}, topic - {}.",
-                                consumerId, msg.getId(), msg.getPublishMsgProto().getTopicName())
+                                consumerId, msg.getId(), msg.getRoutingMsgProto().getTopicName())
                 );
                 result.getPendingMap().forEach((packetId, msg) ->
                         log.trace("[{}] Timeout message: id - {}, topic - {}.",
-                                consumerId, msg.getId(), msg.getPublishMsgProto().getTopicName())
+                                consumerId, msg.getId(), msg.getRoutingMsgProto().getTopicName())
                 );
             }
             return new ProcessingDecision(true, Collections.emptyMap());
@@ -99,11 +99,11 @@ public class AckStrategyFactory {
             if (log.isTraceEnabled()) {
                 failedMap.forEach((packetId, msg) ->
                         log.trace("[{}] Going to reprocess failed message: id - {}, topic - {}.",
-                                consumerId, msg.getId(), msg.getPublishMsgProto().getTopicName())
+                                consumerId, msg.getId(), msg.getRoutingMsgProto().getTopicName())
                 );
                 pendingMap.forEach((packetId, msg) ->
                         log.trace("[{}] Going to reprocess timed-out message: id - {}, topic - {}.",
-                                consumerId, msg.getId(), msg.getPublishMsgProto().getTopicName())
+                                consumerId, msg.getId(), msg.getRoutingMsgProto().getTopicName())
                 );
             }
             return new ProcessingDecision(false, toReprocess);
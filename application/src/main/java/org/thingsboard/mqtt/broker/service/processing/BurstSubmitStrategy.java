@@ -85,7 +85,7 @@ public class BurstSubmitStrategy implements SubmitStrategy {
     }
 
     private String getClientId(PublishMsgWithId msg) {
-        return msg.getPublishMsgProto().getClientId();
+        return msg.getRoutingMsgProto().getClientId();
     }
 
     private void processMessages(Consumer<PublishMsgWithId> msgConsumer, Collection<PublishMsgWithId> msgList) {
@@ -21,6 +21,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
+import org.thingsboard.mqtt.broker.actors.client.service.session.CompactClientSessionInfo;
 import org.thingsboard.mqtt.broker.actors.client.service.subscription.SubscriptionService;
 import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
 import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
@@ -33,6 +34,7 @@ import org.thingsboard.mqtt.broker.common.data.StringUtils;
 import org.thingsboard.mqtt.broker.common.stats.MessagesStats;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
 import org.thingsboard.mqtt.broker.queue.TbQueueCallback;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsgMetadata;
 import org.thingsboard.mqtt.broker.queue.common.DefaultTbQueueMsgHeaders;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
@@ -87,8 +89,10 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
     private final SharedSubscriptionCacheService sharedSubscriptionCacheService;
     private final TbMessageStatsReportClient tbMessageStatsReportClient;
     private final ServiceInfoProvider serviceInfoProvider;
+    private final PartitioningStrategyFactory partitioningStrategyFactory;
 
     private MessagesStats producerStats;
+    private PartitioningStrategy partitioningStrategy;
     private PublishMsgProcessingTimerStats publishMsgProcessingTimerStats;
 
     @Value("${mqtt.msg-subscriptions-parallel-processing:false}")
@@ -98,6 +102,7 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
     public void init() {
         this.producerStats = statsManager.createMsgDispatcherPublishStats();
         this.publishMsgProcessingTimerStats = statsManager.getPublishMsgProcessingTimerStats();
+        this.partitioningStrategy = partitioningStrategyFactory.newInstance();
     }
 
     @Override
@@ -105,24 +110,47 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
         PublishMsgProto publishMsgProto = ProtoConverter.convertToPublishMsgProto(sessionInfo, publishMsg);
         producerStats.incrementTotal();
         tbMessageStatsReportClient.reportStats(INCOMING_MSGS);
-        callback = statsManager.wrapTbQueueCallback(callback, producerStats);
+        callback = statsManager.wrapTbQueueCallback(withPartitionStats(callback), producerStats);
 
         DefaultTbQueueMsgHeaders headers = createHeaders(publishMsg);
-        TbProtoQueueMsg<PublishMsgProto> msgProto = new TbProtoQueueMsg<>(publishMsgProto.getTopicName(), publishMsgProto, headers);
+        TbProtoQueueMsg<PublishMsgProto> msgProto = new TbProtoQueueMsg<>(partitioningStrategy.getKey(publishMsgProto), publishMsgProto, headers);
         publishMsgQueuePublisher.sendMsg(msgProto, callback);
     }
 
+    private TbQueueCallback withPartitionStats(TbQueueCallback callback) {
+        return new TbQueueCallback() {
+            @Override
+            public void onSuccess(TbQueueMsgMetadata metadata) {
+                if (metadata != null && metadata.getMetadata() != null) {
+                    MessagesStats partitionStats = statsManager.getMsgDispatcherPartitionStats(metadata.getMetadata().partition());
+                    partitionStats.incrementTotal();
+                    partitionStats.incrementSuccessful();
+                }
+                if (callback != null) {
+                    callback.onSuccess(metadata);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (callback != null) {
+                    callback.onFailure(t);
+                }
+            }
+        };
+    }
+
     @Override
     public void processPublishMsg(PublishMsgWithId publishMsgWithId, PublishMsgCallback callback) {
-        PublishMsgProto publishMsgProto = publishMsgWithId.getPublishMsgProto();
-        String senderClientId = ProtoConverter.getClientId(publishMsgProto);
+        PublishMsgProto routingMsgProto = publishMsgWithId.getRoutingMsgProto();
+        String senderClientId = ProtoConverter.getClientId(routingMsgProto);
 
         clientLogger.logEvent(senderClientId, this.getClass(), "Start msg processing");
 
-        MsgSubscriptions msgSubscriptions = getAllSubscriptionsForPubMsg(publishMsgProto, senderClientId);
+        MsgSubscriptions msgSubscriptions = getAllSubscriptionsForPubMsg(routingMsgProto, senderClientId);
         if (msgSubscriptions == null) {
             if (log.isDebugEnabled()) {
-                log.debug("[{}] No subscriptions found for publish message!", publishMsgProto.getTopicName());
+                log.debug("[{}] No subscriptions found for publish message!", routingMsgProto.getTopicName());
             }
             tbMessageStatsReportClient.reportStats(DROPPED_MSGS);
             callback.onSuccess();
@@ -131,6 +159,9 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
 
         clientLogger.logEvent(senderClientId, this.getClass(), "Found msg subscribers");
 
+        // payload and properties are decoded only when the msg has subscribers to be delivered to
+        PublishMsgProto publishMsgProto = publishMsgWithId.getPublishMsgProto();
+
         PersistentMsgSubscriptions persistentMsgSubscriptions = processBasicAndCollectPersistentSubscriptions(msgSubscriptions, publishMsgProto);
 
         if (persistentMsgSubscriptions.isNotEmpty()) {
@@ -209,7 +240,7 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
     private void processSubscription(Subscription subscription, PublishMsgProto publishMsgProto,
                                      List<Subscription> applicationSubscriptions, List<Subscription> deviceSubscriptions) {
         if (isPersistentBySubInfo(subscription)) {
-            if (ClientType.APPLICATION == subscription.getClientSessionInfo().getType()) {
+            if (ClientType.APPLICATION == subscription.getClientType()) {
                 applicationSubscriptions.add(subscription);
             } else {
                 deviceSubscriptions.add(subscription);
@@ -282,7 +313,10 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
         if (sharedSubscriptions == null || CollectionUtils.isEmpty(sharedSubscriptions.getDeviceSubscriptions())) {
             return null;
         }
-        List<SharedSubscription> sharedSubscriptionList = toSharedSubscriptionList(sharedSubscriptions.getDeviceSubscriptions());
+        List<SharedSubscription> sharedSubscriptionList = sharedSubscriptions.getDeviceSharedSubscriptions();
+        if (sharedSubscriptionList == null) {
+            sharedSubscriptionList = toSharedSubscriptionList(sharedSubscriptions.getDeviceSubscriptions());
+        }
         return collectOneSubscriptionFromEveryDeviceSharedSubscription(sharedSubscriptionList, qos);
     }
 
@@ -335,7 +369,7 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
         }
         return subscriptions
                 .stream()
-                .filter(subscription -> subscription.getClientSessionInfo().isConnected())
+                .filter(Subscription::isConnected)
                 .findAny()
                 .orElse(null);
     }
@@ -395,8 +429,8 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
 
     private Subscription convertToSubscription(ValueWithTopicFilter<ClientSubscription> clientSubscription) {
         String clientId = clientSubscription.getValue().getClientId();
-        ClientSessionInfo clientSessionInfo = clientSessionCache.getClientSessionInfo(clientId);
-        if (clientSessionInfo == null) {
+        CompactClientSessionInfo compactClientSessionInfo = clientSessionCache.getCompactClientSessionInfo(clientId);
+        if (compactClientSessionInfo == null) {
             if (log.isDebugEnabled()) {
                 log.debug("[{}] Client session not found for existent client subscription.", clientId);
             }
@@ -405,7 +439,8 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
         return new Subscription(
                 clientSubscription.getTopicFilter(),
                 clientSubscription.getValue().getQosValue(),
-                clientSessionInfo,
+                clientId,
+                compactClientSessionInfo,
                 clientSubscription.getValue().getShareName(),
                 clientSubscription.getValue().getOptions());
     }
@@ -426,7 +461,7 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
     }
 
     private boolean isPersistentBySubInfo(Subscription subscription) {
-        return subscription.getClientSessionInfo().isPersistent() && subscription.getQos() != MqttQoS.AT_MOST_ONCE.value();
+        return subscription.isPersistent() && subscription.getQos() != MqttQoS.AT_MOST_ONCE.value();
     }
 
     private void deliver(PublishMsgProto publishMsgProto, Subscription subscription) {
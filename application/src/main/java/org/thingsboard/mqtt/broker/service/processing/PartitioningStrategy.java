@@ -0,0 +1,28 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.processing;
+
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+
+public interface PartitioningStrategy {
+
+    /**
+     * @return key of the record in 'tbmq.msg.all' topic, records with the same key are put into the same partition.
+     * Null key lets the producer pick the partition
+     */
+    String getKey(PublishMsgProto publishMsgProto);
+
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.processing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PartitioningStrategyFactory {
+
+    private final PartitioningStrategyConfiguration partitioningStrategyConfiguration;
+
+    public PartitioningStrategy newInstance() {
+        switch (partitioningStrategyConfiguration.getType()) {
+            case TOPIC:
+                return PublishMsgProto::getTopicName;
+            case CLIENT:
+                return ProtoConverter::getClientId;
+            case STICKY:
+                return publishMsgProto -> null;
+            case HOT_TOPIC_SPLIT:
+                return new HotTopicSplitStrategy(partitioningStrategyConfiguration.getHotTopicMsgsThreshold(),
+                        partitioningStrategyConfiguration.getHotTopicDetectionPeriodMs(),
+                        partitioningStrategyConfiguration.getHotTopicSplitFactor());
+            default:
+                throw new RuntimeException("PartitioningStrategy with type " + partitioningStrategyConfiguration.getType() + " is not supported!");
+        }
+    }
+
+    /**
+     * Keys the records by topic while the topic is cold. Records of the topics published more than the threshold per
+     * detection period are spread over the split factor keys in round-robin, so the order of such topic messages
+     * is not preserved across the keys. Rates are counted in hashed buckets, collisions only overestimate the rate.
+     */
+    static class HotTopicSplitStrategy implements PartitioningStrategy {
+
+        static final int BUCKETS_COUNT = 4096;
+        // '#' is not allowed in the topic names of PUBLISH messages, so the split keys never match a real topic
+        static final String SPLIT_KEY_SEPARATOR = "#";
+
+        private final int msgsThreshold;
+        private final long detectionPeriodMs;
+        private final int splitFactor;
+        private final AtomicInteger splitSequence = new AtomicInteger();
+
+        private volatile AtomicIntegerArray currentPeriodCounts = new AtomicIntegerArray(BUCKETS_COUNT);
+        private volatile AtomicIntegerArray previousPeriodCounts = new AtomicIntegerArray(BUCKETS_COUNT);
+        private volatile long currentPeriodStartTs = System.currentTimeMillis();
+
+        HotTopicSplitStrategy(int msgsThreshold, long detectionPeriodMs, int splitFactor) {
+            this.msgsThreshold = msgsThreshold;
+            this.detectionPeriodMs = detectionPeriodMs;
+            this.splitFactor = splitFactor;
+        }
+
+        @Override
+        public String getKey(PublishMsgProto publishMsgProto) {
+            String topic = publishMsgProto.getTopicName();
+            if (splitFactor <= 1 || !isHot(topic, System.currentTimeMillis())) {
+                return topic;
+            }
+            return topic + SPLIT_KEY_SEPARATOR + Math.floorMod(splitSequence.getAndIncrement(), splitFactor);
+        }
+
+        boolean isHot(String topic, long ts) {
+            maybeRollPeriod(ts);
+            int bucket = Math.floorMod(topic.hashCode(), BUCKETS_COUNT);
+            int count = currentPeriodCounts.incrementAndGet(bucket);
+            return count > msgsThreshold || previousPeriodCounts.get(bucket) > msgsThreshold;
+        }
+
+        private void maybeRollPeriod(long ts) {
+            if (ts - currentPeriodStartTs < detectionPeriodMs) {
+                return;
+            }
+            synchronized (this) {
+                if (ts - currentPeriodStartTs < detectionPeriodMs) {
+                    return;
+                }
+                // counts older than one period are no longer relevant
+                previousPeriodCounts = ts - currentPeriodStartTs < 2 * detectionPeriodMs ?
+                        currentPeriodCounts : new AtomicIntegerArray(BUCKETS_COUNT);
+                currentPeriodCounts = new AtomicIntegerArray(BUCKETS_COUNT);
+                currentPeriodStartTs = ts;
+            }
+        }
+    }
+}
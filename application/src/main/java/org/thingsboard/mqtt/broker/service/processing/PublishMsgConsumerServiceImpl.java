@@ -153,7 +153,7 @@ public class PublishMsgConsumerServiceImpl implements PublishMsgConsumerService
         int i = 0;
         for (var msg : msgs) {
             UUID id = new UUID(packId, i++);
-            publishMsgPendingMap.put(id, new PublishMsgWithId(id, msg.getValue(), msg.getHeaders()));
+            publishMsgPendingMap.put(id, new PublishMsgWithId(id, msg));
         }
         return publishMsgPendingMap;
     }
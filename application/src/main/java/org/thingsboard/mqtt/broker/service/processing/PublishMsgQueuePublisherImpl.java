@@ -17,7 +17,9 @@ package org.thingsboard.mqtt.broker.service.processing;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
 import org.thingsboard.mqtt.broker.queue.TbQueueCallback;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
@@ -26,6 +28,9 @@ import org.thingsboard.mqtt.broker.queue.publish.TbPublishServiceImpl;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
 @Service
@@ -36,6 +41,15 @@ public class PublishMsgQueuePublisherImpl implements PublishMsgQueuePublisher {
 
     private TbPublishServiceImpl<QueueProtos.PublishMsgProto> publisher;
 
+    @Value("${actors.client.event-loop-affinity:false}")
+    private boolean eventLoopAffinity;
+    @Value("${mqtt.handler.publish_msg_sender_threads:0}")
+    private int senderThreadsCount;
+
+    // PUBLISH msgs are processed on the channel event loops when the event loop affinity is enabled,
+    // so the producer send that may block for up to max.block.ms is done by the sender threads
+    private ExecutorService[] senders;
+
     @PostConstruct
     public void init() {
         this.publisher = TbPublishServiceImpl.<QueueProtos.PublishMsgProto>builder()
@@ -43,15 +57,37 @@ public class PublishMsgQueuePublisherImpl implements PublishMsgQueuePublisher {
                 .producer(publishMsgQueueFactory.createProducer())
                 .build();
         this.publisher.init();
+        if (eventLoopAffinity) {
+            int sendersCount = senderThreadsCount > 0 ? senderThreadsCount : Math.max(1, Runtime.getRuntime().availableProcessors());
+            this.senders = new ExecutorService[sendersCount];
+            for (int i = 0; i < sendersCount; i++) {
+                this.senders[i] = ThingsBoardExecutors.initExecutorService(1, "publish-msg-sender-" + i);
+            }
+        }
     }
 
     @Override
     public void sendMsg(TbProtoQueueMsg<QueueProtos.PublishMsgProto> msgProto, TbQueueCallback callback) {
-        publisher.send(msgProto, callback);
+        if (senders == null) {
+            publisher.send(msgProto, callback);
+            return;
+        }
+        // msgs with the same key are sent by the same single-threaded sender, so their order in the partition is kept
+        ExecutorService sender = senders[Math.floorMod(Objects.hashCode(msgProto.getKey()), senders.length)];
+        try {
+            sender.execute(() -> publisher.send(msgProto, callback));
+        } catch (RejectedExecutionException e) {
+            callback.onFailure(e);
+        }
     }
 
     @PreDestroy
     public void destroy() {
+        if (senders != null) {
+            for (ExecutorService sender : senders) {
+                sender.shutdownNow();
+            }
+        }
         publisher.destroy();
     }
 }
@@ -18,6 +18,8 @@ package org.thingsboard.mqtt.broker.service.processing;
 import lombok.Data;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
 import org.thingsboard.mqtt.broker.queue.TbQueueMsgHeaders;
+import org.thingsboard.mqtt.broker.queue.common.TbLazyPublishQueueMsg;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 
 import java.util.UUID;
 
@@ -25,7 +27,41 @@ import java.util.UUID;
 public class PublishMsgWithId {
 
     private final UUID id;
-    private final QueueProtos.PublishMsgProto publishMsgProto;
-    private final TbQueueMsgHeaders headers;
+    private final TbProtoQueueMsg<QueueProtos.PublishMsgProto> queueMsg;
+
+    public PublishMsgWithId(UUID id, TbProtoQueueMsg<QueueProtos.PublishMsgProto> queueMsg) {
+        this.id = id;
+        this.queueMsg = queueMsg;
+    }
+
+    public PublishMsgWithId(UUID id, QueueProtos.PublishMsgProto publishMsgProto, TbQueueMsgHeaders headers) {
+        this(id, new TbProtoQueueMsg<>(null, publishMsgProto, headers));
+    }
+
+    public QueueProtos.PublishMsgProto getPublishMsgProto() {
+        return queueMsg.getValue();
+    }
+
+    /**
+     * @return the msg with at least clientId, topicName, qos and retain fields set, that does not require the full msg decoding
+     */
+    public QueueProtos.PublishMsgProto getRoutingMsgProto() {
+        if (queueMsg instanceof TbLazyPublishQueueMsg lazyQueueMsg) {
+            return lazyQueueMsg.getRoutingValue();
+        }
+        return queueMsg.getValue();
+    }
+
+    public TbQueueMsgHeaders getHeaders() {
+        return queueMsg.getHeaders();
+    }
+
+    public int getPartition() {
+        return queueMsg.getPartition();
+    }
+
+    public long getOffset() {
+        return queueMsg.getOffset();
+    }
 
 }
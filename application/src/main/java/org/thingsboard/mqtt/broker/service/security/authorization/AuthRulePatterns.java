@@ -15,22 +15,85 @@
  */
 package org.thingsboard.mqtt.broker.service.security.authorization;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.ToString;
 
 import java.util.List;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
 
-@AllArgsConstructor
 @Getter
-@ToString
+@ToString(exclude = {"pubPattern", "subPattern"})
 public class AuthRulePatterns {
 
+    private static final Pattern NOT_MERGEABLE_CONSTRUCTS = Pattern.compile("\\\\[1-9]|\\\\k<|\\\\Q|\\(\\?<[a-zA-Z]|\\(\\?[a-zA-Z]*x");
+
     private final List<Pattern> pubPatterns;
     private final List<Pattern> subPatterns;
 
+    /**
+     * Single alternation of all pub/sub patterns, so the topic is matched in one pass.
+     * Null when there are no patterns or they can not be safely merged (then the lists are used).
+     */
+    private final Pattern pubPattern;
+    private final Pattern subPattern;
+
+    public AuthRulePatterns(List<Pattern> pubPatterns, List<Pattern> subPatterns) {
+        this.pubPatterns = pubPatterns;
+        this.subPatterns = subPatterns;
+        this.pubPattern = mergePatterns(pubPatterns);
+        this.subPattern = pubPatterns == subPatterns ? pubPattern : mergePatterns(subPatterns);
+    }
+
     public static AuthRulePatterns newInstance(List<Pattern> patterns) {
         return new AuthRulePatterns(patterns, patterns);
     }
+
+    public boolean isPubAuthorized(String topic) {
+        return matches(topic, pubPattern, pubPatterns);
+    }
+
+    public boolean isSubAuthorized(String topic) {
+        return matches(topic, subPattern, subPatterns);
+    }
+
+    private static boolean matches(String topic, Pattern merged, List<Pattern> patterns) {
+        if (merged != null) {
+            return merged.matcher(topic).matches();
+        }
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(topic).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Pattern mergePatterns(List<Pattern> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return null;
+        }
+        if (patterns.size() == 1) {
+            return patterns.get(0);
+        }
+        for (Pattern pattern : patterns) {
+            if (!isMergeable(pattern)) {
+                return null;
+            }
+        }
+        String merged = patterns.stream()
+                .map(pattern -> "(?:" + pattern.pattern() + ")")
+                .collect(Collectors.joining("|"));
+        try {
+            return Pattern.compile(merged);
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    // back-references, named groups (duplicated names fail the merged pattern), quoting and comments mode would change their meaning inside the alternation
+    private static boolean isMergeable(Pattern pattern) {
+        return pattern.flags() == 0 && !NOT_MERGEABLE_CONSTRUCTS.matcher(pattern.pattern()).find();
+    }
 }
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.stats;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import org.thingsboard.mqtt.broker.common.stats.MessagesStats;
 import org.thingsboard.mqtt.broker.queue.TbQueueCallback;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationSharedSubscriptionJob;
@@ -34,6 +35,8 @@ public interface StatsManager {
 
     MessagesStats createMsgDispatcherPublishStats();
 
+    MessagesStats getMsgDispatcherPartitionStats(int partition);
+
     ClientSessionEventConsumerStats createClientSessionEventConsumerStats(String consumerId);
 
     PublishMsgConsumerStats createPublishMsgConsumerStats(String consumerId);
@@ -62,6 +65,16 @@ public interface StatsManager {
 
     AtomicLong createRetainMsgTrieNodesCounter();
 
+    AtomicLong createTopicAliasBytesSavedCounter();
+
+    AtomicLong createOutboundQueuedMsgsCounter();
+
+    AtomicLong createSlowConsumersCounter();
+
+    AtomicLong createInboundPendingBytesCounter();
+
+    AtomicLong createPausedClientsCounter();
+
     void registerLastWillStats(Map<?, ?> lastWillMsgsMap);
 
     void registerActiveSessionsStats(Map<?, ?> sessionsMap);
@@ -72,6 +85,8 @@ public interface StatsManager {
 
     void registerRetainedMsgStats(Map<?, ?> retainedMessagesMap);
 
+    void registerSubscriptionMatchCacheStats(Cache<?, ?> matchCache);
+
     void registerActiveApplicationProcessorsStats(Map<?, ?> processingFuturesMap);
 
     void registerActiveSharedApplicationProcessorsStats(Map<String, List<ApplicationSharedSubscriptionJob>> processingFuturesMap);
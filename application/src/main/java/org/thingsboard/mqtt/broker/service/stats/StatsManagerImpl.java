@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.stats;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -72,6 +73,7 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
     private final Map<String, List<String>> sharedSubscriptionCompoundClientIds = new ConcurrentHashMap<>();
     private final Map<String, ResettableTimer> managedQueueProducers = new ConcurrentHashMap<>();
     private final Map<String, ResettableTimer> managedQueueConsumers = new ConcurrentHashMap<>();
+    private final Map<Integer, MessagesStats> msgDispatcherPartitionStats = new ConcurrentHashMap<>();
     private final StatsFactory statsFactory;
 
     private ClientSubscriptionConsumerStats managedClientSubscriptionConsumerStats;
@@ -106,6 +108,19 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         return stats;
     }
 
+    @Override
+    public MessagesStats getMsgDispatcherPartitionStats(int partition) {
+        return msgDispatcherPartitionStats.computeIfAbsent(partition, p -> {
+            if (log.isTraceEnabled()) {
+                log.trace("Creating MsgDispatcherPartitionStats, partition - {}.", p);
+            }
+            MessagesStats stats = statsFactory.createMessagesStats(StatsType.MSG_DISPATCHER_PARTITION.getPrintName(),
+                    "partition", String.valueOf(p));
+            managedStats.add(stats);
+            return stats;
+        });
+    }
+
     @Override
     public ClientSessionEventConsumerStats createClientSessionEventConsumerStats(String consumerId) {
         if (log.isTraceEnabled()) {
@@ -297,6 +312,17 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         gauges.add(new Gauge(StatsType.RETAINED_MESSAGES.getPrintName(), retainedMessagesMap::size));
     }
 
+    @Override
+    public void registerSubscriptionMatchCacheStats(Cache<?, ?> matchCache) {
+        if (log.isTraceEnabled()) {
+            log.trace("Registering SubscriptionMatchCacheStats.");
+        }
+        statsFactory.createGauge(StatsType.SUBSCRIPTION_MATCH_CACHE_HIT_RATE.getPrintName(), matchCache, cache -> cache.stats().hitRate());
+        statsFactory.createGauge(StatsType.SUBSCRIPTION_MATCH_CACHE_SIZE.getPrintName(), matchCache, Cache::estimatedSize);
+        gauges.add(new Gauge(StatsType.SUBSCRIPTION_MATCH_CACHE_HIT_RATE.getPrintName(), () -> matchCache.stats().hitRate()));
+        gauges.add(new Gauge(StatsType.SUBSCRIPTION_MATCH_CACHE_SIZE.getPrintName(), matchCache::estimatedSize));
+    }
+
     @Override
     public void registerActiveApplicationProcessorsStats(Map<?, ?> processingFuturesMap) {
         if (log.isTraceEnabled()) {
@@ -348,6 +374,56 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         return sizeGauge;
     }
 
+    @Override
+    public AtomicLong createTopicAliasBytesSavedCounter() {
+        if (log.isTraceEnabled()) {
+            log.trace("Creating TopicAliasBytesSavedCounter.");
+        }
+        AtomicLong bytesSavedGauge = statsFactory.createGauge(StatsType.TOPIC_ALIAS_BYTES_SAVED.getPrintName(), new AtomicLong(0));
+        gauges.add(new Gauge(StatsType.TOPIC_ALIAS_BYTES_SAVED.getPrintName(), bytesSavedGauge::get));
+        return bytesSavedGauge;
+    }
+
+    @Override
+    public AtomicLong createOutboundQueuedMsgsCounter() {
+        if (log.isTraceEnabled()) {
+            log.trace("Creating OutboundQueuedMsgsCounter.");
+        }
+        AtomicLong sizeGauge = statsFactory.createGauge(StatsType.OUTBOUND_QUEUED_MSGS.getPrintName(), new AtomicLong(0));
+        gauges.add(new Gauge(StatsType.OUTBOUND_QUEUED_MSGS.getPrintName(), sizeGauge::get));
+        return sizeGauge;
+    }
+
+    @Override
+    public AtomicLong createSlowConsumersCounter() {
+        if (log.isTraceEnabled()) {
+            log.trace("Creating SlowConsumersCounter.");
+        }
+        AtomicLong sizeGauge = statsFactory.createGauge(StatsType.SLOW_CONSUMERS.getPrintName(), new AtomicLong(0));
+        gauges.add(new Gauge(StatsType.SLOW_CONSUMERS.getPrintName(), sizeGauge::get));
+        return sizeGauge;
+    }
+
+    @Override
+    public AtomicLong createInboundPendingBytesCounter() {
+        if (log.isTraceEnabled()) {
+            log.trace("Creating InboundPendingBytesCounter.");
+        }
+        AtomicLong sizeGauge = statsFactory.createGauge(StatsType.INBOUND_PENDING_BYTES.getPrintName(), new AtomicLong(0));
+        gauges.add(new Gauge(StatsType.INBOUND_PENDING_BYTES.getPrintName(), sizeGauge::get));
+        return sizeGauge;
+    }
+
+    @Override
+    public AtomicLong createPausedClientsCounter() {
+        if (log.isTraceEnabled()) {
+            log.trace("Creating PausedClientsCounter.");
+        }
+        AtomicLong sizeGauge = statsFactory.createGauge(StatsType.PAUSED_CLIENTS.getPrintName(), new AtomicLong(0));
+        gauges.add(new Gauge(StatsType.PAUSED_CLIENTS.getPrintName(), sizeGauge::get));
+        return sizeGauge;
+    }
+
     @Override
     public MessagesStats createSqlQueueStats(String queueName, int queueIndex) {
         if (log.isTraceEnabled()) {
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.stats;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
@@ -54,6 +55,11 @@ public class StatsManagerStub implements StatsManager, ActorStatsManager, Produc
         return StubMessagesStats.STUB_MESSAGE_STATS;
     }
 
+    @Override
+    public MessagesStats getMsgDispatcherPartitionStats(int partition) {
+        return StubMessagesStats.STUB_MESSAGE_STATS;
+    }
+
     @Override
     public ClientSessionEventConsumerStats createClientSessionEventConsumerStats(String consumerId) {
         return StubClientSessionEventConsumerStats.STUB_CLIENT_SESSION_EVENT_CONSUMER_STATS;
@@ -130,6 +136,11 @@ public class StatsManagerStub implements StatsManager, ActorStatsManager, Produc
 
     }
 
+    @Override
+    public void registerSubscriptionMatchCacheStats(Cache<?, ?> matchCache) {
+
+    }
+
     @Override
     public void registerClientSubscriptionsStats(Map<?, ?> clientSubscriptionsMap) {
     }
@@ -182,6 +193,31 @@ public class StatsManagerStub implements StatsManager, ActorStatsManager, Produc
         return new AtomicLong(0);
     }
 
+    @Override
+    public AtomicLong createTopicAliasBytesSavedCounter() {
+        return new AtomicLong(0);
+    }
+
+    @Override
+    public AtomicLong createOutboundQueuedMsgsCounter() {
+        return new AtomicLong(0);
+    }
+
+    @Override
+    public AtomicLong createSlowConsumersCounter() {
+        return new AtomicLong(0);
+    }
+
+    @Override
+    public AtomicLong createInboundPendingBytesCounter() {
+        return new AtomicLong(0);
+    }
+
+    @Override
+    public AtomicLong createPausedClientsCounter() {
+        return new AtomicLong(0);
+    }
+
     @Override
     public Timer createSendTimer(String clientId) {
         return (amount, unit) -> {
@@ -17,6 +17,7 @@ package org.thingsboard.mqtt.broker.service.stats;
 
 public enum StatsType {
     MSG_DISPATCHER_PRODUCER("incomingPublishMsg.published"),
+    MSG_DISPATCHER_PARTITION("incomingPublishMsg.partition"),
     CLIENT_SESSION_EVENT_CONSUMER("clientSessionEvent"),
     PUBLISH_MSG_CONSUMER("incomingPublishMsg.consumed"),
     SUBSCRIPTION_TOPIC_TRIE_SIZE("subscriptionTopicTrieSize"),
@@ -28,6 +29,13 @@ public enum StatsType {
     RETAINED_MESSAGES("retainedMessages"),
     SUBSCRIPTION_TRIE_NODES("subscriptionTrieNodes"),
     RETAIN_MSG_TRIE_NODES("retainMsgTrieNodes"),
+    SUBSCRIPTION_MATCH_CACHE_HIT_RATE("subscriptionMatchCacheHitRate"),
+    SUBSCRIPTION_MATCH_CACHE_SIZE("subscriptionMatchCacheSize"),
+    TOPIC_ALIAS_BYTES_SAVED("topicAliasBytesSaved"),
+    OUTBOUND_QUEUED_MSGS("outboundQueuedMsgs"),
+    SLOW_CONSUMERS("slowConsumers"),
+    INBOUND_PENDING_BYTES("inboundPendingBytes"),
+    PAUSED_CLIENTS("pausedClients"),
     ACTIVE_APP_PROCESSORS("activeAppProcessors"),
     ACTIVE_SHARED_APP_PROCESSORS("activeSharedAppProcessors"),
     APP_PROCESSOR("appProcessor"),
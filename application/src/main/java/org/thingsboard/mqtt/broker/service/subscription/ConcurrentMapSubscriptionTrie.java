@@ -15,6 +15,8 @@
  */
 package org.thingsboard.mqtt.broker.service.subscription;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.collect.Sets;
 import lombok.AllArgsConstructor;
 import lombok.Setter;
@@ -22,11 +24,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
-import org.thingsboard.mqtt.broker.exception.SubscriptionTrieClearException;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
+import javax.annotation.PostConstruct;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -34,11 +38,9 @@ import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -49,28 +51,70 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
     private final AtomicInteger size;
     private final AtomicLong nodesCount;
     private final Node<T> root = new Node<>();
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final StatsManager statsManager;
 
     @Setter
-    @Value("${mqtt.subscription-trie.wait-for-clear-lock-ms}")
-    private int waitForClearLockMs;
+    @Value("${mqtt.subscription-trie.match-cache.enabled:false}")
+    private boolean matchCacheEnabled;
+    @Setter
+    @Value("${mqtt.subscription-trie.match-cache.max-size:10000}")
+    private int matchCacheMaxSize;
+    @Setter
+    @Value("${mqtt.subscription-trie.match-cache.max-topic-length:256}")
+    private int matchCacheMaxTopicLength;
+
+    private Cache<String, CachedMatch<T>> matchCache;
 
     public ConcurrentMapSubscriptionTrie(StatsManager statsManager) {
         this.size = statsManager.createSubscriptionSizeCounter();
         this.nodesCount = statsManager.createSubscriptionTrieNodesCounter();
+        this.statsManager = statsManager;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (matchCacheEnabled) {
+            matchCache = Caffeine.newBuilder()
+                    .maximumSize(matchCacheMaxSize)
+                    .executor(Runnable::run)
+                    .recordStats()
+                    .build();
+            statsManager.registerSubscriptionMatchCacheStats(matchCache);
+        }
     }
 
+    /*
+        Cached match is returned only if none of the nodes visited by the lookup was modified since then.
+        Caffeine's TinyLFU admission keeps rarely published or frequently invalidated topics from evicting the hot ones
+     */
     @Override
     public List<ValueWithTopicFilter<T>> get(String topic) {
         if (topic == null) {
             throw new IllegalArgumentException("Topic cannot be null");
         }
+        if (matchCache == null || topic.length() > matchCacheMaxTopicLength) {
+            return match(topic, null);
+        }
+        CachedMatch<T> cachedMatch = matchCache.getIfPresent(topic);
+        if (cachedMatch != null && cachedMatch.isValid()) {
+            return cachedMatch.values;
+        }
+        MatchTrace<T> trace = new MatchTrace<>();
+        List<ValueWithTopicFilter<T>> result = Collections.unmodifiableList(match(topic, trace));
+        matchCache.put(topic, new CachedMatch<>(result, trace));
+        return result;
+    }
+
+    private List<ValueWithTopicFilter<T>> match(String topic, MatchTrace<T> trace) {
         List<ValueWithTopicFilter<T>> result = new ArrayList<>();
         Stack<TopicPosition<T>> topicPositions = new Stack<>();
         topicPositions.add(new TopicPosition<>(BrokerConstants.EMPTY_STR, 0, root));
 
         while (!topicPositions.isEmpty()) {
             TopicPosition<T> topicPosition = topicPositions.pop();
+            if (trace != null) {
+                trace.add(topicPosition.node);
+            }
             if (topicPosition.prevDelimiterIndex >= topic.length()) {
                 result.addAll(wrapValuesWithTopicFilter(topicPosition.prevTopicFilter, topicPosition.node.values));
                 continue;
@@ -82,6 +126,9 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
             if (notStartingWith$(topic, topicPosition)) {
                 Node<T> multiLevelWildcardSubs = childNodes.get(BrokerConstants.MULTI_LEVEL_WILDCARD);
                 if (multiLevelWildcardSubs != null) {
+                    if (trace != null) {
+                        trace.add(multiLevelWildcardSubs);
+                    }
                     String currentTopicFilter = appendSegment(topicPosition.prevTopicFilter, BrokerConstants.MULTI_LEVEL_WILDCARD);
                     result.addAll(wrapValuesWithTopicFilter(currentTopicFilter, multiLevelWildcardSubs.values));
                 }
@@ -121,25 +168,46 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
         if (topicFilter == null || val == null) {
             throw new IllegalArgumentException("Topic filter or value cannot be null");
         }
-        lock.readLock().lock();
-        try {
-            put(root, topicFilter, val, 0);
-        } finally {
-            lock.readLock().unlock();
+        while (!tryPut(topicFilter, val)) {
+            if (log.isTraceEnabled()) {
+                log.trace("[{}] Node was removed concurrently, retrying put", topicFilter);
+            }
         }
     }
 
-    private void put(Node<T> x, String key, T val, int prevDelimiterIndex) {
-        if (prevDelimiterIndex >= key.length()) {
-            addOrReplace(x.values, val);
-        } else {
+    /*
+        Nodes are modified only under their monitor and only if they are not removed yet,
+        so the value is never added to the branch that is being pruned concurrently
+     */
+    private boolean tryPut(String key, T val) {
+        Node<T> x = root;
+        int prevDelimiterIndex = 0;
+        while (prevDelimiterIndex < key.length()) {
             String segment = getSegment(key, prevDelimiterIndex);
-            Node<T> nextNode = x.children.computeIfAbsent(segment, s -> {
-                nodesCount.incrementAndGet();
-                return new Node<>();
-            });
-            put(nextNode, key, val, prevDelimiterIndex + segment.length() + 1);
+            Node<T> nextNode = x.children.get(segment);
+            if (nextNode == null) {
+                synchronized (x) {
+                    if (x.removed) {
+                        return false;
+                    }
+                    nextNode = x.children.computeIfAbsent(segment, s -> {
+                        nodesCount.incrementAndGet();
+                        return new Node<>();
+                    });
+                    x.incrementGeneration();
+                }
+            }
+            x = nextNode;
+            prevDelimiterIndex += segment.length() + 1;
+        }
+        synchronized (x) {
+            if (x.removed) {
+                return false;
+            }
+            addOrReplace(x.values, val);
+            x.incrementGeneration();
         }
+        return true;
     }
 
     private void addOrReplace(Set<T> values, T val) {
@@ -159,7 +227,9 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
         if (topicFilter == null || deletionFilter == null) {
             throw new IllegalArgumentException("Topic filter or deletionFilter cannot be null");
         }
-        Node<T> x = getNode(root, topicFilter, 0);
+        List<Node<T>> path = new ArrayList<>();
+        List<String> segments = new ArrayList<>();
+        Node<T> x = getNodePath(topicFilter, path, segments);
         if (x != null) {
             Set<T> valuesToDelete = x.values.stream().filter(deletionFilter).collect(Collectors.toSet());
             if (valuesToDelete.isEmpty()) {
@@ -169,20 +239,43 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
                 log.error("There are more than one value to delete!");
             }
             boolean deleted = x.values.removeAll(valuesToDelete);
+            x.incrementGeneration();
             if (deleted) {
                 size.decrementAndGet();
+                removeEmptyNodes(path, segments);
             }
             return deleted;
         }
         return false;
     }
 
+    private void removeEmptyNodes(List<Node<T>> path, List<String> segments) {
+        for (int i = path.size() - 1; i > 0; i--) {
+            if (!tryRemoveEmptyNode(path.get(i - 1), segments.get(i - 1), path.get(i))) {
+                return;
+            }
+        }
+    }
+
+    private boolean tryRemoveEmptyNode(Node<T> parent, String segment, Node<T> node) {
+        synchronized (node) {
+            if (node.removed || !node.values.isEmpty() || !node.children.isEmpty()) {
+                return false;
+            }
+            node.removed = true;
+        }
+        if (parent.children.remove(segment, node)) {
+            nodesCount.decrementAndGet();
+            parent.incrementGeneration();
+        }
+        return true;
+    }
+
     @Override
-    public void clearEmptyNodes() throws SubscriptionTrieClearException {
+    public void clearEmptyNodes() {
         if (log.isTraceEnabled()) {
             log.trace("Executing clearEmptyNodes");
         }
-        acquireClearTrieLock();
         long nodesBefore = nodesCount.get();
         long clearStartTime = System.currentTimeMillis();
         try {
@@ -196,47 +289,32 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
         } catch (Exception e) {
             long nodesAfter = nodesCount.get();
             log.error("Failed on clearing empty nodes. Managed to clear {} nodes.", nodesBefore - nodesAfter, e);
-        } finally {
-            lock.writeLock().unlock();
-        }
-    }
-
-    private void acquireClearTrieLock() throws SubscriptionTrieClearException {
-        boolean successfullyAcquiredLock = false;
-        try {
-            successfullyAcquiredLock = lock.writeLock().tryLock(waitForClearLockMs, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            log.warn("Acquiring lock was interrupted.");
-        }
-        if (!successfullyAcquiredLock) {
-            throw new SubscriptionTrieClearException("Couldn't acquire lock for clearing trie. " +
-                    "There are a lot of clients subscribing right now.");
         }
     }
 
-    private boolean clearEmptyChildren(Node<T> node) {
-        boolean isNodeEmpty = node.values.isEmpty();
+    private void clearEmptyChildren(Node<T> node) {
         for (Map.Entry<String, Node<T>> entry : node.children.entrySet()) {
-            Node<T> value = entry.getValue();
-            boolean isChildEmpty = clearEmptyChildren(value);
-            if (isChildEmpty) {
-                node.children.remove(entry.getKey());
-                nodesCount.decrementAndGet();
-            } else {
-                isNodeEmpty = false;
-            }
+            Node<T> child = entry.getValue();
+            clearEmptyChildren(child);
+            tryRemoveEmptyNode(node, entry.getKey(), child);
         }
-
-        return isNodeEmpty;
     }
 
-    private Node<T> getNode(Node<T> x, String key, int prevDelimiterIndex) {
-        if (x == null) return null;
-        if (prevDelimiterIndex >= key.length()) {
-            return x;
+    private Node<T> getNodePath(String key, List<Node<T>> path, List<String> segments) {
+        Node<T> x = root;
+        path.add(x);
+        int prevDelimiterIndex = 0;
+        while (prevDelimiterIndex < key.length()) {
+            String segment = getSegment(key, prevDelimiterIndex);
+            x = x.children.get(segment);
+            if (x == null) {
+                return null;
+            }
+            path.add(x);
+            segments.add(segment);
+            prevDelimiterIndex += segment.length() + 1;
         }
-        String segment = getSegment(key, prevDelimiterIndex);
-        return getNode(x.children.get(segment), key, prevDelimiterIndex + segment.length() + 1);
+        return x;
     }
 
     private String getSegment(String key, int prevDelimiterIndex) {
@@ -252,12 +330,23 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
     }
 
     private static class Node<T> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<Node> GENERATION_UPDATER = AtomicLongFieldUpdater.newUpdater(Node.class, "generation");
+
         private final ConcurrentMap<String, Node<T>> children = new ConcurrentHashMap<>();
         private final Set<T> values = Sets.newConcurrentHashSet();
+        // guarded by the node monitor
+        private boolean removed;
+        // incremented after every change of children or values
+        private volatile long generation;
 
         public Node() {
         }
 
+        private void incrementGeneration() {
+            GENERATION_UPDATER.incrementAndGet(this);
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -273,6 +362,44 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
         }
     }
 
+    /*
+        Generation of every node is captured before its children and values are read,
+        so any concurrent modification makes the captured state invalid
+     */
+    private static class MatchTrace<T> {
+        private final List<Node<T>> nodes = new ArrayList<>();
+        private long[] generations = new long[8];
+
+        private void add(Node<T> node) {
+            if (nodes.size() == generations.length) {
+                generations = Arrays.copyOf(generations, generations.length * 2);
+            }
+            generations[nodes.size()] = node.generation;
+            nodes.add(node);
+        }
+    }
+
+    private static class CachedMatch<T> {
+        private final List<ValueWithTopicFilter<T>> values;
+        private final List<Node<T>> nodes;
+        private final long[] generations;
+
+        private CachedMatch(List<ValueWithTopicFilter<T>> values, MatchTrace<T> trace) {
+            this.values = values;
+            this.nodes = trace.nodes;
+            this.generations = trace.generations;
+        }
+
+        private boolean isValid() {
+            for (int i = 0; i < nodes.size(); i++) {
+                if (nodes.get(i).generation != generations[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     @AllArgsConstructor
     private static class TopicPosition<T> {
         private final String prevTopicFilter;
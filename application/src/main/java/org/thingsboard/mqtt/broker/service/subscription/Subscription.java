@@ -15,25 +15,56 @@
  */
 package org.thingsboard.mqtt.broker.service.subscription;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import org.thingsboard.mqtt.broker.actors.client.service.session.CompactClientSessionInfo;
 import org.thingsboard.mqtt.broker.common.data.ClientSession;
 import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
 import org.thingsboard.mqtt.broker.common.data.ClientType;
 import org.thingsboard.mqtt.broker.util.ClientSessionInfoFactory;
 
 @Getter
-@AllArgsConstructor
 @EqualsAndHashCode
 public class Subscription {
 
     private final String topicFilter;
     private final int qos;
+    // either the client session info or the registry entry of the client session together with the clientId is set
+    @Getter(AccessLevel.NONE)
     private final ClientSessionInfo clientSessionInfo;
+    @Getter(AccessLevel.NONE)
+    private final String clientId;
+    @Getter(AccessLevel.NONE)
+    private final CompactClientSessionInfo compactClientSessionInfo;
     private final String shareName;
     private final SubscriptionOptions options;
 
+    public Subscription(String topicFilter, int qos, ClientSessionInfo clientSessionInfo, String shareName, SubscriptionOptions options) {
+        this.topicFilter = topicFilter;
+        this.qos = qos;
+        this.clientSessionInfo = clientSessionInfo;
+        this.clientId = null;
+        this.compactClientSessionInfo = null;
+        this.shareName = shareName;
+        this.options = options;
+    }
+
+    /**
+     * Creates the subscription that reads the session state from the registry entry, so no {@link ClientSessionInfo}
+     * is materialized while the msg is dispatched.
+     */
+    public Subscription(String topicFilter, int qos, String clientId, CompactClientSessionInfo compactClientSessionInfo,
+                        String shareName, SubscriptionOptions options) {
+        this.topicFilter = topicFilter;
+        this.qos = qos;
+        this.clientSessionInfo = null;
+        this.clientId = clientId;
+        this.compactClientSessionInfo = compactClientSessionInfo;
+        this.shareName = shareName;
+        this.options = options;
+    }
+
     public Subscription(String topicFilter, int qos, ClientSessionInfo clientSessionInfo) {
         this(topicFilter, qos, clientSessionInfo, null, SubscriptionOptions.newInstance());
     }
@@ -46,20 +77,28 @@ public class Subscription {
         return new Subscription(topicFilter, qos, ClientSessionInfoFactory.clientSessionToClientSessionInfo(clientSession));
     }
 
+    public ClientSessionInfo getClientSessionInfo() {
+        return compactClientSessionInfo != null ? compactClientSessionInfo.toClientSessionInfo(clientId) : clientSessionInfo;
+    }
+
     public String getClientId() {
-        return clientSessionInfo.getClientId();
+        return compactClientSessionInfo != null ? clientId : clientSessionInfo.getClientId();
     }
 
     public String getServiceId() {
-        return clientSessionInfo.getServiceId();
+        return compactClientSessionInfo != null ? compactClientSessionInfo.getServiceId() : clientSessionInfo.getServiceId();
     }
 
     public ClientType getClientType() {
-        return clientSessionInfo.getType();
+        return compactClientSessionInfo != null ? compactClientSessionInfo.getType() : clientSessionInfo.getType();
     }
 
     public boolean isConnected() {
-        return clientSessionInfo.isConnected();
+        return compactClientSessionInfo != null ? compactClientSessionInfo.isConnected() : clientSessionInfo.isConnected();
+    }
+
+    public boolean isPersistent() {
+        return compactClientSessionInfo != null ? compactClientSessionInfo.isPersistent() : clientSessionInfo.isPersistent();
     }
 
 }
@@ -15,8 +15,6 @@
  */
 package org.thingsboard.mqtt.broker.service.subscription;
 
-import org.thingsboard.mqtt.broker.exception.SubscriptionTrieClearException;
-
 import java.util.List;
 import java.util.function.Predicate;
 
@@ -31,5 +29,5 @@ public interface SubscriptionTrie<T> {
 
     boolean delete(String topicFilter, Predicate<T> deletionFilter);
 
-    void clearEmptyNodes() throws SubscriptionTrieClearException;
+    void clearEmptyNodes();
 }
@@ -33,6 +33,8 @@ public interface SharedSubscriptionCacheService {
 
     boolean sharedSubscriptionsInitialized();
 
+    void onClientSessionChanged(String clientId);
+
     Map<TopicSharedSubscription, SharedSubscriptions> getAllSharedSubscriptions();
 
 }
@@ -16,6 +16,7 @@
 package org.thingsboard.mqtt.broker.service.subscription.shared;
 
 import com.google.common.collect.Sets;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,6 +29,7 @@ import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionCach
 import org.thingsboard.mqtt.broker.service.subscription.Subscription;
 import org.thingsboard.mqtt.broker.service.subscription.TopicSubscription;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -36,6 +38,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -49,6 +52,8 @@ public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCac
     private final ClientSessionCache clientSessionCache;
     @Getter
     private final ConcurrentMap<TopicSharedSubscription, SharedSubscriptions> sharedSubscriptionsMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TopicSharedSubscription, SnapshotHolder> snapshotsMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<TopicSharedSubscription>> clientSharedSubscriptionsMap = new ConcurrentHashMap<>();
 
     @Override
     public void put(String clientId, Collection<TopicSubscription> topicSubscriptions) {
@@ -74,12 +79,15 @@ public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCac
         for (TopicSubscription topicSubscription : sharedTopicSubscriptions) {
             Subscription subscription = newSubscription(topicSubscription, clientSessionInfo);
 
-            SharedSubscriptions sharedSubscriptions = sharedSubscriptionsMap.computeIfAbsent(getKey(topicSubscription), tss -> SharedSubscriptions.newInstance());
+            TopicSharedSubscription key = getKey(topicSubscription);
+            SharedSubscriptions sharedSubscriptions = sharedSubscriptionsMap.computeIfAbsent(key, tss -> SharedSubscriptions.newInstance());
             if (ClientType.APPLICATION == clientSessionInfo.getType()) {
                 updateSharedSubscriptions(sharedSubscriptions.getApplicationSubscriptions(), clientId, topicSubscription, subscription);
             } else {
                 updateSharedSubscriptions(sharedSubscriptions.getDeviceSubscriptions(), clientId, topicSubscription, subscription);
             }
+            clientSharedSubscriptionsMap.computeIfAbsent(clientId, id -> ConcurrentHashMap.newKeySet()).add(key);
+            snapshotsMap.computeIfAbsent(key, tss -> new SnapshotHolder()).invalidate();
         }
         if (log.isTraceEnabled()) {
             log.trace("Shared subscriptions updated!");
@@ -100,7 +108,7 @@ public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCac
     }
 
     private void removeSubscription(Set<Subscription> sharedSubscriptions, String clientId, TopicSubscription topicSubscription) {
-        sharedSubscriptions.removeIf(subs -> clientId.equals(subs.getClientSessionInfo().getClientId()) && topicSubscription.getTopicFilter().equals(subs.getTopicFilter()));
+        sharedSubscriptions.removeIf(subs -> clientId.equals(subs.getClientId()) && topicSubscription.getTopicFilter().equals(subs.getTopicFilter()));
     }
 
     @Override
@@ -127,8 +135,14 @@ public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCac
         if (log.isTraceEnabled()) {
             log.trace("Shared subscription removed from set!");
         }
+        clientSharedSubscriptionsMap.computeIfPresent(clientId, (id, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+        invalidateSnapshot(key);
         if (sharedSubscriptions.isEmpty()) {
             sharedSubscriptionsMap.remove(key);
+            snapshotsMap.remove(key);
             if (log.isTraceEnabled()) {
                 log.trace("[{}] Shared subscriptions removed completely!", key);
             }
@@ -140,6 +154,9 @@ public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCac
         if (CollectionUtils.isEmpty(topicSharedSubscriptions)) {
             return null;
         }
+        if (topicSharedSubscriptions.size() == 1) {
+            return getSnapshot(topicSharedSubscriptions.iterator().next());
+        }
         SharedSubscriptions subscriptions = collectAllSubscriptions(topicSharedSubscriptions);
 
         Set<Subscription> applicationSubscriptions = Sets.newConcurrentHashSet(filterSubscriptions(subscriptions.getApplicationSubscriptions()));
@@ -162,8 +179,8 @@ public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCac
         Set<Subscription> deviceSubscriptions = sharedSubscriptions.getDeviceSubscriptions();
         long count = deviceSubscriptions
                 .stream()
-                .filter(subscription -> !subscription.getClientSessionInfo().getClientId().equals(clientId))
-                .filter(subscription -> findClientSessionInfo(subscription.getClientSessionInfo().getClientId()).isConnected())
+                .filter(subscription -> !subscription.getClientId().equals(clientId))
+                .filter(subscription -> findClientSessionInfo(subscription.getClientId()).isConnected())
                 .filter(subscription -> subscription.getQos() > 0)
                 .count();
         return count > 0;
@@ -174,25 +191,95 @@ public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCac
         return !sharedSubscriptionsMap.isEmpty();
     }
 
+    @Override
+    public void onClientSessionChanged(String clientId) {
+        Set<TopicSharedSubscription> keys = clientSharedSubscriptionsMap.get(clientId);
+        if (keys == null) {
+            return;
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("[{}] Invalidating shared subscriptions snapshots {}", clientId, keys);
+        }
+        keys.forEach(this::invalidateSnapshot);
+    }
+
     @Override
     public Map<TopicSharedSubscription, SharedSubscriptions> getAllSharedSubscriptions() {
         return new HashMap<>(sharedSubscriptionsMap);
     }
 
+    /*
+        Snapshot is rebuilt only after the membership or the session of any member was changed since the previous build.
+        Version is read before the members and sessions, so the snapshot built from the outdated state is never reused
+     */
+    private SharedSubscriptions getSnapshot(TopicSharedSubscription key) {
+        SnapshotHolder holder = snapshotsMap.get(key);
+        if (holder == null) {
+            return buildSnapshot(sharedSubscriptionsMap.get(key));
+        }
+        long version = holder.version.get();
+        VersionedSnapshot snapshot = holder.snapshot;
+        if (snapshot != null && snapshot.version == version) {
+            return snapshot.sharedSubscriptions;
+        }
+        SharedSubscriptions sharedSubscriptions = buildSnapshot(sharedSubscriptionsMap.get(key));
+        holder.snapshot = new VersionedSnapshot(version, sharedSubscriptions);
+        return sharedSubscriptions;
+    }
+
+    private SharedSubscriptions buildSnapshot(SharedSubscriptions members) {
+        if (members == null) {
+            SharedSubscriptions empty = new SharedSubscriptions(Set.of(), Set.of());
+            empty.setDeviceSharedSubscriptions(List.of());
+            return empty;
+        }
+        Set<Subscription> applicationSubscriptions = Set.copyOf(filterSubscriptions(members.getApplicationSubscriptions()));
+        Set<Subscription> deviceSubscriptions = Set.copyOf(filterSubscriptions(members.getDeviceSubscriptions()));
+
+        SharedSubscriptions snapshot = new SharedSubscriptions(applicationSubscriptions, deviceSubscriptions);
+        snapshot.setDeviceSharedSubscriptions(groupConnectedDeviceSubscriptions(deviceSubscriptions));
+        return snapshot;
+    }
+
+    private List<SharedSubscription> groupConnectedDeviceSubscriptions(Set<Subscription> deviceSubscriptions) {
+        if (deviceSubscriptions.isEmpty()) {
+            return List.of();
+        }
+        Map<TopicSharedSubscription, List<Subscription>> groups = new HashMap<>();
+        for (Subscription subscription : deviceSubscriptions) {
+            List<Subscription> connectedSubscriptions = groups.computeIfAbsent(
+                    new TopicSharedSubscription(subscription.getTopicFilter(), subscription.getShareName(), subscription.getQos()),
+                    tss -> new ArrayList<>());
+            if (subscription.isConnected()) {
+                connectedSubscriptions.add(subscription);
+            }
+        }
+        List<SharedSubscription> result = new ArrayList<>(groups.size());
+        groups.forEach((tss, connectedSubscriptions) -> result.add(new SharedSubscription(tss, List.copyOf(connectedSubscriptions))));
+        return List.copyOf(result);
+    }
+
+    private void invalidateSnapshot(TopicSharedSubscription key) {
+        SnapshotHolder holder = snapshotsMap.get(key);
+        if (holder != null) {
+            holder.invalidate();
+        }
+    }
+
     private Collection<Subscription> filterSubscriptions(Set<Subscription> subscriptions) {
         if (subscriptions.isEmpty()) {
             return subscriptions;
         }
         return subscriptions.stream()
                 .map(subscription -> {
-                    var clientSessionInfo = findClientSessionInfo(subscription.getClientSessionInfo().getClientId());
+                    var clientSessionInfo = findClientSessionInfo(subscription.getClientId());
                     if (clientSessionInfo == null) {
                         return null;
                     }
                     return newSubscription(subscription, clientSessionInfo);
                 }).filter(Objects::nonNull)
                 .collect(Collectors.toMap(
-                        subscription -> subscription.getClientSessionInfo().getClientId(),
+                        Subscription::getClientId,
                         Function.identity(),
                         this::getSubscriptionWithHigherQos)
                 )
@@ -244,4 +331,19 @@ public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCac
     private ClientSessionInfo findClientSessionInfo(String clientId) {
         return clientSessionCache.getClientSessionInfo(clientId);
     }
+
+    private static class SnapshotHolder {
+        private final AtomicLong version = new AtomicLong();
+        private volatile VersionedSnapshot snapshot;
+
+        private void invalidate() {
+            version.incrementAndGet();
+        }
+    }
+
+    @AllArgsConstructor
+    private static class VersionedSnapshot {
+        private final long version;
+        private final SharedSubscriptions sharedSubscriptions;
+    }
 }
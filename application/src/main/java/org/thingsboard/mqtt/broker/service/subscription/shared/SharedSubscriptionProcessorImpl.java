@@ -72,7 +72,7 @@ public class SharedSubscriptionProcessorImpl implements SharedSubscriptionProces
     Subscription getOneSubscription(Iterator<Subscription> iterator) {
         while (true) {
             Subscription next = iterator.next();
-            if (next.getClientSessionInfo().isConnected()) {
+            if (next.isConnected()) {
                 return next;
             }
         }
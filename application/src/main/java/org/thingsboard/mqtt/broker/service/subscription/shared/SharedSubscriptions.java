@@ -33,6 +33,12 @@ public class SharedSubscriptions {
 
     private final Set<Subscription> applicationSubscriptions;
     private final Set<Subscription> deviceSubscriptions;
+    /*
+        Device subscriptions grouped by topic filter, share name and qos with connected members only.
+        Set only for the immutable snapshots prepared by SharedSubscriptionCacheService, null otherwise
+     */
+    @EqualsAndHashCode.Exclude
+    private List<SharedSubscription> deviceSharedSubscriptions;
 
     public static SharedSubscriptions newInstance() {
         return new SharedSubscriptions(ConcurrentHashMap.newKeySet(), ConcurrentHashMap.newKeySet());
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.session;
 
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.mqtt.MqttVersion;
 import io.netty.handler.ssl.SslHandler;
@@ -32,6 +33,7 @@ import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Getter
@@ -43,19 +45,28 @@ public class ClientSessionCtx implements SessionContext {
     private final MsgIdSequence msgIdSeq = new MsgIdSequence();
     private final AwaitingPubRelPacketsCtx awaitingPubRelPacketsCtx = new AwaitingPubRelPacketsCtx();
     private final ConcurrentMap<Integer, MqttPendingPublish> pendingPublishes = new ConcurrentHashMap<>();
+    private final InboundFlowCtx inboundFlowCtx = new InboundFlowCtx();
 
     @Setter
     private volatile SessionInfo sessionInfo;
     @Setter
     private volatile List<AuthRulePatterns> authRulePatterns;
+    // set after the credentials id, so the credentials id is visible once the client type is set
     @Setter
     private volatile ClientType clientType;
+    // id of the MQTT client credentials the session is authenticated with, null if the authentication is disabled
+    @Setter
+    private volatile UUID credentialsId;
+    // publish msgs admitted before the authentication is finished, charged to the credentials group rate limits after it
+    private final AtomicLong msgsBeforeAuth = new AtomicLong();
     @Setter
     private volatile MqttVersion mqttVersion;
     @Setter
     private volatile InetSocketAddress address;
     @Setter
     private volatile TopicAliasCtx topicAliasCtx;
+    @Setter
+    private volatile OutboundFlowCtx outboundFlowCtx = OutboundFlowCtx.DISABLED_FLOW_CONTROL;
 
     private ChannelHandlerContext channel;
 
@@ -69,6 +80,18 @@ public class ClientSessionCtx implements SessionContext {
         this.channel = channel;
     }
 
+    /**
+     * Writes the msg to the channel and flushes it. The flushes requested while the event loop is busy
+     * are merged by the flush coalescing handler of the channel pipeline, if enabled.
+     */
+    public ChannelFuture writeAndFlush(Object msg) {
+        return channel.writeAndFlush(msg);
+    }
+
+    public void flush() {
+        channel.flush();
+    }
+
     public String getClientId() {
         return (sessionInfo != null && sessionInfo.getClientInfo() != null) ?
                 sessionInfo.getClientInfo().getClientId() : null;
@@ -82,5 +105,6 @@ public class ClientSessionCtx implements SessionContext {
         this.channel.close();
         pendingPublishes.forEach((id, mqttPendingPublish) -> mqttPendingPublish.onChannelClosed());
         pendingPublishes.clear();
+        outboundFlowCtx.clear();
     }
 }
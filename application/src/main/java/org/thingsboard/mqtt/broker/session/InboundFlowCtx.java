@@ -0,0 +1,36 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.session;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Inbound credit state of the session. Guarded by the instance monitor.
+ * The channel autoRead is changed only by InboundBackpressureService and is on when the reads are neither paused nor suspended.
+ */
+@Getter
+@Setter
+public class InboundFlowCtx {
+
+    // payload bytes of the PUBLISH messages read from the channel and not yet acknowledged by the queue
+    private long pendingBytes;
+    private boolean paused;
+    // reads are suspended until the client is authenticated
+    private boolean readsSuspended;
+    private boolean closed;
+
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.session;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Outbound window of the session. Limits the number of QoS 1 and QoS 2 PUBLISH messages not yet acknowledged by
+ * the client to its Receive Maximum and holds the messages back while the channel is not writable. Such messages are
+ * queued in a bounded queue and sent in order once the window opens. When the queue is full a droppable message is rejected.
+ * <p>
+ * QoS 1 and QoS 2 messages of persistent sessions are not droppable: the persistence processing already considers them sent
+ * and does not redeliver them until the client reconnects. They take the queue capacity, so the droppable messages
+ * are rejected first.
+ * <p>
+ * Messages are written to the channel outside the monitor of this object. Only one thread writes at a time, the messages
+ * sent meanwhile are queued and written by that thread, so the order of the messages is preserved.
+ */
+@Slf4j
+public class OutboundFlowCtx {
+
+    public static final OutboundFlowCtx DISABLED_FLOW_CONTROL = new OutboundFlowCtx(null, 0, 0, null, null);
+
+    private final ChannelHandlerContext channel;
+    @Getter
+    private final int receiveMaximum;
+    private final int maxQueuedMsgs;
+    private final AtomicLong totalQueuedMsgs;
+    private final AtomicLong slowConsumers;
+
+    private final Set<Integer> inFlightPacketIds = new HashSet<>();
+    private final Queue<QueuedPublish> queue = new ArrayDeque<>();
+    private boolean writing;
+
+    public OutboundFlowCtx(ChannelHandlerContext channel, int receiveMaximum, int maxQueuedMsgs,
+                           AtomicLong totalQueuedMsgs, AtomicLong slowConsumers) {
+        this.channel = channel;
+        this.receiveMaximum = receiveMaximum;
+        this.maxQueuedMsgs = maxQueuedMsgs;
+        this.totalQueuedMsgs = totalQueuedMsgs;
+        this.slowConsumers = slowConsumers;
+    }
+
+    public boolean isEnabled() {
+        return channel != null;
+    }
+
+    /**
+     * @return false if the droppable message is rejected because the queue of the session is full, the message is released then
+     */
+    public boolean send(MqttPublishMessage msg, boolean droppable, Consumer<MqttPublishMessage> sender) {
+        if (!isEnabled()) {
+            sender.accept(msg);
+            return true;
+        }
+        synchronized (this) {
+            if (writing || !queue.isEmpty() || !canSend(msg)) {
+                if (droppable && queue.size() >= maxQueuedMsgs) {
+                    msg.release();
+                    return false;
+                }
+                enqueue(new QueuedPublish(msg, sender));
+                return true;
+            }
+            writing = true;
+            addInFlight(msg);
+        }
+        writeAndDrain(new QueuedPublish(msg, sender));
+        return true;
+    }
+
+    /**
+     * Called on PUBACK and PUBCOMP received from the client.
+     */
+    public void onAcknowledged(int packetId) {
+        if (!isEnabled()) {
+            return;
+        }
+        QueuedPublish next;
+        synchronized (this) {
+            if (!inFlightPacketIds.remove(packetId) || (next = pollToWrite()) == null) {
+                return;
+            }
+        }
+        writeAndDrain(next);
+    }
+
+    public void onWritabilityChanged() {
+        if (!isEnabled()) {
+            return;
+        }
+        QueuedPublish next;
+        synchronized (this) {
+            if ((next = pollToWrite()) == null) {
+                return;
+            }
+        }
+        writeAndDrain(next);
+    }
+
+    public void clear() {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            if (!queue.isEmpty()) {
+                totalQueuedMsgs.addAndGet(-queue.size());
+                slowConsumers.decrementAndGet();
+                queue.forEach(queuedPublish -> queuedPublish.getMsg().release());
+                queue.clear();
+            }
+            inFlightPacketIds.clear();
+        }
+    }
+
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    public synchronized int getInFlightCount() {
+        return inFlightPacketIds.size();
+    }
+
+    private void enqueue(QueuedPublish queuedPublish) {
+        queue.add(queuedPublish);
+        totalQueuedMsgs.incrementAndGet();
+        if (queue.size() == 1) {
+            slowConsumers.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Client is not able to receive messages, in-flight: {}, writable: {}",
+                        channel.channel().remoteAddress(), inFlightPacketIds.size(), channel.channel().isWritable());
+            }
+        }
+    }
+
+    /**
+     * @return the next queued message if no other thread is writing and the window is open, the caller becomes the writer then
+     */
+    private QueuedPublish pollToWrite() {
+        if (writing) {
+            return null;
+        }
+        QueuedPublish next = pollSendable();
+        writing = next != null;
+        return next;
+    }
+
+    private QueuedPublish pollSendable() {
+        QueuedPublish queuedPublish = queue.peek();
+        if (queuedPublish == null || !canSend(queuedPublish.getMsg())) {
+            return null;
+        }
+        queue.poll();
+        totalQueuedMsgs.decrementAndGet();
+        if (queue.isEmpty()) {
+            slowConsumers.decrementAndGet();
+        }
+        addInFlight(queuedPublish.getMsg());
+        return queuedPublish;
+    }
+
+    private void writeAndDrain(QueuedPublish next) {
+        try {
+            while (next != null) {
+                next.getSender().accept(next.getMsg());
+                synchronized (this) {
+                    next = pollSendable();
+                    writing = next != null;
+                }
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                writing = false;
+            }
+            throw e;
+        }
+    }
+
+    private boolean canSend(MqttPublishMessage msg) {
+        return channel.channel().isWritable() &&
+                (isQos0(msg) || inFlightPacketIds.size() < receiveMaximum);
+    }
+
+    private void addInFlight(MqttPublishMessage msg) {
+        if (!isQos0(msg)) {
+            inFlightPacketIds.add(msg.variableHeader().packetId());
+        }
+    }
+
+    private boolean isQos0(MqttPublishMessage msg) {
+        return msg.fixedHeader().qosLevel() == MqttQoS.AT_MOST_ONCE;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class QueuedPublish {
+        private final MqttPublishMessage msg;
+        private final Consumer<MqttPublishMessage> sender;
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.session;
+
+import io.netty.channel.ChannelHandlerContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class OutboundFlowCtxFactory {
+
+    public static final int DEFAULT_RECEIVE_MAXIMUM = 65535;
+
+    private final AtomicLong totalQueuedMsgs;
+    private final AtomicLong slowConsumers;
+
+    @Value("${mqtt.flow-control.enabled:true}")
+    private boolean enabled;
+    @Value("${mqtt.flow-control.max-queued-msgs:1000}")
+    private int maxQueuedMsgs;
+
+    public OutboundFlowCtxFactory(StatsManager statsManager) {
+        this.totalQueuedMsgs = statsManager.createOutboundQueuedMsgsCounter();
+        this.slowConsumers = statsManager.createSlowConsumersCounter();
+    }
+
+    public OutboundFlowCtx create(ChannelHandlerContext channel, Integer receiveMaximum) {
+        if (!enabled) {
+            return OutboundFlowCtx.DISABLED_FLOW_CONTROL;
+        }
+        int windowSize = receiveMaximum == null || receiveMaximum <= 0 ? DEFAULT_RECEIVE_MAXIMUM : receiveMaximum;
+        return new OutboundFlowCtx(channel, windowSize, maxQueuedMsgs, totalQueuedMsgs, slowConsumers);
+    }
+}
@@ -25,9 +25,23 @@ import org.thingsboard.mqtt.broker.service.mqtt.PublishMsg;
 import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Server topic aliases are handed out first-come until all of them are used. After that an alias is re-mapped
+ * to a topic that is delivered more frequently than the least frequently delivered aliased topic among
+ * a sample of the aliases. Frequencies are estimated per session with {@link TopicFrequencySketch}.
+ * <p>
+ * The caller must hold the monitor of this object while the alias is chosen and the message is written
+ * to the channel, so that the client receives alias re-mappings in the same order they are made.
+ */
 @Slf4j
 @Getter
 public class TopicAliasCtx {
@@ -35,10 +49,17 @@ public class TopicAliasCtx {
     public static final TopicAliasCtx DISABLED_TOPIC_ALIASES = new TopicAliasCtx(false, 0, null, null);
     public static final String UNKNOWN_TOPIC_ALIAS_MSG = "Unknown Topic Alias!";
 
+    static final int MIN_FREQUENCY_FOR_REASSIGNMENT = 2;
+    static final int EVICTION_SAMPLE_SIZE = 16;
+
     private final boolean enabled;
     private final int maxTopicAlias;
     private final ConcurrentMap<Integer, String> clientMappings;
     private final ConcurrentMap<String, Integer> serverMappings;
+    private final List<String> serverAliasTopics;
+    private final TopicFrequencySketch frequencySketch;
+    // server aliases whose establishing messages were not sent to the client
+    private final Set<Integer> notEstablishedServerAliases;
 
     public TopicAliasCtx(boolean enabled, int maxTopicAlias) {
         this(enabled, maxTopicAlias, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
@@ -51,6 +72,22 @@ public class TopicAliasCtx {
         this.maxTopicAlias = maxTopicAlias;
         this.clientMappings = clientMappings;
         this.serverMappings = serverMappings;
+        this.serverAliasTopics = enabled ? initServerAliasTopics(serverMappings) : null;
+        this.frequencySketch = enabled ? new TopicFrequencySketch(maxTopicAlias) : null;
+        this.notEstablishedServerAliases = enabled ? new HashSet<>() : null;
+    }
+
+    private static List<String> initServerAliasTopics(Map<String, Integer> serverMappings) {
+        List<String> serverAliasTopics = new ArrayList<>();
+        if (serverMappings != null) {
+            serverMappings.forEach((topic, alias) -> {
+                while (serverAliasTopics.size() < alias) {
+                    serverAliasTopics.add(null);
+                }
+                serverAliasTopics.set(alias - 1, topic);
+            });
+        }
+        return serverAliasTopics;
     }
 
     public String getTopicNameByAlias(PublishMsg publishMsg) {
@@ -83,6 +120,7 @@ public class TopicAliasCtx {
             if (topicName.length() > minTopicNameLengthForAliasReplacement) {
                 MqttProperties properties = publishMsg.getProperties();
 
+                frequencySketch.increment(topicName);
                 Integer topicAlias = serverMappings.get(topicName);
                 if (topicAlias == null) {
                     int nextTopicAlias = getNextTopicAlias(topicName);
@@ -93,7 +131,7 @@ public class TopicAliasCtx {
                     return getPublishMsg(publishMsg, topicName, properties);
                 }
                 MqttPropertiesUtil.addTopicAliasToProps(properties, topicAlias);
-                return getPublishMsg(publishMsg, BrokerConstants.EMPTY_STR, properties);
+                return getPublishMsg(publishMsg, isEstablished(topicAlias) ? BrokerConstants.EMPTY_STR : topicName, properties);
             }
         }
         return publishMsg;
@@ -103,6 +141,7 @@ public class TopicAliasCtx {
         if (enabled) {
             String topicName = publishMsgProto.getTopicName();
             if (topicName.length() > minTopicNameLengthForAliasReplacement) {
+                frequencySketch.increment(topicName);
                 Integer topicAlias = serverMappings.get(topicName);
                 if (topicAlias == null) {
                     int nextTopicAlias = getNextTopicAlias(topicName);
@@ -111,12 +150,24 @@ public class TopicAliasCtx {
                     }
                     return new TopicAliasResult(topicName, nextTopicAlias);
                 }
-                return new TopicAliasResult(BrokerConstants.EMPTY_STR, topicAlias);
+                return new TopicAliasResult(isEstablished(topicAlias) ? BrokerConstants.EMPTY_STR : topicName, topicAlias);
             }
         }
         return null;
     }
 
+    /**
+     * Called when the message establishing the server topic alias mapping was dropped, so the next message
+     * using the alias carries the topic name to establish the mapping again.
+     */
+    public void onTopicAliasNotEstablished(int topicAlias) {
+        notEstablishedServerAliases.add(topicAlias);
+    }
+
+    private boolean isEstablished(int topicAlias) {
+        return notEstablishedServerAliases.isEmpty() || !notEstablishedServerAliases.remove(topicAlias);
+    }
+
     private PublishMsg getPublishMsg(PublishMsg publishMsg, String topicName, MqttProperties properties) {
         return publishMsg.toBuilder()
                 .topicName(topicName)
@@ -147,9 +198,49 @@ public class TopicAliasCtx {
             int lastTopicAlias = serverMappings.size();
             int nextTopicAlias = lastTopicAlias + 1;
             serverMappings.put(topicName, nextTopicAlias);
+            serverAliasTopics.add(topicName);
             return nextTopicAlias;
         }
-        return 0;
+        return reassignTopicAlias(topicName);
+    }
+
+    private int reassignTopicAlias(String topicName) {
+        int frequency = frequencySketch.frequency(topicName);
+        if (frequency < MIN_FREQUENCY_FOR_REASSIGNMENT || serverAliasTopics.isEmpty()) {
+            return 0;
+        }
+        int victimAlias = findLeastFrequentAlias();
+        String victimTopic = serverAliasTopics.get(victimAlias - 1);
+        if (victimTopic != null && frequency <= frequencySketch.frequency(victimTopic)) {
+            return 0;
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Re-mapping topic alias {} from {} to {}", victimAlias, victimTopic, topicName);
+        }
+        if (victimTopic != null) {
+            serverMappings.remove(victimTopic);
+        }
+        serverMappings.put(topicName, victimAlias);
+        serverAliasTopics.set(victimAlias - 1, topicName);
+        return victimAlias;
+    }
+
+    private int findLeastFrequentAlias() {
+        int aliasesCount = serverAliasTopics.size();
+        boolean sample = aliasesCount > EVICTION_SAMPLE_SIZE;
+        int iterations = sample ? EVICTION_SAMPLE_SIZE : aliasesCount;
+        int victimAlias = 0;
+        int victimFrequency = Integer.MAX_VALUE;
+        for (int i = 0; i < iterations; i++) {
+            int idx = sample ? ThreadLocalRandom.current().nextInt(aliasesCount) : i;
+            String topic = serverAliasTopics.get(idx);
+            int frequency = topic == null ? -1 : frequencySketch.frequency(topic);
+            if (frequency < victimFrequency) {
+                victimFrequency = frequency;
+                victimAlias = idx + 1;
+            }
+        }
+        return victimAlias;
     }
 
     private boolean isMoreTopicAliasAvailable() {
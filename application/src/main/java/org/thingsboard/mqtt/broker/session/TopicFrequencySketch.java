@@ -0,0 +1,91 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.session;
+
+/**
+ * Count-Min sketch estimating how often topics are delivered to a session. Counters are halved periodically,
+ * so that the estimation follows the recent traffic of the session.
+ * Updates are not synchronized, occasional lost increments are tolerated.
+ */
+public class TopicFrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MIN_WIDTH = 16;
+    private static final int MAX_WIDTH = 1024;
+    private static final int MAX_COUNTER = Byte.MAX_VALUE;
+    private static final int[] SEEDS = {0x97cb3127, 0x85ebca6b, 0xc2b2ae35, 0x27d4eb2f};
+
+    private final byte[] table;
+    private final int widthMask;
+    private final int sampleSize;
+    private int additions;
+
+    public TopicFrequencySketch(int maxTopicAlias) {
+        int width = tableWidth(maxTopicAlias);
+        this.table = new byte[DEPTH * width];
+        this.widthMask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    static int tableWidth(int maxTopicAlias) {
+        int width = Integer.highestOneBit(Math.max(MIN_WIDTH, Math.min(MAX_WIDTH, 4 * maxTopicAlias)) - 1) << 1;
+        return Math.min(width, MAX_WIDTH);
+    }
+
+    public void increment(String topic) {
+        int hash = spread(topic.hashCode());
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int idx = indexOf(hash, i);
+            if (table[idx] < MAX_COUNTER) {
+                table[idx]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    public int frequency(String topic) {
+        int hash = spread(topic.hashCode());
+        int frequency = MAX_COUNTER;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, table[indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (byte) (table[i] >>> 1);
+        }
+        additions = additions >>> 1;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[row];
+        h ^= h >>> 16;
+        return row * (widthMask + 1) + (h & widthMask);
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 17;
+        hash *= 0xed5ad4bb;
+        hash ^= hash >>> 11;
+        return hash;
+    }
+}
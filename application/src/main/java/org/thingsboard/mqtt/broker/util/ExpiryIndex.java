@@ -0,0 +1,101 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.util;
+
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keys ordered by their expiry time, so the expired keys are found without scanning the keys that are not due yet.
+ * Each key has at most one expiry time, scheduling the key again replaces the previous one.
+ */
+public class ExpiryIndex<K> {
+
+    private static final Comparator<Deadline<?>> DEADLINE_COMPARATOR =
+            Comparator.<Deadline<?>>comparingLong(deadline -> deadline.expiryTs).thenComparingLong(deadline -> deadline.seq);
+
+    private final AtomicLong seq = new AtomicLong();
+    private final NavigableSet<Deadline<K>> deadlines = new ConcurrentSkipListSet<>(DEADLINE_COMPARATOR);
+    private final ConcurrentMap<K, Deadline<K>> keyDeadlines = new ConcurrentHashMap<>();
+
+    public void schedule(K key, long expiryTs) {
+        keyDeadlines.compute(key, (k, previous) -> {
+            if (previous != null) {
+                if (previous.expiryTs == expiryTs) {
+                    return previous;
+                }
+                deadlines.remove(previous);
+            }
+            Deadline<K> deadline = new Deadline<>(k, expiryTs, seq.incrementAndGet());
+            deadlines.add(deadline);
+            return deadline;
+        });
+    }
+
+    public void remove(K key) {
+        keyDeadlines.computeIfPresent(key, (k, previous) -> {
+            deadlines.remove(previous);
+            return null;
+        });
+    }
+
+    /**
+     * Removes and returns the keys with the expiry time before the given timestamp.
+     */
+    public List<K> pollExpired(long ts) {
+        List<K> expired = new ArrayList<>();
+        Deadline<K> deadline;
+        while ((deadline = pollFirstBefore(ts)) != null) {
+            if (keyDeadlines.remove(deadline.key, deadline)) {
+                expired.add(deadline.key);
+            }
+        }
+        return expired;
+    }
+
+    public int size() {
+        return keyDeadlines.size();
+    }
+
+    private Deadline<K> pollFirstBefore(long ts) {
+        while (true) {
+            Iterator<Deadline<K>> iterator = deadlines.iterator();
+            Deadline<K> first = iterator.hasNext() ? iterator.next() : null;
+            if (first == null || first.expiryTs >= ts) {
+                return null;
+            }
+            if (deadlines.remove(first)) {
+                return first;
+            }
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Deadline<K> {
+        private final K key;
+        private final long expiryTs;
+        private final long seq;
+    }
+}
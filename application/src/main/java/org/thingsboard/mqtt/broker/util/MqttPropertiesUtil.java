@@ -66,6 +66,10 @@ public class MqttPropertiesUtil {
         return getIntegerProperty(properties, BrokerConstants.TOPIC_ALIAS_MAX_PROP_ID);
     }
 
+    public static MqttProperties.IntegerProperty getReceiveMaximumProperty(MqttProperties properties) {
+        return getIntegerProperty(properties, BrokerConstants.RECEIVE_MAXIMUM_PROP_ID);
+    }
+
     public static MqttProperties.IntegerProperty getTopicAliasProperty(MqttProperties properties) {
         return getIntegerProperty(properties, BrokerConstants.TOPIC_ALIAS_PROP_ID);
     }
@@ -82,6 +86,16 @@ public class MqttPropertiesUtil {
         properties.add(new MqttProperties.IntegerProperty(BrokerConstants.TOPIC_ALIAS_PROP_ID, topicAlias));
     }
 
+    public static MqttProperties getPropertiesWithoutTopicAlias(MqttProperties properties) {
+        MqttProperties result = new MqttProperties();
+        for (MqttProperties.MqttProperty property : properties.listAll()) {
+            if (property.propertyId() != BrokerConstants.TOPIC_ALIAS_PROP_ID) {
+                result.add(property);
+            }
+        }
+        return result;
+    }
+
     public static void addPayloadFormatIndicatorToProps(MqttProperties properties, int payloadFormatIndicator) {
         properties.add(new MqttProperties.IntegerProperty(BrokerConstants.PAYLOAD_FORMAT_INDICATOR_PROP_ID, payloadFormatIndicator));
     }
@@ -15,6 +15,8 @@
  */
 package org.thingsboard.mqtt.broker.actors.client.service.disconnect;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.mqtt.MqttVersion;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +33,7 @@ import org.thingsboard.mqtt.broker.actors.client.state.QueuedMqttMessages;
 import org.thingsboard.mqtt.broker.common.data.ClientInfo;
 import org.thingsboard.mqtt.broker.common.data.SessionInfo;
 import org.thingsboard.mqtt.broker.service.auth.AuthorizationRuleService;
+import org.thingsboard.mqtt.broker.service.limits.InboundBackpressureService;
 import org.thingsboard.mqtt.broker.service.limits.RateLimitService;
 import org.thingsboard.mqtt.broker.service.mqtt.MqttMessageGenerator;
 import org.thingsboard.mqtt.broker.service.mqtt.client.event.ClientSessionEventService;
@@ -46,6 +49,7 @@ import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -75,6 +79,8 @@ public class DisconnectServiceImplTest {
     MqttMessageGenerator mqttMessageGenerator;
     @MockBean
     AuthorizationRuleService authorizationRuleService;
+    @MockBean
+    InboundBackpressureService inboundBackpressureService;
 
     @SpyBean
     DisconnectServiceImpl disconnectService;
@@ -98,6 +104,9 @@ public class DisconnectServiceImplTest {
 
         queuedMqttMessages = mock(QueuedMqttMessages.class);
         when(clientActorState.getQueuedMessages()).thenReturn(queuedMqttMessages);
+
+        when(msgPersistenceManager.stopProcessingPersistedMessages(any())).thenReturn(Futures.immediateFuture(null));
+        when(msgPersistenceManager.saveAwaitingQoS2Packets(any())).thenReturn(Futures.immediateFuture(null));
     }
 
     @Test
@@ -108,7 +117,7 @@ public class DisconnectServiceImplTest {
         disconnectService.disconnect(clientActorState, disconnectMsg);
 
         verify(disconnectService, never()).clearClientSession(clientActorState, disconnectMsg, -1);
-        verify(disconnectService, never()).notifyClientDisconnected(clientActorState, 0);
+        verify(disconnectService, never()).notifyClientDisconnected(eq(clientActorState), eq(0), any());
         verify(disconnectService, times(1)).closeChannel(ctx);
     }
 
@@ -118,8 +127,25 @@ public class DisconnectServiceImplTest {
         disconnectService.disconnect(clientActorState, disconnectMsg);
 
         verify(disconnectService, times(1)).clearClientSession(clientActorState, disconnectMsg, -1);
-        verify(disconnectService, times(1)).notifyClientDisconnected(clientActorState, -1);
+        verify(disconnectService, times(1)).notifyClientDisconnected(eq(clientActorState), eq(-1), any());
         verify(disconnectService, times(1)).closeChannel(ctx);
+        verify(clientSessionEventService, times(1)).notifyClientDisconnected(any(), any(), eq(-1));
+    }
+
+    @Test
+    public void testDisconnectPersistentSessionNotifiedAfterSessionSaved() {
+        when(ctx.getSessionInfo().isPersistent()).thenReturn(true);
+        SettableFuture<Void> awaitingQoS2PacketsFuture = SettableFuture.create();
+        when(msgPersistenceManager.saveAwaitingQoS2Packets(any())).thenReturn(awaitingQoS2PacketsFuture);
+
+        MqttDisconnectMsg disconnectMsg = newDisconnectMsg(new DisconnectReason(DisconnectReasonType.ON_DISCONNECT_MSG));
+        disconnectService.disconnect(clientActorState, disconnectMsg);
+
+        verify(clientSessionEventService, never()).notifyClientDisconnected(any(), any(), anyInt());
+        verify(disconnectService, times(1)).closeChannel(ctx);
+
+        awaitingQoS2PacketsFuture.setException(new RuntimeException("Failed to save"));
+        verify(clientSessionEventService, times(1)).notifyClientDisconnected(any(), any(), eq(-1));
     }
 
     @Test
@@ -128,6 +154,7 @@ public class DisconnectServiceImplTest {
         disconnectService.clearClientSession(clientActorState, disconnectMsg, -1);
 
         verify(queuedMqttMessages, times(1)).clear();
+        verify(inboundBackpressureService, times(1)).onSessionClosed(ctx);
         verify(keepAliveService, times(1)).unregisterSession(any());
         verify(lastWillService, times(1)).removeAndExecuteLastWillIfNeeded(any(), anyBoolean(), anyBoolean(), eq(-1));
         verify(clientSessionCtxService, times(1)).unregisterSession(any());
@@ -29,6 +29,7 @@ import org.thingsboard.mqtt.broker.actors.client.state.PubResponseProcessingCtx;
 import org.thingsboard.mqtt.broker.exception.MqttException;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.auth.AuthorizationRuleService;
+import org.thingsboard.mqtt.broker.service.limits.InboundBackpressureService;
 import org.thingsboard.mqtt.broker.service.mqtt.MqttMessageGenerator;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsg;
 import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgProcessor;
@@ -69,6 +70,8 @@ public class MqttPublishHandlerTest {
     ClientLogger clientLogger;
     @MockBean
     RetainedMsgProcessor retainedMsgProcessor;
+    @MockBean
+    InboundBackpressureService inboundBackpressureService;
 
     @SpyBean
     MqttPublishHandler mqttPublishHandler;
@@ -25,13 +25,17 @@ import org.mockito.junit.MockitoJUnitRunner;
 import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
 import org.thingsboard.mqtt.broker.common.data.ClientInfo;
 import org.thingsboard.mqtt.broker.common.data.ClientSession;
+import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
 import org.thingsboard.mqtt.broker.common.data.ClientType;
 import org.thingsboard.mqtt.broker.common.data.ConnectionInfo;
 import org.thingsboard.mqtt.broker.common.data.SessionInfo;
 import org.thingsboard.mqtt.broker.common.data.util.CallbackUtil;
 import org.thingsboard.mqtt.broker.exception.MqttException;
+import org.thingsboard.mqtt.broker.service.mqtt.client.cleanup.ClientSessionExpiryIndex;
 import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionPersistenceService;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionCacheService;
+import org.thingsboard.mqtt.broker.util.ClientSessionInfoFactory;
 
 import java.util.Collections;
 import java.util.Set;
@@ -68,7 +72,10 @@ public class ClientSessionServiceImplTest {
         ClientSessionPersistenceService clientSessionPersistenceServiceMock = Mockito.mock(ClientSessionPersistenceService.class);
         StatsManager statsManagerMock = Mockito.mock(StatsManager.class);
         ServiceInfoProvider serviceInfoProviderMock = Mockito.mock(ServiceInfoProvider.class);
-        this.clientSessionService = spy(new ClientSessionServiceImpl(clientSessionPersistenceServiceMock, serviceInfoProviderMock, statsManagerMock));
+        ClientSessionExpiryIndex clientSessionExpiryIndexMock = Mockito.mock(ClientSessionExpiryIndex.class);
+        SharedSubscriptionCacheService sharedSubscriptionCacheServiceMock = Mockito.mock(SharedSubscriptionCacheService.class);
+        this.clientSessionService = spy(new ClientSessionServiceImpl(clientSessionPersistenceServiceMock, serviceInfoProviderMock,
+                statsManagerMock, clientSessionExpiryIndexMock, sharedSubscriptionCacheServiceMock));
         this.clientSessionService.init(Collections.emptyMap());
     }
 
@@ -102,6 +109,49 @@ public class ClientSessionServiceImplTest {
         Assert.assertTrue(persistedClients.isEmpty());
     }
 
+    @Test
+    public void givenSessions_whenSaveAndGetSessionInfos_thenSessionInfosRestoredWithSharedServiceId() {
+        ClientSession session1 = prepareSession("client_1", 5, false);
+        ClientSession cleanSession = prepareSession("client_2", 0, true);
+        ClientSession session2 = cleanSession.toBuilder()
+                .connected(false)
+                .sessionInfo(cleanSession.getSessionInfo().toBuilder().serviceId(new String(TEST_SERVICE_ID)).build())
+                .build();
+
+        saveClientSession("client_1", session1);
+        saveClientSession("client_2", session2);
+
+        ClientSessionInfo clientSessionInfo1 = clientSessionService.getClientSessionInfo("client_1");
+        ClientSessionInfo clientSessionInfo2 = clientSessionService.getClientSessionInfo("client_2");
+        Assert.assertEquals(ClientSessionInfoFactory.clientSessionToClientSessionInfo(session1), clientSessionInfo1);
+        Assert.assertEquals(ClientSessionInfoFactory.clientSessionToClientSessionInfo(session2), clientSessionInfo2);
+        Assert.assertSame(clientSessionInfo1.getServiceId(), clientSessionInfo2.getServiceId());
+        Assert.assertEquals(session1, clientSessionService.getClientSession("client_1"));
+        Assert.assertEquals(2, clientSessionService.getAllClientSessions().size());
+        Assert.assertNull(clientSessionService.getClientSessionInfo("unknown"));
+    }
+
+    @Test
+    public void givenSessions_whenGetCompactSessionInfos_thenAccessorsMatchSessionInfos() {
+        ClientSession persistentSession = prepareSession("client_1", 5, true);
+        ClientSession cleanSession = prepareSession("client_2", 0, true);
+        cleanSession = cleanSession.toBuilder().connected(false).build();
+
+        saveClientSession("client_1", persistentSession);
+        saveClientSession("client_2", cleanSession);
+
+        for (String clientId : Set.of("client_1", "client_2")) {
+            ClientSessionInfo clientSessionInfo = clientSessionService.getClientSessionInfo(clientId);
+            CompactClientSessionInfo compactClientSessionInfo = clientSessionService.getCompactClientSessionInfo(clientId);
+            Assert.assertEquals(clientSessionInfo.isConnected(), compactClientSessionInfo.isConnected());
+            Assert.assertEquals(clientSessionInfo.isPersistent(), compactClientSessionInfo.isPersistent());
+            Assert.assertEquals(clientSessionInfo.getServiceId(), compactClientSessionInfo.getServiceId());
+            Assert.assertEquals(clientSessionInfo.getType(), compactClientSessionInfo.getType());
+        }
+        Assert.assertSame(clientSessionService.getCompactClientSessionInfo("client_1"), clientSessionService.getCompactClientSessionInfo("client_1"));
+        Assert.assertNull(clientSessionService.getCompactClientSessionInfo("unknown"));
+    }
+
     @Test(expected = MqttException.class)
     public void givenSession_whenSaveWithDifferentClientIds_thenThrowException() {
         ClientSession notValidClientSession = prepareSession(DEFAULT_CLIENT_ID + "_not_valid", 1, true);
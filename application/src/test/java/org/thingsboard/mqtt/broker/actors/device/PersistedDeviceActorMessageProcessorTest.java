@@ -16,6 +16,7 @@
 package org.thingsboard.mqtt.broker.actors.device;
 
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
 import io.netty.handler.codec.mqtt.MqttProperties;
 import org.junit.After;
 import org.junit.Before;
@@ -35,12 +36,12 @@ import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
 import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
 import org.thingsboard.mqtt.broker.dao.client.device.DevicePacketIdAndSerialNumberService;
-import org.thingsboard.mqtt.broker.dao.client.device.DeviceSessionCtxService;
 import org.thingsboard.mqtt.broker.dao.client.device.PacketIdAndSerialNumber;
 import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgService;
 import org.thingsboard.mqtt.broker.dto.SharedSubscriptionPublishPacket;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsgDeliveryService;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.processing.DeviceMsgWriteTracker;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionCacheService;
 import org.thingsboard.mqtt.broker.service.subscription.shared.TopicSharedSubscription;
 import org.thingsboard.mqtt.broker.session.ClientMqttActorManager;
@@ -75,43 +76,43 @@ public class PersistedDeviceActorMessageProcessorTest {
     PersistedDeviceActorMessageProcessor persistedDeviceActorMessageProcessor;
 
     DeviceMsgService deviceMsgService;
-    DeviceSessionCtxService deviceSessionCtxService;
     DevicePacketIdAndSerialNumberService serialNumberService;
     PublishMsgDeliveryService publishMsgDeliveryService;
     ClientMqttActorManager clientMqttActorManager;
     ClientLogger clientLogger;
     DeviceActorConfiguration deviceActorConfig;
     SharedSubscriptionCacheService sharedSubscriptionCacheService;
+    DeviceMsgWriteTracker deviceMsgWriteTracker;
 
     @Before
     public void setUp() throws Exception {
         ActorSystemContext actorSystemContext = mock(ActorSystemContext.class);
 
         deviceMsgService = mock(DeviceMsgService.class);
-        deviceSessionCtxService = mock(DeviceSessionCtxService.class);
         serialNumberService = mock(DevicePacketIdAndSerialNumberService.class);
         publishMsgDeliveryService = mock(PublishMsgDeliveryService.class);
         clientMqttActorManager = mock(ClientMqttActorManager.class);
         clientLogger = mock(ClientLogger.class);
         deviceActorConfig = mock(DeviceActorConfiguration.class);
         sharedSubscriptionCacheService = mock(SharedSubscriptionCacheService.class);
+        deviceMsgWriteTracker = mock(DeviceMsgWriteTracker.class);
 
         when(actorSystemContext.getDeviceMsgService()).thenReturn(deviceMsgService);
-        when(actorSystemContext.getDeviceSessionCtxService()).thenReturn(deviceSessionCtxService);
         when(actorSystemContext.getSerialNumberService()).thenReturn(serialNumberService);
         when(actorSystemContext.getPublishMsgDeliveryService()).thenReturn(publishMsgDeliveryService);
         when(actorSystemContext.getClientMqttActorManager()).thenReturn(clientMqttActorManager);
         when(actorSystemContext.getClientLogger()).thenReturn(clientLogger);
         when(actorSystemContext.getDeviceActorConfiguration()).thenReturn(deviceActorConfig);
         when(actorSystemContext.getSharedSubscriptionCacheService()).thenReturn(sharedSubscriptionCacheService);
+        when(actorSystemContext.getDeviceMsgWriteTracker()).thenReturn(deviceMsgWriteTracker);
 
         this.persistedDeviceActorMessageProcessor = spy(new PersistedDeviceActorMessageProcessor(actorSystemContext, CLIENT));
     }
 
     @After
     public void tearDown() throws Exception {
-        Mockito.reset(deviceMsgService, deviceSessionCtxService, serialNumberService, publishMsgDeliveryService,
-                clientMqttActorManager, clientLogger, deviceActorConfig, sharedSubscriptionCacheService);
+        Mockito.reset(deviceMsgService, serialNumberService, publishMsgDeliveryService,
+                clientMqttActorManager, clientLogger, deviceActorConfig, sharedSubscriptionCacheService, deviceMsgWriteTracker);
     }
 
     @Test
@@ -136,7 +137,7 @@ public class PersistedDeviceActorMessageProcessorTest {
         persistedDeviceActorMessageProcessor.processingSharedSubscriptions(msg);
 
         verify(deviceMsgService, times(0)).findPersistedMessages(anyString());
-        verify(deviceSessionCtxService, times(0)).removeDeviceSessionContext(anyString());
+        verify(serialNumberService, times(0)).removeDeviceSessionContext(anyString());
     }
 
     @Test
@@ -152,7 +153,7 @@ public class PersistedDeviceActorMessageProcessorTest {
         persistedDeviceActorMessageProcessor.processingSharedSubscriptions(msg);
 
         verify(deviceMsgService, times(0)).findPersistedMessages(anyString());
-        verify(deviceSessionCtxService, times(0)).removeDeviceSessionContext(anyString());
+        verify(serialNumberService, times(0)).removeDeviceSessionContext(anyString());
     }
 
     @Test
@@ -179,7 +180,7 @@ public class PersistedDeviceActorMessageProcessorTest {
         persistedDeviceActorMessageProcessor.processingSharedSubscriptions(msg);
 
         verify(deviceMsgService, times(1)).findPersistedMessages(eq("ss_g1_tf"));
-        verify(deviceSessionCtxService, times(1)).removeDeviceSessionContext(eq("ss_g1_tf"));
+        verify(serialNumberService, times(1)).removeDeviceSessionContext(eq("ss_g1_tf"));
         verify(serialNumberService, times(1)).saveLastSerialNumbers(any());
     }
 
@@ -281,6 +282,7 @@ public class PersistedDeviceActorMessageProcessorTest {
 
         assertEquals(1, persistedDeviceActorMessageProcessor.getInFlightPacketIds().size());
         assertEquals(100L, persistedDeviceActorMessageProcessor.getLastPersistedMsgSentSerialNumber());
+        assertEquals(100L, persistedDeviceActorMessageProcessor.getSentPacketIdsSerialNumbers().get(101).longValue());
     }
 
     @Test
@@ -398,6 +400,38 @@ public class PersistedDeviceActorMessageProcessorTest {
         assertTrue(persistedDeviceActorMessageProcessor.getInFlightPacketIds().isEmpty());
     }
 
+    @Test
+    public void givenPacketAcknowledgedEventMsgWithKnownSerialNumber_whenProcessPacketAcknowledge_thenRemoveBySerialNumber() {
+        persistedDeviceActorMessageProcessor.getInFlightPacketIds().add(1);
+        persistedDeviceActorMessageProcessor.getSentPacketIdsSerialNumbers().put(1, 10L);
+
+        when(deviceMsgService.tryRemovePersistedMessage(anyString(), anyInt(), anyLong())).thenReturn(Futures.immediateVoidFuture());
+        persistedDeviceActorMessageProcessor.processPacketAcknowledge(new PacketAcknowledgedEventMsg(1));
+
+        verify(deviceMsgService, times(1)).tryRemovePersistedMessage(eq(CLIENT), eq(1), eq(10L));
+        verify(deviceMsgService, times(0)).tryRemovePersistedMessage(anyString(), anyInt());
+        assertTrue(persistedDeviceActorMessageProcessor.getInFlightPacketIds().isEmpty());
+        assertTrue(persistedDeviceActorMessageProcessor.getSentPacketIdsSerialNumbers().isEmpty());
+    }
+
+    @Test
+    public void givenPacketAcknowledgedEventMsgForNotSavedMsg_whenProcessPacketAcknowledge_thenRemoveAfterSave() {
+        persistedDeviceActorMessageProcessor.getInFlightPacketIds().add(1);
+
+        SettableFuture<Void> pendingWrite = SettableFuture.create();
+        when(deviceMsgWriteTracker.getPendingWrite(eq(CLIENT), eq(1))).thenReturn(pendingWrite);
+        when(deviceMsgService.tryRemovePersistedMessage(anyString(), anyInt())).thenReturn(Futures.immediateVoidFuture());
+        persistedDeviceActorMessageProcessor.processPacketAcknowledge(new PacketAcknowledgedEventMsg(1));
+
+        verify(deviceMsgService, times(0)).tryRemovePersistedMessage(anyString(), anyInt());
+        assertEquals(1, persistedDeviceActorMessageProcessor.getInFlightPacketIds().size());
+
+        pendingWrite.set(null);
+
+        verify(deviceMsgService, times(1)).tryRemovePersistedMessage(eq(CLIENT), eq(1));
+        assertTrue(persistedDeviceActorMessageProcessor.getInFlightPacketIds().isEmpty());
+    }
+
     @Test
     public void givenPacketAcknowledgedEventMsgForSharedSubscription_whenProcessPacketAcknowledge_thenVerifiedMethodExecution() {
         persistedDeviceActorMessageProcessor.getInFlightPacketIds().add(1);
@@ -0,0 +1,72 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FlushCoalescingHandlerTest {
+
+    EmbeddedChannel channel;
+
+    @After
+    public void tearDown() {
+        if (channel != null) {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void givenSeveralFlushes_whenEventLoopRunsPendingTasks_thenMessagesAreFlushedOnce() {
+        channel = new EmbeddedChannel(new FlushCoalescingHandler(1024, 0));
+
+        channel.pipeline().writeAndFlush(Unpooled.wrappedBuffer(new byte[10]));
+        channel.pipeline().writeAndFlush(Unpooled.wrappedBuffer(new byte[10]));
+        Assert.assertTrue(channel.outboundMessages().isEmpty());
+
+        channel.runPendingTasks();
+
+        Assert.assertEquals(2, channel.outboundMessages().size());
+    }
+
+    @Test
+    public void givenBufferedBytesReachThreshold_whenWrite_thenFlushedImmediately() {
+        channel = new EmbeddedChannel(new FlushCoalescingHandler(16, 0));
+
+        channel.pipeline().write(Unpooled.wrappedBuffer(new byte[10]));
+        Assert.assertTrue(channel.outboundMessages().isEmpty());
+        channel.pipeline().write(Unpooled.wrappedBuffer(new byte[10]));
+
+        Assert.assertEquals(2, channel.outboundMessages().size());
+    }
+
+    @Test
+    public void givenPendingFlush_whenClose_thenMessagesAreFlushed() {
+        channel = new EmbeddedChannel(new FlushCoalescingHandler(1024, 0));
+
+        channel.pipeline().writeAndFlush(Unpooled.wrappedBuffer(new byte[10]));
+        channel.close();
+
+        ByteBuf msg = channel.readOutbound();
+        Assert.assertNotNull(msg);
+        msg.release();
+    }
+
+}
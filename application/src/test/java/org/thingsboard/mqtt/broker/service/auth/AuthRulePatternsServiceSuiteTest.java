@@ -21,6 +21,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.thingsboard.mqtt.broker.common.data.client.credentials.BasicMqttCredentials;
 import org.thingsboard.mqtt.broker.common.data.client.credentials.PubSubAuthorizationRules;
 import org.thingsboard.mqtt.broker.common.data.client.credentials.SslMqttCredentials;
@@ -45,6 +46,10 @@ public class AuthRulePatternsServiceSuiteTest {
     @Before
     public void init() {
         this.authorizationRuleService = new DefaultAuthorizationRuleService();
+        ReflectionTestUtils.setField(authorizationRuleService, "compiledRulesCacheMaxSize", 100);
+        ReflectionTestUtils.setField(authorizationRuleService, "pubCacheMaxSize", 2);
+        ReflectionTestUtils.setField(authorizationRuleService, "pubCacheMaxTopicLength", 10);
+        this.authorizationRuleService.init();
     }
 
     /*
@@ -226,10 +231,58 @@ public class AuthRulePatternsServiceSuiteTest {
         Assert.assertTrue(authorizationRuleService.isPubAuthorized(CLIENT_ID, "1/", authRulePatterns));
 
         Assert.assertEquals(1, authorizationRuleService.getPublishAuthMap().size());
-        Assert.assertTrue(authorizationRuleService.getPublishAuthMap().get(CLIENT_ID).get("1/"));
+        Assert.assertTrue(authorizationRuleService.getPublishAuthMap().get(CLIENT_ID).getIfPresent("1/"));
 
         authorizationRuleService.evict(CLIENT_ID);
 
         Assert.assertEquals(0, authorizationRuleService.getPublishAuthMap().size());
     }
+
+    @Test
+    public void testPubAuthCacheIsBounded() {
+        List<AuthRulePatterns> authRulePatterns = List.of(
+                AuthRulePatterns.newInstance(List.of(Pattern.compile(".*")))
+        );
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(authorizationRuleService.isPubAuthorized(CLIENT_ID, "1/" + i, authRulePatterns));
+        }
+        var topicAuthCache = authorizationRuleService.getPublishAuthMap().get(CLIENT_ID);
+        topicAuthCache.cleanUp();
+        Assert.assertTrue(topicAuthCache.estimatedSize() <= 2);
+
+        Assert.assertTrue(authorizationRuleService.isPubAuthorized(CLIENT_ID, "1/very/long/topic", authRulePatterns));
+        Assert.assertNull(topicAuthCache.getIfPresent("1/very/long/topic"));
+    }
+
+    @Test
+    public void testCompiledRulesSharedForSameCredentials() throws AuthenticationException {
+        BasicMqttCredentials first = BasicMqttCredentials.newInstance("test1", "test1", null, List.of("1/.*", "2/.*"));
+        BasicMqttCredentials second = BasicMqttCredentials.newInstance("test2", "test2", null, List.of("1/.*", "2/.*"));
+
+        AuthRulePatterns firstPatterns = authorizationRuleService.parseBasicAuthorizationRule(first);
+        AuthRulePatterns secondPatterns = authorizationRuleService.parseBasicAuthorizationRule(second);
+        Assert.assertSame(firstPatterns, secondPatterns);
+        Assert.assertNotNull(firstPatterns.getPubPattern());
+        Assert.assertTrue(firstPatterns.isPubAuthorized("2/abc"));
+        Assert.assertFalse(firstPatterns.isSubAuthorized("3/abc"));
+    }
+
+    @Test
+    public void testNotMergeablePatternsFallbackToList() {
+        AuthRulePatterns authRulePatterns = AuthRulePatterns.newInstance(List.of(Pattern.compile("(a)/\\1"), Pattern.compile("b/.*")));
+        Assert.assertNull(authRulePatterns.getPubPattern());
+        Assert.assertTrue(authRulePatterns.isPubAuthorized("a/a"));
+        Assert.assertTrue(authRulePatterns.isPubAuthorized("b/c"));
+        Assert.assertFalse(authRulePatterns.isPubAuthorized("a/b"));
+    }
+
+    @Test
+    public void testNamedGroupPatternsFallbackToList() {
+        AuthRulePatterns authRulePatterns = AuthRulePatterns.newInstance(
+                List.of(Pattern.compile("(?<id>a)/.*"), Pattern.compile("(?<id>b)/.*")));
+        Assert.assertNull(authRulePatterns.getPubPattern());
+        Assert.assertTrue(authRulePatterns.isPubAuthorized("a/1"));
+        Assert.assertTrue(authRulePatterns.isPubAuthorized("b/2"));
+        Assert.assertFalse(authRulePatterns.isPubAuthorized("c/3"));
+    }
 }
@@ -0,0 +1,113 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.auth;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.mqtt.broker.service.security.authorization.AuthRulePatterns;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@Slf4j
+public class AuthorizationRulePerformanceTest {
+
+    private static final String CLIENT_ID = "clientId";
+    private static final int NUMBER_OF_RULES = 20;
+    private static final int NUMBER_OF_MESSAGES = 200_000;
+
+    private DefaultAuthorizationRuleService authorizationRuleService;
+    private List<AuthRulePatterns> authRulePatterns;
+
+    @Before
+    public void before() {
+        authorizationRuleService = new DefaultAuthorizationRuleService();
+        ReflectionTestUtils.setField(authorizationRuleService, "compiledRulesCacheMaxSize", 100);
+        ReflectionTestUtils.setField(authorizationRuleService, "pubCacheMaxSize", 1000);
+        ReflectionTestUtils.setField(authorizationRuleService, "pubCacheMaxTopicLength", 256);
+        authorizationRuleService.init();
+
+        List<Pattern> patterns = IntStream.range(0, NUMBER_OF_RULES)
+                .mapToObj(i -> Pattern.compile("tenant/" + i + "/devices/.*"))
+                .collect(Collectors.toList());
+        authRulePatterns = List.of(AuthRulePatterns.newInstance(patterns));
+    }
+
+    @Test
+    public void testUniqueTopicsPublishAuthorization() {
+        ConcurrentMap<String, ConcurrentMap<String, Boolean>> legacyPublishAuthMap = new ConcurrentHashMap<>();
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < NUMBER_OF_MESSAGES; i++) {
+            String topic = "tenant/" + (NUMBER_OF_RULES - 1) + "/devices/" + i;
+            legacyPublishAuthMap
+                    .computeIfAbsent(CLIENT_ID, s -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(topic, s -> authRulePatterns.stream()
+                            .map(AuthRulePatterns::getPubPatterns)
+                            .flatMap(List::stream)
+                            .anyMatch(pattern -> pattern.matcher(topic).matches()));
+        }
+        long legacyTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for (int i = 0; i < NUMBER_OF_MESSAGES; i++) {
+            String topic = "tenant/" + (NUMBER_OF_RULES - 1) + "/devices/" + i;
+            Assert.assertTrue(authorizationRuleService.isPubAuthorized(CLIENT_ID, topic, authRulePatterns));
+        }
+        long compiledTime = System.nanoTime() - startTime;
+
+        var topicAuthCache = authorizationRuleService.getPublishAuthMap().get(CLIENT_ID);
+        topicAuthCache.cleanUp();
+        log.info("Legacy engine took {} ms, cached topics {}. Compiled engine took {} ms, cached topics {}",
+                legacyTime / 1_000_000, legacyPublishAuthMap.get(CLIENT_ID).size(),
+                compiledTime / 1_000_000, topicAuthCache.estimatedSize());
+
+        Assert.assertEquals(NUMBER_OF_MESSAGES, legacyPublishAuthMap.get(CLIENT_ID).size());
+        Assert.assertTrue(topicAuthCache.estimatedSize() <= 1000);
+    }
+
+    @Test
+    public void testSubscribeAuthorization() {
+        String topic = "tenant/" + (NUMBER_OF_RULES - 1) + "/devices/+";
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < NUMBER_OF_MESSAGES; i++) {
+            authRulePatterns.stream()
+                    .map(AuthRulePatterns::getSubPatterns)
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList())
+                    .stream()
+                    .anyMatch(pattern -> pattern.matcher(topic).matches());
+        }
+        long legacyTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for (int i = 0; i < NUMBER_OF_MESSAGES; i++) {
+            Assert.assertTrue(authorizationRuleService.isSubAuthorized(topic, authRulePatterns));
+        }
+        long compiledTime = System.nanoTime() - startTime;
+
+        log.info("Legacy subscribe check took {} ms, compiled subscribe check took {} ms",
+                legacyTime / 1_000_000, compiledTime / 1_000_000);
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.auth.providers;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.mqtt.broker.common.data.ClientType;
+import org.thingsboard.mqtt.broker.common.data.client.credentials.BasicMqttCredentials;
+import org.thingsboard.mqtt.broker.common.data.security.ClientCredentialsType;
+import org.thingsboard.mqtt.broker.common.data.security.MqttClientCredentials;
+import org.thingsboard.mqtt.broker.common.util.JacksonUtil;
+import org.thingsboard.mqtt.broker.dao.client.MqttClientCredentialsService;
+import org.thingsboard.mqtt.broker.exception.AuthenticationException;
+import org.thingsboard.mqtt.broker.service.auth.AuthorizationRuleService;
+import org.thingsboard.mqtt.broker.service.security.authorization.AuthRulePatterns;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BasicMqttClientAuthProviderTest {
+
+    private static final String CLIENT_ID = "clientId";
+    private static final String USERNAME = "username";
+    private static final String PASSWORD = "password";
+
+    AuthorizationRuleService authorizationRuleService;
+    MqttClientCredentialsService clientCredentialsService;
+    BCryptPasswordEncoder passwordEncoder;
+    BasicMqttClientAuthProvider authProvider;
+
+    @Before
+    public void setUp() throws AuthenticationException {
+        authorizationRuleService = mock(AuthorizationRuleService.class);
+        clientCredentialsService = mock(MqttClientCredentialsService.class);
+        passwordEncoder = mock(BCryptPasswordEncoder.class);
+        CacheManager cacheManager = mock(CacheManager.class);
+        when(cacheManager.getCache(anyString())).thenReturn(mock(Cache.class));
+        when(passwordEncoder.matches(PASSWORD, "encoded")).thenReturn(true);
+        when(authorizationRuleService.parseBasicAuthorizationRule(any())).thenReturn(AuthRulePatterns.newInstance(List.of()));
+
+        authProvider = new BasicMqttClientAuthProvider(authorizationRuleService, clientCredentialsService, cacheManager, passwordEncoder);
+        ReflectionTestUtils.setField(authProvider, "verifiedCredentialsCacheMaxSize", 10);
+        ReflectionTestUtils.setField(authProvider, "verifiedCredentialsCacheTtlMinutes", 1);
+        authProvider.init();
+    }
+
+    @Test
+    public void givenKnownClient_whenReconnect_thenPasswordIsNotVerifiedAgain() throws AuthenticationException {
+        MqttClientCredentials credentials = newCredentials(UUID.randomUUID(), List.of("test/.*"));
+        when(clientCredentialsService.findMatchingCredentials(any())).thenReturn(List.of(credentials));
+
+        Assert.assertTrue(authProvider.authenticate(getAuthContext(PASSWORD)).isSuccess());
+        Assert.assertTrue(authProvider.authenticate(getAuthContext(PASSWORD)).isSuccess());
+
+        verify(passwordEncoder, times(1)).matches(any(), any());
+        verify(authorizationRuleService, times(1)).parseBasicAuthorizationRule(any());
+    }
+
+    @Test
+    public void givenKnownClient_whenWrongPassword_thenAuthFailed() throws AuthenticationException {
+        MqttClientCredentials credentials = newCredentials(UUID.randomUUID(), List.of("test/.*"));
+        when(clientCredentialsService.findMatchingCredentials(any())).thenReturn(List.of(credentials));
+
+        Assert.assertTrue(authProvider.authenticate(getAuthContext(PASSWORD)).isSuccess());
+        Assert.assertFalse(authProvider.authenticate(getAuthContext("wrong")).isSuccess());
+    }
+
+    @Test
+    public void givenUpdatedCredentials_whenReconnect_thenPasswordIsVerifiedAgain() throws AuthenticationException {
+        UUID id = UUID.randomUUID();
+        when(clientCredentialsService.findMatchingCredentials(any())).thenReturn(List.of(newCredentials(id, List.of("test/.*"))));
+        Assert.assertTrue(authProvider.authenticate(getAuthContext(PASSWORD)).isSuccess());
+
+        when(clientCredentialsService.findMatchingCredentials(any())).thenReturn(List.of(newCredentials(id, List.of("other/.*"))));
+        Assert.assertTrue(authProvider.authenticate(getAuthContext(PASSWORD)).isSuccess());
+
+        verify(passwordEncoder, times(2)).matches(any(), any());
+    }
+
+    private MqttClientCredentials newCredentials(UUID id, List<String> authRules) {
+        MqttClientCredentials credentials = new MqttClientCredentials(id);
+        credentials.setClientType(ClientType.DEVICE);
+        credentials.setCredentialsType(ClientCredentialsType.MQTT_BASIC);
+        credentials.setCredentialsValue(JacksonUtil.toString(BasicMqttCredentials.newInstance(CLIENT_ID, USERNAME, "encoded", authRules)));
+        return credentials;
+    }
+
+    private AuthContext getAuthContext(String password) {
+        return new AuthContext(CLIENT_ID, USERNAME, password.getBytes(StandardCharsets.UTF_8), null);
+    }
+}
@@ -49,7 +49,7 @@ import java.util.concurrent.TimeUnit;
 @ContextConfiguration(classes = SessionExpiryIntegrationTestCase.class, loader = SpringBootContextLoader.class)
 @TestPropertySource(properties = {
         "security.mqtt.basic.enabled=false",
-        "mqtt.client-session-expiry.cron=* * * ? * *" // every second
+        "mqtt.client-session-expiry.check-interval-ms=1000"
 })
 @DaoSqlTest
 @RunWith(SpringRunner.class)
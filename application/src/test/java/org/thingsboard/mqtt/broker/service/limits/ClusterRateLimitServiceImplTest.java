@@ -0,0 +1,94 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.limits;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
+import org.thingsboard.mqtt.broker.config.RateLimitsConfiguration;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.RateLimitDemandProto;
+import org.thingsboard.mqtt.broker.queue.TbQueueProducer;
+import org.thingsboard.mqtt.broker.queue.provider.RateLimitsQueueFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+public class ClusterRateLimitServiceImplTest {
+
+    @Test
+    public void givenSingleNode_whenCalculateLease_thenGetWholeBudget() {
+        assertEquals(1000, ClusterRateLimitServiceImpl.calculateLease(1000, 1000, 0, 0, 1));
+    }
+
+    @Test
+    public void givenIdleNodes_whenCalculateLease_thenBudgetIsSplitEqually() {
+        assertEquals(250, ClusterRateLimitServiceImpl.calculateLease(1000, 1000, 0, 0, 4));
+    }
+
+    @Test
+    public void givenUnevenDemand_whenCalculateLease_thenBudgetIsSplitProportionallyAndNotExceeded() {
+        long hot = ClusterRateLimitServiceImpl.calculateLease(1000, 500, 899, 998, 2);
+        long cold = ClusterRateLimitServiceImpl.calculateLease(1000, 500, 99, 998, 2);
+        assertEquals(450, hot);
+        assertEquals(50, cold);
+        Assert.assertTrue(hot + cold <= 500);
+    }
+
+    @Test
+    public void givenClusterLimitsDisabled_whenTryConsume_thenSuccess() {
+        RateLimitsConfiguration configuration = new RateLimitsConfiguration();
+        configuration.setEnabled(true);
+        RateLimitsQueueFactory queueFactory = mock(RateLimitsQueueFactory.class);
+        ClusterRateLimitServiceImpl service = new ClusterRateLimitServiceImpl(configuration, queueFactory, mock(ServiceInfoProvider.class));
+        service.init();
+
+        Assert.assertTrue(service.tryConsume(100));
+        verifyNoInteractions(queueFactory);
+    }
+
+    @Test
+    public void givenLeasedBudget_whenTryConsume_thenGetExpectedResult() {
+        RateLimitsConfiguration configuration = new RateLimitsConfiguration();
+        configuration.setEnabled(true);
+        configuration.getCluster().setMsgsPerSecond(2);
+        ClusterRateLimitServiceImpl service = new ClusterRateLimitServiceImpl(configuration, mock(RateLimitsQueueFactory.class), mock(ServiceInfoProvider.class));
+        ReflectionTestUtils.setField(service, "config", configuration.getCluster());
+        service.getMsgsBudget().set(2);
+
+        Assert.assertTrue(service.tryConsume(10));
+        Assert.assertTrue(service.tryConsume(10));
+        Assert.assertFalse(service.tryConsume(10));
+    }
+
+    @Test
+    public void givenStaleDemand_whenRefreshLease_thenItIsIgnored() {
+        RateLimitsConfiguration configuration = new RateLimitsConfiguration();
+        configuration.setEnabled(true);
+        configuration.getCluster().setMsgsPerSecond(1000);
+        ClusterRateLimitServiceImpl service = new ClusterRateLimitServiceImpl(configuration, mock(RateLimitsQueueFactory.class), mock(ServiceInfoProvider.class));
+        ReflectionTestUtils.setField(service, "config", configuration.getCluster());
+        ReflectionTestUtils.setField(service, "serviceId", "node-1");
+        ReflectionTestUtils.setField(service, "producer", mock(TbQueueProducer.class));
+        service.getNodeDemands().put("node-2", RateLimitDemandProto.newBuilder().setServiceId("node-2").setTs(0).setMsgs(1000).build());
+
+        service.refreshLease();
+
+        assertEquals(1, service.getNodeDemands().size());
+        assertEquals(1000, service.getMsgsBudget().get());
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.limits;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelHandlerContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class InboundBackpressureServiceImplTest {
+
+    AtomicLong pendingBytes;
+    AtomicLong pausedClients;
+    InboundBackpressureServiceImpl service;
+
+    @Before
+    public void setUp() {
+        pendingBytes = new AtomicLong();
+        pausedClients = new AtomicLong();
+        StatsManager statsManager = mock(StatsManager.class);
+        when(statsManager.createInboundPendingBytesCounter()).thenReturn(pendingBytes);
+        when(statsManager.createPausedClientsCounter()).thenReturn(pausedClients);
+
+        service = new InboundBackpressureServiceImpl(statsManager);
+        service.setEnabled(true);
+        service.setMaxPendingBytesPerClient(100);
+        service.setMaxPendingBytes(150);
+        service.init();
+    }
+
+    @Test
+    public void givenClientBudgetExceeded_whenPublishReceived_thenReadsPausedUntilProcessed() {
+        ChannelConfig config = mock(ChannelConfig.class);
+        ClientSessionCtx ctx = createSessionCtx(config);
+
+        service.onPublishReceived(ctx, 60);
+        verify(config, never()).setAutoRead(false);
+
+        service.onPublishReceived(ctx, 60);
+        verify(config, times(1)).setAutoRead(false);
+        assertTrue(ctx.getInboundFlowCtx().isPaused());
+        assertEquals(1, pausedClients.get());
+
+        service.onPublishProcessed(ctx, 60);
+        verify(config, never()).setAutoRead(true);
+        assertEquals(60, pendingBytes.get());
+
+        service.onPublishProcessed(ctx, 60);
+        verify(config, times(1)).setAutoRead(true);
+        assertFalse(ctx.getInboundFlowCtx().isPaused());
+        assertEquals(0, pausedClients.get());
+        assertEquals(0, pendingBytes.get());
+    }
+
+    @Test
+    public void givenNodeBudgetExceeded_whenPublishReceived_thenHeaviestClientPaused() {
+        ChannelConfig lightConfig = mock(ChannelConfig.class);
+        ChannelConfig heavyConfig = mock(ChannelConfig.class);
+        ClientSessionCtx lightCtx = createSessionCtx(lightConfig);
+        ClientSessionCtx heavyCtx = createSessionCtx(heavyConfig);
+
+        service.onPublishReceived(heavyCtx, 90);
+        service.onPublishReceived(lightCtx, 40);
+        service.onPublishReceived(lightCtx, 30);
+
+        verify(lightConfig, never()).setAutoRead(false);
+        verify(heavyConfig, never()).setAutoRead(false);
+
+        service.onPublishReceived(heavyCtx, 5);
+        verify(heavyConfig, times(1)).setAutoRead(false);
+        assertEquals(165, pendingBytes.get());
+    }
+
+    @Test
+    public void givenPendingBytes_whenSessionClosed_thenBytesReleased() {
+        ChannelConfig config = mock(ChannelConfig.class);
+        ClientSessionCtx ctx = createSessionCtx(config);
+
+        service.onPublishReceived(ctx, 120);
+        service.onSessionClosed(ctx);
+
+        assertEquals(0, pendingBytes.get());
+        assertEquals(0, pausedClients.get());
+
+        service.onPublishProcessed(ctx, 120);
+        assertEquals(0, pendingBytes.get());
+    }
+
+    @Test
+    public void givenPausedClient_whenResumeReads_thenReadsStayPaused() {
+        ChannelConfig config = mock(ChannelConfig.class);
+        ClientSessionCtx ctx = createSessionCtx(config);
+
+        service.onPublishReceived(ctx, 120);
+        service.resumeReads(ctx);
+        verify(config, never()).setAutoRead(true);
+
+        service.onPublishProcessed(ctx, 120);
+        service.resumeReads(ctx);
+        verify(config, times(2)).setAutoRead(true);
+    }
+
+    @Test
+    public void givenSuspendedReads_whenClientResumedByBackpressure_thenReadsStaySuspended() {
+        ChannelConfig config = mock(ChannelConfig.class);
+        ClientSessionCtx ctx = createSessionCtx(config);
+
+        service.onPublishReceived(ctx, 120);
+        service.suspendReads(ctx);
+        service.onPublishProcessed(ctx, 120);
+
+        verify(config, never()).setAutoRead(true);
+        assertFalse(ctx.getInboundFlowCtx().isPaused());
+
+        service.resumeReads(ctx);
+        verify(config, times(1)).setAutoRead(true);
+    }
+
+    @Test
+    public void givenDroppedPublish_whenPublishDropped_thenBytesReleased() {
+        ChannelConfig config = mock(ChannelConfig.class);
+        ClientSessionCtx ctx = createSessionCtx(config);
+
+        service.onPublishReceived(ctx, 120);
+        service.onPublishDropped(ctx, 120);
+
+        assertEquals(0, pendingBytes.get());
+        assertEquals(0, pausedClients.get());
+        verify(config, times(1)).setAutoRead(true);
+    }
+
+    @Test
+    public void givenDisabled_whenPublishReceived_thenNothingTracked() {
+        service.setEnabled(false);
+        ChannelConfig config = mock(ChannelConfig.class);
+        ClientSessionCtx ctx = createSessionCtx(config);
+
+        service.onPublishReceived(ctx, 1000);
+
+        verify(config, never()).setAutoRead(false);
+        assertEquals(0, pendingBytes.get());
+    }
+
+    private ClientSessionCtx createSessionCtx(ChannelConfig config) {
+        ChannelHandlerContext channelHandlerContext = mock(ChannelHandlerContext.class);
+        Channel channel = mock(Channel.class);
+        when(channelHandlerContext.channel()).thenReturn(channel);
+        when(channel.config()).thenReturn(config);
+
+        ClientSessionCtx ctx = new ClientSessionCtx(UUID.randomUUID(), null, 1);
+        ctx.setChannel(channelHandlerContext);
+        return ctx;
+    }
+}
@@ -15,6 +15,12 @@
  */
 package org.thingsboard.mqtt.broker.service.limits;
 
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -27,12 +33,15 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.thingsboard.mqtt.broker.actors.client.service.session.ClientSessionService;
 import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
+import org.thingsboard.mqtt.broker.common.data.ClientType;
 import org.thingsboard.mqtt.broker.common.util.TbRateLimits;
 import org.thingsboard.mqtt.broker.config.RateLimitsConfiguration;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
@@ -45,6 +54,8 @@ public class RateLimitServiceImplTest {
     RateLimitsConfiguration rateLimitsConfiguration;
     @MockBean
     ClientSessionService clientSessionService;
+    @MockBean
+    ClusterRateLimitService clusterRateLimitService;
 
     @SpyBean
     RateLimitServiceImpl rateLimitService;
@@ -52,11 +63,17 @@ public class RateLimitServiceImplTest {
     @Before
     public void setUp() throws Exception {
         rateLimitService.getClientLimits().put(CLIENT_ID, new TbRateLimits("1:1")); // limit 1 per 1 second
+        when(clusterRateLimitService.tryConsume(anyLong())).thenReturn(true);
     }
 
     @After
     public void tearDown() throws Exception {
-        Mockito.reset(rateLimitsConfiguration, clientSessionService);
+        Mockito.reset(rateLimitsConfiguration, clientSessionService, clusterRateLimitService);
+        rateLimitService.getClientLimits().clear();
+        rateLimitService.getTopicFilterLimits().clear();
+        rateLimitService.getCredentialsGroupLimits().clear();
+        rateLimitService.setTotalMsgsLimits(null);
+        rateLimitService.setTotalBytesLimits(null);
     }
 
     @Test
@@ -80,6 +97,100 @@ public class RateLimitServiceImplTest {
         Assert.assertFalse(third);
     }
 
+    @Test
+    public void givenTopicFilterLimits_whenCheckLimits_thenOnlyMatchingTopicsAreLimited() {
+        when(rateLimitsConfiguration.isEnabled()).thenReturn(true);
+        when(rateLimitsConfiguration.getClientConfig()).thenReturn("100:1");
+        rateLimitService.getTopicFilterLimits().add(new TopicFilterRateLimits("hot/+/temp", "1:1"));
+
+        Assert.assertTrue(rateLimitService.checkLimits("c1", UUID.randomUUID(), newPublishMsg("hot/1/temp", 1)));
+        Assert.assertFalse(rateLimitService.checkLimits("c2", UUID.randomUUID(), newPublishMsg("hot/2/temp", 1)));
+        Assert.assertTrue(rateLimitService.checkLimits("c3", UUID.randomUUID(), newPublishMsg("cold/2/temp", 1)));
+    }
+
+    @Test
+    public void givenCredentialsGroupLimits_whenCheckLimits_thenGroupIsLimitedPerCredentials() {
+        when(rateLimitsConfiguration.isEnabled()).thenReturn(true);
+        when(rateLimitsConfiguration.getClientConfig()).thenReturn("100:1");
+        when(rateLimitsConfiguration.getDeviceGroupConfig()).thenReturn("1:1");
+        UUID credentialsId = UUID.randomUUID();
+
+        Assert.assertTrue(rateLimitService.checkLimits("c1", UUID.randomUUID(), newSessionCtx(credentialsId), null));
+        Assert.assertFalse(rateLimitService.checkLimits("c2", UUID.randomUUID(), newSessionCtx(credentialsId), null));
+        Assert.assertTrue(rateLimitService.checkLimits("c3", UUID.randomUUID(), newSessionCtx(UUID.randomUUID()), null));
+    }
+
+    @Test
+    public void givenMsgsBeforeAuth_whenAuthFinished_thenMsgsChargedToCredentialsGroup() {
+        when(rateLimitsConfiguration.isEnabled()).thenReturn(true);
+        when(rateLimitsConfiguration.getClientConfig()).thenReturn("100:1");
+        when(rateLimitsConfiguration.getDeviceGroupConfig()).thenReturn("2:60");
+        ClientSessionCtx sessionCtx = new ClientSessionCtx(UUID.randomUUID(), null, 0);
+
+        Assert.assertTrue(rateLimitService.checkLimits("c1", sessionCtx.getSessionId(), sessionCtx, null));
+        Assert.assertTrue(rateLimitService.checkLimits("c1", sessionCtx.getSessionId(), sessionCtx, null));
+        assertEquals(2, sessionCtx.getMsgsBeforeAuth().get());
+
+        sessionCtx.setCredentialsId(UUID.randomUUID());
+        sessionCtx.setClientType(ClientType.DEVICE);
+
+        Assert.assertFalse(rateLimitService.checkLimits("c1", sessionCtx.getSessionId(), sessionCtx, null));
+    }
+
+    @Test
+    public void givenNodeLimitsReached_whenCheckLimits_thenPreviousLevelsAreNotSpent() {
+        when(rateLimitsConfiguration.isEnabled()).thenReturn(true);
+        when(rateLimitsConfiguration.getClientConfig()).thenReturn("1:60");
+        when(rateLimitsConfiguration.getDeviceGroupConfig()).thenReturn("1:60");
+        rateLimitService.getTopicFilterLimits().add(new TopicFilterRateLimits("t", "1:60"));
+        rateLimitService.setTotalMsgsLimits(new TbRateLimits("1:60"));
+        rateLimitService.setTotalBytesLimits(new TbRateLimits("10:60"));
+        ClientSessionCtx sessionCtx = newSessionCtx(UUID.randomUUID());
+
+        Assert.assertFalse(rateLimitService.checkLimits("c1", sessionCtx.getSessionId(), sessionCtx, newPublishMsg("t", 20)));
+        Assert.assertTrue(rateLimitService.checkLimits("c1", sessionCtx.getSessionId(), sessionCtx, newPublishMsg("t", 5)));
+    }
+
+    @Test
+    public void givenClusterLimitsReached_whenCheckLimits_thenNodeLevelsAreNotSpent() {
+        when(rateLimitsConfiguration.isEnabled()).thenReturn(true);
+        when(rateLimitsConfiguration.getClientConfig()).thenReturn("1:60");
+        rateLimitService.setTotalMsgsLimits(new TbRateLimits("1:60"));
+        when(clusterRateLimitService.tryConsume(anyLong())).thenReturn(false, true);
+
+        Assert.assertFalse(rateLimitService.checkLimits("c1", UUID.randomUUID(), newPublishMsg("t", 5)));
+        Assert.assertTrue(rateLimitService.checkLimits("c1", UUID.randomUUID(), newPublishMsg("t", 5)));
+    }
+
+    @Test
+    public void givenMultiByteTopicName_whenCheckLimits_thenUtf8BytesAreCounted() {
+        when(rateLimitsConfiguration.isEnabled()).thenReturn(true);
+        when(rateLimitsConfiguration.getClientConfig()).thenReturn("100:1");
+        rateLimitService.setTotalBytesLimits(new TbRateLimits("10:60"));
+
+        // 3 chars, 9 bytes in UTF-8
+        Assert.assertFalse(rateLimitService.checkLimits("c1", UUID.randomUUID(), newPublishMsg("\u6e29\u5ea6\u8a08", 2)));
+        Assert.assertTrue(rateLimitService.checkLimits("c1", UUID.randomUUID(), newPublishMsg("\u6e29\u5ea6\u8a08", 1)));
+    }
+
+    @Test
+    public void givenNodeBytesLimits_whenCheckLimits_thenGetExpectedResult() {
+        when(rateLimitsConfiguration.isEnabled()).thenReturn(true);
+        when(rateLimitsConfiguration.getClientConfig()).thenReturn("100:1");
+        rateLimitService.setTotalBytesLimits(new TbRateLimits("100:1"));
+
+        Assert.assertTrue(rateLimitService.checkLimits("c1", UUID.randomUUID(), newPublishMsg("t", 50)));
+        Assert.assertFalse(rateLimitService.checkLimits("c2", UUID.randomUUID(), newPublishMsg("t", 60)));
+    }
+
+    @Test
+    public void givenClusterLimitsReached_whenCheckLimits_thenFailure() {
+        when(rateLimitsConfiguration.isEnabled()).thenReturn(true);
+        when(clusterRateLimitService.tryConsume(anyLong())).thenReturn(false);
+
+        Assert.assertFalse(rateLimitService.checkLimits(CLIENT_ID, UUID.randomUUID(), null));
+    }
+
     @Test
     public void givenOneClient_whenRemoveIt_thenSuccess() {
         rateLimitService.remove(CLIENT_ID);
@@ -128,4 +239,18 @@ public class RateLimitServiceImplTest {
         Assert.assertTrue(result);
     }
 
+    private ClientSessionCtx newSessionCtx(UUID credentialsId) {
+        ClientSessionCtx sessionCtx = new ClientSessionCtx(UUID.randomUUID(), null, 0);
+        sessionCtx.setCredentialsId(credentialsId);
+        sessionCtx.setClientType(ClientType.DEVICE);
+        return sessionCtx;
+    }
+
+    private MqttPublishMessage newPublishMsg(String topic, int payloadSize) {
+        return new MqttPublishMessage(
+                new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                new MqttPublishVariableHeader(topic, -1),
+                Unpooled.wrappedBuffer(new byte[payloadSize]));
+    }
+
 }
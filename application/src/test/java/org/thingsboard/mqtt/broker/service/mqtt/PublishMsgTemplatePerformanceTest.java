@@ -0,0 +1,80 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt;
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+
+import java.nio.charset.StandardCharsets;
+
+@Slf4j
+public class PublishMsgTemplatePerformanceTest {
+
+    @Test
+    public void givenSubscribers_whenPrepareDeliveries_thenLogCostPerDelivery() {
+        PublishMsgProto msg = buildPublishMsgProto();
+        for (int subscribers : new int[]{1, 100, 10_000}) {
+            // warm up
+            perSubscriberDeliveries(msg, subscribers);
+            templateDeliveries(msg, subscribers);
+
+            long perSubscriberNanos = perSubscriberDeliveries(msg, subscribers);
+            long templateNanos = templateDeliveries(msg, subscribers);
+            log.info("{} subscribers: per subscriber properties and payload copy - {} ns/delivery, template - {} ns/delivery",
+                    subscribers, perSubscriberNanos / subscribers, templateNanos / subscribers);
+        }
+    }
+
+    private long perSubscriberDeliveries(PublishMsgProto msg, int subscribers) {
+        long startTime = System.nanoTime();
+        for (int i = 0; i < subscribers; i++) {
+            MqttProperties properties = ProtoConverter.createMqttPropertiesWithUserPropsIfPresent(msg.getUserPropertiesList());
+            ProtoConverter.addFromProtoToMqttProperties(msg.getMqttProperties(), properties);
+            ByteBuf payload = Unpooled.buffer(msg.getPayload().size());
+            payload.writeBytes(msg.getPayload().asReadOnlyByteBuffer());
+            payload.release();
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    private long templateDeliveries(PublishMsgProto msg, int subscribers) {
+        long startTime = System.nanoTime();
+        PublishMsgTemplate template = new PublishMsgTemplate(msg);
+        for (int i = 0; i < subscribers; i++) {
+            template.getProperties(null);
+            template.newPayload().release();
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    private PublishMsgProto buildPublishMsgProto() {
+        return PublishMsgProto.newBuilder()
+                .setTopicName("test/topic")
+                .setQos(1)
+                .setPayload(ByteString.copyFrom("{\"temperature\":25,\"humidity\":60}", StandardCharsets.UTF_8))
+                .addUserProperties(QueueProtos.UserPropertyProto.newBuilder().setKey("k1").setValue("v1").build())
+                .addUserProperties(QueueProtos.UserPropertyProto.newBuilder().setKey("k2").setValue("v2").build())
+                .setMqttProperties(QueueProtos.MqttPropertiesProto.newBuilder().setContentType("application/json").build())
+                .build();
+    }
+}
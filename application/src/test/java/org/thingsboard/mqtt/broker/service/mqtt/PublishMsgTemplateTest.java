@@ -0,0 +1,81 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt;
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
+
+import java.nio.charset.StandardCharsets;
+
+public class PublishMsgTemplateTest {
+
+    @Test
+    public void givenPublishMsg_whenCreatePayload_thenPayloadIsNotCopied() {
+        PublishMsgProto msg = buildPublishMsgProto();
+        PublishMsgTemplate template = new PublishMsgTemplate(msg);
+
+        ByteBuf first = template.newPayload();
+        ByteBuf second = template.newPayload();
+        first.readByte();
+
+        Assert.assertArrayEquals(msg.getPayload().toByteArray(), ByteBufUtil.getBytes(second));
+        Assert.assertEquals(msg.getPayload().size() - 1, first.readableBytes());
+        Assert.assertTrue(first.release());
+        Assert.assertTrue(second.release());
+    }
+
+    @Test
+    public void givenPublishMsg_whenGetPropertiesWithoutTopicAlias_thenSharedPropertiesReturned() {
+        PublishMsgTemplate template = new PublishMsgTemplate(buildPublishMsgProto());
+
+        MqttProperties properties = template.getProperties(null);
+
+        Assert.assertSame(properties, template.getProperties(null));
+        Assert.assertEquals(2, MqttPropertiesUtil.getUserProperties(properties).value().size());
+        Assert.assertEquals("application/json", MqttPropertiesUtil.getContentTypeProperty(properties).value());
+        Assert.assertNull(MqttPropertiesUtil.getTopicAliasProperty(properties));
+    }
+
+    @Test
+    public void givenPublishMsg_whenGetPropertiesWithTopicAlias_thenSharedPropertiesNotModified() {
+        PublishMsgTemplate template = new PublishMsgTemplate(buildPublishMsgProto());
+
+        MqttProperties aliasedProperties = template.getProperties(5);
+
+        Assert.assertEquals(5, MqttPropertiesUtil.getTopicAliasProperty(aliasedProperties).value().intValue());
+        Assert.assertEquals(2, MqttPropertiesUtil.getUserProperties(aliasedProperties).value().size());
+        Assert.assertEquals("application/json", MqttPropertiesUtil.getContentTypeProperty(aliasedProperties).value());
+        Assert.assertNull(MqttPropertiesUtil.getTopicAliasProperty(template.getProperties(null)));
+    }
+
+    private PublishMsgProto buildPublishMsgProto() {
+        return PublishMsgProto.newBuilder()
+                .setTopicName("test/topic")
+                .setQos(1)
+                .setPayload(ByteString.copyFrom("{\"temperature\":25,\"humidity\":60}", StandardCharsets.UTF_8))
+                .addUserProperties(QueueProtos.UserPropertyProto.newBuilder().setKey("k1").setValue("v1").build())
+                .addUserProperties(QueueProtos.UserPropertyProto.newBuilder().setKey("k2").setValue("v2").build())
+                .setMqttProperties(QueueProtos.MqttPropertiesProto.newBuilder().setContentType("application/json").build())
+                .build();
+    }
+}
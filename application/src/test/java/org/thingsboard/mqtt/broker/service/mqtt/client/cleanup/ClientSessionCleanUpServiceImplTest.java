@@ -16,11 +16,13 @@
 package org.thingsboard.mqtt.broker.service.mqtt.client.cleanup;
 
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -38,15 +40,16 @@ import static org.awaitility.Awaitility.await;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
 @EnableScheduling
-@ContextConfiguration(classes = ClientSessionCleanUpServiceImpl.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@ContextConfiguration(classes = {ClientSessionCleanUpServiceImpl.class, ClientSessionExpiryIndex.class})
 @TestPropertySource(properties = {
-        "mqtt.client-session-expiry.cron=* * * * * *",
-        "mqtt.client-session-expiry.zone=UTC"
+        "mqtt.client-session-expiry.check-interval-ms=100"
 })
 public class ClientSessionCleanUpServiceImplTest {
 
@@ -61,6 +64,13 @@ public class ClientSessionCleanUpServiceImplTest {
 
     @SpyBean
     ClientSessionCleanUpServiceImpl clientSessionCleanUpService;
+    @SpyBean
+    ClientSessionExpiryIndex clientSessionExpiryIndex;
+
+    @Before
+    public void setUp() {
+        when(serviceInfoProvider.getServiceId()).thenReturn("tb-broker");
+    }
 
     @Test
     public void givenTwoSessions_whenWaitThreeSeconds_thenScheduledIsCalledAtLeastOneTime() {
@@ -72,11 +82,16 @@ public class ClientSessionCleanUpServiceImplTest {
         ClientSessionInfo clientSessionInfo2 = getClientSessionInfo(currentTsMinus10Secs, true, sessionExpiryInterval);
         ClientSessionInfo clientSessionInfo3 = getClientSessionInfo(currentTsMinus10Secs, false, 0);
 
-        when(clientSessionCache.getAllClientSessions()).thenReturn(Map.of(
+        Map<String, ClientSessionInfo> clientSessionInfos = Map.of(
                 "client1", clientSessionInfo1,
                 "client2", clientSessionInfo2,
                 "client3", clientSessionInfo3
-        ));
+        );
+        clientSessionInfos.forEach((clientId, clientSessionInfo) -> {
+            when(clientSessionCache.getClientSessionInfo(clientId)).thenReturn(clientSessionInfo);
+            clientSessionExpiryIndex.onSessionUpdated(clientId, clientSessionInfo);
+        });
+        Assert.assertEquals(2, clientSessionExpiryIndex.size());
 
         await()
                 .atMost(3, TimeUnit.SECONDS)
@@ -85,18 +100,32 @@ public class ClientSessionCleanUpServiceImplTest {
         verify(clientSessionEventService, atMost(1)).requestSessionCleanup(any());
     }
 
+    @Test
+    public void givenSessionReconnected_whenExpiryTimeComes_thenSessionIsNotCleared() {
+        long currentTs = System.currentTimeMillis();
+        ClientSessionInfo disconnected = getClientSessionInfo(currentTs - TimeUnit.SECONDS.toMillis(10), true, 3);
+        clientSessionExpiryIndex.onSessionUpdated("client", disconnected);
+        when(clientSessionCache.getClientSessionInfo("client")).thenReturn(disconnected.toBuilder().connected(true).build());
+
+        await()
+                .atMost(3, TimeUnit.SECONDS)
+                .untilAsserted(() -> Assert.assertEquals(0, clientSessionExpiryIndex.size()));
+
+        verify(clientSessionEventService, never()).requestSessionCleanup(any());
+    }
+
     @Test
     public void givenSessions_whenCheckIfNotPersistent_thenReceiveExpectedResult() {
-        Assert.assertTrue(clientSessionCleanUpService.isNotCleanSession(
+        Assert.assertTrue(clientSessionExpiryIndex.isNotCleanSession(
                 getSessionInfo(false, 0)
         ));
-        Assert.assertFalse(clientSessionCleanUpService.isNotCleanSession(
+        Assert.assertFalse(clientSessionExpiryIndex.isNotCleanSession(
                 getSessionInfo(false, 100)
         ));
-        Assert.assertFalse(clientSessionCleanUpService.isNotCleanSession(
+        Assert.assertFalse(clientSessionExpiryIndex.isNotCleanSession(
                 getSessionInfo(true, 0)
         ));
-        Assert.assertFalse(clientSessionCleanUpService.isNotCleanSession(
+        Assert.assertFalse(clientSessionExpiryIndex.isNotCleanSession(
                 getSessionInfo(true, 100)
         ));
     }
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.persistence;
 
+import com.google.common.util.concurrent.Futures;
 import io.netty.channel.ChannelHandlerContext;
 import org.junit.Before;
 import org.junit.Test;
@@ -95,9 +96,10 @@ public class GenericClientSessionCtxManagerImplTest {
     @Test
     public void testSaveAwaitingQoS2Packets() {
         when(awaitingPubRelPacketsCtx.getAwaitingPackets()).thenReturn(Collections.emptyList());
+        when(genericClientSessionCtxService.saveGenericClientSessionCtxAsync(any())).thenReturn(Futures.immediateFuture(null));
 
         genericClientSessionCtxManager.saveAwaitingQoS2Packets(ctx);
-        verify(genericClientSessionCtxService, times(1)).saveGenericClientSessionCtx(any());
+        verify(genericClientSessionCtxService, times(1)).saveGenericClientSessionCtxAsync(any());
     }
 
     @Test
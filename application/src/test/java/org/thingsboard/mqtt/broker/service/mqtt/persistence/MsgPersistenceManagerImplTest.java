@@ -29,6 +29,7 @@ import org.thingsboard.mqtt.broker.queue.common.DefaultTbQueueMsgHeaders;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.ApplicationMsgQueuePublisher;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.ApplicationPersistenceProcessor;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.payload.ApplicationPayloadClaimCheckService;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.DevicePersistenceProcessor;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.queue.DeviceMsgQueuePublisher;
 import org.thingsboard.mqtt.broker.service.processing.PublishMsgWithId;
@@ -67,6 +68,7 @@ public class MsgPersistenceManagerImplTest {
     DeviceMsgQueuePublisher deviceMsgQueuePublisher;
     DevicePersistenceProcessor devicePersistenceProcessor;
     ClientLogger clientLogger;
+    ApplicationPayloadClaimCheckService payloadClaimCheckService;
     MsgPersistenceManagerImpl msgPersistenceManager;
 
     @Before
@@ -77,10 +79,11 @@ public class MsgPersistenceManagerImplTest {
         deviceMsgQueuePublisher = mock(DeviceMsgQueuePublisher.class);
         devicePersistenceProcessor = mock(DevicePersistenceProcessor.class);
         clientLogger = mock(ClientLogger.class);
+        payloadClaimCheckService = mock(ApplicationPayloadClaimCheckService.class);
 
         msgPersistenceManager = spy(new MsgPersistenceManagerImpl(
                 genericClientSessionCtxManager, applicationMsgQueuePublisher, applicationPersistenceProcessor,
-                deviceMsgQueuePublisher, devicePersistenceProcessor, clientLogger));
+                deviceMsgQueuePublisher, devicePersistenceProcessor, clientLogger, payloadClaimCheckService));
 
         ctx = mock(ClientSessionCtx.class);
 
@@ -32,6 +32,7 @@ import org.thingsboard.mqtt.broker.queue.provider.ApplicationPersistenceMsgQueue
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsgDeliveryService;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationSharedSubscriptionJob;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.payload.ApplicationPayloadClaimCheckService;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationMsgAcknowledgeStrategyFactory;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationPersistedMsgCtxService;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationSubmitStrategyFactory;
@@ -78,6 +79,8 @@ public class ApplicationPersistenceProcessorImplTest {
     ClientLogger clientLogger;
     @MockBean
     ApplicationTopicService applicationTopicService;
+    @MockBean
+    ApplicationPayloadClaimCheckService payloadClaimCheckService;
 
     @SpyBean
     ApplicationPersistenceProcessorImpl applicationPersistenceProcessor;
@@ -0,0 +1,193 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.application.payload;
+
+import com.google.protobuf.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
+import org.thingsboard.mqtt.broker.exception.ApplicationPayloadFetchException;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
+import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsgHeaders;
+import org.thingsboard.mqtt.broker.queue.common.DefaultTbQueueMsgHeaders;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.queue.provider.PublishMsgQueueFactory;
+import org.thingsboard.mqtt.broker.service.processing.PublishMsgWithId;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ApplicationPayloadClaimCheckServiceImplTest {
+
+    static final ByteString PAYLOAD = ByteString.copyFromUtf8("payload-of-the-msg");
+
+    PublishMsgQueueFactory publishMsgQueueFactory;
+    TbQueueAdmin queueAdmin;
+    TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> fetchConsumer;
+    ApplicationPayloadClaimCheckServiceImpl claimCheckService;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        publishMsgQueueFactory = mock(PublishMsgQueueFactory.class);
+        fetchConsumer = mock(TbQueueControlledOffsetConsumer.class);
+        when(publishMsgQueueFactory.createPayloadFetchConsumer(anyString())).thenReturn(fetchConsumer);
+        when(fetchConsumer.getTopic()).thenReturn("tbmq.msg.all");
+        queueAdmin = mock(TbQueueAdmin.class);
+        ServiceInfoProvider serviceInfoProvider = mock(ServiceInfoProvider.class);
+        when(serviceInfoProvider.getServiceId()).thenReturn("serviceId");
+
+        claimCheckService = new ApplicationPayloadClaimCheckServiceImpl(publishMsgQueueFactory, serviceInfoProvider, queueAdmin);
+        claimCheckService.setEnabled(true);
+        claimCheckService.setMinPayloadSize(10);
+        claimCheckService.setMinReceivers(2);
+        claimCheckService.setFetchTimeoutMs(1000);
+        claimCheckService.setCacheMaxSizeBytes(1024);
+    }
+
+    @Test
+    public void givenMsg_whenCheckIsClaimCheckApplicable_thenSizeReceiversAndOffsetAreConsidered() {
+        assertTrue(claimCheckService.isClaimCheckApplicable(newPublishMsgWithId(0, 5), 2));
+        assertFalse(claimCheckService.isClaimCheckApplicable(newPublishMsgWithId(0, 5), 1));
+        assertFalse(claimCheckService.isClaimCheckApplicable(newPublishMsgWithId(-1, -1), 2));
+
+        PublishMsgWithId smallMsg = new PublishMsgWithId(UUID.randomUUID(), new TbProtoQueueMsg<>(
+                null, newPublishMsgProto(ByteString.copyFromUtf8("small")), new DefaultTbQueueMsgHeaders(), 0, 5));
+        assertFalse(claimCheckService.isClaimCheckApplicable(smallMsg, 2));
+
+        claimCheckService.setEnabled(false);
+        assertFalse(claimCheckService.isClaimCheckApplicable(newPublishMsgWithId(0, 5), 2));
+    }
+
+    @Test
+    public void givenCheckedInMsg_whenResolvePayloads_thenPayloadRestoredFromCache() {
+        PublishMsgWithId publishMsgWithId = newPublishMsgWithId(3, 7);
+        TbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+
+        PublishMsgProto receiverMsg = claimCheckService.checkIn(publishMsgWithId.getPublishMsgProto(), publishMsgWithId, headers);
+        assertTrue(receiverMsg.getPayload().isEmpty());
+
+        List<TbProtoQueueMsg<PublishMsgProto>> resolved = claimCheckService.resolvePayloads(List.of(
+                new TbProtoQueueMsg<>("test", receiverMsg, headers, 0, 100)));
+
+        assertEquals(1, resolved.size());
+        assertEquals(PAYLOAD, resolved.get(0).getValue().getPayload());
+        assertEquals(100, resolved.get(0).getOffset());
+        verify(publishMsgQueueFactory, never()).createPayloadFetchConsumer(anyString());
+    }
+
+    @Test
+    public void givenNotCachedPayloads_whenResolvePayloads_thenPayloadsFetchedAndMsgsMissingInLogSkipped() {
+        claimCheckService.setCacheMaxSizeBytes(0);
+        TbQueueMsgHeaders firstHeaders = new DefaultTbQueueMsgHeaders();
+        PublishMsgProto first = claimCheckService.checkIn(newPublishMsgProto(PAYLOAD), newPublishMsgWithId(1, 10), firstHeaders);
+        TbQueueMsgHeaders secondHeaders = new DefaultTbQueueMsgHeaders();
+        PublishMsgProto second = claimCheckService.checkIn(newPublishMsgProto(PAYLOAD), newPublishMsgWithId(1, 12), secondHeaders);
+
+        when(fetchConsumer.poll(anyLong())).thenReturn(List.of(
+                new TbProtoQueueMsg<>("test", newPublishMsgProto(PAYLOAD), new DefaultTbQueueMsgHeaders(), 1, 10),
+                new TbProtoQueueMsg<>("test", newPublishMsgProto(PAYLOAD), new DefaultTbQueueMsgHeaders(), 1, 13)));
+
+        List<TbProtoQueueMsg<PublishMsgProto>> resolved = claimCheckService.resolvePayloads(List.of(
+                new TbProtoQueueMsg<>("test", first, firstHeaders, 0, 1),
+                new TbProtoQueueMsg<>("test", second, secondHeaders, 0, 2)));
+
+        verify(fetchConsumer).assignPartition(1);
+        verify(fetchConsumer).seek(1, 10);
+        assertEquals(1, resolved.size());
+        assertEquals(1, resolved.get(0).getOffset());
+        assertEquals(PAYLOAD, resolved.get(0).getValue().getPayload());
+    }
+
+    @Test
+    public void givenPayloadsRemovedByRetention_whenResolvePayloads_thenMsgsSkippedWithoutFetch() {
+        claimCheckService.setCacheMaxSizeBytes(0);
+        TbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+        PublishMsgProto msg = claimCheckService.checkIn(newPublishMsgProto(PAYLOAD), newPublishMsgWithId(1, 10), headers);
+        when(queueAdmin.getBeginningOffset("tbmq.msg.all", 1)).thenReturn(11L);
+
+        List<TbProtoQueueMsg<PublishMsgProto>> resolved = claimCheckService.resolvePayloads(List.of(
+                new TbProtoQueueMsg<>("test", msg, headers, 0, 1)));
+
+        assertTrue(resolved.isEmpty());
+        verify(fetchConsumer, never()).seek(anyInt(), anyLong());
+    }
+
+    @Test
+    public void givenSlowFetch_whenResolvePayloads_thenExceptionThrownToRetryPack() {
+        claimCheckService.setCacheMaxSizeBytes(0);
+        claimCheckService.setFetchTimeoutMs(50);
+        TbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+        PublishMsgProto msg = claimCheckService.checkIn(newPublishMsgProto(PAYLOAD), newPublishMsgWithId(1, 10), headers);
+        when(fetchConsumer.poll(anyLong())).thenReturn(Collections.emptyList());
+
+        assertThrows(ApplicationPayloadFetchException.class, () -> claimCheckService.resolvePayloads(List.of(
+                new TbProtoQueueMsg<>("test", msg, headers, 0, 1))));
+    }
+
+    @Test
+    public void givenDifferentPartitions_whenResolvePayloads_thenConsumerPerPartitionUsed() {
+        claimCheckService.setCacheMaxSizeBytes(0);
+        TbQueueMsgHeaders firstHeaders = new DefaultTbQueueMsgHeaders();
+        PublishMsgProto first = claimCheckService.checkIn(newPublishMsgProto(PAYLOAD), newPublishMsgWithId(1, 10), firstHeaders);
+        TbQueueMsgHeaders secondHeaders = new DefaultTbQueueMsgHeaders();
+        PublishMsgProto second = claimCheckService.checkIn(newPublishMsgProto(PAYLOAD), newPublishMsgWithId(2, 10), secondHeaders);
+        when(fetchConsumer.poll(anyLong())).thenReturn(
+                List.of(new TbProtoQueueMsg<>("test", newPublishMsgProto(PAYLOAD), new DefaultTbQueueMsgHeaders(), 1, 10)),
+                List.of(new TbProtoQueueMsg<>("test", newPublishMsgProto(PAYLOAD), new DefaultTbQueueMsgHeaders(), 2, 10)));
+
+        List<TbProtoQueueMsg<PublishMsgProto>> resolved = claimCheckService.resolvePayloads(List.of(
+                new TbProtoQueueMsg<>("test", first, firstHeaders, 0, 1),
+                new TbProtoQueueMsg<>("test", second, secondHeaders, 0, 2)));
+
+        assertEquals(2, resolved.size());
+        verify(publishMsgQueueFactory).createPayloadFetchConsumer("serviceId-1");
+        verify(publishMsgQueueFactory).createPayloadFetchConsumer("serviceId-2");
+    }
+
+    @Test
+    public void givenMsgsWithoutReferences_whenResolvePayloads_thenSameMsgsReturned() {
+        List<TbProtoQueueMsg<PublishMsgProto>> msgs = List.of(
+                new TbProtoQueueMsg<>("test", newPublishMsgProto(PAYLOAD), new DefaultTbQueueMsgHeaders(), 0, 1));
+
+        assertSame(msgs, claimCheckService.resolvePayloads(msgs));
+    }
+
+    private PublishMsgWithId newPublishMsgWithId(int partition, long offset) {
+        return new PublishMsgWithId(UUID.randomUUID(), new TbProtoQueueMsg<>(
+                null, newPublishMsgProto(PAYLOAD), new DefaultTbQueueMsgHeaders(), partition, offset));
+    }
+
+    private PublishMsgProto newPublishMsgProto(ByteString payload) {
+        return PublishMsgProto.newBuilder().setTopicName("test").setPayload(payload).build();
+    }
+}
@@ -22,7 +22,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.thingsboard.mqtt.broker.cache.CacheConstants;
-import org.thingsboard.mqtt.broker.dao.client.device.DeviceSessionCtxService;
+import org.thingsboard.mqtt.broker.dao.client.device.DevicePacketIdAndSerialNumberService;
 import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgService;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
@@ -37,7 +37,7 @@ import static org.mockito.Mockito.when;
 public class DevicePersistenceProcessorImplTest {
 
     DeviceMsgService deviceMsgService;
-    DeviceSessionCtxService deviceSessionCtxService;
+    DevicePacketIdAndSerialNumberService serialNumberService;
     DeviceActorManager deviceActorManager;
     CacheManager cacheManager;
     DevicePersistenceProcessorImpl devicePersistenceProcessor;
@@ -47,11 +47,11 @@ public class DevicePersistenceProcessorImplTest {
     @Before
     public void setUp() {
         deviceMsgService = mock(DeviceMsgService.class);
-        deviceSessionCtxService = mock(DeviceSessionCtxService.class);
+        serialNumberService = mock(DevicePacketIdAndSerialNumberService.class);
         deviceActorManager = mock(DeviceActorManager.class);
         cacheManager = mock(CacheManager.class);
         devicePersistenceProcessor = spy(new DevicePersistenceProcessorImpl(
-                deviceMsgService, deviceSessionCtxService, deviceActorManager, cacheManager));
+                deviceMsgService, serialNumberService, deviceActorManager, cacheManager));
 
         clientId = "clientId";
     }
@@ -64,7 +64,7 @@ public class DevicePersistenceProcessorImplTest {
         devicePersistenceProcessor.clearPersistedMsgs(clientId);
 
         verify(deviceMsgService, times(1)).removePersistedMessages(eq(clientId));
-        verify(deviceSessionCtxService, times(1)).removeDeviceSessionContext(eq(clientId));
+        verify(serialNumberService, times(1)).removeDeviceSessionContext(eq(clientId));
         verify(cacheManager, times(1)).getCache(eq(CacheConstants.PACKET_ID_AND_SERIAL_NUMBER_CACHE));
         verify(cache, times(1)).evict(eq(clientId));
     }
@@ -0,0 +1,73 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.device.processing;
+
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
+
+import java.util.List;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class DeviceMsgWriteTrackerImplTest {
+
+    DeviceMsgWriteTrackerImpl deviceMsgWriteTracker;
+
+    @Before
+    public void setUp() {
+        deviceMsgWriteTracker = new DeviceMsgWriteTrackerImpl();
+    }
+
+    @Test
+    public void givenPendingWrite_whenGetPendingWrite_thenReturnWriteFuture() {
+        SettableFuture<Void> writeFuture = SettableFuture.create();
+        deviceMsgWriteTracker.trackPendingWrite(List.of(newMsg("client1", 1), newMsg("client2", 5)), writeFuture);
+
+        assertSame(writeFuture, deviceMsgWriteTracker.getPendingWrite("client1", 1));
+        assertSame(writeFuture, deviceMsgWriteTracker.getPendingWrite("client2", 5));
+        assertNull(deviceMsgWriteTracker.getPendingWrite("client1", 5));
+        assertNull(deviceMsgWriteTracker.getPendingWrite("client3", 1));
+    }
+
+    @Test
+    public void givenCompletedWrite_whenGetPendingWrite_thenReturnNull() {
+        SettableFuture<Void> writeFuture = SettableFuture.create();
+        deviceMsgWriteTracker.trackPendingWrite(List.of(newMsg("client1", 1)), writeFuture);
+
+        writeFuture.set(null);
+
+        assertNull(deviceMsgWriteTracker.getPendingWrite("client1", 1));
+    }
+
+    @Test
+    public void givenPacketIdReusedByNextWrite_whenPreviousWriteCompleted_thenKeepNextWrite() {
+        SettableFuture<Void> firstWrite = SettableFuture.create();
+        SettableFuture<Void> secondWrite = SettableFuture.create();
+        deviceMsgWriteTracker.trackPendingWrite(List.of(newMsg("client1", 1)), firstWrite);
+        deviceMsgWriteTracker.trackPendingWrite(List.of(newMsg("client1", 1)), secondWrite);
+
+        firstWrite.setException(new RuntimeException("Failed to save"));
+
+        assertSame(secondWrite, deviceMsgWriteTracker.getPendingWrite("client1", 1));
+    }
+
+    private DevicePublishMsg newMsg(String clientId, int packetId) {
+        return DevicePublishMsg.builder().clientId(clientId).packetId(packetId).build();
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.device.queue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
+import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+import org.thingsboard.mqtt.broker.queue.common.DefaultTbQueueMsgHeaders;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.queue.provider.DevicePersistenceMsgQueueFactory;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.processing.DeviceMsgProcessor;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.processing.DeviceMsgWriteTracker;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.device.processing.DevicePersistencePack;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DeviceMsgQueueConsumerImplTest {
+
+    private TbQueueControlledOffsetConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> consumer;
+    private DeviceMsgProcessor deviceMsgProcessor;
+    private DeviceMsgQueueConsumerImpl deviceMsgQueueConsumer;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void init() {
+        consumer = mock(TbQueueControlledOffsetConsumer.class);
+        deviceMsgProcessor = mock(DeviceMsgProcessor.class);
+        DevicePersistenceMsgQueueFactory queueFactory = mock(DevicePersistenceMsgQueueFactory.class);
+        ServiceInfoProvider serviceInfoProvider = mock(ServiceInfoProvider.class);
+        when(queueFactory.createConsumer(anyString())).thenReturn(consumer);
+        when(serviceInfoProvider.getServiceId()).thenReturn("serviceId");
+
+        deviceMsgQueueConsumer = new DeviceMsgQueueConsumerImpl(queueFactory, deviceMsgProcessor,
+                mock(StatsManager.class), serviceInfoProvider, mock(DeviceMsgWriteTracker.class));
+        ReflectionTestUtils.setField(deviceMsgQueueConsumer, "consumersCount", 1);
+        ReflectionTestUtils.setField(deviceMsgQueueConsumer, "pollDuration", 10L);
+        ReflectionTestUtils.setField(deviceMsgQueueConsumer, "threadsCount", 1);
+        ReflectionTestUtils.setField(deviceMsgQueueConsumer, "pipelinedPersistence", true);
+        deviceMsgQueueConsumer.init();
+
+        DevicePersistencePack pack = new DevicePersistencePack(Set.of("client"), Collections.emptyList(), Collections.emptyMap());
+        when(deviceMsgProcessor.preparePack(any(), any())).thenReturn(pack);
+    }
+
+    @After
+    public void destroy() {
+        deviceMsgQueueConsumer.destroy();
+    }
+
+    @Test
+    public void givenSavedPacks_whenConsume_thenCommitNextOffsets() {
+        when(consumer.poll(anyLong())).thenReturn(List.of(newMsg(0, 10), newMsg(0, 11)), List.of(newMsg(0, 12)), Collections.emptyList());
+        when(deviceMsgProcessor.persistPack(any(), any(), anyString())).thenReturn(true);
+
+        deviceMsgQueueConsumer.startConsuming();
+
+        verify(consumer, timeout(5000)).commit(0, 12L);
+        verify(consumer, timeout(5000)).commit(0, 13L);
+        verify(consumer, never()).seek(anyInt(), anyLong());
+    }
+
+    @Test
+    public void givenFailedPackSave_whenConsume_thenSeekToFailedPackWithoutCommit() {
+        when(consumer.poll(anyLong())).thenReturn(List.of(newMsg(0, 10), newMsg(0, 11)), List.of(newMsg(0, 12), newMsg(1, 5)), Collections.emptyList());
+        when(deviceMsgProcessor.persistPack(any(), any(), anyString())).thenThrow(new RuntimeException("DB is not available"));
+
+        deviceMsgQueueConsumer.startConsuming();
+
+        verify(consumer, timeout(5000)).seek(0, 10L);
+        verify(consumer, timeout(5000)).seek(1, 5L);
+        verify(consumer, after(200).never()).commit(anyInt(), anyLong());
+    }
+
+    private TbProtoQueueMsg<QueueProtos.PublishMsgProto> newMsg(int partition, long offset) {
+        return new TbProtoQueueMsg<>("client", QueueProtos.PublishMsgProto.getDefaultInstance(),
+                new DefaultTbQueueMsgHeaders(), partition, offset);
+    }
+}
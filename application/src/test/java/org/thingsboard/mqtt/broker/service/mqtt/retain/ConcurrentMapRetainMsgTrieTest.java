@@ -22,13 +22,16 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.thingsboard.mqtt.broker.exception.RetainMsgTrieClearException;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -187,7 +190,7 @@ public class ConcurrentMapRetainMsgTrieTest {
     }
 
     @Test
-    public void testClearTrie_Basic() throws RetainMsgTrieClearException {
+    public void testDelete_RemovesEmptyNodes() {
         for (int i = 0; i < 10; i++) {
             for (int j = 0; j < 3; j++) {
                 retainMsgTrie.put(i + "/" + j, "val");
@@ -199,25 +202,57 @@ public class ConcurrentMapRetainMsgTrieTest {
         retainMsgTrie.delete("0/2");
         retainMsgTrie.delete("1/0");
 
-        retainMsgTrie.setWaitForClearLockMs(100);
-        retainMsgTrie.clearEmptyNodes();
         // should clear 0/0, 0/1, 0/2, 0 and 1/0 nodes
         Assert.assertEquals(40 - 5, nodesCounter.get());
+
+        retainMsgTrie.clearEmptyNodes();
+        Assert.assertEquals(40 - 5, nodesCounter.get());
     }
 
     @Test
-    public void testClearTrie_ClearAll() throws RetainMsgTrieClearException {
+    public void testDelete_RemovesAllNodes() {
         for (int i = 0; i < 10; i++) {
             for (int j = 0; j < 3; j++) {
                 retainMsgTrie.put(i + "/" + j, "val");
                 retainMsgTrie.delete(i + "/" + j);
             }
         }
-        Assert.assertEquals(40, nodesCounter.get());
+        Assert.assertEquals(0, nodesCounter.get());
 
-        retainMsgTrie.setWaitForClearLockMs(100);
         retainMsgTrie.clearEmptyNodes();
 
         Assert.assertEquals(0, nodesCounter.get());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConcurrentPutAndDelete() throws InterruptedException {
+        int threadsCount = 8;
+        int iterations = 10_000;
+        AtomicInteger lostValues = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+        CountDownLatch latch = new CountDownLatch(threadsCount);
+        for (int t = 0; t < threadsCount; t++) {
+            int threadIdx = t;
+            executor.submit(() -> {
+                try {
+                    for (int i = 0; i < iterations; i++) {
+                        String topic = "response/" + (i % 5) + "/" + threadIdx;
+                        retainMsgTrie.put(topic, "val");
+                        if (retainMsgTrie.get(topic).isEmpty()) {
+                            lostValues.incrementAndGet();
+                        }
+                        retainMsgTrie.delete(topic);
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executor.shutdownNow();
+
+        Assert.assertEquals(0, lostValues.get());
+        Assert.assertEquals(0, retainMsgTrie.size());
+        Assert.assertEquals(0, nodesCounter.get());
+    }
+}
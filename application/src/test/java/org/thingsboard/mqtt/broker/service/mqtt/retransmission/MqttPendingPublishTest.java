@@ -0,0 +1,68 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retransmission;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
+import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
+
+import static org.mockito.Mockito.mock;
+
+public class MqttPendingPublishTest {
+
+    private static final String TOPIC_NAME = "test/topic/with/a/long/name";
+
+    @Test
+    public void givenAliasedPublishMsg_whenGetRetransmissionVariableHeader_thenFullTopicNameWithoutAliasReturned() {
+        MqttProperties properties = new MqttProperties();
+        MqttPropertiesUtil.addContentTypeToProps(properties, "application/json");
+        MqttPropertiesUtil.addTopicAliasToProps(properties, 3);
+        MqttPublishMessage msg = newPublishMsg(new MqttPublishVariableHeader("", 1, properties));
+
+        MqttPublishVariableHeader variableHeader = newPendingPublish(msg).getRetransmissionVariableHeader(msg);
+
+        Assert.assertEquals(TOPIC_NAME, variableHeader.topicName());
+        Assert.assertEquals(1, variableHeader.packetId());
+        Assert.assertNull(MqttPropertiesUtil.getTopicAliasProperty(variableHeader.properties()));
+        Assert.assertEquals("application/json", MqttPropertiesUtil.getContentTypeProperty(variableHeader.properties()).value());
+    }
+
+    @Test
+    public void givenNotAliasedPublishMsg_whenGetRetransmissionVariableHeader_thenOriginalVariableHeaderReturned() {
+        MqttPublishVariableHeader originalVariableHeader = new MqttPublishVariableHeader(TOPIC_NAME, 1, new MqttProperties());
+        MqttPublishMessage msg = newPublishMsg(originalVariableHeader);
+
+        Assert.assertSame(originalVariableHeader, newPendingPublish(msg).getRetransmissionVariableHeader(msg));
+    }
+
+    private MqttPendingPublish newPendingPublish(MqttPublishMessage msg) {
+        return new MqttPendingPublish(mock(ClientSessionCtx.class), 1, msg.payload(), MqttQoS.AT_LEAST_ONCE,
+                msg, TOPIC_NAME, 10, 5);
+    }
+
+    private MqttPublishMessage newPublishMsg(MqttPublishVariableHeader variableHeader) {
+        MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE, false, 0);
+        return new MqttPublishMessage(fixedHeader, variableHeader, Unpooled.EMPTY_BUFFER);
+    }
+}
@@ -21,6 +21,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.verification.VerificationMode;
+import org.thingsboard.mqtt.broker.common.data.ClientInfo;
 import org.thingsboard.mqtt.broker.common.data.SessionInfo;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsg;
 import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgProcessor;
@@ -29,9 +30,13 @@ import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
 import java.util.UUID;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -50,6 +55,7 @@ public class DefaultLastWillServiceTest {
 
     SessionInfo sessionInfo;
     UUID savedSessionId;
+    ScheduledExecutorService scheduledExecutorService;
 
     @Before
     public void setUp() {
@@ -62,7 +68,7 @@ public class DefaultLastWillServiceTest {
         savedSessionId = UUID.randomUUID();
         when(sessionInfo.getSessionId()).thenReturn(savedSessionId);
 
-        ScheduledExecutorService scheduledExecutorService = mock(ScheduledExecutorService.class);
+        scheduledExecutorService = mock(ScheduledExecutorService.class);
         lastWillService.setScheduler(scheduledExecutorService);
         doNothing().when(lastWillService).scheduleLastWill(any(), any(), anyInt());
     }
@@ -94,6 +100,29 @@ public class DefaultLastWillServiceTest {
         verifyPersistPublishMsg(never());
     }
 
+    @Test
+    public void testImmediateLastWillExecutedWithoutDelay() {
+        doCallRealMethod().when(lastWillService).scheduleLastWill(any(), any(), anyInt());
+
+        lastWillService.scheduleLastWill(new DefaultLastWillService.MsgWithSessionInfo(getPublishMsg(), sessionInfo), savedSessionId, 0);
+
+        verify(scheduledExecutorService, times(1)).execute(any());
+        verify(scheduledExecutorService, never()).schedule(any(Runnable.class), anyLong(), any());
+    }
+
+    @Test
+    public void testDelayedLastWillScheduled() {
+        doCallRealMethod().when(lastWillService).scheduleLastWill(any(), any(), anyInt());
+        ClientInfo clientInfo = mock(ClientInfo.class);
+        when(sessionInfo.getClientInfo()).thenReturn(clientInfo);
+        when(clientInfo.getClientId()).thenReturn("clientId");
+
+        lastWillService.scheduleLastWill(new DefaultLastWillService.MsgWithSessionInfo(getPublishMsg(), sessionInfo), savedSessionId, 100);
+
+        verify(scheduledExecutorService, never()).execute(any());
+        verify(scheduledExecutorService, times(1)).schedule(any(Runnable.class), eq(100L), eq(TimeUnit.SECONDS));
+    }
+
     private void verifyPersistPublishMsg(VerificationMode mode) {
         verify(lastWillService, mode).scheduleLastWill(any(), any(), anyInt());
     }
@@ -22,6 +22,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.thingsboard.mqtt.broker.actors.client.service.session.CompactClientSessionInfo;
 import org.thingsboard.mqtt.broker.actors.client.service.subscription.SubscriptionService;
 import org.thingsboard.mqtt.broker.cluster.ServiceInfoProvider;
 import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
@@ -85,6 +86,8 @@ public class MsgDispatcherServiceImplTest {
     TbMessageStatsReportClient tbMessageStatsReportClient;
     @MockBean
     ServiceInfoProvider serviceInfoProvider;
+    @MockBean
+    PartitioningStrategyFactory partitioningStrategyFactory;
     @SpyBean
     MsgDispatcherServiceImpl msgDispatcherService;
 
@@ -142,7 +145,7 @@ public class MsgDispatcherServiceImplTest {
 
     @Test
     public void testCollectSubscriptions3() {
-        when(clientSessionCache.getClientSessionInfo("clientId1")).thenReturn(ClientSessionInfo.builder().clientId("clientId1").build());
+        mockClientSessionCacheGetClientSession("clientId1", ClientSessionInfo.builder().clientId("clientId1").build());
 
         List<ValueWithTopicFilter<ClientSubscription>> before = List.of(
                 newValueWithTopicFilter("clientId1", 0, "+/test/+")
@@ -156,7 +159,7 @@ public class MsgDispatcherServiceImplTest {
     @Test
     public void testCollectSubscriptions2() {
         for (int i = 1; i < 7; i++) {
-            when(clientSessionCache.getClientSessionInfo("clientId" + i)).thenReturn(ClientSessionInfo.builder().clientId("clientId" + i).build());
+            mockClientSessionCacheGetClientSession("clientId" + i, ClientSessionInfo.builder().clientId("clientId" + i).build());
         }
 
         List<ValueWithTopicFilter<ClientSubscription>> before = List.of(
@@ -186,7 +189,7 @@ public class MsgDispatcherServiceImplTest {
     @Test
     public void testCollectSubscriptions1() {
         for (int i = 1; i < 7; i++) {
-            when(clientSessionCache.getClientSessionInfo("clientId" + i)).thenReturn(ClientSessionInfo.builder().clientId("clientId" + i).build());
+            mockClientSessionCacheGetClientSession("clientId" + i, ClientSessionInfo.builder().clientId("clientId" + i).build());
         }
 
         List<ValueWithTopicFilter<ClientSubscription>> before = List.of(
@@ -373,7 +376,8 @@ public class MsgDispatcherServiceImplTest {
     }
 
     private void mockClientSessionCacheGetClientSession(String clientId, ClientSessionInfo clientSessionInfo) {
-        when(clientSessionCache.getClientSessionInfo(clientId)).thenReturn(clientSessionInfo);
+        CompactClientSessionInfo compactClientSessionInfo = CompactClientSessionInfo.of(clientSessionInfo, clientSessionInfo.getServiceId());
+        when(clientSessionCache.getCompactClientSessionInfo(clientId)).thenReturn(compactClientSessionInfo);
     }
 
     private void mockClientSessionGetClientId(ClientSessionInfo clientSessionInfo, String clientId) {
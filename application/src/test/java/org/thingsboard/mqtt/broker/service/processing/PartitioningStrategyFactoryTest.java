@@ -0,0 +1,82 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.processing;
+
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PartitioningStrategyFactoryTest {
+
+    static final PublishMsgProto MSG = PublishMsgProto.newBuilder()
+            .setTopicName("fleet/status")
+            .setClientId("publisher")
+            .build();
+
+    @Test
+    public void givenStrategyTypes_whenGetKey_thenKeyMatchesType() {
+        assertEquals("fleet/status", newStrategy(PartitioningStrategyType.TOPIC).getKey(MSG));
+        assertEquals("publisher", newStrategy(PartitioningStrategyType.CLIENT).getKey(MSG));
+        assertNull(newStrategy(PartitioningStrategyType.STICKY).getKey(MSG));
+    }
+
+    @Test
+    public void givenColdTopic_whenGetKey_thenTopicIsKey() {
+        var strategy = new PartitioningStrategyFactory.HotTopicSplitStrategy(10, 60000, 4);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("fleet/status", strategy.getKey(MSG));
+        }
+    }
+
+    @Test
+    public void givenHotTopic_whenGetKey_thenKeysSpreadOverSplitFactor() {
+        var strategy = new PartitioningStrategyFactory.HotTopicSplitStrategy(10, 60000, 4);
+        for (int i = 0; i < 10; i++) {
+            strategy.getKey(MSG);
+        }
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 8; i++) {
+            keys.add(strategy.getKey(MSG));
+        }
+        assertEquals(Set.of("fleet/status#0", "fleet/status#1", "fleet/status#2", "fleet/status#3"), keys);
+    }
+
+    @Test
+    public void givenHotTopic_whenPeriodsPass_thenTopicCoolsDown() {
+        var strategy = new PartitioningStrategyFactory.HotTopicSplitStrategy(2, 1000, 4);
+        long ts = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            strategy.isHot("topic", ts);
+        }
+        assertTrue(strategy.isHot("topic", ts));
+        // previous period was hot
+        assertTrue(strategy.isHot("topic", ts + 1000));
+        assertFalse(strategy.isHot("topic", ts + 3000));
+    }
+
+    private PartitioningStrategy newStrategy(PartitioningStrategyType type) {
+        PartitioningStrategyConfiguration configuration = new PartitioningStrategyConfiguration();
+        configuration.setType(type);
+        return new PartitioningStrategyFactory(configuration).newInstance();
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.processing;
+
+import com.google.protobuf.ByteString;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.MqttPropertiesProto;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.UserPropertyProto;
+import org.thingsboard.mqtt.broker.queue.common.DefaultTbQueueMsgHeaders;
+import org.thingsboard.mqtt.broker.queue.common.TbLazyPublishQueueMsg;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+/**
+ * Compares the CPU time spent per consumed msg.all message by the full decode the consumer used before
+ * and by the decode of the routing fields only.
+ */
+@Slf4j
+public class PublishMsgDecodePerformanceTest {
+
+    private static final int NUMBER_OF_MESSAGES = 200_000;
+    private static final int WARM_UP_ROUNDS = 3;
+    private static final int PAYLOAD_SIZE = 1024;
+    private static final int NUMBER_OF_USER_PROPERTIES = 5;
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private byte[] data;
+    // consumes the decoded values, so the decode is not eliminated as dead code
+    private long checksum;
+
+    @Before
+    public void before() {
+        byte[] payload = new byte[PAYLOAD_SIZE];
+        new Random(0).nextBytes(payload);
+        PublishMsgProto.Builder builder = PublishMsgProto.newBuilder()
+                .setClientId("publisher")
+                .setTopicName("tenant/1/devices/device-1/telemetry")
+                .setQos(1)
+                .setRetain(false)
+                .setPayload(ByteString.copyFrom(payload))
+                .setMqttProperties(MqttPropertiesProto.newBuilder().setContentType("application/json").build());
+        for (int i = 0; i < NUMBER_OF_USER_PROPERTIES; i++) {
+            builder.addUserProperties(UserPropertyProto.newBuilder().setKey("key" + i).setValue("value" + i).build());
+        }
+        data = builder.build().toByteArray();
+    }
+
+    @Test
+    public void testRoutingDecodeCpuTimePerMsg() throws Exception {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            fullDecode();
+            routingDecode();
+            routingAndFullDecode();
+        }
+
+        long fullDecodeNanos = fullDecode();
+        long routingDecodeNanos = routingDecode();
+        long routingAndFullDecodeNanos = routingAndFullDecode();
+
+        log.info("CPU time per consumed msg of {} bytes: full decode {} ns, routing decode {} ns, " +
+                        "routing decode followed by the full decode {} ns",
+                data.length, fullDecodeNanos / NUMBER_OF_MESSAGES, routingDecodeNanos / NUMBER_OF_MESSAGES,
+                routingAndFullDecodeNanos / NUMBER_OF_MESSAGES);
+
+        Assert.assertTrue(checksum > 0);
+        Assert.assertTrue(routingDecodeNanos < fullDecodeNanos);
+    }
+
+    private long fullDecode() throws Exception {
+        long startTime = threadMXBean.getCurrentThreadCpuTime();
+        for (int i = 0; i < NUMBER_OF_MESSAGES; i++) {
+            checksum += PublishMsgProto.parseFrom(data).getQos();
+        }
+        return threadMXBean.getCurrentThreadCpuTime() - startTime;
+    }
+
+    private long routingDecode() throws Exception {
+        long startTime = threadMXBean.getCurrentThreadCpuTime();
+        for (int i = 0; i < NUMBER_OF_MESSAGES; i++) {
+            checksum += decode(i).getRoutingValue().getQos();
+        }
+        return threadMXBean.getCurrentThreadCpuTime() - startTime;
+    }
+
+    private long routingAndFullDecode() throws Exception {
+        long startTime = threadMXBean.getCurrentThreadCpuTime();
+        for (int i = 0; i < NUMBER_OF_MESSAGES; i++) {
+            TbLazyPublishQueueMsg msg = decode(i);
+            checksum += msg.getRoutingValue().getQos() + msg.getValue().getUserPropertiesCount();
+        }
+        return threadMXBean.getCurrentThreadCpuTime() - startTime;
+    }
+
+    private TbLazyPublishQueueMsg decode(long offset) throws Exception {
+        return TbLazyPublishQueueMsg.decode(null, data, new DefaultTbQueueMsgHeaders(), 0, offset);
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.processing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+import org.thingsboard.mqtt.broker.queue.TbQueueCallback;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsgMetadata;
+import org.thingsboard.mqtt.broker.queue.TbQueueProducer;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.queue.provider.PublishMsgQueueFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PublishMsgQueuePublisherImplTest {
+
+    TbQueueProducer<TbProtoQueueMsg<PublishMsgProto>> producer;
+    PublishMsgQueuePublisherImpl publisher;
+
+    List<Integer> sentPacketIds;
+    List<Thread> sendingThreads;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        producer = mock(TbQueueProducer.class);
+        PublishMsgQueueFactory queueFactory = mock(PublishMsgQueueFactory.class);
+        when(queueFactory.createProducer()).thenReturn(producer);
+
+        sentPacketIds = new CopyOnWriteArrayList<>();
+        sendingThreads = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            TbProtoQueueMsg<PublishMsgProto> msg = invocation.getArgument(0);
+            sentPacketIds.add(msg.getValue().getPacketId());
+            sendingThreads.add(Thread.currentThread());
+            invocation.<TbQueueCallback>getArgument(1).onSuccess(null);
+            return null;
+        }).when(producer).send(any(), any());
+
+        publisher = new PublishMsgQueuePublisherImpl(queueFactory);
+    }
+
+    @After
+    public void tearDown() {
+        publisher.destroy();
+    }
+
+    @Test
+    public void givenEventLoopAffinityDisabled_whenSendMsg_thenSentByCallingThread() {
+        publisher.init();
+
+        publisher.sendMsg(newMsg("topic", 1), new LatchCallback(new CountDownLatch(1)));
+
+        assertEquals(List.of(1), sentPacketIds);
+        assertEquals(Thread.currentThread(), sendingThreads.get(0));
+    }
+
+    @Test
+    public void givenEventLoopAffinityEnabled_whenSendMsgsWithSameKey_thenSentInOrderBySenderThread() throws InterruptedException {
+        ReflectionTestUtils.setField(publisher, "eventLoopAffinity", true);
+        ReflectionTestUtils.setField(publisher, "senderThreadsCount", 4);
+        publisher.init();
+
+        CountDownLatch latch = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            publisher.sendMsg(newMsg("topic", i), new LatchCallback(latch));
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, sentPacketIds.get(i).intValue());
+            assertNotEquals(Thread.currentThread(), sendingThreads.get(i));
+            assertEquals(sendingThreads.get(0), sendingThreads.get(i));
+        }
+    }
+
+    private TbProtoQueueMsg<PublishMsgProto> newMsg(String key, int packetId) {
+        return new TbProtoQueueMsg<>(key, PublishMsgProto.newBuilder().setTopicName(key).setPacketId(packetId).build());
+    }
+
+    private static class LatchCallback implements TbQueueCallback {
+
+        private final CountDownLatch latch;
+
+        LatchCallback(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void onSuccess(TbQueueMsgMetadata metadata) {
+            latch.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.processing;
+
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.MqttPropertiesProto;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.UserPropertyProto;
+import org.thingsboard.mqtt.broker.queue.common.DefaultTbQueueMsgHeaders;
+import org.thingsboard.mqtt.broker.queue.common.TbLazyPublishQueueMsg;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PublishMsgWithIdTest {
+
+    @Test
+    public void givenLazyQueueMsg_whenGetRoutingMsgProto_thenOnlyRoutingFieldsDecoded() throws Exception {
+        PublishMsgProto publishMsgProto = PublishMsgProto.newBuilder()
+                .setClientId("publisher")
+                .setTopicName("test/topic")
+                .setQos(1)
+                .setRetain(true)
+                .setPayload(ByteString.copyFromUtf8("payload"))
+                .addUserProperties(UserPropertyProto.newBuilder().setKey("key").setValue("value").build())
+                .setMqttProperties(MqttPropertiesProto.newBuilder().setContentType("text/plain").build())
+                .build();
+        byte[] data = publishMsgProto.toByteArray();
+
+        PublishMsgWithId publishMsgWithId = new PublishMsgWithId(UUID.randomUUID(),
+                TbLazyPublishQueueMsg.decode("test/topic", data, new DefaultTbQueueMsgHeaders(), 3, 10));
+
+        PublishMsgProto routingMsgProto = publishMsgWithId.getRoutingMsgProto();
+        assertEquals("publisher", routingMsgProto.getClientId());
+        assertEquals("test/topic", routingMsgProto.getTopicName());
+        assertEquals(1, routingMsgProto.getQos());
+        assertTrue(routingMsgProto.getRetain());
+        assertTrue(routingMsgProto.getPayload().isEmpty());
+        assertEquals(0, routingMsgProto.getUserPropertiesCount());
+        assertFalse(routingMsgProto.hasMqttProperties());
+
+        assertEquals(publishMsgProto, publishMsgWithId.getPublishMsgProto());
+        assertSame(publishMsgWithId.getPublishMsgProto(), publishMsgWithId.getPublishMsgProto());
+        assertSame(data, publishMsgWithId.getQueueMsg().getData());
+        assertEquals(3, publishMsgWithId.getPartition());
+        assertEquals(10, publishMsgWithId.getOffset());
+    }
+
+    @Test
+    public void givenDecodedMsg_whenGetRoutingMsgProto_thenFullMsgReturned() {
+        PublishMsgProto publishMsgProto = PublishMsgProto.newBuilder()
+                .setTopicName("test/topic")
+                .setPayload(ByteString.copyFromUtf8("payload"))
+                .build();
+
+        PublishMsgWithId publishMsgWithId = new PublishMsgWithId(UUID.randomUUID(), publishMsgProto, new DefaultTbQueueMsgHeaders());
+
+        assertSame(publishMsgProto, publishMsgWithId.getRoutingMsgProto());
+        assertSame(publishMsgProto, publishMsgWithId.getPublishMsgProto());
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.subscription;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SubscriptionTrieMatchCacheTest {
+
+    private ConcurrentMapSubscriptionTrie<String> subscriptionTrie;
+
+    @Before
+    public void before() {
+        StatsManager statsManagerMock = Mockito.mock(StatsManager.class);
+        Mockito.when(statsManagerMock.createSubscriptionSizeCounter()).thenReturn(new AtomicInteger(0));
+        Mockito.when(statsManagerMock.createSubscriptionTrieNodesCounter()).thenReturn(new AtomicLong(0));
+        this.subscriptionTrie = new ConcurrentMapSubscriptionTrie<>(statsManagerMock);
+        this.subscriptionTrie.setMatchCacheEnabled(true);
+        this.subscriptionTrie.setMatchCacheMaxSize(100);
+        this.subscriptionTrie.setMatchCacheMaxTopicLength(256);
+        this.subscriptionTrie.init();
+    }
+
+    @Test
+    public void testCachedMatchReused() {
+        subscriptionTrie.put("a/b", "test1");
+        subscriptionTrie.put("a/+", "test2");
+
+        List<ValueWithTopicFilter<String>> first = subscriptionTrie.get("a/b");
+        List<ValueWithTopicFilter<String>> second = subscriptionTrie.get("a/b");
+
+        Assert.assertEquals(2, first.size());
+        Assert.assertSame(first, second);
+    }
+
+    @Test
+    public void testCachedMatchNotInvalidatedByOtherBranch() {
+        subscriptionTrie.put("a/b", "test1");
+        subscriptionTrie.put("c/d", "test2");
+
+        List<ValueWithTopicFilter<String>> first = subscriptionTrie.get("a/b");
+        subscriptionTrie.put("c/d", "test3");
+        subscriptionTrie.delete("c/d", "test2"::equals);
+
+        Assert.assertSame(first, subscriptionTrie.get("a/b"));
+    }
+
+    @Test
+    public void testCachedMatchInvalidatedOnSubscribe() {
+        subscriptionTrie.put("a/b", "test1");
+        Assert.assertEquals(1, subscriptionTrie.get("a/b").size());
+
+        subscriptionTrie.put("a/#", "test2");
+        Assert.assertEquals(2, subscriptionTrie.get("a/b").size());
+
+        subscriptionTrie.put("+/b", "test3");
+        Assert.assertEquals(3, subscriptionTrie.get("a/b").size());
+    }
+
+    @Test
+    public void testCachedMatchInvalidatedOnUnsubscribe() {
+        subscriptionTrie.put("a/b", "test1");
+        subscriptionTrie.put("a/#", "test2");
+        Assert.assertEquals(2, subscriptionTrie.get("a/b").size());
+
+        subscriptionTrie.delete("a/#", "test2"::equals);
+        Assert.assertEquals(1, subscriptionTrie.get("a/b").size());
+
+        subscriptionTrie.delete("a/b", "test1"::equals);
+        Assert.assertTrue(subscriptionTrie.get("a/b").isEmpty());
+    }
+
+    @Test
+    public void testEmptyMatchInvalidatedOnSubscribe() {
+        Assert.assertTrue(subscriptionTrie.get("a/b/c").isEmpty());
+
+        subscriptionTrie.put("a/b/c", "test1");
+        Assert.assertEquals(1, subscriptionTrie.get("a/b/c").size());
+    }
+}
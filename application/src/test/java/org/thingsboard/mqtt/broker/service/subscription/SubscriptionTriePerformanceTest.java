@@ -19,6 +19,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -30,7 +31,9 @@ import org.thingsboard.mqtt.broker.common.data.ConnectionInfo;
 import org.thingsboard.mqtt.broker.common.data.SessionInfo;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -61,9 +64,11 @@ public class SubscriptionTriePerformanceTest {
     private static final int NUMBER_OF_SUBSCRIBERS = 100_000;
     private static final int NUMBER_OF_MESSAGES = 100_000;
     private static final int NUMBER_OF_THREADS = 5;
+    private static final int NUMBER_OF_CHURN_CYCLES = 200_000;
 
 
     private ConcurrentMapSubscriptionTrie<SessionInfo> subscriptionTrie;
+    private AtomicLong nodesCount;
     private final List<SessionInfoSubscriptions> sessionInfoSubscriptionsList = new ArrayList<>();
 
     @AllArgsConstructor
@@ -76,7 +81,8 @@ public class SubscriptionTriePerformanceTest {
     public void before() {
         StatsManager statsManagerMock = Mockito.mock(StatsManager.class);
         Mockito.when(statsManagerMock.createSubscriptionSizeCounter()).thenReturn(new AtomicInteger());
-        Mockito.when(statsManagerMock.createSubscriptionTrieNodesCounter()).thenReturn(new AtomicLong());
+        nodesCount = new AtomicLong();
+        Mockito.when(statsManagerMock.createSubscriptionTrieNodesCounter()).thenReturn(nodesCount);
         this.subscriptionTrie = new ConcurrentMapSubscriptionTrie<>(statsManagerMock);
     }
 
@@ -144,6 +150,56 @@ public class SubscriptionTriePerformanceTest {
 
     }
 
+    @Test
+    public void testSubscribeChurn() throws Exception {
+        List<Supplier<String>> levelSuppliers = initializeLevelSuppliers();
+        fillSubscriptionTrie(initializeTopicFilters(levelSuppliers));
+
+        System.gc();
+        long nodesBefore = nodesCount.get();
+        long heapBefore = getUsedHeap();
+
+        long[][] subscribeLatencies = new long[NUMBER_OF_THREADS][NUMBER_OF_CHURN_CYCLES / NUMBER_OF_THREADS];
+        ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+        CountDownLatch processingSubscribers = new CountDownLatch(NUMBER_OF_THREADS);
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+            long[] latencies = subscribeLatencies[i];
+            executor.execute(() -> {
+                try {
+                    for (int j = 0; j < latencies.length; j++) {
+                        SessionInfo sessionInfo = new SessionInfo(SERVICE_ID, UUID.randomUUID(), true, 0,
+                                new ClientInfo(UUID.randomUUID().toString(), ClientType.DEVICE), new ConnectionInfo(0, 0, 0));
+                        String responseTopicFilter = "responses/" + sessionInfo.getClientInfo().getClientId() + "/" + j;
+                        long subscribeStartTime = System.nanoTime();
+                        subscriptionTrie.put(responseTopicFilter, sessionInfo);
+                        latencies[j] = System.nanoTime() - subscribeStartTime;
+                        subscriptionTrie.delete(responseTopicFilter, sessionInfo::equals);
+                    }
+                } finally {
+                    processingSubscribers.countDown();
+                }
+            });
+        }
+        processingSubscribers.await(60, TimeUnit.SECONDS);
+        long endTime = System.currentTimeMillis();
+        executor.shutdownNow();
+
+        System.gc();
+        long[] latencies = Arrays.stream(subscribeLatencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        log.info("{} subscribe/unsubscribe cycles took {} ms. Subscribe latency p50 - {} us, p99 - {} us, p99.9 - {} us, max - {} us. " +
+                        "Trie nodes left - {}, heap growth - {} KB",
+                latencies.length, endTime - startTime,
+                latencies[latencies.length / 2] / 1000, latencies[latencies.length * 99 / 100] / 1000,
+                latencies[latencies.length * 999 / 1000] / 1000, latencies[latencies.length - 1] / 1000,
+                nodesCount.get() - nodesBefore, (getUsedHeap() - heapBefore) / 1024);
+        Assert.assertEquals(nodesBefore, nodesCount.get());
+    }
+
+    private long getUsedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
     private void simulateSubscribers(List<String> topicFilters, CountDownLatch processingPublishers) {
         while (processingPublishers.getCount() > 0) {
             ThreadLocalRandom r = ThreadLocalRandom.current();
@@ -22,13 +22,16 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.thingsboard.mqtt.broker.exception.SubscriptionTrieClearException;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -157,7 +160,7 @@ public class SubscriptionTrieSuiteTest {
     }
 
     @Test
-    public void testClearTrie_Basic() throws SubscriptionTrieClearException {
+    public void testDelete_RemovesEmptyNodes() {
         for (int i = 0; i < 10; i++) {
             for (int j = 0; j < 3; j++) {
                 subscriptionTrie.put(i + "/" + j, "val");
@@ -169,25 +172,71 @@ public class SubscriptionTrieSuiteTest {
         subscriptionTrie.delete("0/2", s -> true);
         subscriptionTrie.delete("1/0", s -> true);
 
-        subscriptionTrie.setWaitForClearLockMs(100);
-        subscriptionTrie.clearEmptyNodes();
         // should clear 0/0, 0/1, 0/2, 0 and 1/0 nodes
         Assert.assertEquals(40 - 5, nodesCounter.get());
+
+        subscriptionTrie.clearEmptyNodes();
+        Assert.assertEquals(40 - 5, nodesCounter.get());
     }
 
     @Test
-    public void testClearTrie_ClearAll() throws SubscriptionTrieClearException {
+    public void testDelete_RemovesAllNodes() {
         for (int i = 0; i < 10; i++) {
             for (int j = 0; j < 3; j++) {
                 subscriptionTrie.put(i + "/" + j, "val");
                 subscriptionTrie.delete(i + "/" + j, s -> true);
             }
         }
-        Assert.assertEquals(40, nodesCounter.get());
+        Assert.assertEquals(0, nodesCounter.get());
 
-        subscriptionTrie.setWaitForClearLockMs(100);
         subscriptionTrie.clearEmptyNodes();
 
         Assert.assertEquals(0, nodesCounter.get());
     }
+
+    @Test
+    public void testDelete_KeepsNodesWithChildren() {
+        subscriptionTrie.put("a", "val");
+        subscriptionTrie.put("a/b", "val");
+
+        subscriptionTrie.delete("a", s -> true);
+        Assert.assertEquals(2, nodesCounter.get());
+        Assert.assertEquals(1, subscriptionTrie.get("a/b").size());
+
+        subscriptionTrie.delete("a/b", s -> true);
+        Assert.assertEquals(0, nodesCounter.get());
+    }
+
+    @Test
+    public void testConcurrentPutAndDelete() throws InterruptedException {
+        int threadsCount = 8;
+        int iterations = 10_000;
+        AtomicInteger lostValues = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+        CountDownLatch latch = new CountDownLatch(threadsCount);
+        for (int t = 0; t < threadsCount; t++) {
+            String val = "val" + t;
+            executor.submit(() -> {
+                try {
+                    for (int i = 0; i < iterations; i++) {
+                        String topicFilter = "response/" + (i % 5) + "/" + (i % 3);
+                        subscriptionTrie.put(topicFilter, val);
+                        boolean found = subscriptionTrie.get(topicFilter).stream().anyMatch(v -> v.getValue().equals(val));
+                        if (!found) {
+                            lostValues.incrementAndGet();
+                        }
+                        subscriptionTrie.delete(topicFilter, val::equals);
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executor.shutdownNow();
+
+        Assert.assertEquals(0, lostValues.get());
+        Assert.assertEquals(0, subscriptionCounter.get());
+        Assert.assertEquals(0, nodesCounter.get());
+    }
 }
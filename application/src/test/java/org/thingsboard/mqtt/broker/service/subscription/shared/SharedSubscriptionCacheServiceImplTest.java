@@ -32,7 +32,9 @@ import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -217,6 +219,55 @@ public class SharedSubscriptionCacheServiceImplTest {
         }
     }
 
+    @Test
+    public void testGetSnapshotReusedUntilSessionChanged() {
+        when(clientSessionInfo1.getType()).thenReturn(ClientType.DEVICE);
+        when(clientSessionInfo1.getClientId()).thenReturn(CLIENT_ID_1);
+        when(clientSessionInfo1.isConnected()).thenReturn(true);
+
+        sharedSubscriptionCache.put(CLIENT_ID_1, List.of(
+                new TopicSubscription("/test/topic/1", 1, "g1")
+        ));
+
+        Set<TopicSharedSubscription> key = Set.of(new TopicSharedSubscription("/test/topic/1", "g1"));
+        SharedSubscriptions sharedSubscriptions = sharedSubscriptionCache.get(key);
+        assertSame(sharedSubscriptions, sharedSubscriptionCache.get(key));
+        assertEquals(1, sharedSubscriptions.getDeviceSharedSubscriptions().size());
+        assertEquals(1, sharedSubscriptions.getDeviceSharedSubscriptions().get(0).getSubscriptions().size());
+
+        when(clientSessionInfo1.isConnected()).thenReturn(false);
+        sharedSubscriptionCache.onClientSessionChanged(CLIENT_ID_1);
+
+        SharedSubscriptions updatedSharedSubscriptions = sharedSubscriptionCache.get(key);
+        assertNotSame(sharedSubscriptions, updatedSharedSubscriptions);
+        assertEquals(1, updatedSharedSubscriptions.getDeviceSubscriptions().size());
+        assertTrue(updatedSharedSubscriptions.getDeviceSharedSubscriptions().get(0).getSubscriptions().isEmpty());
+    }
+
+    @Test
+    public void testGetSnapshotRebuiltOnMembershipChange() {
+        when(clientSessionInfo1.getType()).thenReturn(ClientType.APPLICATION);
+        when(clientSessionInfo1.getClientId()).thenReturn(CLIENT_ID_1);
+        when(clientSessionInfo2.getType()).thenReturn(ClientType.APPLICATION);
+        when(clientSessionInfo2.getClientId()).thenReturn(CLIENT_ID_2);
+
+        sharedSubscriptionCache.put(CLIENT_ID_1, List.of(
+                new TopicSubscription("/test/topic/1", 1, "g1")
+        ));
+
+        Set<TopicSharedSubscription> key = Set.of(new TopicSharedSubscription("/test/topic/1", "g1"));
+        SharedSubscriptions sharedSubscriptions = sharedSubscriptionCache.get(key);
+        assertEquals(1, sharedSubscriptions.getApplicationSubscriptions().size());
+
+        sharedSubscriptionCache.put(CLIENT_ID_2, List.of(
+                new TopicSubscription("/test/topic/1", 1, "g1")
+        ));
+
+        sharedSubscriptions = sharedSubscriptionCache.get(key);
+        assertEquals(2, sharedSubscriptions.getApplicationSubscriptions().size());
+        assertSame(sharedSubscriptions, sharedSubscriptionCache.get(key));
+    }
+
     @Test(expected = RuntimeException.class)
     public void testIsAnyOtherDeviceClientConnectedThrowsException() {
         TopicSharedSubscription topicSharedSubscription = new TopicSharedSubscription("something", "g1");
@@ -0,0 +1,213 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.session;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OutboundFlowCtxTest {
+
+    Channel channel;
+    AtomicLong totalQueuedMsgs;
+    AtomicLong slowConsumers;
+    List<MqttPublishMessage> sent;
+    Consumer<MqttPublishMessage> sender;
+    OutboundFlowCtx flowCtx;
+
+    @Before
+    public void setUp() {
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        channel = mock(Channel.class);
+        when(ctx.channel()).thenReturn(channel);
+        when(channel.isWritable()).thenReturn(true);
+
+        totalQueuedMsgs = new AtomicLong();
+        slowConsumers = new AtomicLong();
+        sent = new ArrayList<>();
+        sender = sent::add;
+        flowCtx = new OutboundFlowCtx(ctx, 2, 2, totalQueuedMsgs, slowConsumers);
+    }
+
+    @Test
+    public void givenDisabledFlowControl_whenSend_thenSentImmediately() {
+        assertTrue(OutboundFlowCtx.DISABLED_FLOW_CONTROL.send(createMsg(MqttQoS.AT_LEAST_ONCE, 1), true, sender));
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void givenReceiveMaximumReached_whenSend_thenQueuedUntilAcknowledged() {
+        flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 1), true, sender);
+        flowCtx.send(createMsg(MqttQoS.EXACTLY_ONCE, 2), true, sender);
+        flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 3), true, sender);
+
+        assertEquals(2, sent.size());
+        assertEquals(1, flowCtx.getQueueSize());
+        assertEquals(1, totalQueuedMsgs.get());
+        assertEquals(1, slowConsumers.get());
+
+        flowCtx.onAcknowledged(1);
+
+        assertEquals(3, sent.size());
+        assertEquals(3, sent.get(2).variableHeader().packetId());
+        assertEquals(0, flowCtx.getQueueSize());
+        assertEquals(0, totalQueuedMsgs.get());
+        assertEquals(0, slowConsumers.get());
+    }
+
+    @Test
+    public void givenQueuedMsgs_whenSendQos0_thenOrderIsPreserved() {
+        flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 1), true, sender);
+        flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 2), true, sender);
+        flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 3), true, sender);
+        flowCtx.send(createMsg(MqttQoS.AT_MOST_ONCE, 0), true, sender);
+
+        assertEquals(2, sent.size());
+        assertEquals(2, flowCtx.getQueueSize());
+
+        flowCtx.onAcknowledged(2);
+
+        assertEquals(4, sent.size());
+        assertEquals(MqttQoS.AT_MOST_ONCE, sent.get(3).fixedHeader().qosLevel());
+    }
+
+    @Test
+    public void givenUnknownPacketId_whenAcknowledged_thenNothingSent() {
+        flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 1), true, sender);
+        flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 2), true, sender);
+        flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 3), true, sender);
+
+        flowCtx.onAcknowledged(5);
+
+        assertEquals(2, sent.size());
+        assertEquals(2, flowCtx.getInFlightCount());
+    }
+
+    @Test
+    public void givenNotWritableChannel_whenSend_thenQueuedUntilWritable() {
+        when(channel.isWritable()).thenReturn(false);
+        flowCtx.send(createMsg(MqttQoS.AT_MOST_ONCE, 0), true, sender);
+        assertEquals(0, sent.size());
+
+        when(channel.isWritable()).thenReturn(true);
+        flowCtx.onWritabilityChanged();
+
+        assertEquals(1, sent.size());
+        assertEquals(0, flowCtx.getInFlightCount());
+    }
+
+    @Test
+    public void givenFullQueue_whenSend_thenRejectedAndReleased() {
+        when(channel.isWritable()).thenReturn(false);
+        assertTrue(flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 1), true, sender));
+        assertTrue(flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 2), true, sender));
+
+        MqttPublishMessage rejected = createMsg(MqttQoS.AT_LEAST_ONCE, 3);
+        assertFalse(flowCtx.send(rejected, true, sender));
+        assertEquals(0, rejected.refCnt());
+        assertEquals(2, flowCtx.getQueueSize());
+    }
+
+    @Test
+    public void givenFullQueue_whenSendNotDroppableMsg_thenQueued() {
+        when(channel.isWritable()).thenReturn(false);
+        flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 1), true, sender);
+        flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 2), true, sender);
+
+        MqttPublishMessage persistedMsg = createMsg(MqttQoS.AT_LEAST_ONCE, 3);
+        assertTrue(flowCtx.send(persistedMsg, false, sender));
+        assertEquals(3, flowCtx.getQueueSize());
+        assertFalse(flowCtx.send(createMsg(MqttQoS.AT_MOST_ONCE, 0), true, sender));
+
+        when(channel.isWritable()).thenReturn(true);
+        flowCtx.onAcknowledged(1);
+        flowCtx.onWritabilityChanged();
+        flowCtx.onAcknowledged(2);
+        assertEquals(persistedMsg, sent.get(sent.size() - 1));
+    }
+
+    @Test
+    public void givenQueuedMsgs_whenDrained_thenWrittenOutsideMonitor() {
+        List<Boolean> holdsLock = new ArrayList<>();
+        Consumer<MqttPublishMessage> lockCheckingSender = msg -> holdsLock.add(Thread.holdsLock(flowCtx));
+        flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 1), true, lockCheckingSender);
+        flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 2), true, lockCheckingSender);
+        flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 3), true, lockCheckingSender);
+
+        flowCtx.onAcknowledged(1);
+
+        assertEquals(List.of(false, false, false), holdsLock);
+    }
+
+    @Test
+    public void givenMsgSentWhileWriting_whenWriterFinishes_thenOrderIsPreserved() {
+        Consumer<MqttPublishMessage> reentrantSender = new Consumer<>() {
+            @Override
+            public void accept(MqttPublishMessage msg) {
+                sent.add(msg);
+                if (msg.variableHeader().packetId() == 1) {
+                    assertTrue(flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 2), true, sender));
+                    assertEquals(1, sent.size());
+                }
+            }
+        };
+
+        flowCtx.send(createMsg(MqttQoS.AT_LEAST_ONCE, 1), true, reentrantSender);
+
+        assertEquals(2, sent.size());
+        assertEquals(2, sent.get(1).variableHeader().packetId());
+        assertEquals(0, flowCtx.getQueueSize());
+    }
+
+    @Test
+    public void givenQueuedMsgs_whenClear_thenMsgsReleasedAndStatsReset() {
+        when(channel.isWritable()).thenReturn(false);
+        MqttPublishMessage msg = createMsg(MqttQoS.AT_LEAST_ONCE, 1);
+        flowCtx.send(msg, true, sender);
+
+        flowCtx.clear();
+
+        assertEquals(0, msg.refCnt());
+        assertEquals(0, flowCtx.getQueueSize());
+        assertEquals(0, totalQueuedMsgs.get());
+        assertEquals(0, slowConsumers.get());
+    }
+
+    private MqttPublishMessage createMsg(MqttQoS qos, int packetId) {
+        return new MqttPublishMessage(
+                new MqttFixedHeader(MqttMessageType.PUBLISH, false, qos, false, 0),
+                new MqttPublishVariableHeader("test/topic", packetId),
+                Unpooled.buffer().writeBytes(new byte[]{1, 2, 3}));
+    }
+}
@@ -223,6 +223,22 @@ public class TopicAliasCtxTest {
         Assert.assertEquals(1, topicAliasCtx.getServerMappings().size());
     }
 
+    @Test
+    public void givenNotEstablishedAlias_whenGetTopicAliasResult_thenReturnTopicNameOnce() {
+        topicAliasCtx = new TopicAliasCtx(true, 5, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(Map.of("12345678900", 1)));
+
+        QueueProtos.PublishMsgProto publishMsgProto = QueueProtos.PublishMsgProto.newBuilder()
+                .setTopicName("12345678900")
+                .build();
+
+        topicAliasCtx.onTopicAliasNotEstablished(1);
+
+        Assert.assertEquals(new TopicAliasResult("12345678900", 1),
+                topicAliasCtx.getTopicAliasResult(publishMsgProto, minTopicNameLengthForAliasReplacement));
+        Assert.assertEquals(new TopicAliasResult(BrokerConstants.EMPTY_STR, 1),
+                topicAliasCtx.getTopicAliasResult(publishMsgProto, minTopicNameLengthForAliasReplacement));
+    }
+
     @Test
     public void givenPubMsgProtoWithTopic_whenGetTopicAliasResult_thenReturnTopicAliasResultWithNewAlias() {
         topicAliasCtx = new TopicAliasCtx(true, 5, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(Map.of("qwerty", 1)));
@@ -285,4 +301,59 @@ public class TopicAliasCtxTest {
         topicAliasCtx.validateTopicAlias(0);
     }
 
+    @Test
+    public void givenMaxAliasesReachedAndHotTopic_whenGetTopicAliasResult_thenReassignLeastFrequentAlias() {
+        topicAliasCtx = new TopicAliasCtx(true, 2);
+        QueueProtos.PublishMsgProto rare1 = QueueProtos.PublishMsgProto.newBuilder().setTopicName("rare/topic/1").build();
+        QueueProtos.PublishMsgProto rare2 = QueueProtos.PublishMsgProto.newBuilder().setTopicName("rare/topic/2").build();
+        QueueProtos.PublishMsgProto hot = QueueProtos.PublishMsgProto.newBuilder().setTopicName("hot/topic/1").build();
+
+        Assert.assertEquals(new TopicAliasResult("rare/topic/1", 1), topicAliasCtx.getTopicAliasResult(rare1, minTopicNameLengthForAliasReplacement));
+        Assert.assertEquals(new TopicAliasResult("rare/topic/2", 2), topicAliasCtx.getTopicAliasResult(rare2, minTopicNameLengthForAliasReplacement));
+        Assert.assertEquals(new TopicAliasResult(BrokerConstants.EMPTY_STR, 2), topicAliasCtx.getTopicAliasResult(rare2, minTopicNameLengthForAliasReplacement));
+
+        Assert.assertNull(topicAliasCtx.getTopicAliasResult(hot, minTopicNameLengthForAliasReplacement));
+        TopicAliasResult result = topicAliasCtx.getTopicAliasResult(hot, minTopicNameLengthForAliasReplacement);
+
+        Assert.assertEquals(new TopicAliasResult("hot/topic/1", 1), result);
+        Assert.assertEquals(1, (int) topicAliasCtx.getServerMappings().get("hot/topic/1"));
+        Assert.assertNull(topicAliasCtx.getServerMappings().get("rare/topic/1"));
+        Assert.assertEquals(2, topicAliasCtx.getServerMappings().size());
+        Assert.assertEquals(new TopicAliasResult(BrokerConstants.EMPTY_STR, 1), topicAliasCtx.getTopicAliasResult(hot, minTopicNameLengthForAliasReplacement));
+    }
+
+    @Test
+    public void givenMaxAliasesReachedAndEquallyFrequentTopic_whenGetTopicAliasResult_thenDoNotReassignAlias() {
+        topicAliasCtx = new TopicAliasCtx(true, 1);
+        QueueProtos.PublishMsgProto first = QueueProtos.PublishMsgProto.newBuilder().setTopicName("first/topic").build();
+        QueueProtos.PublishMsgProto second = QueueProtos.PublishMsgProto.newBuilder().setTopicName("second/topic").build();
+
+        for (int i = 0; i < 3; i++) {
+            topicAliasCtx.getTopicAliasResult(first, minTopicNameLengthForAliasReplacement);
+            topicAliasCtx.getTopicAliasResult(second, minTopicNameLengthForAliasReplacement);
+        }
+
+        Assert.assertEquals(Map.of("first/topic", 1), topicAliasCtx.getServerMappings());
+    }
+
+    @Test
+    public void givenTopicsDelivered_whenGetFrequency_thenEstimateIsNotLessThanActualCount() {
+        TopicFrequencySketch sketch = new TopicFrequencySketch(10);
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("topic/a");
+        }
+        sketch.increment("topic/b");
+
+        Assert.assertTrue(sketch.frequency("topic/a") >= 5);
+        Assert.assertTrue(sketch.frequency("topic/b") >= 1);
+        Assert.assertTrue(sketch.frequency("topic/a") > sketch.frequency("topic/b"));
+    }
+
+    @Test
+    public void givenMaxTopicAlias_whenGetTableWidth_thenPowerOfTwoWithinBounds() {
+        Assert.assertEquals(16, TopicFrequencySketch.tableWidth(1));
+        Assert.assertEquals(64, TopicFrequencySketch.tableWidth(10));
+        Assert.assertEquals(1024, TopicFrequencySketch.tableWidth(65535));
+    }
+
 }
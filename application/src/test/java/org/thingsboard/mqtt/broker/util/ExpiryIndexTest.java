@@ -0,0 +1,73 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExpiryIndexTest {
+
+    ExpiryIndex<String> expiryIndex;
+
+    @Before
+    public void setUp() {
+        expiryIndex = new ExpiryIndex<>();
+    }
+
+    @Test
+    public void givenScheduledKeys_whenPollExpired_thenOnlyDueKeysReturnedInOrder() {
+        expiryIndex.schedule("c", 30);
+        expiryIndex.schedule("a", 10);
+        expiryIndex.schedule("b", 20);
+
+        assertEquals(List.of("a", "b"), expiryIndex.pollExpired(25));
+        assertEquals(1, expiryIndex.size());
+        assertTrue(expiryIndex.pollExpired(25).isEmpty());
+        assertEquals(List.of("c"), expiryIndex.pollExpired(31));
+    }
+
+    @Test
+    public void givenRescheduledKey_whenPollExpired_thenNewExpiryTimeIsUsed() {
+        expiryIndex.schedule("a", 10);
+        expiryIndex.schedule("a", 50);
+
+        assertTrue(expiryIndex.pollExpired(20).isEmpty());
+        assertEquals(List.of("a"), expiryIndex.pollExpired(51));
+    }
+
+    @Test
+    public void givenRemovedKey_whenPollExpired_thenKeyIsNotReturned() {
+        expiryIndex.schedule("a", 10);
+        expiryIndex.schedule("b", 10);
+        expiryIndex.remove("a");
+
+        assertEquals(List.of("b"), expiryIndex.pollExpired(11));
+        assertEquals(0, expiryIndex.size());
+    }
+
+    @Test
+    public void givenKeyExpiringAtTs_whenPollExpired_thenKeyIsNotYetExpired() {
+        expiryIndex.schedule("a", 10);
+
+        assertTrue(expiryIndex.pollExpired(10).isEmpty());
+        assertEquals(List.of("a"), expiryIndex.pollExpired(11));
+    }
+}
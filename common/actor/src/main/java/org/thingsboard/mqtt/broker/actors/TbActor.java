@@ -17,6 +17,8 @@ package org.thingsboard.mqtt.broker.actors;
 
 import org.thingsboard.mqtt.broker.actors.msg.TbActorMsg;
 
+import java.util.concurrent.Executor;
+
 public interface TbActor {
 
     boolean process(TbActorMsg msg);
@@ -33,6 +35,15 @@ public interface TbActor {
         return InitFailureStrategy.retryWithDelay(5000 * attempt);
     }
 
+    /**
+     * Returns the executor the msg should be processed on instead of the actor's dispatcher, e.g. the event loop of the
+     * client's channel. The msg must not require any blocking work in this case. Null means the dispatcher is used.
+     * May be called by the thread that enqueues the msg, so the actor state read here must be safely published.
+     */
+    default Executor getAffinityExecutor(TbActorMsg msg) {
+        return null;
+    }
+
     default ProcessFailureStrategy onProcessFailure(Throwable t) {
         if (t instanceof Error) {
             return ProcessFailureStrategy.stop();
@@ -21,6 +21,7 @@ import org.thingsboard.mqtt.broker.actors.msg.TbActorMsg;
 
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
@@ -112,7 +113,8 @@ public final class TbActorMailbox implements TbActorCtx {
         if (ready.get() == READY) {
             if (newMsg || !highPriorityMsgs.isEmpty() || !normalPriorityMsgs.isEmpty()) {
                 if (busy.compareAndSet(FREE, BUSY)) {
-                    dispatcher.getExecutor().execute(this::processMailbox);
+                    Executor executor = getExecutor(peekMsg());
+                    executor.execute(() -> processMailbox(executor));
                 } else {
                     if (isTraceEnabled) {
                         log.trace("[{}] MessageBox is busy, new msg: {}", selfId, newMsg);
@@ -130,39 +132,66 @@ public final class TbActorMailbox implements TbActorCtx {
         }
     }
 
-    private void processMailbox() {
-        boolean noMoreElements = false;
-        for (int i = 0; i < settings.getActorThroughput(); i++) {
-            TbActorMsg msg = highPriorityMsgs.poll();
+    /**
+     * Drains the mailbox in a loop until it is empty or the throughput budget of the run is spent.
+     * The mailbox is resubmitted to the executor only when the budget is spent or the next msg requires
+     * a different executor.
+     */
+    private void processMailbox(Executor currentExecutor) {
+        int processed = 0;
+        while (true) {
+            if (processed >= settings.getActorThroughput()) {
+                currentExecutor.execute(() -> processMailbox(currentExecutor));
+                return;
+            }
+            // only the thread that holds the 'busy' flag polls the queues, so the peeked msg is the one polled next
+            ConcurrentLinkedQueue<TbActorMsg> msgs = highPriorityMsgs.isEmpty() ? normalPriorityMsgs : highPriorityMsgs;
+            TbActorMsg msg = msgs.peek();
             if (msg == null) {
-                msg = normalPriorityMsgs.poll();
+                processed = 0;
+                busy.set(FREE);
+                // a msg could be enqueued after the queues were checked but before the mailbox was released
+                if (ready.get() == READY && (!highPriorityMsgs.isEmpty() || !normalPriorityMsgs.isEmpty())
+                        && busy.compareAndSet(FREE, BUSY)) {
+                    continue;
+                }
+                return;
             }
-            if (msg != null) {
-                try {
-                    if (isDebugEnabled) {
-                        log.debug("[{}] Going to process message: {}", selfId, msg);
-                    }
-                    actor.process(msg);
-                } catch (Throwable t) {
-                    if (isDebugEnabled) {
-                        log.debug("[{}] Failed to process message: {}", selfId, msg, t);
-                    }
-                    ProcessFailureStrategy strategy = actor.onProcessFailure(t);
-                    if (strategy.isStop()) {
-                        system.stop(selfId);
-                    }
+            Executor executor = getExecutor(msg);
+            if (executor != currentExecutor) {
+                if (isTraceEnabled) {
+                    log.trace("[{}] Switching executor to process message: {}", selfId, msg.getMsgType());
+                }
+                executor.execute(() -> processMailbox(executor));
+                return;
+            }
+            msgs.poll();
+            processed++;
+            try {
+                if (isDebugEnabled) {
+                    log.debug("[{}] Going to process message: {}", selfId, msg);
+                }
+                actor.process(msg);
+            } catch (Throwable t) {
+                if (isDebugEnabled) {
+                    log.debug("[{}] Failed to process message: {}", selfId, msg, t);
+                }
+                ProcessFailureStrategy strategy = actor.onProcessFailure(t);
+                if (strategy.isStop()) {
+                    system.stop(selfId);
                 }
-            } else {
-                noMoreElements = true;
-                break;
             }
         }
-        if (noMoreElements) {
-            busy.set(FREE);
-            dispatcher.getExecutor().execute(() -> tryProcessQueue(false));
-        } else {
-            dispatcher.getExecutor().execute(this::processMailbox);
-        }
+    }
+
+    private TbActorMsg peekMsg() {
+        TbActorMsg msg = highPriorityMsgs.peek();
+        return msg != null ? msg : normalPriorityMsgs.peek();
+    }
+
+    private Executor getExecutor(TbActorMsg msg) {
+        Executor affinityExecutor = msg != null ? actor.getAffinityExecutor(msg) : null;
+        return affinityExecutor != null ? affinityExecutor : dispatcher.getExecutor();
     }
 
     @Override
@@ -27,6 +27,8 @@ public interface GenericClientSessionCtxService {
 
     GenericClientSessionCtx saveGenericClientSessionCtx(GenericClientSessionCtx genericClientSessionCtx);
 
+    ListenableFuture<Void> saveGenericClientSessionCtxAsync(GenericClientSessionCtx genericClientSessionCtx);
+
     void deleteGenericClientSessionCtx(String clientId);
 
     Optional<GenericClientSessionCtx> findGenericClientSessionCtx(String clientId);
@@ -25,6 +25,8 @@ public interface ApplicationSessionCtxService {
 
     ApplicationSessionCtx saveApplicationSessionCtx(ApplicationSessionCtx applicationSessionCtx);
 
+    ListenableFuture<Void> saveApplicationSessionCtxAsync(ApplicationSessionCtx applicationSessionCtx);
+
     void deleteApplicationSessionCtx(String clientId);
 
     Optional<ApplicationSessionCtx> findApplicationSessionCtx(String clientId);
@@ -23,4 +23,15 @@ public interface DevicePacketIdAndSerialNumberService {
     Map<String, PacketIdAndSerialNumber> getLastPacketIdAndSerialNumber(Set<String> clientIds);
 
     void saveLastSerialNumbers(Map<String, PacketIdAndSerialNumber> clientsLastPacketIdAndSerialNumbers);
+
+    /**
+     * Updates the last packetIds and serialNumbers in the cache. The DB is updated only for the clients that used up
+     * the range of serialNumbers leased by this node, in which case a new range is leased.
+     */
+    void reserveSerialNumbers(Map<String, PacketIdAndSerialNumber> clientsLastPacketIdAndSerialNumbers);
+
+    /**
+     * Removes the device session context of the client along with the range of serialNumbers leased for it by this node.
+     */
+    void removeDeviceSessionContext(String clientId);
 }
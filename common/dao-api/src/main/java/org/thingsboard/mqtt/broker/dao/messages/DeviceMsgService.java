@@ -17,8 +17,11 @@ package org.thingsboard.mqtt.broker.dao.messages;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
+import org.thingsboard.mqtt.broker.dao.client.device.PacketIdAndSerialNumber;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface DeviceMsgService {
 
@@ -28,10 +31,14 @@ public interface DeviceMsgService {
 
     List<DevicePublishMsg> findPersistedMessages(String clientId, long fromSerialNumber, long toSerialNumber);
 
+    Map<String, PacketIdAndSerialNumber> findLastPacketIdAndSerialNumbers(Collection<String> clientIds);
+
     void removePersistedMessages(String clientId);
 
     ListenableFuture<Void> tryRemovePersistedMessage(String clientId, int packetId);
 
+    ListenableFuture<Void> tryRemovePersistedMessage(String clientId, int packetId, long serialNumber);
+
     ListenableFuture<Void> tryUpdatePacketReceived(String clientId, int packetId);
 
 }
@@ -25,6 +25,7 @@ import org.thingsboard.mqtt.broker.common.data.queue.KafkaTopic;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 public interface TbQueueAdmin {
 
@@ -40,6 +41,14 @@ public interface TbQueueAdmin {
 
     int getNumberOfPartitions(String topic);
 
+    Optional<Long> getCommittedOffset(String groupId, String topic, int partition);
+
+    long getBeginningOffset(String topic, int partition);
+
+    long getEndOffset(String topic, int partition);
+
+    void commitOffset(String groupId, String topic, int partition, long offset);
+
     PageData<KafkaBroker> getClusterInfo();
 
     PageData<KafkaTopic> getTopics(PageLink pageLink);
@@ -15,18 +15,11 @@
  */
 package org.thingsboard.mqtt.broker.queue;
 
-import java.util.Optional;
-
-public interface TbQueueControlledOffsetConsumer<T extends TbQueueMsg> extends TbQueueConsumer<T> {
-    void commit(int partition, long offset);
-
-    void assignPartition(int partition);
+public interface TbQueueControlledOffsetConsumer<T extends TbQueueMsg> extends TbQueueConsumer<T>, TbQueuePartitionConsumer<T> {
 
     void assignAllPartitions();
 
     void seekToTheBeginning();
 
-    long getEndOffset(String topic, int partition);
-
-    Optional<Long> getCommittedOffset(String topic, int partition);
+    void seek(int partition, long offset);
 }
@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Consumer of the explicitly assigned partition, the offsets are committed by the caller.
+ */
+public interface TbQueuePartitionConsumer<T extends TbQueueMsg> {
+
+    String getTopic();
+
+    void assignPartition(int partition);
+
+    List<T> poll(long durationInMillis);
+
+    void commitSync();
+
+    void commit(int partition, long offset);
+
+    long getEndOffset(String topic, int partition);
+
+    Optional<Long> getCommittedOffset(String topic, int partition);
+
+    void unsubscribeAndClose();
+
+    String getConsumerGroupId();
+
+}
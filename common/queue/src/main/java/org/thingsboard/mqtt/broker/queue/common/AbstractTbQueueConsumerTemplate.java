@@ -174,6 +174,16 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
         }
     }
 
+    @Override
+    public void seek(int partition, long offset) {
+        consumerLock.lock();
+        try {
+            doSeek(topic, partition, offset);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
     @Override
     public long getEndOffset(String topic, int partition) {
         consumerLock.lock();
@@ -212,6 +222,8 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
 
     abstract protected void doSeekToTheBeginning();
 
+    abstract protected void doSeek(String topic, int partition, long offset);
+
     abstract protected long doGetEndOffset(String topic, int partition);
 
     abstract protected Optional<Long> doGetCommittedOffset(String topic, int partition);
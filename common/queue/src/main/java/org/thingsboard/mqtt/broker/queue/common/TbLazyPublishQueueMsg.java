@@ -0,0 +1,95 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.common;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos.PublishMsgProto;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsgHeaders;
+
+import java.io.IOException;
+
+/**
+ * PUBLISH message consumed from the queue that decodes eagerly only the fields needed for routing
+ * (clientId, topicName, qos and retain). The full message is decoded on the first {@link #getValue()} call,
+ * with the payload referencing the consumed record bytes instead of being copied.
+ */
+public class TbLazyPublishQueueMsg extends TbProtoQueueMsg<PublishMsgProto> {
+
+    private final byte[] data;
+    private volatile PublishMsgProto fullValue;
+
+    private TbLazyPublishQueueMsg(String key, PublishMsgProto routingValue, byte[] data, TbQueueMsgHeaders headers, int partition, long offset) {
+        super(key, routingValue, headers, partition, offset);
+        this.data = data;
+    }
+
+    public static TbLazyPublishQueueMsg decode(String key, byte[] data, TbQueueMsgHeaders headers, int partition, long offset) throws IOException {
+        return new TbLazyPublishQueueMsg(key, decodeRoutingValue(data), data, headers, partition, offset);
+    }
+
+    /**
+     * @return the message with the routing fields only
+     */
+    public PublishMsgProto getRoutingValue() {
+        return value;
+    }
+
+    @Override
+    public PublishMsgProto getValue() {
+        PublishMsgProto result = fullValue;
+        if (result == null) {
+            result = decodeFullValue(data);
+            fullValue = result;
+        }
+        return result;
+    }
+
+    @Override
+    public byte[] getData() {
+        return data;
+    }
+
+    private static PublishMsgProto decodeRoutingValue(byte[] data) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(data);
+        PublishMsgProto.Builder builder = PublishMsgProto.newBuilder();
+        while (true) {
+            int tag = input.readTag();
+            if (tag == 0) {
+                break;
+            }
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case PublishMsgProto.CLIENTID_FIELD_NUMBER -> builder.setClientId(input.readStringRequireUtf8());
+                case PublishMsgProto.TOPICNAME_FIELD_NUMBER -> builder.setTopicName(input.readStringRequireUtf8());
+                case PublishMsgProto.QOS_FIELD_NUMBER -> builder.setQos(input.readInt32());
+                case PublishMsgProto.RETAIN_FIELD_NUMBER -> builder.setRetain(input.readBool());
+                default -> input.skipField(tag);
+            }
+        }
+        return builder.build();
+    }
+
+    private static PublishMsgProto decodeFullValue(byte[] data) {
+        CodedInputStream input = UnsafeByteOperations.unsafeWrap(data).newCodedInput();
+        input.enableAliasing(true);
+        try {
+            return PublishMsgProto.parseFrom(input);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode PUBLISH message", e);
+        }
+    }
+}
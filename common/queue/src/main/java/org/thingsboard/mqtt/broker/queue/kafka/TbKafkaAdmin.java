@@ -24,7 +24,9 @@ import org.apache.kafka.clients.admin.DescribeClusterResult;
 import org.apache.kafka.clients.admin.DescribeConsumerGroupsResult;
 import org.apache.kafka.clients.admin.DescribeLogDirsResult;
 import org.apache.kafka.clients.admin.LogDirDescription;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.OffsetSpec;
 import org.apache.kafka.clients.admin.ReplicaInfo;
 import org.apache.kafka.clients.admin.TopicDescription;
 import org.apache.kafka.clients.consumer.Consumer;
@@ -59,6 +61,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -199,6 +202,54 @@ public class TbKafkaAdmin implements TbQueueAdmin {
         }
     }
 
+    @Override
+    public Optional<Long> getCommittedOffset(String groupId, String topic, int partition) {
+        TopicPartition topicPartition = new TopicPartition(topic, partition);
+        try {
+            Map<TopicPartition, OffsetAndMetadata> groupOffsets = client.listConsumerGroupOffsets(groupId).partitionsToOffsetAndMetadata().get();
+            return Optional.ofNullable(groupOffsets.get(topicPartition)).map(OffsetAndMetadata::offset);
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public long getBeginningOffset(String topic, int partition) {
+        return getOffset(topic, partition, OffsetSpec.earliest());
+    }
+
+    @Override
+    public long getEndOffset(String topic, int partition) {
+        return getOffset(topic, partition, OffsetSpec.latest());
+    }
+
+    private long getOffset(String topic, int partition, OffsetSpec offsetSpec) {
+        TopicPartition topicPartition = new TopicPartition(topic, partition);
+        try {
+            ListOffsetsResult.ListOffsetsResultInfo offsetInfo = client.listOffsets(Map.of(topicPartition, offsetSpec))
+                    .partitionResult(topicPartition).get();
+            return offsetInfo.offset();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Commits the offset of the consumer group that has no active members, e.g. of the group which partitions
+     * are consumed by the multiplexed consumers.
+     */
+    @Override
+    public void commitOffset(String groupId, String topic, int partition, long offset) {
+        if (log.isTraceEnabled()) {
+            log.trace("[{}][{}][{}] Committing offset {}", groupId, topic, partition, offset);
+        }
+        try {
+            client.alterConsumerGroupOffsets(groupId, Map.of(new TopicPartition(topic, partition), new OffsetAndMetadata(offset))).all().get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public PageData<KafkaBroker> getClusterInfo() {
         try {
@@ -209,4 +209,9 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
     public void doSeekToTheBeginning() {
         consumer.seekToBeginning(Collections.emptyList());
     }
+
+    @Override
+    public void doSeek(String topic, int partition, long offset) {
+        consumer.seek(newTopicPartition(topic, partition), offset);
+    }
 }
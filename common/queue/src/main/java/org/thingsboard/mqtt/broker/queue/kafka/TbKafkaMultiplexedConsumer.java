@@ -0,0 +1,177 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.kafka;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsg;
+import org.thingsboard.mqtt.broker.queue.TbQueuePartitionConsumer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumer of the single partition that is fetched by one of the consumers of {@link TbKafkaMultiplexedConsumerPool}.
+ * The fetched records are buffered till they are polled. Offsets are committed to the consumer group of this consumer.
+ * Subscribing and seeking are not supported, so only {@link TbQueuePartitionConsumer} is implemented.
+ */
+@Slf4j
+public class TbKafkaMultiplexedConsumer<T extends TbQueueMsg> implements TbQueuePartitionConsumer<T> {
+
+    private final TbKafkaMultiplexedConsumerPool pool;
+    private final TbQueueAdmin admin;
+    @Getter
+    private final String topic;
+    private final String groupId;
+    private final TbKafkaDecoder<T> decoder;
+    private final int maxBufferedRecords;
+    private final BlockingQueue<ConsumerRecord<String, byte[]>> buffer = new LinkedBlockingQueue<>();
+
+    private volatile TbKafkaMultiplexedConsumerPool.Poller poller;
+    private volatile TopicPartition topicPartition;
+    private volatile boolean paused;
+    private volatile boolean stopped = false;
+    // offset of the record following the last polled one
+    private volatile long position = -1;
+
+    TbKafkaMultiplexedConsumer(TbKafkaMultiplexedConsumerPool pool, TbQueueAdmin admin, String topic, String groupId,
+                               TbKafkaDecoder<T> decoder, int maxBufferedRecords) {
+        this.pool = pool;
+        this.admin = admin;
+        this.topic = topic;
+        this.groupId = groupId;
+        this.decoder = decoder;
+        this.maxBufferedRecords = maxBufferedRecords;
+    }
+
+    @Override
+    public void assignPartition(int partition) {
+        if (topicPartition != null) {
+            throw new IllegalStateException("Partition is already assigned to the multiplexed consumer");
+        }
+        long offset = admin.getCommittedOffset(groupId, topic, partition).orElseGet(() -> admin.getEndOffset(topic, partition));
+        this.position = offset;
+        this.topicPartition = new TopicPartition(topic, partition);
+        pool.assign(this, topicPartition, offset);
+    }
+
+    @Override
+    public List<T> poll(long durationInMillis) {
+        if (stopped || topicPartition == null) {
+            if (stopped) {
+                log.error("Poll invoked but consumer stopped for topic {}.", topic);
+            }
+            return Collections.emptyList();
+        }
+        ConsumerRecord<String, byte[]> firstRecord;
+        try {
+            firstRecord = buffer.poll(durationInMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            if (!stopped) {
+                log.error("Failed to wait");
+            }
+            return Collections.emptyList();
+        }
+        if (firstRecord == null) {
+            return Collections.emptyList();
+        }
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        records.add(firstRecord);
+        buffer.drainTo(records);
+        position = records.get(records.size() - 1).offset() + 1;
+        if (paused) {
+            poller.wakeup();
+        }
+        return decodeRecords(records);
+    }
+
+    private List<T> decodeRecords(List<ConsumerRecord<String, byte[]>> records) {
+        List<T> result = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                result.add(decoder.decode(new KafkaTbQueueMsg(record)));
+            } catch (IOException e) {
+                log.error("Failed decode record: [{}]", record);
+                throw new RuntimeException("Failed to decode record: ", e);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void commitSync() {
+        TopicPartition topicPartition = this.topicPartition;
+        if (topicPartition != null && position >= 0) {
+            admin.commitOffset(groupId, topic, topicPartition.partition(), position);
+        }
+    }
+
+    @Override
+    public void commit(int partition, long offset) {
+        admin.commitOffset(groupId, topic, partition, offset);
+    }
+
+    @Override
+    public long getEndOffset(String topic, int partition) {
+        return admin.getEndOffset(topic, partition);
+    }
+
+    @Override
+    public Optional<Long> getCommittedOffset(String topic, int partition) {
+        return admin.getCommittedOffset(groupId, topic, partition);
+    }
+
+    @Override
+    public void unsubscribeAndClose() {
+        stopped = true;
+        if (topicPartition != null && poller != null) {
+            pool.unassign(this, poller, topicPartition);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public String getConsumerGroupId() {
+        return groupId;
+    }
+
+    void onRecords(List<ConsumerRecord<String, byte[]>> records) {
+        if (!stopped) {
+            buffer.addAll(records);
+        }
+    }
+
+    boolean isBufferFull() {
+        return buffer.size() >= maxBufferedRecords;
+    }
+
+    void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    void setPoller(TbKafkaMultiplexedConsumerPool.Poller poller) {
+        this.poller = poller;
+    }
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.kafka;
+
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsg;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A small pool of Kafka consumers that are manually assigned the partitions of many topics, e.g. of the topics of
+ * the Application clients. Each consumer is polled by its own thread, that demultiplexes the records to the buffers
+ * of the {@link TbKafkaMultiplexedConsumer}s. The partition is paused while the buffer of its consumer is full.
+ * The pooled consumers are not members of any consumer group, so the offsets are committed via {@link TbQueueAdmin}
+ * to the consumer group of each multiplexed consumer.
+ */
+@Slf4j
+public class TbKafkaMultiplexedConsumerPool {
+
+    private static final long CLOSE_TIMEOUT_MS = 3000;
+
+    private final TbQueueAdmin admin;
+    private final long pollDurationMs;
+    private final int maxBufferedRecords;
+    private final List<Poller> pollers;
+    private final ExecutorService executor;
+
+    private volatile boolean stopped = false;
+
+    @Builder
+    private TbKafkaMultiplexedConsumerPool(Properties properties, String clientIdPrefix, int consumersCount,
+                                           long pollDurationMs, int maxBufferedRecords, TbQueueAdmin admin) {
+        this(clientId -> newKafkaConsumer(properties, clientId), clientIdPrefix, consumersCount, pollDurationMs, maxBufferedRecords, admin);
+    }
+
+    TbKafkaMultiplexedConsumerPool(Function<String, Consumer<String, byte[]>> consumerFactory, String clientIdPrefix, int consumersCount,
+                                   long pollDurationMs, int maxBufferedRecords, TbQueueAdmin admin) {
+        this.admin = admin;
+        this.pollDurationMs = pollDurationMs;
+        this.maxBufferedRecords = maxBufferedRecords;
+        int count = Math.max(1, consumersCount);
+        this.pollers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pollers.add(new Poller(consumerFactory.apply(clientIdPrefix + i)));
+        }
+        this.executor = Executors.newFixedThreadPool(count, ThingsBoardThreadFactory.forName(clientIdPrefix));
+        pollers.forEach(poller -> executor.execute(poller::run));
+    }
+
+    private static Consumer<String, byte[]> newKafkaConsumer(Properties properties, String clientId) {
+        Properties props = new Properties();
+        props.putAll(properties);
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
+        props.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        Thread.currentThread().setContextClassLoader(TbKafkaMultiplexedConsumerPool.class.getClassLoader());
+        return new KafkaConsumer<>(props);
+    }
+
+    public <T extends TbQueueMsg> TbKafkaMultiplexedConsumer<T> createConsumer(String topic, String groupId, TbKafkaDecoder<T> decoder) {
+        return new TbKafkaMultiplexedConsumer<>(this, admin, topic, groupId, decoder, maxBufferedRecords);
+    }
+
+    void assign(TbKafkaMultiplexedConsumer<?> multiplexedConsumer, TopicPartition topicPartition, long offset) {
+        Poller poller = pollers.stream().min((p1, p2) -> Integer.compare(p1.assignedCount.get(), p2.assignedCount.get())).orElseThrow();
+        poller.assignedCount.incrementAndGet();
+        multiplexedConsumer.setPoller(poller);
+        poller.execute(() -> poller.assign(topicPartition, multiplexedConsumer, offset));
+    }
+
+    void unassign(TbKafkaMultiplexedConsumer<?> multiplexedConsumer, Poller poller, TopicPartition topicPartition) {
+        poller.assignedCount.decrementAndGet();
+        poller.execute(() -> poller.unassign(topicPartition, multiplexedConsumer));
+    }
+
+    public void destroy() {
+        stopped = true;
+        pollers.forEach(poller -> poller.consumer.wakeup());
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+        The Kafka consumer is accessed only by the polling thread, the other threads submit commands to it
+     */
+    final class Poller {
+
+        private final Consumer<String, byte[]> consumer;
+        private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger assignedCount = new AtomicInteger();
+        private final Map<TopicPartition, TbKafkaMultiplexedConsumer<?>> assigned = new HashMap<>();
+        private final Set<TopicPartition> paused = new HashSet<>();
+
+        Poller(Consumer<String, byte[]> consumer) {
+            this.consumer = consumer;
+        }
+
+        void execute(Runnable command) {
+            commands.add(command);
+            wakeup();
+        }
+
+        void wakeup() {
+            consumer.wakeup();
+        }
+
+        void run() {
+            while (!stopped) {
+                try {
+                    runCommands();
+                    resumeDrainedPartitions();
+                    if (assigned.isEmpty()) {
+                        Thread.sleep(pollDurationMs);
+                        continue;
+                    }
+                    ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(pollDurationMs));
+                    for (TopicPartition topicPartition : records.partitions()) {
+                        TbKafkaMultiplexedConsumer<?> multiplexedConsumer = assigned.get(topicPartition);
+                        if (multiplexedConsumer == null) {
+                            continue;
+                        }
+                        multiplexedConsumer.onRecords(records.records(topicPartition));
+                        if (multiplexedConsumer.isBufferFull()) {
+                            if (log.isDebugEnabled()) {
+                                log.debug("[{}] Buffer is full, pausing partition", topicPartition);
+                            }
+                            consumer.pause(Collections.singleton(topicPartition));
+                            paused.add(topicPartition);
+                            multiplexedConsumer.setPaused(true);
+                        }
+                    }
+                } catch (WakeupException e) {
+                    if (log.isTraceEnabled()) {
+                        log.trace("Multiplexed consumer is woken up");
+                    }
+                } catch (InterruptedException e) {
+                    if (!stopped) {
+                        log.warn("Multiplexed consumer polling was interrupted");
+                    }
+                    break;
+                } catch (Throwable t) {
+                    if (!stopped) {
+                        log.warn("Failed to poll messages by the multiplexed consumer", t);
+                        sleep();
+                    }
+                }
+            }
+            try {
+                consumer.close(Duration.ofMillis(CLOSE_TIMEOUT_MS));
+            } catch (Exception e) {
+                log.warn("Failed to close multiplexed consumer", e);
+            }
+        }
+
+        private void runCommands() {
+            Runnable command;
+            while ((command = commands.poll()) != null) {
+                try {
+                    command.run();
+                } catch (Exception e) {
+                    log.warn("Failed to execute command on multiplexed consumer", e);
+                }
+            }
+        }
+
+        private void resumeDrainedPartitions() {
+            Iterator<TopicPartition> iterator = paused.iterator();
+            while (iterator.hasNext()) {
+                TopicPartition topicPartition = iterator.next();
+                TbKafkaMultiplexedConsumer<?> multiplexedConsumer = assigned.get(topicPartition);
+                if (multiplexedConsumer == null || !multiplexedConsumer.isBufferFull()) {
+                    if (multiplexedConsumer != null) {
+                        consumer.resume(Collections.singleton(topicPartition));
+                        multiplexedConsumer.setPaused(false);
+                    }
+                    iterator.remove();
+                }
+            }
+        }
+
+        private void assign(TopicPartition topicPartition, TbKafkaMultiplexedConsumer<?> multiplexedConsumer, long offset) {
+            assigned.put(topicPartition, multiplexedConsumer);
+            paused.remove(topicPartition);
+            consumer.assign(new ArrayList<>(assigned.keySet()));
+            consumer.seek(topicPartition, offset);
+        }
+
+        // the partition could be already reassigned to the consumer of the new session of the same client
+        private void unassign(TopicPartition topicPartition, TbKafkaMultiplexedConsumer<?> multiplexedConsumer) {
+            if (assigned.remove(topicPartition, multiplexedConsumer)) {
+                paused.remove(topicPartition);
+                consumer.assign(new ArrayList<>(assigned.keySet()));
+            }
+        }
+
+        private void sleep() {
+            try {
+                Thread.sleep(pollDurationMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@ package org.thingsboard.mqtt.broker.queue.provider;
 
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
 import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueuePartitionConsumer;
 import org.thingsboard.mqtt.broker.queue.TbQueueProducer;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 
@@ -30,6 +31,12 @@ public interface ApplicationPersistenceMsgQueueFactory {
 
     TbQueueControlledOffsetConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> createConsumer(String topic, String consumerGroupId, String consumerId);
 
+    /**
+     * Creates the consumer of the Application topic that is served by the node-wide pool of multiplexed consumers.
+     * The consumer can only be assigned a single partition, subscribing and seeking are not supported.
+     */
+    TbQueuePartitionConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> createMultiplexedConsumer(String topic, String consumerGroupId);
+
     TbQueueControlledOffsetConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> createConsumerForSharedTopic(String topic, String consumerGroupId, String consumerId);
 
     Map<String, String> getTopicConfigs();
@@ -18,13 +18,18 @@ package org.thingsboard.mqtt.broker.queue.provider;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
 import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueuePartitionConsumer;
 import org.thingsboard.mqtt.broker.queue.TbQueueProducer;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.queue.constants.QueueConstants;
 import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaConsumerTemplate;
+import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaDecoder;
+import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaMultiplexedConsumerPool;
 import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaProducerTemplate;
 import org.thingsboard.mqtt.broker.queue.kafka.settings.ApplicationPersistenceMsgKafkaSettings;
 import org.thingsboard.mqtt.broker.queue.kafka.settings.ApplicationSharedTopicMsgKafkaSettings;
@@ -35,6 +40,7 @@ import org.thingsboard.mqtt.broker.queue.stats.ProducerStatsManager;
 import org.thingsboard.mqtt.broker.queue.util.QueueUtil;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.Map;
 import java.util.Properties;
 
@@ -50,12 +56,21 @@ public class KafkaApplicationPersistenceMsgQueueFactory implements ApplicationPe
     private final ApplicationPersistenceMsgKafkaSettings applicationPersistenceMsgSettings;
     private final ApplicationSharedTopicMsgKafkaSettings applicationSharedTopicMsgSettings;
     private final TbKafkaConsumerStatsService consumerStatsService;
+    private final TbQueueAdmin queueAdmin;
+
+    @Value("${queue.application-persisted-msg.multiplexed-consumers.consumers-count:4}")
+    private int multiplexedConsumersCount;
+    @Value("${queue.application-persisted-msg.multiplexed-consumers.max-buffered-records:1000}")
+    private int multiplexedConsumerMaxBufferedRecords;
+    @Value("${queue.application-persisted-msg.poll-interval:100}")
+    private long pollDuration;
 
     @Autowired(required = false)
     private ProducerStatsManager producerStatsManager;
 
     private Map<String, String> topicConfigs;
     private Map<String, String> sharedTopicConfigs;
+    private volatile TbKafkaMultiplexedConsumerPool multiplexedConsumerPool;
 
     @PostConstruct
     public void init() {
@@ -100,6 +115,33 @@ public class KafkaApplicationPersistenceMsgQueueFactory implements ApplicationPe
         return createConsumer(topic, consumerGroupId, clientId, props);
     }
 
+    @Override
+    public TbQueuePartitionConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> createMultiplexedConsumer(
+            String topic, String consumerGroupId) {
+        return getMultiplexedConsumerPool().createConsumer(topic, consumerGroupId, newDecoder());
+    }
+
+    private TbKafkaMultiplexedConsumerPool getMultiplexedConsumerPool() {
+        if (multiplexedConsumerPool == null) {
+            synchronized (this) {
+                if (multiplexedConsumerPool == null) {
+                    Properties props = consumerSettings.toProps("application-persisted-msg-multiplexed",
+                            applicationPersistenceMsgSettings.getAdditionalConsumerConfig());
+                    QueueUtil.overrideProperties("ApplicationMsgQueue-multiplexed", props, requiredConsumerProperties);
+                    multiplexedConsumerPool = TbKafkaMultiplexedConsumerPool.builder()
+                            .properties(props)
+                            .clientIdPrefix("application-persisted-msg-multiplexed-consumer-")
+                            .consumersCount(multiplexedConsumersCount)
+                            .pollDurationMs(pollDuration)
+                            .maxBufferedRecords(multiplexedConsumerMaxBufferedRecords)
+                            .admin(queueAdmin)
+                            .build();
+                }
+            }
+        }
+        return multiplexedConsumerPool;
+    }
+
     @Override
     public TbQueueControlledOffsetConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> createConsumerForSharedTopic(
             String topic, String consumerGroupId, String consumerId) {
@@ -118,14 +160,25 @@ public class KafkaApplicationPersistenceMsgQueueFactory implements ApplicationPe
         consumerBuilder.topic(topic);
         consumerBuilder.clientId(clientId);
         consumerBuilder.groupId(consumerGroupId);
-        consumerBuilder.decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), QueueProtos.PublishMsgProto.parseFrom(msg.getData()), msg.getHeaders(),
-                msg.getPartition(), msg.getOffset()));
+        consumerBuilder.decoder(newDecoder());
         consumerBuilder.autoCommit(false);
         consumerBuilder.statsService(consumerStatsService);
         consumerBuilder.createTopicIfNotExists(false);
         return consumerBuilder.build();
     }
 
+    private TbKafkaDecoder<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> newDecoder() {
+        return msg -> new TbProtoQueueMsg<>(msg.getKey(), QueueProtos.PublishMsgProto.parseFrom(msg.getData()), msg.getHeaders(),
+                msg.getPartition(), msg.getOffset());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (multiplexedConsumerPool != null) {
+            multiplexedConsumerPool.destroy();
+        }
+    }
+
     @Override
     public Map<String, String> getTopicConfigs() {
         return topicConfigs;
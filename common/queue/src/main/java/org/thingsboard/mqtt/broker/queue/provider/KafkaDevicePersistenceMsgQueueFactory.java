@@ -88,7 +88,8 @@ public class KafkaDevicePersistenceMsgQueueFactory implements DevicePersistenceM
         consumerBuilder.topicConfigs(topicConfigs);
         consumerBuilder.clientId("device-persisted-msg-consumer-" + id);
         consumerBuilder.groupId("device-persisted-msg-consumer-group");
-        consumerBuilder.decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), QueueProtos.PublishMsgProto.parseFrom(msg.getData()), msg.getHeaders()));
+        consumerBuilder.decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), QueueProtos.PublishMsgProto.parseFrom(msg.getData()), msg.getHeaders(),
+                msg.getPartition(), msg.getOffset()));
         consumerBuilder.admin(queueAdmin);
         consumerBuilder.autoCommit(false);
         consumerBuilder.statsService(consumerStatsService);
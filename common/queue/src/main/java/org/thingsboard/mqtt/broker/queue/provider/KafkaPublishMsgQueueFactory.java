@@ -21,7 +21,9 @@ import org.springframework.stereotype.Component;
 import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
 import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
 import org.thingsboard.mqtt.broker.queue.TbQueueConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
 import org.thingsboard.mqtt.broker.queue.TbQueueProducer;
+import org.thingsboard.mqtt.broker.queue.common.TbLazyPublishQueueMsg;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaConsumerTemplate;
 import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaProducerTemplate;
@@ -78,10 +80,25 @@ public class KafkaPublishMsgQueueFactory implements PublishMsgQueueFactory {
         consumerBuilder.topicConfigs(topicConfigs);
         consumerBuilder.clientId("msg-all-consumer-" + id);
         consumerBuilder.groupId("msg-all-consumer-group");
-        consumerBuilder.decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), QueueProtos.PublishMsgProto.parseFrom(msg.getData()), msg.getHeaders()));
+        consumerBuilder.decoder(msg -> TbLazyPublishQueueMsg.decode(msg.getKey(), msg.getData(), msg.getHeaders(), msg.getPartition(), msg.getOffset()));
         consumerBuilder.admin(queueAdmin);
         consumerBuilder.statsService(consumerStatsService);
         consumerBuilder.statsManager(consumerStatsManager);
         return consumerBuilder.build();
     }
+
+    @Override
+    public TbQueueControlledOffsetConsumer<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> createPayloadFetchConsumer(String id) {
+        TbKafkaConsumerTemplate.TbKafkaConsumerTemplateBuilder<TbProtoQueueMsg<QueueProtos.PublishMsgProto>> consumerBuilder = TbKafkaConsumerTemplate.builder();
+        consumerBuilder.properties(consumerSettings.toProps(publishMsgSettings.getTopic(), publishMsgSettings.getAdditionalConsumerConfig()));
+        consumerBuilder.topic(publishMsgSettings.getTopic());
+        consumerBuilder.topicConfigs(topicConfigs);
+        consumerBuilder.clientId("msg-all-payload-fetch-consumer-" + id);
+        consumerBuilder.decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), QueueProtos.PublishMsgProto.parseFrom(msg.getData()), msg.getHeaders(),
+                msg.getPartition(), msg.getOffset()));
+        consumerBuilder.autoCommit(false);
+        consumerBuilder.admin(queueAdmin);
+        consumerBuilder.statsManager(consumerStatsManager);
+        return consumerBuilder.build();
+    }
 }
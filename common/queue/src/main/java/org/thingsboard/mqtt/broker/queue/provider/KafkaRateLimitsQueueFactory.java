@@ -0,0 +1,92 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.provider;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
+import org.thingsboard.mqtt.broker.gen.queue.QueueProtos;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
+import org.thingsboard.mqtt.broker.queue.TbQueueConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueueProducer;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaConsumerTemplate;
+import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaProducerTemplate;
+import org.thingsboard.mqtt.broker.queue.kafka.settings.RateLimitsKafkaSettings;
+import org.thingsboard.mqtt.broker.queue.kafka.settings.TbKafkaConsumerSettings;
+import org.thingsboard.mqtt.broker.queue.kafka.settings.TbKafkaProducerSettings;
+import org.thingsboard.mqtt.broker.queue.kafka.stats.TbKafkaConsumerStatsService;
+import org.thingsboard.mqtt.broker.queue.stats.ConsumerStatsManager;
+import org.thingsboard.mqtt.broker.queue.stats.ProducerStatsManager;
+import org.thingsboard.mqtt.broker.queue.util.QueueUtil;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KafkaRateLimitsQueueFactory implements RateLimitsQueueFactory {
+
+    private final TbKafkaConsumerSettings consumerSettings;
+    private final TbKafkaProducerSettings producerSettings;
+    private final RateLimitsKafkaSettings rateLimitsKafkaSettings;
+    private final TbQueueAdmin queueAdmin;
+    private final TbKafkaConsumerStatsService consumerStatsService;
+
+    @Autowired(required = false)
+    private ProducerStatsManager producerStatsManager;
+    @Autowired(required = false)
+    private ConsumerStatsManager consumerStatsManager;
+
+    private Map<String, String> topicConfigs;
+
+    @PostConstruct
+    public void init() {
+        this.topicConfigs = QueueUtil.getConfigs(rateLimitsKafkaSettings.getTopicProperties());
+    }
+
+    @Override
+    public TbQueueProducer<TbProtoQueueMsg<QueueProtos.RateLimitDemandProto>> createProducer(String serviceId) {
+        TbKafkaProducerTemplate.TbKafkaProducerTemplateBuilder<TbProtoQueueMsg<QueueProtos.RateLimitDemandProto>> producerBuilder = TbKafkaProducerTemplate.builder();
+        producerBuilder.properties(producerSettings.toProps(rateLimitsKafkaSettings.getAdditionalProducerConfig()));
+        producerBuilder.clientId("rate-limits-producer-" + serviceId);
+        producerBuilder.defaultTopic(rateLimitsKafkaSettings.getTopic());
+        producerBuilder.topicConfigs(topicConfigs);
+        producerBuilder.admin(queueAdmin);
+        producerBuilder.statsManager(producerStatsManager);
+        return producerBuilder.build();
+    }
+
+    @Override
+    public TbQueueConsumer<TbProtoQueueMsg<QueueProtos.RateLimitDemandProto>> createConsumer(String serviceId) {
+        String topic = rateLimitsKafkaSettings.getTopic();
+        TbKafkaConsumerTemplate.TbKafkaConsumerTemplateBuilder<TbProtoQueueMsg<QueueProtos.RateLimitDemandProto>> consumerBuilder = TbKafkaConsumerTemplate.builder();
+        consumerBuilder.properties(consumerSettings.toProps(topic, rateLimitsKafkaSettings.getAdditionalConsumerConfig()));
+        consumerBuilder.topic(topic);
+        consumerBuilder.topicConfigs(topicConfigs);
+        consumerBuilder.clientId("rate-limits-consumer-" + serviceId);
+        // every node must see the demand of every other node, hence a consumer group per node
+        consumerBuilder.groupId(BrokerConstants.RATE_LIMITS_CG_PREFIX + serviceId);
+        consumerBuilder.decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), QueueProtos.RateLimitDemandProto.parseFrom(msg.getData()), msg.getHeaders()));
+        consumerBuilder.admin(queueAdmin);
+        consumerBuilder.statsService(consumerStatsService);
+        consumerBuilder.statsManager(consumerStatsManager);
+        return consumerBuilder.build();
+    }
+}
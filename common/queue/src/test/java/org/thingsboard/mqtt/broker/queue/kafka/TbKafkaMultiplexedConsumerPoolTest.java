@@ -0,0 +1,174 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TbKafkaMultiplexedConsumerPoolTest {
+
+    static final String TOPIC = "tbmq.msg.app.test";
+    static final String GROUP_ID = "application-persisted-msg-consumer-group-test";
+    static final TopicPartition TOPIC_PARTITION = new TopicPartition(TOPIC, 0);
+
+    MockConsumer<String, byte[]> kafkaConsumer;
+    TbQueueAdmin admin;
+    TbKafkaMultiplexedConsumerPool pool;
+
+    @Before
+    public void setUp() {
+        kafkaConsumer = new MockConsumer<>(OffsetResetStrategy.NONE);
+        admin = mock(TbQueueAdmin.class);
+        when(admin.getCommittedOffset(anyString(), anyString(), anyInt())).thenReturn(Optional.empty());
+        pool = new TbKafkaMultiplexedConsumerPool(clientId -> kafkaConsumer, "test-multiplexed-consumer-", 1, 10, 2, admin);
+    }
+
+    @After
+    public void tearDown() {
+        pool.destroy();
+    }
+
+    @Test
+    public void givenCommittedOffset_whenAssignPartition_thenRecordsFetchedFromCommittedOffset() {
+        when(admin.getCommittedOffset(GROUP_ID, TOPIC, 0)).thenReturn(Optional.of(5L));
+        TbKafkaMultiplexedConsumer<TbQueueMsg> consumer = pool.createConsumer(TOPIC, GROUP_ID, msg -> msg);
+
+        consumer.assignPartition(0);
+        awaitAssigned();
+        assertEquals(5L, kafkaConsumer.position(TOPIC_PARTITION));
+
+        addRecords(4, 5, 6);
+
+        assertEquals(List.of(5L, 6L), pollOffsets(consumer, 2));
+    }
+
+    @Test
+    public void givenNoCommittedOffset_whenAssignPartition_thenRecordsFetchedFromEndOffset() {
+        when(admin.getEndOffset(TOPIC, 0)).thenReturn(10L);
+        TbKafkaMultiplexedConsumer<TbQueueMsg> consumer = pool.createConsumer(TOPIC, GROUP_ID, msg -> msg);
+
+        consumer.assignPartition(0);
+        awaitAssigned();
+
+        assertEquals(10L, kafkaConsumer.position(TOPIC_PARTITION));
+    }
+
+    @Test
+    public void givenPolledRecords_whenCommit_thenOffsetCommittedThroughAdmin() {
+        TbKafkaMultiplexedConsumer<TbQueueMsg> consumer = pool.createConsumer(TOPIC, GROUP_ID, msg -> msg);
+        consumer.assignPartition(0);
+        awaitAssigned();
+        addRecords(0, 1);
+        pollOffsets(consumer, 2);
+
+        consumer.commitSync();
+        verify(admin).commitOffset(GROUP_ID, TOPIC, 0, 2L);
+
+        consumer.commit(0, 7L);
+        verify(admin).commitOffset(GROUP_ID, TOPIC, 0, 7L);
+    }
+
+    @Test
+    public void givenFullBuffer_whenRecordsPolled_thenPartitionPausedAndResumed() {
+        TbKafkaMultiplexedConsumer<TbQueueMsg> consumer = pool.createConsumer(TOPIC, GROUP_ID, msg -> msg);
+        consumer.assignPartition(0);
+        awaitAssigned();
+
+        addRecords(0, 1, 2);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> kafkaConsumer.paused().contains(TOPIC_PARTITION));
+
+        assertEquals(List.of(0L, 1L, 2L), pollOffsets(consumer, 3));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> kafkaConsumer.paused().isEmpty());
+
+        addRecords(3);
+        assertEquals(List.of(3L), pollOffsets(consumer, 1));
+    }
+
+    @Test
+    public void givenReconnectingClient_whenPreviousConsumerClosedAfterNewAssigned_thenPartitionServedByNewConsumer() {
+        TbKafkaMultiplexedConsumer<TbQueueMsg> previousConsumer = pool.createConsumer(TOPIC, GROUP_ID, msg -> msg);
+        previousConsumer.assignPartition(0);
+        awaitAssigned();
+
+        TbKafkaMultiplexedConsumer<TbQueueMsg> consumer = pool.createConsumer(TOPIC, GROUP_ID, msg -> msg);
+        consumer.assignPartition(0);
+        previousConsumer.unsubscribeAndClose();
+
+        addRecords(0);
+        assertEquals(List.of(0L), pollOffsets(consumer, 1));
+        assertTrue(previousConsumer.poll(10).isEmpty());
+        assertTrue(kafkaConsumer.assignment().contains(TOPIC_PARTITION));
+    }
+
+    @Test
+    public void givenAssignedConsumer_whenClosed_thenPartitionUnassigned() {
+        TbKafkaMultiplexedConsumer<TbQueueMsg> consumer = pool.createConsumer(TOPIC, GROUP_ID, msg -> msg);
+        consumer.assignPartition(0);
+        awaitAssigned();
+
+        consumer.unsubscribeAndClose();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> kafkaConsumer.assignment().isEmpty());
+    }
+
+    @Test
+    public void whenPoolDestroyed_thenKafkaConsumerClosed() {
+        pool.destroy();
+
+        assertTrue(kafkaConsumer.closed());
+    }
+
+    private void awaitAssigned() {
+        await().atMost(5, TimeUnit.SECONDS).until(() -> kafkaConsumer.assignment().contains(TOPIC_PARTITION));
+    }
+
+    private void addRecords(long... offsets) {
+        for (long offset : offsets) {
+            kafkaConsumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset, "clientId", new byte[]{1}));
+        }
+    }
+
+    private List<Long> pollOffsets(TbKafkaMultiplexedConsumer<TbQueueMsg> consumer, int expectedCount) {
+        List<TbQueueMsg> msgs = new ArrayList<>();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> {
+            msgs.addAll(consumer.poll(10));
+            return msgs.size() >= expectedCount;
+        });
+        return msgs.stream().map(TbQueueMsg::getOffset).collect(Collectors.toList());
+    }
+}
@@ -58,9 +58,11 @@ public class BrokerConstants {
 
     public static final String MESSAGE_EXPIRY_INTERVAL = "messageExpiryInterval";
     public static final String CREATED_TIME = "createdTime";
+    public static final String PAYLOAD_REF_HEADER = "payloadRef";
     public static final int PAYLOAD_FORMAT_INDICATOR_PROP_ID = 1;
     public static final int PUB_EXPIRY_INTERVAL_PROP_ID = 2;
     public static final int CONTENT_TYPE_PROP_ID = 3;
+    public static final int RECEIVE_MAXIMUM_PROP_ID = 33;
     public static final int TOPIC_ALIAS_MAX_PROP_ID = 34;
     public static final int TOPIC_ALIAS_PROP_ID = 35;
     public static final int USER_PROPERTIES_ID = 38;
@@ -80,6 +82,7 @@ public class BrokerConstants {
     public static final String CLIENT_SESSION_CG_PREFIX = "client-session-consumer-group-";
     public static final String CLIENT_SUBSCRIPTIONS_CG_PREFIX = "client-subscriptions-consumer-group-";
     public static final String RETAINED_MSG_CG_PREFIX = "retained-msg-consumer-group-";
+    public static final String RATE_LIMITS_CG_PREFIX = "rate-limits-consumer-group-";
 
     public static final int BLANK_PACKET_ID = -1;
     public static final long BLANK_SERIAL_NUMBER = -1L;
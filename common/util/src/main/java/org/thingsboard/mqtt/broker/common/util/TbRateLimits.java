@@ -45,4 +45,12 @@ public class TbRateLimits {
     public boolean tryConsume() {
         return bucket.tryConsume(1);
     }
+
+    public boolean tryConsume(long number) {
+        return bucket.tryConsume(number);
+    }
+
+    public void refund(long number) {
+        bucket.addTokens(number);
+    }
 }
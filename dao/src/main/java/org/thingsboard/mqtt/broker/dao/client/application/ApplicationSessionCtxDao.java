@@ -23,6 +23,8 @@ import java.util.List;
 public interface ApplicationSessionCtxDao {
     ApplicationSessionCtx save(ApplicationSessionCtx applicationSessionCtx);
 
+    ListenableFuture<Void> saveAsync(ApplicationSessionCtx applicationSessionCtx);
+
     ApplicationSessionCtx findByClientId(String clientId);
 
     ListenableFuture<ApplicationSessionCtx> findByClientIdAsync(String clientId);
@@ -41,6 +41,15 @@ public class ApplicationSessionCtxServiceImpl implements ApplicationSessionCtxSe
         return applicationSessionCtxDao.save(applicationSessionCtx);
     }
 
+    @Override
+    public ListenableFuture<Void> saveApplicationSessionCtxAsync(ApplicationSessionCtx applicationSessionCtx) {
+        if (log.isTraceEnabled()) {
+            log.trace("Executing saveApplicationSessionCtxAsync [{}]", applicationSessionCtx);
+        }
+        validate(applicationSessionCtx);
+        return applicationSessionCtxDao.saveAsync(applicationSessionCtx);
+    }
+
     @Override
     public void deleteApplicationSessionCtx(String clientId) {
         if (log.isTraceEnabled()) {
@@ -16,30 +16,96 @@
 package org.thingsboard.mqtt.broker.dao.client.application;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.thingsboard.mqtt.broker.common.data.ApplicationSessionCtx;
 import org.thingsboard.mqtt.broker.dao.DaoUtil;
 import org.thingsboard.mqtt.broker.dao.JpaAbstractDaoListeningExecutorService;
+import org.thingsboard.mqtt.broker.dao.client.SessionCtxSaveQueueConfiguration;
 import org.thingsboard.mqtt.broker.dao.model.ApplicationSessionCtxEntity;
+import org.thingsboard.mqtt.broker.dao.sql.SqlQueueStatsManager;
+import org.thingsboard.mqtt.broker.dao.sql.TbSqlBlockingQueuePool;
+import org.thingsboard.mqtt.broker.dao.sql.TbSqlPendingSavesQueue;
+import org.thingsboard.mqtt.broker.dao.sql.TbSqlQueueParams;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.List;
+import java.util.function.Function;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class DefaultApplicationSessionCtxDao extends JpaAbstractDaoListeningExecutorService implements ApplicationSessionCtxDao {
     private final ApplicationSessionCtxRepository applicationSessionCtxRepository;
+    private final InsertApplicationSessionCtxRepository insertApplicationSessionCtxRepository;
+    private final SessionCtxSaveQueueConfiguration sessionCtxSaveQueueConfiguration;
+
+    @Autowired(required = false)
+    private SqlQueueStatsManager sqlQueueStatsManager;
+
+    private TbSqlPendingSavesQueue<ApplicationSessionCtxEntity> saveQueue;
+
+    @PostConstruct
+    public void init() {
+        if (!sessionCtxSaveQueueConfiguration.isEnabled()) {
+            return;
+        }
+        Function<ApplicationSessionCtxEntity, Integer> saveQueueIndexHashFunction = entity -> entity.getClientId().hashCode();
+        TbSqlQueueParams saveQueueParams = TbSqlQueueParams.builder()
+                .queueName("ApplicationSessionCtxSaveQueue")
+                .batchSize(sessionCtxSaveQueueConfiguration.getBatchSize())
+                .maxDelay(sessionCtxSaveQueueConfiguration.getMaxDelay())
+                .build();
+        this.saveQueue = new TbSqlPendingSavesQueue<>(
+                TbSqlBlockingQueuePool.<ApplicationSessionCtxEntity>builder()
+                        .queueIndexHashFunction(saveQueueIndexHashFunction)
+                        .maxThreads(sessionCtxSaveQueueConfiguration.getBatchThreads())
+                        .params(saveQueueParams)
+                        .statsManager(sqlQueueStatsManager)
+                        .processingFunction(insertApplicationSessionCtxRepository::saveOrUpdate)
+                        .build(),
+                ApplicationSessionCtxEntity::getClientId,
+                sessionCtxSaveQueueConfiguration.getAwaitTimeout());
+        saveQueue.init();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (saveQueue != null) {
+            saveQueue.destroy();
+        }
+    }
 
     @Override
     public ApplicationSessionCtx save(ApplicationSessionCtx applicationSessionCtx) {
+        if (saveQueue != null) {
+            saveQueue.awaitPending(applicationSessionCtx.getClientId());
+        }
         return DaoUtil.getData(applicationSessionCtxRepository.save(new ApplicationSessionCtxEntity(applicationSessionCtx)));
     }
 
+    @Override
+    public ListenableFuture<Void> saveAsync(ApplicationSessionCtx applicationSessionCtx) {
+        if (saveQueue == null) {
+            save(applicationSessionCtx);
+            return Futures.immediateFuture(null);
+        }
+        return saveQueue.save(new ApplicationSessionCtxEntity(applicationSessionCtx));
+    }
+
     @Override
     public ApplicationSessionCtx findByClientId(String clientId) {
+        if (saveQueue != null) {
+            ApplicationSessionCtxEntity pendingEntity = saveQueue.getPending(clientId);
+            if (pendingEntity != null) {
+                return DaoUtil.getData(pendingEntity);
+            }
+        }
         return DaoUtil.getData(applicationSessionCtxRepository.findByClientId(clientId));
     }
 
@@ -56,6 +122,9 @@ public class DefaultApplicationSessionCtxDao extends JpaAbstractDaoListeningExec
 
     @Override
     public void remove(String clientId) {
+        if (saveQueue != null) {
+            saveQueue.awaitPending(clientId);
+        }
         applicationSessionCtxRepository.deleteById(clientId);
     }
 }
@@ -0,0 +1,80 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.client.application;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.thingsboard.mqtt.broker.dao.model.ApplicationSessionCtxEntity;
+import org.thingsboard.mqtt.broker.dao.util.PsqlDao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.thingsboard.mqtt.broker.dao.model.ModelConstants.APPLICATION_SESSION_CTX_CLIENT_ID_PROPERTY;
+import static org.thingsboard.mqtt.broker.dao.model.ModelConstants.APPLICATION_SESSION_CTX_COLUMN_FAMILY_NAME;
+import static org.thingsboard.mqtt.broker.dao.model.ModelConstants.APPLICATION_SESSION_CTX_LAST_UPDATED_PROPERTY;
+import static org.thingsboard.mqtt.broker.dao.model.ModelConstants.APPLICATION_SESSION_CTX_PUBLISH_MSG_INFOS_BIN_PROPERTY;
+import static org.thingsboard.mqtt.broker.dao.model.ModelConstants.APPLICATION_SESSION_CTX_PUBLISH_MSG_INFOS_PROPERTY;
+import static org.thingsboard.mqtt.broker.dao.model.ModelConstants.APPLICATION_SESSION_CTX_PUBREL_MSG_INFOS_BIN_PROPERTY;
+import static org.thingsboard.mqtt.broker.dao.model.ModelConstants.APPLICATION_SESSION_CTX_PUBREL_MSG_INFOS_PROPERTY;
+
+@PsqlDao
+@Repository
+@Transactional
+public class PsqlInsertApplicationSessionCtxRepository implements InsertApplicationSessionCtxRepository {
+    private static final String INSERT_OR_UPDATE = "INSERT INTO " + APPLICATION_SESSION_CTX_COLUMN_FAMILY_NAME + " (" +
+            APPLICATION_SESSION_CTX_CLIENT_ID_PROPERTY + ", " +
+            APPLICATION_SESSION_CTX_LAST_UPDATED_PROPERTY + ", " +
+            APPLICATION_SESSION_CTX_PUBLISH_MSG_INFOS_BIN_PROPERTY + ", " +
+            APPLICATION_SESSION_CTX_PUBREL_MSG_INFOS_BIN_PROPERTY + ") " +
+            "VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (" + APPLICATION_SESSION_CTX_CLIENT_ID_PROPERTY + ") " +
+            "DO UPDATE SET " + APPLICATION_SESSION_CTX_PUBLISH_MSG_INFOS_BIN_PROPERTY + " = ?, " +
+            APPLICATION_SESSION_CTX_PUBREL_MSG_INFOS_BIN_PROPERTY + " = ?, " +
+            APPLICATION_SESSION_CTX_PUBLISH_MSG_INFOS_PROPERTY + " = NULL, " +
+            APPLICATION_SESSION_CTX_PUBREL_MSG_INFOS_PROPERTY + " = NULL, " +
+            APPLICATION_SESSION_CTX_LAST_UPDATED_PROPERTY + " = ?;";
+
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void saveOrUpdate(List<ApplicationSessionCtxEntity> entities) {
+        jdbcTemplate.batchUpdate(INSERT_OR_UPDATE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ApplicationSessionCtxEntity applicationSessionCtxEntity = entities.get(i);
+                ps.setString(1, applicationSessionCtxEntity.getClientId());
+                ps.setLong(2, applicationSessionCtxEntity.getLastUpdatedTime());
+                ps.setBytes(3, applicationSessionCtxEntity.getPublishMsgInfosBin());
+                ps.setBytes(4, applicationSessionCtxEntity.getPubRelMsgInfosBin());
+                ps.setBytes(5, applicationSessionCtxEntity.getPublishMsgInfosBin());
+                ps.setBytes(6, applicationSessionCtxEntity.getPubRelMsgInfosBin());
+                ps.setLong(7, applicationSessionCtxEntity.getLastUpdatedTime());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entities.size();
+            }
+        });
+    }
+}
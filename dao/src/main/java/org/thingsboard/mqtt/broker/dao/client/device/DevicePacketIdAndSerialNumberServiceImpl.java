@@ -19,16 +19,21 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.cache.CacheConstants;
 import org.thingsboard.mqtt.broker.common.data.DeviceSessionCtx;
+import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgService;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
@@ -39,8 +44,15 @@ import java.util.stream.Collectors;
 public class DevicePacketIdAndSerialNumberServiceImpl implements DevicePacketIdAndSerialNumberService {
 
     private final DeviceSessionCtxService deviceSessionCtxService;
+    private final DeviceMsgService deviceMsgService;
     private final CacheManager cacheManager;
 
+    // last serialNumber stored in the DB for the client, serialNumbers up to it can be used without updating the DB
+    private final ConcurrentMap<String, Long> leasedSerialNumbers = new ConcurrentHashMap<>();
+
+    @Value("${mqtt.persistent-session.device.serial-number-lease-size:1000}")
+    private int serialNumberLeaseSize;
+
     @Override
     public Map<String, PacketIdAndSerialNumber> getLastPacketIdAndSerialNumber(Set<String> clientIds) {
         if (log.isDebugEnabled()) {
@@ -64,20 +76,53 @@ public class DevicePacketIdAndSerialNumberServiceImpl implements DevicePacketIdA
                 log.debug("Did not find in cache, getting PacketIdAndSerialNumbers from DB for: {}", clientIdsFromDb);
             }
             Collection<DeviceSessionCtx> deviceSessionsFromDb = findSessionsByClientIds(clientIdsFromDb);
-            result.putAll(updateCacheAndToMap(deviceSessionsFromDb, cache));
+            Map<String, PacketIdAndSerialNumber> lastFromMessages = deviceMsgService.findLastPacketIdAndSerialNumbers(clientIdsFromDb);
+            result.putAll(updateCacheAndToMap(clientIdsFromDb, deviceSessionsFromDb, lastFromMessages, cache));
         }
 
         return result;
     }
 
-    private Map<String, PacketIdAndSerialNumber> updateCacheAndToMap(Collection<DeviceSessionCtx> deviceSessions, Cache cache) {
-        return deviceSessions.stream()
-                .peek(deviceSessionCtx ->
-                        cache.putIfAbsent(deviceSessionCtx.getClientId(), newPacketIdAndSerialNumber(deviceSessionCtx)))
-                .collect(Collectors.toMap(
-                        DeviceSessionCtx::getClientId,
-                        this::newPacketIdAndSerialNumber)
-                );
+    /**
+     * Session context keeps the end of the leased range. The rows of the newest persisted messages may be acknowledged
+     * and deleted by now, so the numbering continues from the end of the leased range unless a persisted message is above it.
+     * The last persisted message alone is used only when there is no session context for the client.
+     */
+    private Map<String, PacketIdAndSerialNumber> updateCacheAndToMap(Set<String> clientIds, Collection<DeviceSessionCtx> deviceSessions,
+                                                                     Map<String, PacketIdAndSerialNumber> lastFromMessages, Cache cache) {
+        Map<String, DeviceSessionCtx> deviceSessionsMap = deviceSessions.stream()
+                .collect(Collectors.toMap(DeviceSessionCtx::getClientId, deviceSessionCtx -> deviceSessionCtx));
+        Map<String, PacketIdAndSerialNumber> result = Maps.newHashMap();
+        for (String clientId : clientIds) {
+            DeviceSessionCtx deviceSessionCtx = deviceSessionsMap.get(clientId);
+            if (deviceSessionCtx != null && deviceSessionCtx.getLastSerialNumber() != null) {
+                leasedSerialNumbers.put(clientId, deviceSessionCtx.getLastSerialNumber());
+            } else {
+                deviceSessionCtx = null;
+                leasedSerialNumbers.remove(clientId);
+            }
+
+            PacketIdAndSerialNumber last = getLastPacketIdAndSerialNumber(deviceSessionCtx, lastFromMessages.get(clientId));
+            if (last != null) {
+                cache.putIfAbsent(clientId, copyOf(last));
+                result.put(clientId, last);
+            }
+        }
+        return result;
+    }
+
+    private PacketIdAndSerialNumber getLastPacketIdAndSerialNumber(DeviceSessionCtx deviceSessionCtx, PacketIdAndSerialNumber fromMessages) {
+        if (deviceSessionCtx == null) {
+            return fromMessages;
+        }
+        if (fromMessages == null) {
+            return newPacketIdAndSerialNumber(deviceSessionCtx);
+        }
+        if (fromMessages.getSerialNumber().get() >= deviceSessionCtx.getLastSerialNumber()) {
+            return fromMessages;
+        }
+        // packetIds of the persisted messages are not reused while the messages are stored, so the numbering continues after them
+        return PacketIdAndSerialNumber.newInstance(fromMessages.getPacketId().get(), deviceSessionCtx.getLastSerialNumber());
     }
 
     private PacketIdAndSerialNumber newPacketIdAndSerialNumber(DeviceSessionCtx deviceSessionCtx) {
@@ -105,18 +150,57 @@ public class DevicePacketIdAndSerialNumberServiceImpl implements DevicePacketIdA
         deviceSessionCtxService.saveDeviceSessionContexts(deviceSessionContexts);
 
         Cache cache = getCache();
-        deviceSessionContexts.forEach(deviceSessionCtx -> cache.put(deviceSessionCtx.getClientId(), newPacketIdAndSerialNumber(deviceSessionCtx)));
+        deviceSessionContexts.forEach(deviceSessionCtx -> {
+            leasedSerialNumbers.put(deviceSessionCtx.getClientId(), deviceSessionCtx.getLastSerialNumber());
+            cache.put(deviceSessionCtx.getClientId(), newPacketIdAndSerialNumber(deviceSessionCtx));
+        });
+    }
+
+    @Override
+    public void reserveSerialNumbers(Map<String, PacketIdAndSerialNumber> clientsLastPacketIdAndSerialNumbers) {
+        List<DeviceSessionCtx> newLeases = new ArrayList<>();
+        for (Map.Entry<String, PacketIdAndSerialNumber> entry : clientsLastPacketIdAndSerialNumbers.entrySet()) {
+            Long leasedSerialNumber = leasedSerialNumbers.get(entry.getKey());
+            long lastSerialNumber = entry.getValue().getSerialNumber().get();
+            if (leasedSerialNumber == null || lastSerialNumber > leasedSerialNumber) {
+                newLeases.add(buildDeviceSessionCtx(entry.getKey(), entry.getValue(), lastSerialNumber + serialNumberLeaseSize));
+            }
+        }
+        if (!newLeases.isEmpty()) {
+            if (log.isTraceEnabled()) {
+                log.trace("Leasing new serialNumber ranges for {} clients", newLeases.size());
+            }
+            deviceSessionCtxService.saveDeviceSessionContexts(newLeases);
+            newLeases.forEach(deviceSessionCtx -> leasedSerialNumbers.put(deviceSessionCtx.getClientId(), deviceSessionCtx.getLastSerialNumber()));
+        }
+
+        Cache cache = getCache();
+        clientsLastPacketIdAndSerialNumbers.forEach((clientId, packetIdAndSerialNumber) -> cache.put(clientId, copyOf(packetIdAndSerialNumber)));
+    }
+
+    @Override
+    public void removeDeviceSessionContext(String clientId) {
+        deviceSessionCtxService.removeDeviceSessionContext(clientId);
+        leasedSerialNumbers.remove(clientId);
     }
 
     private DeviceSessionCtx buildDeviceSessionCtx(Map.Entry<String, PacketIdAndSerialNumber> entry) {
+        return buildDeviceSessionCtx(entry.getKey(), entry.getValue(), entry.getValue().getSerialNumber().get());
+    }
+
+    private DeviceSessionCtx buildDeviceSessionCtx(String clientId, PacketIdAndSerialNumber packetIdAndSerialNumber, long lastSerialNumber) {
         return DeviceSessionCtx.builder()
-                .clientId(entry.getKey())
+                .clientId(clientId)
                 .lastUpdatedTime(System.currentTimeMillis())
-                .lastSerialNumber(entry.getValue().getSerialNumber().get())
-                .lastPacketId(entry.getValue().getPacketId().get())
+                .lastSerialNumber(lastSerialNumber)
+                .lastPacketId(packetIdAndSerialNumber.getPacketId().get())
                 .build();
     }
 
+    private PacketIdAndSerialNumber copyOf(PacketIdAndSerialNumber packetIdAndSerialNumber) {
+        return PacketIdAndSerialNumber.newInstance(packetIdAndSerialNumber.getPacketId().get(), packetIdAndSerialNumber.getSerialNumber().get());
+    }
+
     private Cache getCache() {
         return cacheManager.getCache(CacheConstants.PACKET_ID_AND_SERIAL_NUMBER_CACHE);
     }
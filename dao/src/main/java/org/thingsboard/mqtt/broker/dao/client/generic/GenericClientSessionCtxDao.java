@@ -24,6 +24,8 @@ import java.util.List;
 public interface GenericClientSessionCtxDao {
     GenericClientSessionCtx save(GenericClientSessionCtx genericClientSessionCtx);
 
+    ListenableFuture<Void> saveAsync(GenericClientSessionCtx genericClientSessionCtx);
+
     GenericClientSessionCtx findByClientId(String clientId);
 
     ListenableFuture<GenericClientSessionCtx> findByClientIdAsync(String clientId);
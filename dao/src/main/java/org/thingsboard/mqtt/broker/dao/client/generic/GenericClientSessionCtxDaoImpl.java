@@ -16,17 +16,27 @@
 package org.thingsboard.mqtt.broker.dao.client.generic;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.thingsboard.mqtt.broker.common.data.GenericClientSessionCtx;
 import org.thingsboard.mqtt.broker.dao.DaoUtil;
 import org.thingsboard.mqtt.broker.dao.JpaAbstractDaoListeningExecutorService;
+import org.thingsboard.mqtt.broker.dao.client.SessionCtxSaveQueueConfiguration;
 import org.thingsboard.mqtt.broker.dao.model.GenericClientSessionCtxEntity;
+import org.thingsboard.mqtt.broker.dao.sql.SqlQueueStatsManager;
+import org.thingsboard.mqtt.broker.dao.sql.TbSqlBlockingQueuePool;
+import org.thingsboard.mqtt.broker.dao.sql.TbSqlPendingSavesQueue;
+import org.thingsboard.mqtt.broker.dao.sql.TbSqlQueueParams;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -35,20 +45,78 @@ import java.util.stream.Collectors;
 public class GenericClientSessionCtxDaoImpl extends JpaAbstractDaoListeningExecutorService implements GenericClientSessionCtxDao {
     private final GenericClientSessionCtxRepository genericClientSessionCtxRepository;
     private final InsertGenericClientSessionCtxRepository insertGenericClientSessionCtxRepository;
+    private final SessionCtxSaveQueueConfiguration sessionCtxSaveQueueConfiguration;
+
+    @Autowired(required = false)
+    private SqlQueueStatsManager sqlQueueStatsManager;
+
+    private TbSqlPendingSavesQueue<GenericClientSessionCtxEntity> saveQueue;
+
+    @PostConstruct
+    public void init() {
+        if (!sessionCtxSaveQueueConfiguration.isEnabled()) {
+            return;
+        }
+        Function<GenericClientSessionCtxEntity, Integer> saveQueueIndexHashFunction = entity -> entity.getClientId().hashCode();
+        TbSqlQueueParams saveQueueParams = TbSqlQueueParams.builder()
+                .queueName("GenericClientSessionCtxSaveQueue")
+                .batchSize(sessionCtxSaveQueueConfiguration.getBatchSize())
+                .maxDelay(sessionCtxSaveQueueConfiguration.getMaxDelay())
+                .build();
+        this.saveQueue = new TbSqlPendingSavesQueue<>(
+                TbSqlBlockingQueuePool.<GenericClientSessionCtxEntity>builder()
+                        .queueIndexHashFunction(saveQueueIndexHashFunction)
+                        .maxThreads(sessionCtxSaveQueueConfiguration.getBatchThreads())
+                        .params(saveQueueParams)
+                        .statsManager(sqlQueueStatsManager)
+                        .processingFunction(insertGenericClientSessionCtxRepository::saveOrUpdate)
+                        .build(),
+                GenericClientSessionCtxEntity::getClientId,
+                sessionCtxSaveQueueConfiguration.getAwaitTimeout());
+        saveQueue.init();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (saveQueue != null) {
+            saveQueue.destroy();
+        }
+    }
 
     @Override
     public void saveAll(Collection<GenericClientSessionCtx> genericClientSessionContexts) {
+        if (saveQueue != null) {
+            genericClientSessionContexts.forEach(ctx -> saveQueue.awaitPending(ctx.getClientId()));
+        }
         List<GenericClientSessionCtxEntity> entities = genericClientSessionContexts.stream().map(GenericClientSessionCtxEntity::new).collect(Collectors.toList());
         insertGenericClientSessionCtxRepository.saveOrUpdate(entities);
     }
 
     @Override
     public GenericClientSessionCtx save(GenericClientSessionCtx genericClientSessionCtx) {
+        if (saveQueue != null) {
+            saveQueue.awaitPending(genericClientSessionCtx.getClientId());
+        }
         return DaoUtil.getData(genericClientSessionCtxRepository.save(new GenericClientSessionCtxEntity(genericClientSessionCtx)));
     }
 
+    @Override
+    public ListenableFuture<Void> saveAsync(GenericClientSessionCtx genericClientSessionCtx) {
+        if (saveQueue == null) {
+            save(genericClientSessionCtx);
+            return Futures.immediateFuture(null);
+        }
+        return saveQueue.save(new GenericClientSessionCtxEntity(genericClientSessionCtx));
+    }
+
     @Override
     public GenericClientSessionCtx findByClientId(String clientId) {
+        if (saveQueue != null) {
+            GenericClientSessionCtxEntity pendingEntity = saveQueue.getPending(clientId);
+            if (pendingEntity != null) {
+                return DaoUtil.getData(pendingEntity);
+            }
+        }
         return DaoUtil.getData(genericClientSessionCtxRepository.findByClientId(clientId));
     }
 
@@ -65,6 +133,9 @@ public class GenericClientSessionCtxDaoImpl extends JpaAbstractDaoListeningExecu
 
     @Override
     public void remove(String clientId) {
+        if (saveQueue != null) {
+            saveQueue.awaitPending(clientId);
+        }
         genericClientSessionCtxRepository.deleteById(clientId);
     }
 }
@@ -53,6 +53,15 @@ public class GenericClientSessionCtxServiceImpl implements GenericClientSessionC
         return genericClientSessionCtxDao.save(genericClientSessionCtx);
     }
 
+    @Override
+    public ListenableFuture<Void> saveGenericClientSessionCtxAsync(GenericClientSessionCtx genericClientSessionCtx) {
+        if (log.isTraceEnabled()) {
+            log.trace("Executing saveGenericClientSessionCtxAsync [{}]", genericClientSessionCtx);
+        }
+        validate(genericClientSessionCtx);
+        return genericClientSessionCtxDao.saveAsync(genericClientSessionCtx);
+    }
+
     @Override
     public void deleteGenericClientSessionCtx(String clientId) {
         if (log.isTraceEnabled()) {
@@ -25,4 +25,10 @@ import lombok.Getter;
 public class DeletePacketInfo {
     private final String clientId;
     private final int packetId;
+    // when present, the packet is removed by serial number, so contiguous packets of the client are removed with one statement
+    private final Long serialNumber;
+
+    public DeletePacketInfo(String clientId, int packetId) {
+        this(clientId, packetId, null);
+    }
 }
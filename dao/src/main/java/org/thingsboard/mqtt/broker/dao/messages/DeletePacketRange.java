@@ -0,0 +1,64 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class DeletePacketRange {
+    private final String clientId;
+    private final long fromSerialNumber;
+    private final long toSerialNumber;
+
+    /**
+     * Coalesces serial numbers of the packets into ranges of contiguous serial numbers per client.
+     * Packets acknowledged in order are removed with one range, out-of-order ones produce single-element ranges.
+     */
+    public static List<DeletePacketRange> toRanges(List<DeletePacketInfo> packets) {
+        Map<String, List<Long>> clientsSerialNumbers = new HashMap<>();
+        for (DeletePacketInfo packet : packets) {
+            clientsSerialNumbers.computeIfAbsent(packet.getClientId(), clientId -> new ArrayList<>()).add(packet.getSerialNumber());
+        }
+        List<DeletePacketRange> ranges = new ArrayList<>();
+        clientsSerialNumbers.forEach((clientId, serialNumbers) -> {
+            Collections.sort(serialNumbers);
+            long from = serialNumbers.get(0);
+            long to = from;
+            for (int i = 1; i < serialNumbers.size(); i++) {
+                long serialNumber = serialNumbers.get(i);
+                if (serialNumber > to + 1) {
+                    ranges.add(new DeletePacketRange(clientId, from, to));
+                    from = serialNumber;
+                }
+                to = serialNumber;
+            }
+            ranges.add(new DeletePacketRange(clientId, from, to));
+        });
+        return ranges;
+    }
+}
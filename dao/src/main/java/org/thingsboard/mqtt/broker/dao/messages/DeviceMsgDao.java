@@ -18,8 +18,11 @@ package org.thingsboard.mqtt.broker.dao.messages;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
+import org.thingsboard.mqtt.broker.dao.client.device.PacketIdAndSerialNumber;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface DeviceMsgDao {
     void save(List<DevicePublishMsg> devicePublishMessages, boolean failOnConflict);
@@ -28,9 +31,13 @@ public interface DeviceMsgDao {
 
     List<DevicePublishMsg> findPersistedMessagesBySerialNumber(String clientId, long fromSerialNumber, long toSerialNumber);
 
+    Map<String, PacketIdAndSerialNumber> findLastPacketIdAndSerialNumbers(Collection<String> clientIds);
+
     void removePersistedMessages(String clientId);
 
     ListenableFuture<Void> removePersistedMessage(String clientId, int packetId);
 
+    ListenableFuture<Void> removePersistedMessage(String clientId, int packetId, long serialNumber);
+
     ListenableFuture<Void> updatePacketType(String clientId, int packetId, PersistedPacketType packetType);
 }
@@ -24,8 +24,11 @@ import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
 import org.thingsboard.mqtt.broker.dao.DbConnectionChecker;
+import org.thingsboard.mqtt.broker.dao.client.device.PacketIdAndSerialNumber;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -68,6 +71,14 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
         return deviceMsgDao.findPersistedMessagesBySerialNumber(clientId, fromSerialNumber, toSerialNumber);
     }
 
+    @Override
+    public Map<String, PacketIdAndSerialNumber> findLastPacketIdAndSerialNumbers(Collection<String> clientIds) {
+        if (log.isTraceEnabled()) {
+            log.trace("Loading last packetId and serialNumber of persisted messages for clients: {}.", clientIds);
+        }
+        return deviceMsgDao.findLastPacketIdAndSerialNumbers(clientIds);
+    }
+
     @Override
     public void removePersistedMessages(String clientId) {
         if (log.isTraceEnabled()) {
@@ -94,6 +105,20 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
         return deviceMsgDao.removePersistedMessage(clientId, packetId);
     }
 
+    @Override
+    public ListenableFuture<Void> tryRemovePersistedMessage(String clientId, int packetId, long serialNumber) {
+        if (!dbConnectionChecker.isDbConnected()) {
+            if (log.isTraceEnabled()) {
+                log.trace("[{}] Ignoring remove persisted message request, no DB connection, packetId - {}", clientId, packetId);
+            }
+            return Futures.immediateFuture(null);
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("[{}] Removing persisted message with packetId {}, serialNumber {}.", clientId, packetId, serialNumber);
+        }
+        return deviceMsgDao.removePersistedMessage(clientId, packetId, serialNumber);
+    }
+
     @Override
     public ListenableFuture<Void> tryUpdatePacketReceived(String clientId, int packetId) {
         if (!dbConnectionChecker.isDbConnected()) {
@@ -15,9 +15,12 @@
  */
 package org.thingsboard.mqtt.broker.dao.messages;
 
+import org.thingsboard.mqtt.broker.dao.client.device.PacketIdAndSerialNumber;
 import org.thingsboard.mqtt.broker.dao.model.sql.DevicePublishMsgEntity;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface LowLevelDeviceMsgRepository {
     void insert(List<DevicePublishMsgEntity> entities);
@@ -29,4 +32,6 @@ public interface LowLevelDeviceMsgRepository {
     void removePackets(List<DeletePacketInfo> packets);
 
     void removePacketsByClientId(String clientId);
+
+    Map<String, PacketIdAndSerialNumber> findLastPacketIdAndSerialNumbers(Collection<String> clientIds);
 }
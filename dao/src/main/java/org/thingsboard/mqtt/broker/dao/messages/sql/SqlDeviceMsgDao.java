@@ -23,6 +23,7 @@ import org.springframework.stereotype.Component;
 import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
 import org.thingsboard.mqtt.broker.dao.DaoUtil;
+import org.thingsboard.mqtt.broker.dao.client.device.PacketIdAndSerialNumber;
 import org.thingsboard.mqtt.broker.dao.messages.DeletePacketInfo;
 import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgDao;
 import org.thingsboard.mqtt.broker.dao.messages.LowLevelDeviceMsgRepository;
@@ -35,8 +36,10 @@ import org.thingsboard.mqtt.broker.dao.sql.TbSqlQueueParams;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -95,6 +98,14 @@ public class SqlDeviceMsgDao implements DeviceMsgDao {
         return DaoUtil.convertDataList(devicePublishMsgs);
     }
 
+    @Override
+    public Map<String, PacketIdAndSerialNumber> findLastPacketIdAndSerialNumbers(Collection<String> clientIds) {
+        if (log.isTraceEnabled()) {
+            log.trace("Finding last packetId and serialNumber of device publish messages, clientIds - {}", clientIds);
+        }
+        return lowLevelDeviceMsgRepository.findLastPacketIdAndSerialNumbers(clientIds);
+    }
+
     @Override
     public void removePersistedMessages(String clientId) {
         if (log.isTraceEnabled()) {
@@ -111,6 +122,14 @@ public class SqlDeviceMsgDao implements DeviceMsgDao {
         return deletePacketQueue.add(new DeletePacketInfo(clientId, packetId));
     }
 
+    @Override
+    public ListenableFuture<Void> removePersistedMessage(String clientId, int packetId, long serialNumber) {
+        if (log.isTraceEnabled()) {
+            log.trace("Removing device publish message, clientId - {}, packetId - {}, serialNumber - {}", clientId, packetId, serialNumber);
+        }
+        return deletePacketQueue.add(new DeletePacketInfo(clientId, packetId, serialNumber));
+    }
+
     @Override
     public ListenableFuture<Void> updatePacketType(String clientId, int packetId, PersistedPacketType packetType) {
         if (log.isTraceEnabled()) {
@@ -21,7 +21,9 @@ import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import org.thingsboard.mqtt.broker.dao.client.device.PacketIdAndSerialNumber;
 import org.thingsboard.mqtt.broker.dao.messages.DeletePacketInfo;
+import org.thingsboard.mqtt.broker.dao.messages.DeletePacketRange;
 import org.thingsboard.mqtt.broker.dao.messages.LowLevelDeviceMsgRepository;
 import org.thingsboard.mqtt.broker.dao.messages.UpdatePacketTypeInfo;
 import org.thingsboard.mqtt.broker.dao.model.sql.DevicePublishMsgEntity;
@@ -29,7 +31,11 @@ import org.thingsboard.mqtt.broker.dao.model.sql.DevicePublishMsgEntity;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.IntStream;
 
 @Slf4j
@@ -54,9 +60,16 @@ public class SqlLowLevelDeviceMsgRepository implements LowLevelDeviceMsgReposito
     private static final String DELETE_PACKET = "DELETE FROM device_publish_msg " +
             "WHERE client_id = ? AND packet_id = ?;";
 
+    private static final String DELETE_PACKETS_BY_SERIAL_NUMBER_RANGE = "DELETE FROM device_publish_msg " +
+            "WHERE client_id = ? AND serial_number BETWEEN ? AND ?;";
+
     private static final String DELETE_PACKETS_BY_CLIENT_ID = "DELETE FROM device_publish_msg " +
             "WHERE client_id = ?;";
 
+    private static final String SELECT_LAST_PACKET_ID_AND_SERIAL_NUMBER = "SELECT DISTINCT ON (client_id) client_id, packet_id, serial_number " +
+            "FROM device_publish_msg WHERE client_id = ANY (?) " +
+            "ORDER BY client_id, serial_number DESC;";
+
     private final JdbcTemplate jdbcTemplate;
 
     @Override
@@ -154,6 +167,31 @@ public class SqlLowLevelDeviceMsgRepository implements LowLevelDeviceMsgReposito
     @Override
     @Transactional
     public void removePackets(List<DeletePacketInfo> packets) {
+        List<DeletePacketInfo> packetsByPacketId = new ArrayList<>();
+        List<DeletePacketInfo> packetsBySerialNumber = new ArrayList<>();
+        for (DeletePacketInfo packet : packets) {
+            if (packet.getSerialNumber() == null) {
+                packetsByPacketId.add(packet);
+            } else {
+                packetsBySerialNumber.add(packet);
+            }
+        }
+        List<DeletePacketRange> ranges = packetsBySerialNumber.isEmpty() ?
+                List.of() : DeletePacketRange.toRanges(packetsBySerialNumber);
+
+        int deletedPackets = removePacketsByPacketId(packetsByPacketId) + removePacketsBySerialNumberRanges(ranges);
+        if (log.isDebugEnabled()) {
+            log.debug("Deleted {} packets with {} statements", deletedPackets, packetsByPacketId.size() + ranges.size());
+            if (deletedPackets != packets.size()) {
+                log.debug("Expected to delete {} packet, actually deleted {} packets", packets.size(), deletedPackets);
+            }
+        }
+    }
+
+    private int removePacketsByPacketId(List<DeletePacketInfo> packets) {
+        if (packets.isEmpty()) {
+            return 0;
+        }
         int[] result = jdbcTemplate.batchUpdate(DELETE_PACKET, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
@@ -167,12 +205,40 @@ public class SqlLowLevelDeviceMsgRepository implements LowLevelDeviceMsgReposito
                 return packets.size();
             }
         });
-        int deletedPackets = IntStream.of(result).sum();
-        if (deletedPackets != packets.size()) {
-            if (log.isDebugEnabled()) {
-                log.debug("Expected to delete {} packet, actually deleted {} packets", packets.size(), deletedPackets);
-            }
+        return IntStream.of(result).sum();
+    }
+
+    private int removePacketsBySerialNumberRanges(List<DeletePacketRange> ranges) {
+        if (ranges.isEmpty()) {
+            return 0;
         }
+        int[] result = jdbcTemplate.batchUpdate(DELETE_PACKETS_BY_SERIAL_NUMBER_RANGE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                DeletePacketRange range = ranges.get(i);
+                ps.setString(1, range.getClientId());
+                ps.setLong(2, range.getFromSerialNumber());
+                ps.setLong(3, range.getToSerialNumber());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return ranges.size();
+            }
+        });
+        return IntStream.of(result).sum();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, PacketIdAndSerialNumber> findLastPacketIdAndSerialNumbers(Collection<String> clientIds) {
+        Map<String, PacketIdAndSerialNumber> result = new HashMap<>();
+        jdbcTemplate.query(SELECT_LAST_PACKET_ID_AND_SERIAL_NUMBER,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", clientIds.toArray())),
+                rs -> {
+                    result.put(rs.getString(1), PacketIdAndSerialNumber.newInstance(rs.getInt(2), rs.getLong(3)));
+                });
+        return result;
     }
 
     @Override
@@ -24,6 +24,7 @@ import org.hibernate.annotations.TypeDef;
 import org.thingsboard.mqtt.broker.common.data.ApplicationMsgInfo;
 import org.thingsboard.mqtt.broker.common.data.ApplicationSessionCtx;
 import org.thingsboard.mqtt.broker.common.util.JacksonUtil;
+import org.thingsboard.mqtt.broker.dao.util.ApplicationMsgInfosCodec;
 import org.thingsboard.mqtt.broker.dao.util.mapping.JsonStringType;
 
 import javax.persistence.Column;
@@ -31,6 +32,7 @@ import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Data
@@ -46,6 +48,9 @@ public class ApplicationSessionCtxEntity implements ToData<ApplicationSessionCtx
     @Column(name = ModelConstants.APPLICATION_SESSION_CTX_LAST_UPDATED_PROPERTY)
     private long lastUpdatedTime;
 
+    /**
+     * JSON columns are only read for the rows saved before the binary columns were introduced.
+     */
     @Type(type = "json")
     @Column(name = ModelConstants.APPLICATION_SESSION_CTX_PUBLISH_MSG_INFOS_PROPERTY)
     private JsonNode publishMsgInfos;
@@ -53,33 +58,43 @@ public class ApplicationSessionCtxEntity implements ToData<ApplicationSessionCtx
     @Column(name = ModelConstants.APPLICATION_SESSION_CTX_PUBREL_MSG_INFOS_PROPERTY)
     private JsonNode pubRelMsgInfos;
 
+    @Column(name = ModelConstants.APPLICATION_SESSION_CTX_PUBLISH_MSG_INFOS_BIN_PROPERTY, columnDefinition = "BINARY")
+    private byte[] publishMsgInfosBin;
+    @Column(name = ModelConstants.APPLICATION_SESSION_CTX_PUBREL_MSG_INFOS_BIN_PROPERTY, columnDefinition = "BINARY")
+    private byte[] pubRelMsgInfosBin;
+
     public ApplicationSessionCtxEntity() {
     }
 
     public ApplicationSessionCtxEntity(ApplicationSessionCtx applicationSessionCtx) {
         this.clientId = applicationSessionCtx.getClientId();
         this.lastUpdatedTime = applicationSessionCtx.getLastUpdatedTime();
-        this.publishMsgInfos = JacksonUtil.toJsonNode(JacksonUtil.toString(applicationSessionCtx.getPublishMsgInfos()));
-        this.pubRelMsgInfos = JacksonUtil.toJsonNode(JacksonUtil.toString(applicationSessionCtx.getPubRelMsgInfos()));
+        this.publishMsgInfosBin = ApplicationMsgInfosCodec.encode(applicationSessionCtx.getPublishMsgInfos());
+        this.pubRelMsgInfosBin = ApplicationMsgInfosCodec.encode(applicationSessionCtx.getPubRelMsgInfos());
     }
 
     @Override
     public ApplicationSessionCtx toData() {
-        ArrayNode publishMsgInfoJsonArray = (ArrayNode) this.publishMsgInfos;
-        List<ApplicationMsgInfo> publishMsgInfos = new ArrayList<>(publishMsgInfoJsonArray.size());
-        for (JsonNode publishMsgInfoJson : publishMsgInfoJsonArray) {
-            publishMsgInfos.add(JacksonUtil.toValue(publishMsgInfoJson, ApplicationMsgInfo.class));
-        }
-        ArrayNode pubRelMsgInfoJsonArray = (ArrayNode) this.pubRelMsgInfos;
-        List<ApplicationMsgInfo> pubRelMsgInfos = new ArrayList<>(publishMsgInfoJsonArray.size());
-        for (JsonNode pubRelMsgInfoJson : pubRelMsgInfoJsonArray) {
-            pubRelMsgInfos.add(JacksonUtil.toValue(pubRelMsgInfoJson, ApplicationMsgInfo.class));
-        }
         return ApplicationSessionCtx.builder()
                 .clientId(clientId)
                 .lastUpdatedTime(lastUpdatedTime)
-                .publishMsgInfos(publishMsgInfos)
-                .pubRelMsgInfos(pubRelMsgInfos)
+                .publishMsgInfos(toMsgInfos(publishMsgInfosBin, publishMsgInfos))
+                .pubRelMsgInfos(toMsgInfos(pubRelMsgInfosBin, pubRelMsgInfos))
                 .build();
     }
+
+    private List<ApplicationMsgInfo> toMsgInfos(byte[] msgInfosBin, JsonNode msgInfosJson) {
+        if (msgInfosBin != null) {
+            return ApplicationMsgInfosCodec.decode(msgInfosBin);
+        }
+        if (msgInfosJson == null) {
+            return Collections.emptyList();
+        }
+        ArrayNode msgInfoJsonArray = (ArrayNode) msgInfosJson;
+        List<ApplicationMsgInfo> msgInfos = new ArrayList<>(msgInfoJsonArray.size());
+        for (JsonNode msgInfoJson : msgInfoJsonArray) {
+            msgInfos.add(JacksonUtil.toValue(msgInfoJson, ApplicationMsgInfo.class));
+        }
+        return msgInfos;
+    }
 }
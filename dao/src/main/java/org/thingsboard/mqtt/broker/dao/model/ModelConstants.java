@@ -118,6 +118,8 @@ public class ModelConstants {
     public static final String APPLICATION_SESSION_CTX_LAST_UPDATED_PROPERTY = "last_updated_time";
     public static final String APPLICATION_SESSION_CTX_PUBLISH_MSG_INFOS_PROPERTY = "publish_msg_infos";
     public static final String APPLICATION_SESSION_CTX_PUBREL_MSG_INFOS_PROPERTY = "pubrel_msg_infos";
+    public static final String APPLICATION_SESSION_CTX_PUBLISH_MSG_INFOS_BIN_PROPERTY = "publish_msg_infos_bin";
+    public static final String APPLICATION_SESSION_CTX_PUBREL_MSG_INFOS_BIN_PROPERTY = "pubrel_msg_infos_bin";
 
     /**
      * generic_client_session_ctx constants.
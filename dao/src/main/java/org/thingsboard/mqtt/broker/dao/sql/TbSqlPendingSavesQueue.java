@@ -0,0 +1,96 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Batches the upserts of the client contexts through the {@link TbSqlQueue}. The contexts waiting in the queue are kept
+ * by the client id, so the reads see the latest saved context and the deletes are not overtaken by the queued upserts.
+ */
+@Slf4j
+public class TbSqlPendingSavesQueue<E> {
+
+    private final ConcurrentMap<String, PendingSave<E>> pendingSaves = new ConcurrentHashMap<>();
+
+    private final TbSqlQueue<E> queue;
+    private final Function<E, String> clientIdFunction;
+    private final long awaitTimeoutMs;
+
+    public TbSqlPendingSavesQueue(TbSqlQueue<E> queue, Function<E, String> clientIdFunction, long awaitTimeoutMs) {
+        this.queue = queue;
+        this.clientIdFunction = clientIdFunction;
+        this.awaitTimeoutMs = awaitTimeoutMs;
+    }
+
+    public void init() {
+        queue.init();
+    }
+
+    public void destroy() {
+        for (String clientId : pendingSaves.keySet()) {
+            awaitPending(clientId);
+        }
+        queue.destroy();
+    }
+
+    public ListenableFuture<Void> save(E element) {
+        String clientId = clientIdFunction.apply(element);
+        ListenableFuture<Void> future = queue.add(element);
+        PendingSave<E> pendingSave = new PendingSave<>(element, future);
+        pendingSaves.put(clientId, pendingSave);
+        future.addListener(() -> pendingSaves.remove(clientId, pendingSave), MoreExecutors.directExecutor());
+        return future;
+    }
+
+    public E getPending(String clientId) {
+        PendingSave<E> pendingSave = pendingSaves.get(clientId);
+        return pendingSave != null ? pendingSave.getElement() : null;
+    }
+
+    /**
+     * Waits for the queued upsert of the client context, if any, to be executed.
+     */
+    public void awaitPending(String clientId) {
+        PendingSave<E> pendingSave = pendingSaves.get(clientId);
+        if (pendingSave == null) {
+            return;
+        }
+        try {
+            pendingSave.getFuture().get(awaitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Queued save of the client context was not completed.", clientId, e);
+            }
+        }
+    }
+
+    @Data
+    private static class PendingSave<E> {
+        private final E element;
+        private final ListenableFuture<Void> future;
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.util;
+
+import org.thingsboard.mqtt.broker.common.data.ApplicationMsgInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compact binary encoding of the Application session pending msgs. The msgs are sorted by offset,
+ * offsets are written as zigzag varint deltas from the previous offset and packet ids as varints,
+ * so the usual pack of consecutive offsets takes 2-4 bytes per msg.
+ * <p>
+ * Layout: version byte, varint msgs count, (offset delta, packet id) per msg.
+ */
+public final class ApplicationMsgInfosCodec {
+
+    private static final byte VERSION = 1;
+    private static final int MAX_VARINT_LONG_BYTES = 10;
+    private static final int MAX_VARINT_INT_BYTES = 5;
+    private static final Comparator<ApplicationMsgInfo> BY_OFFSET = Comparator.comparingLong(ApplicationMsgInfo::getOffset);
+
+    private ApplicationMsgInfosCodec() {
+    }
+
+    public static byte[] encode(Collection<ApplicationMsgInfo> msgInfos) {
+        ApplicationMsgInfo[] sorted = msgInfos.toArray(new ApplicationMsgInfo[0]);
+        Arrays.sort(sorted, BY_OFFSET);
+
+        Writer writer = new Writer(1 + MAX_VARINT_INT_BYTES + sorted.length * (MAX_VARINT_LONG_BYTES + MAX_VARINT_INT_BYTES));
+        writer.writeByte(VERSION);
+        writer.writeVarLong(sorted.length);
+        long prevOffset = 0;
+        for (ApplicationMsgInfo msgInfo : sorted) {
+            writer.writeVarLong(zigZag(msgInfo.getOffset() - prevOffset));
+            writer.writeVarLong(msgInfo.getPacketId());
+            prevOffset = msgInfo.getOffset();
+        }
+        return writer.toByteArray();
+    }
+
+    public static List<ApplicationMsgInfo> decode(byte[] data) {
+        Reader reader = new Reader(data);
+        byte version = reader.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported Application msg infos encoding version " + version);
+        }
+        int size = (int) reader.readVarLong();
+        List<ApplicationMsgInfo> msgInfos = new ArrayList<>(size);
+        long offset = 0;
+        for (int i = 0; i < size; i++) {
+            offset += unZigZag(reader.readVarLong());
+            int packetId = (int) reader.readVarLong();
+            msgInfos.add(new ApplicationMsgInfo(offset, packetId));
+        }
+        return msgInfos;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static class Writer {
+        private final byte[] buf;
+        private int pos;
+
+        Writer(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        void writeByte(byte value) {
+            buf[pos++] = value;
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    private static class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        byte readByte() {
+            checkAvailable();
+            return buf[pos++];
+        }
+
+        long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in Application msg infos");
+        }
+
+        private void checkAvailable() {
+            if (pos >= buf.length) {
+                throw new IllegalArgumentException("Truncated Application msg infos, length " + buf.length);
+            }
+        }
+    }
+}
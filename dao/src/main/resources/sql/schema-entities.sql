@@ -102,7 +102,9 @@ CREATE TABLE IF NOT EXISTS application_session_ctx (
     client_id varchar(255) NOT NULL CONSTRAINT application_session_ctx_pkey PRIMARY KEY,
     last_updated_time bigint NOT NULL,
     publish_msg_infos varchar,
-    pubrel_msg_infos varchar
+    pubrel_msg_infos varchar,
+    publish_msg_infos_bin bytea,
+    pubrel_msg_infos_bin bytea
 );
 
 CREATE TABLE IF NOT EXISTS generic_client_session_ctx (
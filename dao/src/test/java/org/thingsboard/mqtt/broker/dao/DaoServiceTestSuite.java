@@ -23,9 +23,13 @@ import org.junit.runner.RunWith;
 @ClassnameFilters({
         "org.thingsboard.mqtt.broker.dao.service.*ServiceTest",
         "org.thingsboard.mqtt.broker.dao.client.device.*ServiceTest",
+        "org.thingsboard.mqtt.broker.dao.client.application.*RepositoryTest",
+        "org.thingsboard.mqtt.broker.dao.sql.*Test",
         "org.thingsboard.mqtt.broker.dao.data.*Test",
+        "org.thingsboard.mqtt.broker.dao.messages.*Test",
         "org.thingsboard.mqtt.broker.dao.sqlts.sql.*Test",
         "org.thingsboard.mqtt.broker.dao.util.protocol.*Test",
+        "org.thingsboard.mqtt.broker.dao.util.ApplicationMsgInfosCodecTest",
         "org.thingsboard.mqtt.broker.dao.validation.*Test"
 })
 public class DaoServiceTestSuite {
@@ -0,0 +1,99 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.client.application;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.thingsboard.mqtt.broker.common.data.ApplicationMsgInfo;
+import org.thingsboard.mqtt.broker.common.data.ApplicationSessionCtx;
+import org.thingsboard.mqtt.broker.dao.DaoSqlTest;
+import org.thingsboard.mqtt.broker.dao.model.ApplicationSessionCtxEntity;
+import org.thingsboard.mqtt.broker.dao.service.AbstractServiceTest;
+
+import java.util.List;
+
+@DaoSqlTest
+public class PsqlInsertApplicationSessionCtxRepositoryTest extends AbstractServiceTest {
+
+    static final String CLIENT_ID1 = "clientId1";
+    static final String CLIENT_ID2 = "clientId2";
+
+    @Autowired
+    private InsertApplicationSessionCtxRepository insertRepository;
+    @Autowired
+    private ApplicationSessionCtxRepository applicationSessionCtxRepository;
+
+    @After
+    public void tearDown() {
+        applicationSessionCtxRepository.deleteAll();
+    }
+
+    @Test
+    public void givenNewContexts_whenSaveOrUpdate_thenAllInserted() {
+        insertRepository.saveOrUpdate(List.of(
+                newEntity(CLIENT_ID1, 1, List.of(newMsgInfo(10, 1)), List.of()),
+                newEntity(CLIENT_ID2, 2, List.of(), List.of(newMsgInfo(20, 2)))));
+
+        ApplicationSessionCtx first = applicationSessionCtxRepository.findByClientId(CLIENT_ID1).toData();
+        Assert.assertEquals(1, first.getLastUpdatedTime());
+        Assert.assertEquals(List.of(newMsgInfo(10, 1)), first.getPublishMsgInfos());
+        Assert.assertTrue(first.getPubRelMsgInfos().isEmpty());
+
+        ApplicationSessionCtx second = applicationSessionCtxRepository.findByClientId(CLIENT_ID2).toData();
+        Assert.assertEquals(2, second.getLastUpdatedTime());
+        Assert.assertTrue(second.getPublishMsgInfos().isEmpty());
+        Assert.assertEquals(List.of(newMsgInfo(20, 2)), second.getPubRelMsgInfos());
+    }
+
+    @Test
+    public void givenExistingContext_whenSaveOrUpdate_thenUpdatedAndLegacyJsonCleared() {
+        ApplicationSessionCtxEntity legacyEntity = newEntity(CLIENT_ID1, 1, List.of(), List.of());
+        legacyEntity.setPublishMsgInfosBin(null);
+        legacyEntity.setPubRelMsgInfosBin(null);
+        legacyEntity.setPublishMsgInfos(JsonNodeFactory.instance.arrayNode());
+        legacyEntity.setPubRelMsgInfos(JsonNodeFactory.instance.arrayNode());
+        applicationSessionCtxRepository.save(legacyEntity);
+
+        insertRepository.saveOrUpdate(List.of(newEntity(CLIENT_ID1, 5, List.of(newMsgInfo(30, 3)), List.of(newMsgInfo(31, 4)))));
+
+        ApplicationSessionCtxEntity entity = applicationSessionCtxRepository.findByClientId(CLIENT_ID1);
+        Assert.assertEquals(1, applicationSessionCtxRepository.count());
+        Assert.assertNull(entity.getPublishMsgInfos());
+        Assert.assertNull(entity.getPubRelMsgInfos());
+
+        ApplicationSessionCtx sessionCtx = entity.toData();
+        Assert.assertEquals(5, sessionCtx.getLastUpdatedTime());
+        Assert.assertEquals(List.of(newMsgInfo(30, 3)), sessionCtx.getPublishMsgInfos());
+        Assert.assertEquals(List.of(newMsgInfo(31, 4)), sessionCtx.getPubRelMsgInfos());
+    }
+
+    private ApplicationSessionCtxEntity newEntity(String clientId, long lastUpdatedTime,
+                                                  List<ApplicationMsgInfo> publishMsgInfos, List<ApplicationMsgInfo> pubRelMsgInfos) {
+        return new ApplicationSessionCtxEntity(ApplicationSessionCtx.builder()
+                .clientId(clientId)
+                .lastUpdatedTime(lastUpdatedTime)
+                .publishMsgInfos(publishMsgInfos)
+                .pubRelMsgInfos(pubRelMsgInfos)
+                .build());
+    }
+
+    private ApplicationMsgInfo newMsgInfo(long offset, int packetId) {
+        return new ApplicationMsgInfo(offset, packetId);
+    }
+}
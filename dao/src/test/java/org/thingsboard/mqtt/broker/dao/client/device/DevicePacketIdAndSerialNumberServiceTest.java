@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.dao.client.device;
 
+import io.netty.handler.codec.mqtt.MqttProperties;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -22,9 +23,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.thingsboard.mqtt.broker.cache.CacheConstants;
+import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
+import org.thingsboard.mqtt.broker.common.data.DeviceSessionCtx;
+import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
 import org.thingsboard.mqtt.broker.dao.DaoSqlTest;
+import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgService;
 import org.thingsboard.mqtt.broker.dao.service.AbstractServiceTest;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -34,10 +40,15 @@ public class DevicePacketIdAndSerialNumberServiceTest extends AbstractServiceTes
 
     static final String CLIENT_ID1 = "clientId1";
     static final String CLIENT_ID2 = "clientId2";
+    static final String CLIENT_ID3 = "clientId3";
 
     @Autowired
     private DevicePacketIdAndSerialNumberService packetIdAndSerialNumberService;
     @Autowired
+    private DeviceSessionCtxService deviceSessionCtxService;
+    @Autowired
+    private DeviceMsgService deviceMsgService;
+    @Autowired
     private CacheManager cacheManager;
 
     Cache cache;
@@ -105,6 +116,76 @@ public class DevicePacketIdAndSerialNumberServiceTest extends AbstractServiceTes
         Assert.assertEquals(400, fromCache.getSerialNumber().get());
     }
 
+    @Test
+    public void testReserveSerialNumbers() {
+        packetIdAndSerialNumberService.removeDeviceSessionContext(CLIENT_ID3);
+        checkCacheNonNullAndEvict(CLIENT_ID3);
+        Assert.assertTrue(getFromDb(CLIENT_ID3).isEmpty());
+
+        packetIdAndSerialNumberService.reserveSerialNumbers(Map.of(CLIENT_ID3, PacketIdAndSerialNumber.newInstance(5, 50)));
+        assertDeviceSessionCtx(CLIENT_ID3, 5, 1050);
+
+        PacketIdAndSerialNumber fromCache = getFromCacheAndAssertNotNull(CLIENT_ID3);
+        Assert.assertEquals(5, fromCache.getPacketId().get());
+        Assert.assertEquals(50, fromCache.getSerialNumber().get());
+
+        packetIdAndSerialNumberService.reserveSerialNumbers(Map.of(CLIENT_ID3, PacketIdAndSerialNumber.newInstance(6, 1050)));
+        assertDeviceSessionCtx(CLIENT_ID3, 5, 1050);
+
+        fromCache = getFromCacheAndAssertNotNull(CLIENT_ID3);
+        Assert.assertEquals(6, fromCache.getPacketId().get());
+        Assert.assertEquals(1050, fromCache.getSerialNumber().get());
+
+        packetIdAndSerialNumberService.reserveSerialNumbers(Map.of(CLIENT_ID3, PacketIdAndSerialNumber.newInstance(7, 1051)));
+        assertDeviceSessionCtx(CLIENT_ID3, 7, 2051);
+
+        checkCacheNonNullAndEvict(CLIENT_ID3);
+        assertResultFromDb(getFromDb(CLIENT_ID3), CLIENT_ID3, 7, 2051);
+    }
+
+    @Test
+    public void testRemoveDeviceSessionContextReleasesLeasedSerialNumbers() {
+        packetIdAndSerialNumberService.removeDeviceSessionContext(CLIENT_ID3);
+        packetIdAndSerialNumberService.reserveSerialNumbers(Map.of(CLIENT_ID3, PacketIdAndSerialNumber.newInstance(5, 50)));
+        assertDeviceSessionCtx(CLIENT_ID3, 5, 1050);
+
+        packetIdAndSerialNumberService.removeDeviceSessionContext(CLIENT_ID3);
+        Assert.assertTrue(deviceSessionCtxService.findAllContexts(Set.of(CLIENT_ID3)).isEmpty());
+
+        packetIdAndSerialNumberService.reserveSerialNumbers(Map.of(CLIENT_ID3, PacketIdAndSerialNumber.newInstance(1, 1)));
+        assertDeviceSessionCtx(CLIENT_ID3, 1, 1001);
+    }
+
+    @Test
+    public void testCacheEvictedAfterNewestMessagesAcknowledged() throws Exception {
+        packetIdAndSerialNumberService.removeDeviceSessionContext(CLIENT_ID3);
+        deviceMsgService.removePersistedMessages(CLIENT_ID3);
+
+        packetIdAndSerialNumberService.reserveSerialNumbers(Map.of(CLIENT_ID3, PacketIdAndSerialNumber.newInstance(1, 1)));
+        assertDeviceSessionCtx(CLIENT_ID3, 1, 1001);
+        deviceMsgService.save(List.of(newDevicePublishMsg(CLIENT_ID3, 1, 1), newDevicePublishMsg(CLIENT_ID3, 2, 2),
+                newDevicePublishMsg(CLIENT_ID3, 3, 3)), true);
+
+        deviceMsgService.tryRemovePersistedMessage(CLIENT_ID3, 2, 2).get();
+        deviceMsgService.tryRemovePersistedMessage(CLIENT_ID3, 3, 3).get();
+        checkCacheNonNullAndEvict(CLIENT_ID3);
+
+        assertResultFromDb(getFromDb(CLIENT_ID3), CLIENT_ID3, 1, 1001);
+
+        deviceMsgService.removePersistedMessages(CLIENT_ID3);
+    }
+
+    private DevicePublishMsg newDevicePublishMsg(String clientId, int packetId, long serialNumber) {
+        return new DevicePublishMsg(clientId, "test/topic", serialNumber, 0L, 1, packetId,
+                PersistedPacketType.PUBLISH, "testPayload".getBytes(), new MqttProperties(), false);
+    }
+
+    private void assertDeviceSessionCtx(String clientId, int expectedPacketId, long expectedSerialNumber) {
+        DeviceSessionCtx deviceSessionCtx = deviceSessionCtxService.findAllContexts(Set.of(clientId)).iterator().next();
+        Assert.assertEquals(expectedPacketId, deviceSessionCtx.getLastPacketId().intValue());
+        Assert.assertEquals(expectedSerialNumber, deviceSessionCtx.getLastSerialNumber().longValue());
+    }
+
     private void saveToDbAndCache(Map<String, PacketIdAndSerialNumber> toSaveMap) {
         packetIdAndSerialNumberService.saveLastSerialNumbers(toSaveMap);
     }
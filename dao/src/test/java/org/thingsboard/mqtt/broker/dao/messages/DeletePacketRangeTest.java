@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+
+public class DeletePacketRangeTest {
+
+    @Test
+    public void givenContiguousSerialNumbers_whenToRanges_thenOneRange() {
+        List<DeletePacketRange> ranges = DeletePacketRange.toRanges(List.of(
+                newPacket("client", 3), newPacket("client", 1), newPacket("client", 2), newPacket("client", 4)));
+
+        Assert.assertEquals(List.of(new DeletePacketRange("client", 1, 4)), ranges);
+    }
+
+    @Test
+    public void givenOutOfOrderSerialNumbers_whenToRanges_thenSplitIntoRanges() {
+        List<DeletePacketRange> ranges = DeletePacketRange.toRanges(List.of(
+                newPacket("client", 1), newPacket("client", 2), newPacket("client", 5), newPacket("client", 7), newPacket("client", 8)));
+
+        Assert.assertEquals(List.of(
+                new DeletePacketRange("client", 1, 2),
+                new DeletePacketRange("client", 5, 5),
+                new DeletePacketRange("client", 7, 8)), ranges);
+    }
+
+    @Test
+    public void givenDuplicatedSerialNumbers_whenToRanges_thenDuplicatesIgnored() {
+        List<DeletePacketRange> ranges = DeletePacketRange.toRanges(List.of(
+                newPacket("client", 1), newPacket("client", 2), newPacket("client", 2), newPacket("client", 3)));
+
+        Assert.assertEquals(List.of(new DeletePacketRange("client", 1, 3)), ranges);
+    }
+
+    @Test
+    public void givenSeveralClients_whenToRanges_thenRangesAreBuiltPerClient() {
+        List<DeletePacketRange> ranges = DeletePacketRange.toRanges(List.of(
+                newPacket("client1", 1), newPacket("client2", 2), newPacket("client1", 2), newPacket("client2", 3)));
+
+        Assert.assertEquals(2, ranges.size());
+        Assert.assertEquals(Set.of(
+                new DeletePacketRange("client1", 1, 2),
+                new DeletePacketRange("client2", 2, 3)), Set.copyOf(ranges));
+    }
+
+    private DeletePacketInfo newPacket(String clientId, long serialNumber) {
+        return new DeletePacketInfo(clientId, (int) serialNumber, serialNumber);
+    }
+}
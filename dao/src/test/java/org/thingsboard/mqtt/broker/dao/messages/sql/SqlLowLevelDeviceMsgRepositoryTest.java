@@ -0,0 +1,151 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages.sql;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
+import org.thingsboard.mqtt.broker.dao.DaoSqlTest;
+import org.thingsboard.mqtt.broker.dao.messages.DeletePacketInfo;
+import org.thingsboard.mqtt.broker.dao.model.sql.DevicePublishMsgEntity;
+import org.thingsboard.mqtt.broker.dao.service.AbstractServiceTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@DaoSqlTest
+public class SqlLowLevelDeviceMsgRepositoryTest extends AbstractServiceTest {
+
+    private static final String CLIENT_ID_1 = "removePacketsClient1";
+    private static final String CLIENT_ID_2 = "removePacketsClient2";
+    private static final int BACKLOG_SIZE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private AtomicInteger executedStatements;
+    private SqlLowLevelDeviceMsgRepository repository;
+
+    @Before
+    public void before() {
+        executedStatements = new AtomicInteger();
+        // counts the statements of the batches, i.e. the statements the DB executes
+        JdbcTemplate countingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) {
+                executedStatements.addAndGet(pss.getBatchSize());
+                return super.batchUpdate(sql, pss);
+            }
+        };
+        repository = new SqlLowLevelDeviceMsgRepository(countingJdbcTemplate);
+    }
+
+    @After
+    public void after() {
+        repository.removePacketsByClientId(CLIENT_ID_1);
+        repository.removePacketsByClientId(CLIENT_ID_2);
+    }
+
+    @Test
+    public void givenInOrderAckBacklog_whenRemovePackets_thenOneStatementPerClient() {
+        insertBacklog(CLIENT_ID_1);
+        insertBacklog(CLIENT_ID_2);
+
+        List<DeletePacketInfo> packets = new ArrayList<>();
+        for (int i = 0; i < BACKLOG_SIZE; i++) {
+            packets.add(newDeletePacketInfo(CLIENT_ID_1, i));
+            packets.add(newDeletePacketInfo(CLIENT_ID_2, i));
+        }
+        executedStatements.set(0);
+        repository.removePackets(packets);
+
+        Assert.assertEquals(2, executedStatements.get());
+        Assert.assertTrue(executedStatements.get() < packets.size());
+        Assert.assertEquals(0, countPackets(CLIENT_ID_1));
+        Assert.assertEquals(0, countPackets(CLIENT_ID_2));
+    }
+
+    @Test
+    public void givenAckBacklogWithGaps_whenRemovePackets_thenOneStatementPerContiguousRange() {
+        insertBacklog(CLIENT_ID_1);
+
+        // every 100th packet is not acknowledged yet
+        List<DeletePacketInfo> packets = IntStream.range(0, BACKLOG_SIZE)
+                .filter(i -> i % 100 != 99)
+                .mapToObj(i -> newDeletePacketInfo(CLIENT_ID_1, i))
+                .collect(Collectors.toList());
+        executedStatements.set(0);
+        repository.removePackets(packets);
+
+        Assert.assertEquals(BACKLOG_SIZE / 100, executedStatements.get());
+        Assert.assertEquals(BACKLOG_SIZE / 100, countPackets(CLIENT_ID_1));
+    }
+
+    @Test
+    public void givenPacketsWithoutSerialNumbers_whenRemovePackets_thenOneStatementPerPacket() {
+        insertBacklog(CLIENT_ID_1);
+
+        List<DeletePacketInfo> packets = IntStream.range(0, 10)
+                .mapToObj(i -> new DeletePacketInfo(CLIENT_ID_1, packetId(i)))
+                .collect(Collectors.toList());
+        executedStatements.set(0);
+        repository.removePackets(packets);
+
+        Assert.assertEquals(packets.size(), executedStatements.get());
+        Assert.assertEquals(BACKLOG_SIZE - packets.size(), countPackets(CLIENT_ID_1));
+    }
+
+    private void insertBacklog(String clientId) {
+        List<DevicePublishMsgEntity> entities = IntStream.range(0, BACKLOG_SIZE)
+                .mapToObj(i -> newEntity(clientId, i))
+                .collect(Collectors.toList());
+        repository.insert(entities);
+    }
+
+    private DevicePublishMsgEntity newEntity(String clientId, long serialNumber) {
+        DevicePublishMsgEntity entity = new DevicePublishMsgEntity();
+        entity.setClientId(clientId);
+        entity.setSerialNumber(serialNumber);
+        entity.setTopic("test/topic");
+        entity.setTime(System.currentTimeMillis());
+        entity.setPacketId(packetId(serialNumber));
+        entity.setPacketType(PersistedPacketType.PUBLISH);
+        entity.setQos(1);
+        entity.setPayload("payload".getBytes());
+        return entity;
+    }
+
+    private DeletePacketInfo newDeletePacketInfo(String clientId, long serialNumber) {
+        return new DeletePacketInfo(clientId, packetId(serialNumber), serialNumber);
+    }
+
+    private int packetId(long serialNumber) {
+        return (int) (serialNumber % 0xffff) + 1;
+    }
+
+    private int countPackets(String clientId) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM device_publish_msg WHERE client_id = ?", Integer.class, clientId);
+        return count != null ? count : 0;
+    }
+}
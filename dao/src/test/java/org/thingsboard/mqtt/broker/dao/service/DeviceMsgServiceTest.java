@@ -24,11 +24,14 @@ import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
 import org.thingsboard.mqtt.broker.common.util.BrokerConstants;
 import org.thingsboard.mqtt.broker.dao.DaoSqlTest;
+import org.thingsboard.mqtt.broker.dao.client.device.PacketIdAndSerialNumber;
 import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgService;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @DaoSqlTest
@@ -88,6 +91,17 @@ public class DeviceMsgServiceTest extends AbstractServiceTest {
         Assert.assertEquals(Collections.emptyList(), deviceMsgService.findPersistedMessages(TEST_CLIENT_ID, 5, 10));
     }
 
+    @Test
+    public void testFindLastPacketIdAndSerialNumbers() {
+        Assert.assertTrue(deviceMsgService.findLastPacketIdAndSerialNumbers(Set.of(TEST_CLIENT_ID)).isEmpty());
+        deviceMsgService.save(TEST_MESSAGES, true);
+
+        Map<String, PacketIdAndSerialNumber> result = deviceMsgService.findLastPacketIdAndSerialNumbers(Set.of(TEST_CLIENT_ID, "notExistingClientId"));
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(4L, result.get(TEST_CLIENT_ID).getSerialNumber().get());
+        Assert.assertEquals(0, result.get(TEST_CLIENT_ID).getPacketId().get());
+    }
+
     @Test
     public void testSaveWithNoFailOnConflict() {
         deviceMsgService.save(TEST_MESSAGES, true);
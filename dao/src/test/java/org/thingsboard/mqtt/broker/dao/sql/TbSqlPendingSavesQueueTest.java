@@ -0,0 +1,122 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TbSqlPendingSavesQueueTest {
+
+    TbSqlQueue<String> queue;
+    TbSqlPendingSavesQueue<String> pendingSavesQueue;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        queue = mock(TbSqlQueue.class);
+        // the element is "<clientId>:<value>"
+        pendingSavesQueue = new TbSqlPendingSavesQueue<>(queue, element -> element.split(":")[0], 100);
+    }
+
+    @Test
+    public void givenQueuedSave_whenGetPending_thenLatestElementReturnedTillSaved() {
+        SettableFuture<Void> firstFuture = SettableFuture.create();
+        SettableFuture<Void> secondFuture = SettableFuture.create();
+        when(queue.add("client:1")).thenReturn(firstFuture);
+        when(queue.add("client:2")).thenReturn(secondFuture);
+
+        pendingSavesQueue.save("client:1");
+        pendingSavesQueue.save("client:2");
+        Assert.assertEquals("client:2", pendingSavesQueue.getPending("client"));
+        Assert.assertNull(pendingSavesQueue.getPending("otherClient"));
+
+        firstFuture.set(null);
+        Assert.assertEquals("client:2", pendingSavesQueue.getPending("client"));
+
+        secondFuture.set(null);
+        Assert.assertNull(pendingSavesQueue.getPending("client"));
+    }
+
+    @Test
+    public void givenFailedSave_whenGetPending_thenNothingReturned() {
+        SettableFuture<Void> future = SettableFuture.create();
+        when(queue.add("client:1")).thenReturn(future);
+
+        ListenableFuture<Void> saveFuture = pendingSavesQueue.save("client:1");
+        future.setException(new RuntimeException("Failed to save"));
+
+        Assert.assertSame(future, saveFuture);
+        Assert.assertNull(pendingSavesQueue.getPending("client"));
+    }
+
+    @Test
+    public void givenQueuedSave_whenAwaitPending_thenWaitsForSave() throws InterruptedException {
+        SettableFuture<Void> future = SettableFuture.create();
+        when(queue.add("client:1")).thenReturn(future);
+        pendingSavesQueue = new TbSqlPendingSavesQueue<>(queue, element -> element.split(":")[0], TimeUnit.SECONDS.toMillis(30));
+        pendingSavesQueue.save("client:1");
+
+        CountDownLatch awaited = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            pendingSavesQueue.awaitPending("client");
+            awaited.countDown();
+        });
+        thread.start();
+
+        Assert.assertFalse(awaited.await(100, TimeUnit.MILLISECONDS));
+        future.set(null);
+        Assert.assertTrue(awaited.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void givenStuckSave_whenAwaitPending_thenReturnsAfterTimeout() {
+        when(queue.add("client:1")).thenReturn(SettableFuture.create());
+        pendingSavesQueue.save("client:1");
+
+        long startTs = System.currentTimeMillis();
+        pendingSavesQueue.awaitPending("client");
+
+        Assert.assertTrue(System.currentTimeMillis() - startTs >= 100);
+        Assert.assertEquals("client:1", pendingSavesQueue.getPending("client"));
+    }
+
+    @Test
+    public void givenNoQueuedSave_whenAwaitPending_thenReturnsImmediately() {
+        pendingSavesQueue.awaitPending("client");
+    }
+
+    @Test
+    public void whenDestroy_thenQueueDestroyed() {
+        SettableFuture<Void> future = SettableFuture.create();
+        when(queue.add("client:1")).thenReturn(future);
+        pendingSavesQueue.save("client:1");
+        future.set(null);
+
+        pendingSavesQueue.destroy();
+
+        verify(queue).destroy();
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.common.data.ApplicationMsgInfo;
+import org.thingsboard.mqtt.broker.common.util.JacksonUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+public class ApplicationMsgInfosCodecPerformanceTest {
+
+    private static final int NUMBER_OF_MSGS = 5_000;
+    private static final int ITERATIONS = 200;
+
+    @Test
+    public void givenSessionCtx_whenSavedAndLoaded_thenCompareJsonAndBinaryLatency() {
+        List<ApplicationMsgInfo> msgInfos = newMsgInfos();
+
+        long startTime = System.nanoTime();
+        int jsonSize = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            String json = JacksonUtil.toString(msgInfos);
+            jsonSize = json.getBytes(StandardCharsets.UTF_8).length;
+            List<ApplicationMsgInfo> decoded = new ArrayList<>(NUMBER_OF_MSGS);
+            JacksonUtil.toJsonNode(json).forEach(node -> decoded.add(JacksonUtil.toValue(node, ApplicationMsgInfo.class)));
+            Assert.assertEquals(NUMBER_OF_MSGS, decoded.size());
+        }
+        long jsonTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        int binarySize = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            byte[] encoded = ApplicationMsgInfosCodec.encode(msgInfos);
+            binarySize = encoded.length;
+            Assert.assertEquals(NUMBER_OF_MSGS, ApplicationMsgInfosCodec.decode(encoded).size());
+        }
+        long binaryTime = System.nanoTime() - startTime;
+
+        log.info("{} save/load rounds of {} msg infos: JSON took {} ms ({} bytes), binary took {} ms ({} bytes)",
+                ITERATIONS, NUMBER_OF_MSGS, jsonTime / 1_000_000, jsonSize, binaryTime / 1_000_000, binarySize);
+        Assert.assertTrue(binarySize < jsonSize);
+    }
+
+    private List<ApplicationMsgInfo> newMsgInfos() {
+        List<ApplicationMsgInfo> msgInfos = new ArrayList<>(NUMBER_OF_MSGS);
+        for (int i = 0; i < NUMBER_OF_MSGS; i++) {
+            msgInfos.add(new ApplicationMsgInfo(1_000_000_000L + i, i % 65535 + 1));
+        }
+        return msgInfos;
+    }
+}
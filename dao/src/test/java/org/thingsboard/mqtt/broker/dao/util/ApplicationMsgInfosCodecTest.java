@@ -0,0 +1,90 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.common.data.ApplicationMsgInfo;
+import org.thingsboard.mqtt.broker.common.data.ApplicationSessionCtx;
+import org.thingsboard.mqtt.broker.common.util.JacksonUtil;
+import org.thingsboard.mqtt.broker.dao.model.ApplicationSessionCtxEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ApplicationMsgInfosCodecTest {
+
+    private static final int NUMBER_OF_MSGS = 5_000;
+
+    @Test
+    public void givenUnorderedMsgInfos_whenEncodeAndDecode_thenSortedByOffset() {
+        List<ApplicationMsgInfo> msgInfos = List.of(
+                new ApplicationMsgInfo(300, 3), new ApplicationMsgInfo(100, 1), new ApplicationMsgInfo(200, 65535));
+
+        List<ApplicationMsgInfo> decoded = ApplicationMsgInfosCodec.decode(ApplicationMsgInfosCodec.encode(msgInfos));
+
+        Assert.assertEquals(List.of(
+                new ApplicationMsgInfo(100, 1), new ApplicationMsgInfo(200, 65535), new ApplicationMsgInfo(300, 3)), decoded);
+    }
+
+    @Test
+    public void givenEdgeOffsets_whenEncodeAndDecode_thenSameMsgInfos() {
+        List<ApplicationMsgInfo> msgInfos = List.of(
+                new ApplicationMsgInfo(-1, 1), new ApplicationMsgInfo(0, 2), new ApplicationMsgInfo(0, 3),
+                new ApplicationMsgInfo(Long.MAX_VALUE / 2, 4));
+
+        Assert.assertEquals(msgInfos, ApplicationMsgInfosCodec.decode(ApplicationMsgInfosCodec.encode(msgInfos)));
+        Assert.assertEquals(Collections.emptyList(), ApplicationMsgInfosCodec.decode(ApplicationMsgInfosCodec.encode(Collections.emptyList())));
+    }
+
+    @Test
+    public void givenConsecutiveOffsets_whenEncode_thenFewBytesPerMsg() {
+        byte[] encoded = ApplicationMsgInfosCodec.encode(newMsgInfos());
+
+        Assert.assertTrue(encoded.length <= 3 + NUMBER_OF_MSGS * 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenTruncatedData_whenDecode_thenFail() {
+        byte[] encoded = ApplicationMsgInfosCodec.encode(newMsgInfos());
+        byte[] truncated = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+
+        ApplicationMsgInfosCodec.decode(truncated);
+    }
+
+    @Test
+    public void givenLegacyJsonRow_whenToData_thenMsgInfosParsed() {
+        ApplicationSessionCtxEntity entity = new ApplicationSessionCtxEntity();
+        entity.setClientId("client");
+        entity.setPublishMsgInfos(JacksonUtil.toJsonNode("[{\"offset\":100,\"packetId\":1}]"));
+        entity.setPubRelMsgInfos(JacksonUtil.toJsonNode("[]"));
+
+        ApplicationSessionCtx sessionCtx = entity.toData();
+
+        Assert.assertEquals(List.of(new ApplicationMsgInfo(100, 1)), sessionCtx.getPublishMsgInfos());
+        Assert.assertTrue(sessionCtx.getPubRelMsgInfos().isEmpty());
+    }
+
+    private List<ApplicationMsgInfo> newMsgInfos() {
+        List<ApplicationMsgInfo> msgInfos = new ArrayList<>(NUMBER_OF_MSGS);
+        for (int i = 0; i < NUMBER_OF_MSGS; i++) {
+            msgInfos.add(new ApplicationMsgInfo(1_000_000_000L + i, i % 65535 + 1));
+        }
+        return msgInfos;
+    }
+}